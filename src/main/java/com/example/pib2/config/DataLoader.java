@@ -139,7 +139,7 @@ public class DataLoader implements CommandLineRunner {
         }
 
         // Datos semillas para Document
-        if (documentRepository.findAll().isEmpty()) {
+        if (documentRepository.count() == 0) {
             com.example.pib2.models.entities.Document doc1 = new com.example.pib2.models.entities.Document();
             doc1.setDocumentTypeId(1);
             doc1.setDocumentDate(java.time.LocalDate.now().minusDays(10));
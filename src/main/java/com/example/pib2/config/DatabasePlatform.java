@@ -0,0 +1,45 @@
+package com.example.pib2.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * Base de datos de la aplicación. Las consultas propias de PostgreSQL (COPY, ON CONFLICT,
+ * particiones) tienen una alternativa para H2, que usan las pruebas.
+ */
+@Component
+public class DatabasePlatform {
+
+    private final DataSource dataSource;
+
+    // Se consulta una sola vez, con la primera llamada
+    private volatile Boolean postgreSql;
+
+    @Autowired
+    public DatabasePlatform(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * @return true si la base de datos es PostgreSQL. Si no se puede identificar se
+     *         informa y se trata como H2
+     */
+    public boolean isPostgreSql() {
+        if (postgreSql == null) {
+            try {
+                String database = JdbcUtils.extractDatabaseMetaData(dataSource,
+                        DatabaseMetaData::getDatabaseProductName);
+                postgreSql = "PostgreSQL".equalsIgnoreCase(database);
+            } catch (MetaDataAccessException e) {
+                System.err.println("No se pudo identificar la base de datos: " + e.getMessage());
+                return false;
+            }
+        }
+        return postgreSql;
+    }
+}
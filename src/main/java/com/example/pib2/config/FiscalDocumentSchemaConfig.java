@@ -0,0 +1,92 @@
+package com.example.pib2.config;
+
+import com.example.pib2.repositories.FiscalDocumentPartitionRepository;
+import org.hibernate.boot.model.relational.Namespace;
+import org.hibernate.boot.model.relational.Sequence;
+import org.hibernate.mapping.Table;
+import org.hibernate.tool.schema.spi.SchemaFilter;
+import org.hibernate.tool.schema.spi.SchemaFilterProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * En PostgreSQL fiscal_documents es una tabla particionada que crea y mantiene
+ * FiscalDocumentPartitionService: ddl-auto=update no sabe crear particiones y
+ * agregaría a la tabla una llave primaria y restricciones que PostgreSQL no admite en
+ * ella. En H2 la sigue creando ddl-auto.
+ */
+@Configuration
+public class FiscalDocumentSchemaConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer fiscalDocumentSchemaFilter(DataSource dataSource) {
+        return properties -> {
+            if (isPostgreSql(dataSource)) {
+                properties.put("hibernate.hbm2ddl.schema_filter_provider", new ExcludePartitionedTables());
+            }
+        };
+    }
+
+    private static boolean isPostgreSql(DataSource dataSource) {
+        try {
+            String database = JdbcUtils.extractDatabaseMetaData(dataSource,
+                    DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equalsIgnoreCase(database);
+        } catch (MetaDataAccessException e) {
+            System.err.println("No se pudo identificar la base de datos: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Deja fiscal_documents fuera de todas las acciones de hbm2ddl.
+     */
+    static class ExcludePartitionedTables implements SchemaFilterProvider, SchemaFilter {
+
+        @Override
+        public boolean includeNamespace(Namespace namespace) {
+            return true;
+        }
+
+        @Override
+        public boolean includeTable(Table table) {
+            return !FiscalDocumentPartitionRepository.TABLE.equalsIgnoreCase(table.getName());
+        }
+
+        @Override
+        public boolean includeSequence(Sequence sequence) {
+            return true;
+        }
+
+        @Override
+        public SchemaFilter getCreateFilter() {
+            return this;
+        }
+
+        @Override
+        public SchemaFilter getDropFilter() {
+            return this;
+        }
+
+        @Override
+        public SchemaFilter getTruncatorFilter() {
+            return this;
+        }
+
+        @Override
+        public SchemaFilter getMigrateFilter() {
+            return this;
+        }
+
+        @Override
+        public SchemaFilter getValidateFilter() {
+            return this;
+        }
+    }
+}
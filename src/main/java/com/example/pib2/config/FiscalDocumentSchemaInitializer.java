@@ -0,0 +1,124 @@
+package com.example.pib2.config;
+
+import com.example.pib2.repositories.FiscalDocumentPartitionRepository;
+import com.example.pib2.servicios.FiscalDocumentPartitionService;
+import com.example.pib2.servicios.FiscalDocumentSummaryService;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Ajustes del esquema de fiscal_documents que ddl-auto=update no realiza.
+ *
+ * Crea la tabla particionada por mes de Fecha Emisión, o convierte la que creó
+ * ddl-auto, y las particiones de los próximos meses (FiscalDocumentPartitionService).
+ *
+ * Alinea la secuencia fiscal_documents_seq con el ID máximo de la tabla. Las bases
+ * de datos creadas cuando la entidad usaba IDENTITY ya tienen filas con IDs que la
+ * secuencia nueva (que empieza en 1) volvería a generar.
+ *
+ * También crea la restricción única sobre (cufe_cude, issue_date) si falta, de la que
+ * dependen las importaciones masivas (ON CONFLICT), borrando antes los documentos
+ * repetidos de importaciones anteriores que la impedirían.
+ */
+@Component
+public class FiscalDocumentSchemaInitializer implements ApplicationRunner {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FiscalDocumentPartitionService fiscalDocumentPartitionService;
+
+    @Autowired
+    private FiscalDocumentPartitionRepository fiscalDocumentPartitionRepository;
+
+    @Autowired
+    private FiscalDocumentSummaryService fiscalDocumentSummaryService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public FiscalDocumentSchemaInitializer(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!isPostgreSql()) {
+            return;
+        }
+
+        int repeated = 0;
+        try {
+            repeated += fiscalDocumentPartitionService.initialize();
+        } catch (RuntimeException e) {
+            System.err.println("No se pudo preparar la tabla particionada fiscal_documents: "
+                    + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+
+        try {
+            // Con el optimizador pooled-lo el siguiente bloque empieza en nextval(),
+            // por lo que basta con que la secuencia no quede por debajo del ID máximo
+            jdbcTemplate.queryForObject(
+                    "SELECT setval('fiscal_documents_seq', GREATEST("
+                            + "(SELECT COALESCE(MAX(fiscal_document_id), 0) FROM fiscal_documents), "
+                            + "(SELECT last_value FROM fiscal_documents_seq)))",
+                    Long.class);
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo alinear la secuencia fiscal_documents_seq: " + e.getMessage());
+        }
+
+        repeated += ensureCufeUniqueConstraint();
+
+        // Los totales contaban también los documentos repetidos que se borraron
+        if (repeated > 0) {
+            try {
+                fiscalDocumentSummaryService.rebuild();
+            } catch (RuntimeException e) {
+                System.err.println("No se pudieron recalcular los totales de fiscal_documents: "
+                        + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            }
+        }
+    }
+
+    /**
+     * Crea la restricción única sobre (cufe_cude, issue_date) si falta. Antes de ella, volver
+     * a subir un archivo repetía sus documentos: de cada repetido se deja el de ID mayor, el
+     * de la importación más reciente.
+     *
+     * @return La cantidad de documentos repetidos borrados
+     */
+    private int ensureCufeUniqueConstraint() {
+        try {
+            Integer deleted = transactionTemplate.execute(status -> {
+                if (fiscalDocumentPartitionRepository.hasCufeUniqueConstraint()) {
+                    return 0;
+                }
+                int repeated = fiscalDocumentPartitionRepository.deleteRepeatedDocuments();
+                fiscalDocumentPartitionRepository.addCufeUniqueConstraint();
+                System.out.println("Restricción única " + FiscalDocumentPartitionRepository.CUFE_UNIQUE_CONSTRAINT
+                        + " creada en fiscal_documents; documentos repetidos borrados: " + repeated);
+                return repeated;
+            });
+            return deleted == null ? 0 : deleted;
+        } catch (RuntimeException e) {
+            System.err.println("No se pudo crear la restricción única de cufe_cude e issue_date: "
+                    + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            return 0;
+        }
+    }
+
+    private boolean isPostgreSql() {
+        String database = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(database);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.pib2.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Configuración de la ejecución en segundo plano de las importaciones de documentos fiscales.
+ */
+@Configuration
+public class FiscalImportConfig {
+
+    /**
+     * Ejecutor acotado para los trabajos de importación.
+     *
+     * Limita cuántos archivos se importan a la vez y cuántos pueden esperar en cola;
+     * cuando ambos están llenos el envío se rechaza en lugar de acumular archivos.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor fiscalImportExecutor(
+            @Value("${fiscal.import.max-concurrent-jobs:2}") int maxConcurrentJobs,
+            @Value("${fiscal.import.queue-capacity:10}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentJobs);
+        executor.setMaxPoolSize(maxConcurrentJobs);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("fiscal-import-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Hilos que convierten filas en documentos durante una importación.
+     *
+     * Un valor negativo en {@code fiscal.import.mapping-threads} usa los procesadores
+     * disponibles menos dos (el hilo lector y el escritor); 0 desactiva la conversión
+     * en paralelo.
+     *
+     * @param configured El valor de fiscal.import.mapping-threads
+     * @return La cantidad de hilos de conversión, 0 si se convierte en el hilo lector
+     */
+    public static int mappingThreads(int configured) {
+        if (configured >= 0) {
+            return configured;
+        }
+        return Math.max(0, Runtime.getRuntime().availableProcessors() - 2);
+    }
+
+    /**
+     * Pool compartido por las importaciones para convertir filas en documentos en
+     * paralelo. Cada importación limita sus lotes pendientes, así que la cola no
+     * necesita un límite propio.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor fiscalImportMappingExecutor(
+            @Value("${fiscal.import.mapping-threads:-1}") int mappingThreads) {
+        int threads = Math.max(1, mappingThreads(mappingThreads));
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("fiscal-import-map-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Un hilo escritor por cada importación en curso cuando la conversión es en paralelo.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor fiscalImportWriterExecutor(
+            @Value("${fiscal.import.max-concurrent-jobs:2}") int maxConcurrentJobs) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrentJobs);
+        executor.setMaxPoolSize(maxConcurrentJobs);
+        // Un trabajo nuevo puede empezar mientras el hilo escritor del anterior termina de liberarse
+        executor.setQueueCapacity(maxConcurrentJobs);
+        executor.setThreadNamePrefix("fiscal-import-write-");
+        executor.initialize();
+        return executor;
+    }
+}
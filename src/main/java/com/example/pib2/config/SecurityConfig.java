@@ -1,8 +1,10 @@
 package com.example.pib2.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -57,6 +59,10 @@ public class SecurityConfig {
 
                 // Configurar autorización de requests
                 .authorizeHttpRequests(authz -> authz
+                        // Las respuestas en streaming terminan con un despacho ASYNC de un
+                        // request que ya se autorizó (el filtro JWT no vuelve a correr en él)
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                         // Endpoints públicos (sin autenticación)
                         .requestMatchers("/actuator/**").permitAll()
                         .requestMatchers("/h2-console/**").permitAll()
@@ -81,6 +87,15 @@ public class SecurityConfig {
                         .requestMatchers("/api/loans/**").hasAnyRole("ADMIN", "USER")
                         .requestMatchers("/api/loan-history/**").hasAnyRole("ADMIN", "USER")
 
+                        // Recalcular los totales de documentos fiscales bloquea la tabla de totales
+                        .requestMatchers(HttpMethod.POST, "/api/fiscal-documents/summary/rebuild").hasRole("ADMIN")
+                        // Recargar la caché de análisis lee toda la tabla de documentos
+                        .requestMatchers(HttpMethod.POST, "/api/fiscal-documents/analytics/reload").hasRole("ADMIN")
+                        // Archivar saca meses completos de la tabla de documentos y borra sus particiones
+                        .requestMatchers(HttpMethod.POST, "/api/fiscal-documents/archive").hasRole("ADMIN")
+                        // Conciliar un mes lee todos sus documentos fiscales e internos
+                        .requestMatchers(HttpMethod.POST, "/api/fiscal-reconciliations").hasRole("ADMIN")
+
                         // Cualquier otro request requiere autenticación
                         .anyRequest().authenticated())
 
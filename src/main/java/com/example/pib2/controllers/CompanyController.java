@@ -7,7 +7,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/companies")
@@ -31,17 +30,13 @@ public class CompanyController {
     // Obtener todas las compañías
     @GetMapping
     public List<CompanyDto> getAllCompanies() {
-        return companyRepository.findAll().stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return companyRepository.findAllDtos();
     }
 
     // Obtener compañía por ID
     @GetMapping("/{id}")
     public CompanyDto getCompanyById(@PathVariable Long id) {
-        return companyRepository.findById(id)
-                .map(this::toDto)
-                .orElse(null);
+        return companyRepository.findDtoById(id).orElse(null);
     }
 
     // Crear nueva compañía
@@ -7,7 +7,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/documents")
@@ -26,6 +25,7 @@ public class DocumentController {
         dto.setDocumentNumber(document.getDocumentNumber());
         dto.setDocumentDueDate(document.getDocumentDueDate());
         dto.setThirdPartyId(document.getThirdPartyId());
+        dto.setDocumentTotal(document.getDocumentTotal());
         return dto;
     }
 
@@ -39,21 +39,18 @@ public class DocumentController {
         document.setDocumentNumber(dto.getDocumentNumber());
         document.setDocumentDueDate(dto.getDocumentDueDate());
         document.setThirdPartyId(dto.getThirdPartyId());
+        document.setDocumentTotal(dto.getDocumentTotal());
         return document;
     }
 
     @GetMapping
     public List<DocumentDto> getAllDocuments() {
-        return documentRepository.findAll().stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return documentRepository.findAllDtos();
     }
 
     @GetMapping("/{id}")
     public DocumentDto getDocumentById(@PathVariable Long id) {
-        return documentRepository.findById(id)
-                .map(this::toDto)
-                .orElse(null);
+        return documentRepository.findDtoById(id).orElse(null);
     }
 
     @PostMapping
@@ -73,6 +70,7 @@ public class DocumentController {
             document.setDocumentNumber(dto.getDocumentNumber());
             document.setDocumentDueDate(dto.getDocumentDueDate());
             document.setThirdPartyId(dto.getThirdPartyId());
+            document.setDocumentTotal(dto.getDocumentTotal());
             Document updated = documentRepository.save(document);
             return toDto(updated);
         }).orElse(null);
@@ -1,16 +1,60 @@
 package com.example.pib2.controllers;
 
+import com.example.pib2.models.dtos.FiscalDocumentAggregateDto;
 import com.example.pib2.models.dtos.FiscalDocumentDto;
+import com.example.pib2.models.dtos.FiscalDocumentFilterDto;
+import com.example.pib2.models.dtos.FiscalDocumentImportJobDto;
+import com.example.pib2.models.dtos.FiscalDocumentPageDto;
+import com.example.pib2.models.dtos.FiscalDocumentSummaryDto;
+import com.example.pib2.models.dtos.FiscalDocumentSummaryFilterDto;
+import com.example.pib2.models.dtos.FiscalDocumentValidationErrorDto;
+import com.example.pib2.models.dtos.FiscalDocumentValidationSummaryDto;
 import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.models.entities.FiscalDocumentName;
+import com.example.pib2.models.entities.FiscalDocumentSummary;
+import com.example.pib2.repositories.FiscalDocumentKeysetRepository;
+import com.example.pib2.repositories.FiscalDocumentSummaryRepository;
+import com.example.pib2.servicios.FiscalAnalytics.FiscalDocumentColumns;
+import com.example.pib2.servicios.FiscalDocumentAnalyticsService;
+import com.example.pib2.servicios.FiscalDocumentArchiveService;
+import com.example.pib2.servicios.FiscalDocumentImportJobService;
+import com.example.pib2.servicios.FiscalDocumentSearchService;
 import com.example.pib2.servicios.FiscalDocumentService;
+import com.example.pib2.servicios.FiscalDocumentSummaryService;
+import com.example.pib2.servicios.FiscalImport.FiscalDocumentExcelWriter;
+import com.example.pib2.servicios.FiscalImport.FiscalDocumentFileFormat;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/fiscal-documents")
@@ -19,45 +63,420 @@ public class FiscalDocumentController {
     @Autowired
     private FiscalDocumentService fiscalDocumentService;
 
+    @Autowired
+    private FiscalDocumentImportJobService fiscalDocumentImportJobService;
+
+    @Autowired
+    private FiscalDocumentSummaryService fiscalDocumentSummaryService;
+
+    @Autowired
+    private FiscalDocumentAnalyticsService fiscalDocumentAnalyticsService;
+
+    @Autowired
+    private FiscalDocumentArchiveService fiscalDocumentArchiveService;
+
+    @Autowired
+    private FiscalDocumentSearchService fiscalDocumentSearchService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_SEARCH_SIZE = 20;
+
+    private static final MediaType XLSX =
+            MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
     @PostMapping("/upload")
     public ResponseEntity<?> uploadExcelFile(@RequestParam("file") MultipartFile file) {
         try {
-            if (file.isEmpty()) {
-                return ResponseEntity.badRequest().body("El archivo está vacío");
+            String uploadError = checkUpload(file);
+            if (uploadError != null) {
+                return ResponseEntity.badRequest().body(uploadError);
             }
 
-            // Validar tamaño máximo del archivo (512MB = 512 * 1024 * 1024 bytes)
-            long maxFileSize = 512L * 1024 * 1024; // 512MB
-            if (file.getSize() > maxFileSize) {
-                return ResponseEntity.badRequest()
-                        .body("El archivo excede el tamaño máximo permitido de 512MB. Tamaño actual: " +
-                                String.format("%.2f MB", file.getSize() / (1024.0 * 1024.0)));
+            // La importación corre en segundo plano; el avance se consulta en /imports/{id}
+            FiscalDocumentFileFormat format = FiscalDocumentFileFormat.detect(file.getOriginalFilename(), file.getContentType());
+            FiscalDocumentImportJobDto job = fiscalDocumentImportJobService.submit(file, format);
+            if (job.getDuplicateOf() != null) {
+                // El mismo contenido ya se importó: se responde con la importación anterior
+                return ResponseEntity.ok()
+                        .location(URI.create("/api/fiscal-documents/imports/" + job.getDuplicateOf()))
+                        .body(job);
             }
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/fiscal-documents/imports/" + job.getId()))
+                    .body(job);
+        } catch (TaskRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Hay demasiadas importaciones en curso, intente más tarde");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error al procesar el archivo: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Valida un archivo Excel o CSV con las mismas reglas de la importación, sin guardar nada.
+     *
+     * La respuesta es NDJSON: una línea por cada problema encontrado
+     * ({@link FiscalDocumentValidationErrorDto}), escrita a medida que se lee el archivo,
+     * y al final una línea con el resumen ({@link FiscalDocumentValidationSummaryDto}).
+     */
+    @PostMapping("/validate")
+    public ResponseEntity<StreamingResponseBody> validateExcelFile(@RequestParam("file") MultipartFile file) {
+        String uploadError = checkUpload(file);
+        if (uploadError != null) {
+            return textResponse(HttpStatus.BAD_REQUEST, uploadError);
+        }
 
-            String filename = file.getOriginalFilename();
-            if (filename == null || (!filename.endsWith(".xlsx") && !filename.endsWith(".xls"))) {
-                return ResponseEntity.badRequest().body("El archivo debe ser un Excel (.xlsx o .xls)");
+        // Los lectores necesitan el archivo en disco
+        String filename = file.getOriginalFilename();
+        FiscalDocumentFileFormat format = FiscalDocumentFileFormat.detect(filename, file.getContentType());
+        Path tempFile;
+        try {
+            tempFile = Files.createTempFile("fiscal-validate-", format.getExtension());
+        } catch (IOException e) {
+            return textResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Error al procesar el archivo: " + e.getMessage());
+        }
+        try {
+            file.transferTo(tempFile);
+        } catch (IOException e) {
+            deleteTempFile(tempFile);
+            return textResponse(HttpStatus.INTERNAL_SERVER_ERROR, "Error al procesar el archivo: " + e.getMessage());
+        }
+
+        StreamingResponseBody body = output -> {
+            try {
+                writeValidationReport(tempFile, filename, format, output);
+            } finally {
+                deleteTempFile(tempFile);
             }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
 
-            List<FiscalDocument> documents = fiscalDocumentService.processExcelFile(file);
-            List<FiscalDocumentDto> dtos = documents.stream()
-                    .map(this::toDto)
-                    .collect(Collectors.toList());
+    @GetMapping("/imports/{id}")
+    public ResponseEntity<FiscalDocumentImportJobDto> getImportJob(@PathVariable String id) {
+        FiscalDocumentImportJobDto job = fiscalDocumentImportJobService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
 
-            return ResponseEntity.ok(dtos);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Error al procesar el archivo: " + e.getMessage());
+    /**
+     * Documentos que insertó o modificó una importación, como NDJSON (un documento por
+     * línea) en orden de ID. Se escriben a medida que se leen de la base de datos, sin
+     * armar la lista completa. Mientras la importación está en curso incluye los
+     * bloques ya guardados.
+     */
+    @GetMapping("/imports/{id}/documents")
+    public ResponseEntity<StreamingResponseBody> getImportDocuments(@PathVariable String id) {
+        Long importId = fiscalDocumentImportJobService.getImportId(id);
+        if (importId == null) {
+            return ResponseEntity.notFound().build();
         }
+
+        StreamingResponseBody body = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            try {
+                fiscalDocumentService.forEachImportedDocument(importId, document -> {
+                    try {
+                        writeLine(writer, document);
+                    } catch (IOException e) {
+                        // El cliente cerró la conexión: se detiene la consulta
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
+    /**
+     * Todos los documentos como un arreglo JSON, en orden de ID. Responde igual que
+     * {@code /export}; para consultas interactivas conviene {@code /query}.
+     */
     @GetMapping
-    public ResponseEntity<List<FiscalDocumentDto>> getAllDocuments() {
-        List<FiscalDocument> documents = fiscalDocumentService.getAllDocuments();
-        List<FiscalDocumentDto> dtos = documents.stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+    public ResponseEntity<StreamingResponseBody> getAllDocuments() {
+        return exportDocuments();
+    }
+
+    /**
+     * Exporta la tabla completa como un arreglo JSON, en orden de ID, para los procesos
+     * de reportes. Los documentos del histórico ({@code /archive}) no se incluyen.
+     *
+     * Los documentos se leen con un cursor de solo avance y cada uno se escribe con un
+     * JsonGenerator y se libera antes de leer el siguiente, así que la memoria usada no
+     * depende del tamaño de la tabla.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportDocuments() {
+        StreamingResponseBody body = output -> {
+            JsonGenerator generator = objectMapper.createGenerator(output, JsonEncoding.UTF8);
+            generator.writeStartArray();
+            try {
+                fiscalDocumentService.forEachDocument(document -> {
+                    try {
+                        generator.writeObject(document);
+                    } catch (IOException e) {
+                        // El cliente cerró la conexión: se detiene la consulta
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+            generator.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Consulta paginada y filtrable de documentos, en orden de Fecha Emisión e ID (los
+     * documentos sin Fecha Emisión al final), incluidos los del histórico. Para la página siguiente se envía el
+     * {@code nextCursor} de la respuesta como {@code cursor}, con los mismos filtros.
+     *
+     * @param size Documentos por página, entre 1 y {@value #MAX_PAGE_SIZE}
+     */
+    @GetMapping("/query")
+    public ResponseEntity<?> queryDocuments(
+            @RequestParam(required = false) String issuerNit,
+            @RequestParam(required = false) String receiverNit,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate issueDateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate issueDateTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body("El tamaño de página debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+
+        FiscalDocumentFilterDto filter = toFilter(issuerNit, receiverNit, documentType, status, issueDateFrom, issueDateTo);
+
+        List<FiscalDocument> documents;
+        try {
+            // Un documento de más indica si hay otra página
+            documents = fiscalDocumentService.findDocumentsPage(filter,
+                    StringUtils.hasText(cursor) ? cursor : null, size + 1);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        FiscalDocumentPageDto page = new FiscalDocumentPageDto();
+        for (int i = 0; i < Math.min(size, documents.size()); i++) {
+            page.getDocuments().add(toDto(documents.get(i)));
+        }
+        if (documents.size() > size) {
+            page.setNextCursor(FiscalDocumentKeysetRepository.Cursor.of(documents.get(size - 1)).toString());
+        }
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Busca documentos por parte del Nombre Emisor o del Nombre Receptor: cada palabra de
+     * {@code q} debe aparecer en el nombre, sin distinguir mayúsculas. Primero van los
+     * documentos del nombre más parecido a {@code q} y, de cada nombre, los más recientes.
+     * No busca en el histórico.
+     *
+     * @param field issuerName o receiverName para buscar solo en ese nombre; sin él, en los dos
+     * @param size Cantidad máxima de documentos, entre 1 y {@value FiscalDocumentSearchService#MAX_RESULTS}
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchDocuments(
+            @RequestParam String q,
+            @RequestParam(required = false) String field,
+            @RequestParam(defaultValue = "" + DEFAULT_SEARCH_SIZE) int size) {
+        if (size < 1 || size > FiscalDocumentSearchService.MAX_RESULTS) {
+            return ResponseEntity.badRequest().body("La cantidad de resultados debe estar entre 1 y "
+                    + FiscalDocumentSearchService.MAX_RESULTS);
+        }
+        String role = null;
+        if ("issuerName".equals(field)) {
+            role = FiscalDocumentName.ISSUER;
+        } else if ("receiverName".equals(field)) {
+            role = FiscalDocumentName.RECEIVER;
+        } else if (StringUtils.hasText(field)) {
+            return ResponseEntity.badRequest().body("Campo de búsqueda inválido: " + field
+                    + " (issuerName o receiverName)");
+        }
+
+        try {
+            return ResponseEntity.ok(fiscalDocumentSearchService.search(q, role, size).stream()
+                    .map(this::toDto)
+                    .toList());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Exporta como .xlsx los documentos que cumplen los filtros de {@code /query}, en el
+     * mismo orden y con las columnas de la importación: el archivo se puede editar y
+     * volver a subir en {@code /upload}.
+     *
+     * El libro se arma con un número fijo de filas en memoria y el resto en un archivo
+     * temporal, así que la memoria usada no depende de la cantidad de documentos; la
+     * descarga empieza cuando se termina de leer el último.
+     *
+     * Los documentos van en una sola hoja, la única que lee la importación: si son más
+     * de los que caben (1.048.575) responde 400 sin generar el archivo.
+     */
+    @GetMapping("/export/excel")
+    public ResponseEntity<StreamingResponseBody> exportDocumentsToExcel(
+            @RequestParam(required = false) String issuerNit,
+            @RequestParam(required = false) String receiverNit,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate issueDateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate issueDateTo) {
+        FiscalDocumentFilterDto filter = toFilter(issuerNit, receiverNit, documentType, status, issueDateFrom, issueDateTo);
+        long count = fiscalDocumentService.countExportable(filter);
+        if (count > FiscalDocumentExcelWriter.MAX_DOCUMENTS) {
+            return textResponse(HttpStatus.BAD_REQUEST, "Los filtros incluyen " + count
+                    + " documentos y una hoja de Excel admite hasta " + FiscalDocumentExcelWriter.MAX_DOCUMENTS
+                    + "; acote los filtros (por ejemplo, el rango de Fecha Emisión)");
+        }
+        StreamingResponseBody body = output -> fiscalDocumentService.exportExcel(filter, output);
+        return ResponseEntity.ok()
+                .contentType(XLSX)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("documentos-fiscales-" + LocalDate.now() + ".xlsx")
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    /**
+     * Totales de IVA, ReteIVA, ReteRenta, ReteICA y Total, precalculados por NIT receptor,
+     * NIT emisor, mes de emisión y tipo de documento. No recorre los documentos: el tiempo
+     * de respuesta depende solo de la cantidad de grupos.
+     *
+     * @param groupBy Dimensiones por las que se agrupa, separadas por coma: receiverNit,
+     *                issuerNit, issueMonth y documentType. Sin el parámetro se agrupa por
+     *                todas; vacío devuelve el total general
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<?> getSummary(
+            @RequestParam(required = false) String receiverNit,
+            @RequestParam(required = false) String issuerNit,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth issueMonthFrom,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth issueMonthTo,
+            @RequestParam(required = false) List<String> groupBy) {
+        FiscalDocumentSummaryFilterDto filter = new FiscalDocumentSummaryFilterDto();
+        filter.setReceiverNit(StringUtils.hasText(receiverNit) ? receiverNit.trim() : null);
+        filter.setIssuerNit(StringUtils.hasText(issuerNit) ? issuerNit.trim() : null);
+        filter.setDocumentType(StringUtils.hasText(documentType) ? documentType.trim() : null);
+        filter.setIssueMonthFrom(issueMonthFrom);
+        filter.setIssueMonthTo(issueMonthTo);
+
+        Set<FiscalDocumentSummaryRepository.Dimension> dimensions =
+                EnumSet.allOf(FiscalDocumentSummaryRepository.Dimension.class);
+        if (groupBy != null) {
+            dimensions.clear();
+            try {
+                for (String name : groupBy) {
+                    if (StringUtils.hasText(name)) {
+                        dimensions.add(FiscalDocumentSummaryRepository.Dimension.fromName(name.trim()));
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        }
+
+        List<FiscalDocumentSummaryDto> summaries = fiscalDocumentSummaryService.findSummaries(filter, dimensions)
+                .stream()
+                .map(this::toSummaryDto)
+                .toList();
+        return ResponseEntity.ok(summaries);
+    }
+
+    /**
+     * Recalcula los totales desde los documentos. Las importaciones los mantienen al día;
+     * esto solo hace falta si los documentos se modificaron fuera de la aplicación.
+     */
+    @PostMapping("/summary/rebuild")
+    public ResponseEntity<Map<String, Long>> rebuildSummary() {
+        return ResponseEntity.ok(Map.of("groups", fiscalDocumentSummaryService.rebuild()));
+    }
+
+    /**
+     * Cantidad de documentos y totales de IVA, ReteIVA, ReteRenta, ReteICA y Total por
+     * grupo, con los filtros de {@code /query}, calculados sobre la caché en memoria
+     * ({@code fiscal.analytics.enabled}) en lugar de la base de datos. Refleja cada
+     * importación al terminar.
+     *
+     * @param groupBy Dimensiones por las que se agrupa, separadas por coma: issuerNit,
+     *                receiverNit, documentType, status, issueDate e issueMonth. Sin el
+     *                parámetro devuelve el total general
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<?> getAnalytics(
+            @RequestParam(required = false) String issuerNit,
+            @RequestParam(required = false) String receiverNit,
+            @RequestParam(required = false) String documentType,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate issueDateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate issueDateTo,
+            @RequestParam(required = false) List<String> groupBy) {
+        FiscalDocumentFilterDto filter = toFilter(issuerNit, receiverNit, documentType, status, issueDateFrom, issueDateTo);
+
+        Set<FiscalDocumentColumns.Dimension> dimensions = EnumSet.noneOf(FiscalDocumentColumns.Dimension.class);
+        if (groupBy != null) {
+            try {
+                for (String name : groupBy) {
+                    if (StringUtils.hasText(name)) {
+                        dimensions.add(FiscalDocumentColumns.Dimension.fromName(name.trim()));
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        }
+
+        try {
+            List<FiscalDocumentAggregateDto> groups = fiscalDocumentAnalyticsService.aggregate(filter, dimensions);
+            return ResponseEntity.ok(groups);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Vuelve a cargar la caché de análisis desde la base de datos. Las importaciones la
+     * mantienen al día; esto solo hace falta si los documentos se modificaron fuera de
+     * la aplicación.
+     */
+    @PostMapping("/analytics/reload")
+    public ResponseEntity<?> reloadAnalytics() {
+        try {
+            return ResponseEntity.ok(Map.of("documents", fiscalDocumentAnalyticsService.reload()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Pasa al histórico en disco los documentos de los meses anteriores al período de
+     * retención ({@code fiscal.archive.retention-months}). Normalmente lo hace la tarea
+     * programada ({@code fiscal.archive.cron}).
+     */
+    @PostMapping("/archive")
+    public ResponseEntity<?> archiveClosedPeriods() {
+        try {
+            return ResponseEntity.ok(Map.of("documents", fiscalDocumentArchiveService.archive()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+        }
     }
 
     @GetMapping("/{id}")
@@ -69,6 +488,104 @@ public class FiscalDocumentController {
         return ResponseEntity.ok(toDto(document));
     }
 
+    private FiscalDocumentFilterDto toFilter(String issuerNit, String receiverNit, String documentType, String status,
+                                             LocalDate issueDateFrom, LocalDate issueDateTo) {
+        FiscalDocumentFilterDto filter = new FiscalDocumentFilterDto();
+        filter.setIssuerNit(StringUtils.hasText(issuerNit) ? issuerNit.trim() : null);
+        filter.setReceiverNit(StringUtils.hasText(receiverNit) ? receiverNit.trim() : null);
+        filter.setDocumentType(StringUtils.hasText(documentType) ? documentType.trim() : null);
+        filter.setStatus(StringUtils.hasText(status) ? status.trim() : null);
+        filter.setIssueDateFrom(issueDateFrom);
+        filter.setIssueDateTo(issueDateTo);
+        return filter;
+    }
+
+    /**
+     * @return El motivo por el que no se acepta el archivo, o null si se puede procesar
+     */
+    private String checkUpload(MultipartFile file) {
+        if (file.isEmpty()) {
+            return "El archivo está vacío";
+        }
+
+        // Validar tamaño máximo del archivo (512MB = 512 * 1024 * 1024 bytes)
+        long maxFileSize = 512L * 1024 * 1024; // 512MB
+        if (file.getSize() > maxFileSize) {
+            return "El archivo excede el tamaño máximo permitido de 512MB. Tamaño actual: " +
+                    String.format("%.2f MB", file.getSize() / (1024.0 * 1024.0));
+        }
+
+        // El formato se decide por el tipo de contenido o, si no es concluyente, por la extensión
+        if (FiscalDocumentFileFormat.detect(file.getOriginalFilename(), file.getContentType()) == null) {
+            return "El archivo debe ser un Excel (.xlsx o .xls) o un CSV (.csv)";
+        }
+        return null;
+    }
+
+    /**
+     * Respuesta de texto para los errores de un endpoint que en el caso normal responde
+     * en streaming.
+     */
+    private ResponseEntity<StreamingResponseBody> textResponse(HttpStatus status, String message) {
+        return ResponseEntity.status(status)
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(output -> output.write(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void writeValidationReport(Path file, String filename, FiscalDocumentFileFormat format,
+                                       OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        FiscalDocumentValidationSummaryDto summary;
+        try {
+            summary = fiscalDocumentService.validateFile(file, filename, format, error -> {
+                try {
+                    writeLine(writer, error);
+                } catch (IOException e) {
+                    // El cliente cerró la conexión: se detiene la lectura del archivo
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (Exception e) {
+            // Encabezados incorrectos o archivo ilegible
+            summary = new FiscalDocumentValidationSummaryDto();
+            summary.setFilename(filename);
+            summary.setError(e.getMessage());
+        }
+        writeLine(writer, summary);
+        writer.flush();
+    }
+
+    private void writeLine(Writer writer, Object value) throws IOException {
+        writer.write(objectMapper.writeValueAsString(value));
+        writer.write('\n');
+    }
+
+    private void deleteTempFile(Path tempFile) {
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            System.err.println("No se pudo eliminar el archivo temporal " + tempFile + ": " + e.getMessage());
+        }
+    }
+
+    private FiscalDocumentSummaryDto toSummaryDto(FiscalDocumentSummary summary) {
+        FiscalDocumentSummaryDto dto = new FiscalDocumentSummaryDto();
+        // La cadena vacía representa un valor que no venía en los documentos
+        dto.setReceiverNit(StringUtils.hasLength(summary.getReceiverNit()) ? summary.getReceiverNit() : null);
+        dto.setIssuerNit(StringUtils.hasLength(summary.getIssuerNit()) ? summary.getIssuerNit() : null);
+        dto.setIssueMonth(StringUtils.hasLength(summary.getIssueMonth()) ? summary.getIssueMonth() : null);
+        dto.setDocumentType(StringUtils.hasLength(summary.getDocumentType()) ? summary.getDocumentType() : null);
+        dto.setDocumentCount(summary.getDocumentCount());
+        dto.setIva(summary.getIva());
+        dto.setReteIva(summary.getReteIva());
+        dto.setReteRent(summary.getReteRent());
+        dto.setReteIca(summary.getReteIca());
+        dto.setTotal(summary.getTotal());
+        return dto;
+    }
+
     private FiscalDocumentDto toDto(FiscalDocument document) {
         FiscalDocumentDto dto = new FiscalDocumentDto();
         dto.setId(document.getId());
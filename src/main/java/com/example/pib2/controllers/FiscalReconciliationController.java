@@ -0,0 +1,144 @@
+package com.example.pib2.controllers;
+
+import com.example.pib2.models.dtos.FiscalReconciliationDto;
+import com.example.pib2.models.dtos.FiscalReconciliationResultDto;
+import com.example.pib2.models.dtos.FiscalReconciliationResultPageDto;
+import com.example.pib2.models.entities.FiscalReconciliation;
+import com.example.pib2.models.entities.FiscalReconciliationResult;
+import com.example.pib2.servicios.FiscalReconciliationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Conciliación de los documentos fiscales de la DIAN con los documentos internos, por
+ * mes (FiscalReconciliationService).
+ */
+@RestController
+@RequestMapping("/api/fiscal-reconciliations")
+public class FiscalReconciliationController {
+
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final Set<String> RESULT_STATUSES = Set.of(FiscalReconciliationResult.MATCHED,
+            FiscalReconciliationResult.AMOUNT_MISMATCH, FiscalReconciliationResult.FISCAL_ONLY,
+            FiscalReconciliationResult.DOCUMENT_ONLY);
+
+    @Autowired
+    private FiscalReconciliationService fiscalReconciliationService;
+
+    /**
+     * Concilia el mes y responde cuando termina, con la cantidad de resultados de cada
+     * tipo. Se ejecuta una conciliación a la vez.
+     *
+     * @param period Mes como yyyy-MM
+     */
+    @PostMapping
+    public ResponseEntity<FiscalReconciliationDto> reconcile(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth period) {
+        return ResponseEntity.ok(toDto(fiscalReconciliationService.reconcile(period)));
+    }
+
+    /**
+     * @param period Mes como yyyy-MM
+     * @return Las conciliaciones del mes, de la más reciente a la más antigua
+     */
+    @GetMapping
+    public List<FiscalReconciliationDto> getReconciliations(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth period) {
+        return fiscalReconciliationService.findReconciliations(period).stream()
+                .map(this::toDto)
+                .toList();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<FiscalReconciliationDto> getReconciliationById(@PathVariable Long id) {
+        FiscalReconciliation reconciliation = fiscalReconciliationService.getReconciliation(id);
+        if (reconciliation == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(toDto(reconciliation));
+    }
+
+    /**
+     * Resultados de una conciliación, por páginas en orden de ID. Para la página siguiente
+     * se envía el {@code nextCursor} de la respuesta como {@code cursor}, con el mismo status.
+     *
+     * @param status MATCHED, AMOUNT_MISMATCH, FISCAL_ONLY o DOCUMENT_ONLY; sin él, todos
+     * @param size Resultados por página, entre 1 y {@value #MAX_PAGE_SIZE}
+     */
+    @GetMapping("/{id}/results")
+    public ResponseEntity<?> getResults(
+            @PathVariable Long id,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body("El tamaño de página debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+        if (StringUtils.hasText(status) && !RESULT_STATUSES.contains(status)) {
+            return ResponseEntity.badRequest().body("Tipo de resultado inválido: " + status);
+        }
+        Long afterId = null;
+        if (StringUtils.hasText(cursor)) {
+            try {
+                afterId = Long.parseLong(cursor);
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().body("Cursor inválido: " + cursor);
+            }
+        }
+        if (fiscalReconciliationService.getReconciliation(id) == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // Un resultado de más indica si hay otra página
+        List<FiscalReconciliationResult> results = fiscalReconciliationService.findResults(id,
+                StringUtils.hasText(status) ? status : null, afterId, size + 1);
+        FiscalReconciliationResultPageDto page = new FiscalReconciliationResultPageDto();
+        for (int i = 0; i < Math.min(size, results.size()); i++) {
+            page.getResults().add(toDto(results.get(i)));
+        }
+        if (results.size() > size) {
+            page.setNextCursor(String.valueOf(results.get(size - 1).getId()));
+        }
+        return ResponseEntity.ok(page);
+    }
+
+    private FiscalReconciliationDto toDto(FiscalReconciliation reconciliation) {
+        FiscalReconciliationDto dto = new FiscalReconciliationDto();
+        dto.setId(reconciliation.getId());
+        dto.setPeriod(reconciliation.getPeriod());
+        dto.setStatus(reconciliation.getStatus());
+        dto.setFiscalDocuments(reconciliation.getFiscalDocuments());
+        dto.setDocuments(reconciliation.getDocuments());
+        dto.setMatched(reconciliation.getMatched());
+        dto.setAmountMismatches(reconciliation.getAmountMismatches());
+        dto.setFiscalOnly(reconciliation.getFiscalOnly());
+        dto.setDocumentOnly(reconciliation.getDocumentOnly());
+        dto.setError(reconciliation.getError());
+        dto.setCreatedAt(reconciliation.getCreatedAt());
+        dto.setFinishedAt(reconciliation.getFinishedAt());
+        return dto;
+    }
+
+    private FiscalReconciliationResultDto toDto(FiscalReconciliationResult result) {
+        FiscalReconciliationResultDto dto = new FiscalReconciliationResultDto();
+        dto.setId(result.getId());
+        dto.setStatus(result.getStatus());
+        dto.setNit(result.getNit());
+        dto.setPrefix(result.getPrefix());
+        dto.setNumber(result.getNumber());
+        dto.setFiscalDocumentId(result.getFiscalDocumentId());
+        dto.setFiscalDocumentTotal(result.getFiscalDocumentTotal());
+        dto.setDocumentId(result.getDocumentId());
+        dto.setDocumentTotal(result.getDocumentTotal());
+        return dto;
+    }
+}
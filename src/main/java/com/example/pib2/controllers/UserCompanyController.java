@@ -9,7 +9,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/user-companies")
@@ -33,17 +32,13 @@ public class UserCompanyController {
     // Obtener todas las relaciones usuario-compañía
     @GetMapping
     public List<UserCompanyDto> getAllUserCompanies() {
-        return userCompanyRepository.findAll().stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return userCompanyRepository.findAllDtos();
     }
 
     // Obtener relación por ID
     @GetMapping("/{id}")
     public UserCompanyDto getUserCompanyById(@PathVariable Long id) {
-        return userCompanyRepository.findById(id)
-                .map(this::toDto)
-                .orElse(null);
+        return userCompanyRepository.findDtoById(id).orElse(null);
     }
 
     // Crear nueva relación usuario-compañía
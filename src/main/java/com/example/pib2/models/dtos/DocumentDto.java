@@ -1,9 +1,15 @@
 package com.example.pib2.models.dtos;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class DocumentDto {
     private Long id;
     private int documentTypeId;
@@ -13,4 +19,5 @@ public class DocumentDto {
     private String documentNumber;
     private LocalDate documentDueDate;
     private Long thirdPartyId;
+    private BigDecimal documentTotal;
 }
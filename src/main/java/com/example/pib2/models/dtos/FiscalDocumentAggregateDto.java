@@ -0,0 +1,28 @@
+package com.example.pib2.models.dtos;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Cantidad y totales de un grupo de documentos fiscales calculados en la caché en
+ * memoria. Los campos por los que no se agrupó, o cuyo valor no viene en los
+ * documentos, son null.
+ */
+@Data
+public class FiscalDocumentAggregateDto {
+    private String issuerNit;
+    private String receiverNit;
+    private String documentType;
+    private String status;
+    private LocalDate issueDate;
+    // Mes de la Fecha Emisión como yyyy-MM
+    private String issueMonth;
+    private long documentCount;
+    private BigDecimal iva;
+    private BigDecimal reteIva;
+    private BigDecimal reteRent;
+    private BigDecimal reteIca;
+    private BigDecimal total;
+}
@@ -1,10 +1,16 @@
 package com.example.pib2.models.dtos;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
+// El constructor con todos los campos lo usa la proyección de FiscalDocumentRepository:
+// un campo nuevo se agrega también en su consulta, en el mismo orden
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class FiscalDocumentDto {
     private Long id;
     private String documentType;
@@ -0,0 +1,26 @@
+package com.example.pib2.models.dtos;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+/**
+ * Filtros de la consulta paginada de documentos fiscales. Los valores null no filtran;
+ * las fechas incluyen ambos extremos.
+ */
+@Data
+public class FiscalDocumentFilterDto {
+    private String issuerNit;
+    private String receiverNit;
+    private String documentType;
+    private String status;
+    private LocalDate issueDateFrom;
+    private LocalDate issueDateTo;
+
+    /**
+     * @return true si algún filtro excluye los documentos sin Fecha Emisión
+     */
+    public boolean filtersIssueDate() {
+        return issueDateFrom != null || issueDateTo != null;
+    }
+}
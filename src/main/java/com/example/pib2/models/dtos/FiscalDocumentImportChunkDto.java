@@ -0,0 +1,23 @@
+package com.example.pib2.models.dtos;
+
+import lombok.Data;
+
+/**
+ * Resultado de un bloque (chunk) de filas importadas en su propia transacción.
+ * Las filas se numeran como en Excel (la fila de encabezados es la 1).
+ *
+ * De los documentos del bloque, inserted son CUFE/CUDE nuevos, updated existían con
+ * algún campo distinto y duplicates ya existían sin cambios o se repetían en el bloque.
+ */
+@Data
+public class FiscalDocumentImportChunkDto {
+    private int chunk;
+    private int firstRow;
+    private int lastRow;
+    private int documents;
+    private long inserted;
+    private long updated;
+    private long duplicates;
+    private boolean committed;
+    private String error;
+}
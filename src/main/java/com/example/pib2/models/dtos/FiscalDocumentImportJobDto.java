@@ -0,0 +1,33 @@
+package com.example.pib2.models.dtos;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Estado de un trabajo de importación de documentos fiscales.
+ *
+ * Si el archivo ya se había importado, status es DUPLICATE y duplicateOf tiene el ID
+ * del trabajo que lo importó.
+ */
+@Data
+public class FiscalDocumentImportJobDto {
+    private String id;
+    private String filename;
+    private String status;
+    private String contentHash;
+    private String duplicateOf;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long rowsRead;
+    private long persisted;
+    private long inserted;
+    private long updated;
+    private long duplicates;
+    private long rejected;
+    private long failed;
+    private double rowsPerSecond;
+    private String error;
+    private FiscalDocumentImportReportDto report;
+}
@@ -0,0 +1,36 @@
+package com.example.pib2.models.dtos;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resumen de la importación de un archivo de documentos fiscales.
+ *
+ * totals suma cada columna de impuestos, retenciones y Total sobre las filas de los
+ * bloques guardados, con el nombre de la columna del archivo como llave. firstId y
+ * lastId son el menor y el mayor ID de los documentos que la importación insertó o
+ * modificó (null si no hubo ninguno); esos documentos se pueden descargar en
+ * /api/fiscal-documents/imports/{id}/documents.
+ */
+@Data
+public class FiscalDocumentImportReportDto {
+    private String filename;
+    private long rowsRead;
+    private long persisted;
+    private long inserted;
+    private long updated;
+    private long duplicates;
+    private long rejected;
+    private long failed;
+    private int chunkSize;
+    private Map<String, BigDecimal> totals = new LinkedHashMap<>();
+    private Long firstId;
+    private Long lastId;
+    private long durationMillis;
+    private List<FiscalDocumentImportChunkDto> chunks = new ArrayList<>();
+}
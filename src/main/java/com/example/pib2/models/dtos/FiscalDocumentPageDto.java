@@ -0,0 +1,19 @@
+package com.example.pib2.models.dtos;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Página de la consulta de documentos fiscales, en orden de Fecha Emisión e ID (los
+ * documentos sin Fecha Emisión van al final).
+ *
+ * nextCursor se envía como {@code cursor} para pedir la página siguiente; es null en
+ * la última página.
+ */
+@Data
+public class FiscalDocumentPageDto {
+    private List<FiscalDocumentDto> documents = new ArrayList<>();
+    private String nextCursor;
+}
@@ -0,0 +1,24 @@
+package com.example.pib2.models.dtos;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Totales de un grupo de documentos fiscales. Los campos de la llave por los que no
+ * se agrupó, o cuyo valor no viene en los documentos, son null.
+ */
+@Data
+public class FiscalDocumentSummaryDto {
+    private String receiverNit;
+    private String issuerNit;
+    // Mes de la Fecha Emisión como yyyy-MM
+    private String issueMonth;
+    private String documentType;
+    private long documentCount;
+    private BigDecimal iva;
+    private BigDecimal reteIva;
+    private BigDecimal reteRent;
+    private BigDecimal reteIca;
+    private BigDecimal total;
+}
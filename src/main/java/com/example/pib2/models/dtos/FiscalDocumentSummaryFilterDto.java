@@ -0,0 +1,18 @@
+package com.example.pib2.models.dtos;
+
+import lombok.Data;
+
+import java.time.YearMonth;
+
+/**
+ * Filtros de los totales de documentos fiscales. Los valores null no filtran; los
+ * meses incluyen ambos extremos.
+ */
+@Data
+public class FiscalDocumentSummaryFilterDto {
+    private String receiverNit;
+    private String issuerNit;
+    private String documentType;
+    private YearMonth issueMonthFrom;
+    private YearMonth issueMonthTo;
+}
@@ -0,0 +1,24 @@
+package com.example.pib2.models.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Problema encontrado en una fila al validar un archivo de documentos fiscales.
+ * Las filas se numeran como en Excel (la fila de encabezados es la 1).
+ *
+ * Si {@code column} es null el problema es de la fila completa: la importación la descartaría.
+ * En otro caso la celda no se pudo convertir y el documento se importaría con ese campo vacío.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FiscalDocumentValidationErrorDto {
+    private int row;
+    private String column;
+    private String value;
+    private String error;
+}
@@ -0,0 +1,23 @@
+package com.example.pib2.models.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+/**
+ * Resumen de la validación (sin guardar) de un archivo de documentos fiscales.
+ *
+ * rejected son las filas que la importación descartaría; rowsWithErrors incluye
+ * además las filas con alguna celda que quedaría vacía. error es el motivo por el
+ * que no se pudo validar el archivo completo (por ejemplo, encabezados incorrectos).
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FiscalDocumentValidationSummaryDto {
+    private String filename;
+    private boolean valid;
+    private long rowsRead;
+    private long rejected;
+    private long rowsWithErrors;
+    private long errors;
+    private String error;
+}
@@ -0,0 +1,28 @@
+package com.example.pib2.models.dtos;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ejecución de la conciliación de un mes y la cantidad de resultados de cada tipo.
+ */
+@Data
+public class FiscalReconciliationDto {
+    private Long id;
+    // Mes conciliado como yyyy-MM
+    private String period;
+    // RUNNING, COMPLETED o FAILED
+    private String status;
+    private long fiscalDocuments;
+    private long documents;
+    private long matched;
+    private long amountMismatches;
+    // Documentos fiscales sin documento interno
+    private long fiscalOnly;
+    // Documentos internos sin documento fiscal
+    private long documentOnly;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,23 @@
+package com.example.pib2.models.dtos;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Resultado de una conciliación: MATCHED, AMOUNT_MISMATCH, FISCAL_ONLY (documento fiscal
+ * sin documento interno) o DOCUMENT_ONLY (documento interno sin documento fiscal). El
+ * NIT, el prefijo y el número son la llave normalizada.
+ */
+@Data
+public class FiscalReconciliationResultDto {
+    private Long id;
+    private String status;
+    private String nit;
+    private String prefix;
+    private String number;
+    private Long fiscalDocumentId;
+    private BigDecimal fiscalDocumentTotal;
+    private Long documentId;
+    private BigDecimal documentTotal;
+}
@@ -0,0 +1,18 @@
+package com.example.pib2.models.dtos;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Página de resultados de una conciliación, en orden de ID.
+ *
+ * nextCursor se envía como {@code cursor} para pedir la página siguiente; es null en
+ * la última página.
+ */
+@Data
+public class FiscalReconciliationResultPageDto {
+    private List<FiscalReconciliationResultDto> results = new ArrayList<>();
+    private String nextCursor;
+}
@@ -1,8 +1,12 @@
 package com.example.pib2.models.dtos;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class UserCompanyDto {
     private Long id;
     private Long userId;
@@ -2,6 +2,8 @@ package com.example.pib2.models.entities;
 
 import jakarta.persistence.*;
 import lombok.Data;
+
+import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Data
@@ -33,4 +35,8 @@ public class Document {
 
     @Column(name = "third_party_id", nullable = false)
     private Long thirdPartyId;
+
+    // Valor total; opcional. La conciliación con los documentos fiscales lo compara con su Total
+    @Column(name = "document_total", precision = 19, scale = 2)
+    private BigDecimal documentTotal;
 }
@@ -7,11 +7,37 @@ import java.time.LocalDate;
 
 @Data
 @Entity
-@Table(name = "fiscal_documents")
+// El CUFE/CUDE identifica el documento ante la DIAN: reimportar un archivo actualiza
+// los documentos existentes en lugar de duplicarlos. La llave incluye la Fecha Emisión
+// (que forma parte del CUFE) porque en PostgreSQL la tabla está particionada por ella
+// y una restricción única debe incluir la columna de partición; los documentos sin
+// CUFE/CUDE o sin Fecha Emisión siempre se insertan.
+// En PostgreSQL la tabla, sus índices y la restricción los crea
+// FiscalDocumentPartitionRepository, no ddl-auto.
+@Table(name = "fiscal_documents",
+        uniqueConstraints = @UniqueConstraint(name = "uk_fiscal_documents_cufe_cude_issue_date",
+                columnNames = {"cufe_cude", "issue_date"}),
+        indexes = {
+                @Index(name = "idx_fiscal_documents_import_id", columnList = "import_id"),
+                // Paginación por keyset (FiscalDocumentKeysetRepository): orden de la consulta
+                // y una variante por cada filtro de igualdad
+                @Index(name = "idx_fiscal_documents_issue_date_id", columnList = "issue_date, fiscal_document_id"),
+                @Index(name = "idx_fiscal_documents_issuer_nit_issue_date_id",
+                        columnList = "issuer_nit, issue_date, fiscal_document_id"),
+                @Index(name = "idx_fiscal_documents_receiver_nit_issue_date_id",
+                        columnList = "receiver_nit, issue_date, fiscal_document_id"),
+                @Index(name = "idx_fiscal_documents_document_type_issue_date_id",
+                        columnList = "document_type, issue_date, fiscal_document_id"),
+                @Index(name = "idx_fiscal_documents_status_issue_date_id",
+                        columnList = "status, issue_date, fiscal_document_id")
+        })
 public class FiscalDocument {
 
+    // Secuencia con bloques de 50 IDs: a diferencia de IDENTITY, permite que Hibernate
+    // agrupe los INSERT en lotes JDBC (hibernate.jdbc.batch_size)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "fiscal_documents_seq")
+    @SequenceGenerator(name = "fiscal_documents_seq", sequenceName = "fiscal_documents_seq", allocationSize = 50)
     @Column(name = "fiscal_document_id", nullable = false, unique = true)
     private Long id;
 
@@ -110,5 +136,10 @@ public class FiscalDocument {
 
     @Column(name = "group_info", length = 1000)
     private String groupInfo;
+
+    // Registro (FiscalDocumentImport) de la última importación que insertó o modificó
+    // el documento; una reimportación sin cambios no lo reemplaza
+    @Column(name = "import_id")
+    private Long importId;
 }
 
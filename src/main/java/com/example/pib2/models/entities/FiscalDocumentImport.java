@@ -0,0 +1,74 @@
+package com.example.pib2.models.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Registro (ledger) de los archivos de documentos fiscales recibidos para importar.
+ *
+ * Guarda el SHA-256 del contenido para reconocer un archivo que ya se importó
+ * aunque llegue con otro nombre.
+ */
+@Data
+@Entity
+@Table(name = "fiscal_document_imports", indexes = {
+        @Index(name = "idx_fiscal_document_imports_content_hash", columnList = "content_hash")
+})
+public class FiscalDocumentImport {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "fiscal_document_import_id", nullable = false, unique = true)
+    private Long id;
+
+    // ID del trabajo de importación que procesó el archivo
+    @Column(name = "job_id", nullable = false, unique = true, length = 36)
+    private String jobId;
+
+    // SHA-256 del contenido en hexadecimal
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "filename", length = 500)
+    private String filename;
+
+    @Column(name = "file_size", nullable = false)
+    private long fileSize;
+
+    // QUEUED, RUNNING, COMPLETED o FAILED
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "rows_read")
+    private long rowsRead;
+
+    @Column(name = "inserted")
+    private long inserted;
+
+    @Column(name = "updated")
+    private long updated;
+
+    @Column(name = "duplicates")
+    private long duplicates;
+
+    @Column(name = "rejected")
+    private long rejected;
+
+    @Column(name = "failed")
+    private long failed;
+
+    @Column(name = "error", length = 1000)
+    private String error;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+}
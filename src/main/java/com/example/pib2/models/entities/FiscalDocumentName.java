@@ -0,0 +1,40 @@
+package com.example.pib2.models.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Directorio de los nombres de emisor y receptor que aparecen en los documentos
+ * fiscales, con el NIT con el que aparecen. Las importaciones agregan los nombres de
+ * cada bloque en la misma transacción en que lo guardan (ver
+ * FiscalDocumentNameRepository); la búsqueda por nombre recorre esta tabla, que tiene
+ * una fila por empresa, y no fiscal_documents.
+ *
+ * Los nombres no se borran cuando dejan de tener documentos. Un NIT vacío se guarda
+ * como cadena vacía, como en fiscal_document_summaries.
+ */
+@Data
+@Entity
+@Table(name = "fiscal_document_names",
+        uniqueConstraints = @UniqueConstraint(name = "uk_fiscal_document_names_role_nit_name",
+                columnNames = {"role", "nit", "name"}))
+public class FiscalDocumentName {
+
+    public static final String ISSUER = "ISSUER";
+    public static final String RECEIVER = "RECEIVER";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "fiscal_document_name_id", nullable = false, unique = true)
+    private Long id;
+
+    // ISSUER (Nombre Emisor) o RECEIVER (Nombre Receptor)
+    @Column(name = "role", nullable = false, length = 8)
+    private String role;
+
+    @Column(name = "nit", nullable = false)
+    private String nit;
+
+    @Column(name = "name", nullable = false, length = 500)
+    private String name;
+}
@@ -0,0 +1,59 @@
+package com.example.pib2.models.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.math.BigDecimal;
+
+/**
+ * Totales de los documentos fiscales por NIT receptor, NIT emisor, mes de emisión y
+ * tipo de documento. Las importaciones los actualizan en la misma transacción en que
+ * guardan cada bloque (ver FiscalDocumentSummaryRepository), así que los reportes no
+ * necesitan recorrer fiscal_documents.
+ *
+ * Las columnas de la llave no admiten null para que la restricción única identifique
+ * cada grupo: un NIT, tipo o fecha desconocidos se guardan como cadena vacía.
+ */
+@Data
+@Entity
+@Table(name = "fiscal_document_summaries",
+        uniqueConstraints = @UniqueConstraint(name = "uk_fiscal_document_summaries_key",
+                columnNames = {"receiver_nit", "issuer_nit", "issue_month", "document_type"}),
+        indexes = @Index(name = "idx_fiscal_document_summaries_issuer_nit_issue_month", columnList = "issuer_nit, issue_month"))
+public class FiscalDocumentSummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "fiscal_document_summary_id", nullable = false, unique = true)
+    private Long id;
+
+    @Column(name = "receiver_nit", nullable = false)
+    private String receiverNit;
+
+    @Column(name = "issuer_nit", nullable = false)
+    private String issuerNit;
+
+    // Mes de la Fecha Emisión como yyyy-MM
+    @Column(name = "issue_month", nullable = false, length = 7)
+    private String issueMonth;
+
+    @Column(name = "document_type", nullable = false)
+    private String documentType;
+
+    @Column(name = "document_count", nullable = false)
+    private long documentCount;
+
+    @Column(name = "iva", nullable = false, precision = 22, scale = 2)
+    private BigDecimal iva;
+
+    @Column(name = "rete_iva", nullable = false, precision = 22, scale = 2)
+    private BigDecimal reteIva;
+
+    @Column(name = "rete_rent", nullable = false, precision = 22, scale = 2)
+    private BigDecimal reteRent;
+
+    @Column(name = "rete_ica", nullable = false, precision = 22, scale = 2)
+    private BigDecimal reteIca;
+
+    @Column(name = "total", nullable = false, precision = 22, scale = 2)
+    private BigDecimal total;
+}
@@ -0,0 +1,65 @@
+package com.example.pib2.models.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * Ejecución de la conciliación de un mes entre los documentos fiscales (DIAN) y los
+ * documentos internos (Document), con la cantidad de resultados de cada tipo. Los
+ * resultados están en fiscal_reconciliation_results.
+ */
+@Data
+@Entity
+@Table(name = "fiscal_reconciliations", indexes = {
+        @Index(name = "idx_fiscal_reconciliations_period", columnList = "period")
+})
+public class FiscalReconciliation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "fiscal_reconciliation_id", nullable = false, unique = true)
+    private Long id;
+
+    // Mes conciliado como yyyy-MM: Fecha Emisión de los documentos fiscales y fecha de los internos
+    @Column(name = "period", nullable = false, length = 7)
+    private String period;
+
+    // RUNNING, COMPLETED o FAILED
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "fiscal_documents")
+    private long fiscalDocuments;
+
+    @Column(name = "documents")
+    private long documents;
+
+    @Column(name = "matched")
+    private long matched;
+
+    @Column(name = "amount_mismatches")
+    private long amountMismatches;
+
+    // Documentos fiscales sin documento interno
+    @Column(name = "fiscal_only")
+    private long fiscalOnly;
+
+    // Documentos internos sin documento fiscal
+    @Column(name = "document_only")
+    private long documentOnly;
+
+    @Column(name = "error", length = 1000)
+    private String error;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.pib2.models.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.math.BigDecimal;
+
+/**
+ * Resultado de una conciliación (FiscalReconciliation) para un documento fiscal, un
+ * documento interno o el par de los dos que tienen la misma llave: NIT emisor, prefijo y
+ * número, normalizados (FiscalReconciliationKey).
+ *
+ * Las filas se escriben con JDBC (FiscalReconciliationRepository), sin pasar por el
+ * contexto de persistencia.
+ */
+@Data
+@Entity
+@Table(name = "fiscal_reconciliation_results", indexes = {
+        @Index(name = "idx_fiscal_reconciliation_results_reconciliation",
+                columnList = "reconciliation_id, fiscal_reconciliation_result_id"),
+        @Index(name = "idx_fiscal_reconciliation_results_status",
+                columnList = "reconciliation_id, status, fiscal_reconciliation_result_id")
+})
+public class FiscalReconciliationResult {
+
+    // Los dos documentos tienen la misma llave y el mismo total (o a uno le falta el total)
+    public static final String MATCHED = "MATCHED";
+    // Los dos documentos tienen la misma llave pero distinto total
+    public static final String AMOUNT_MISMATCH = "AMOUNT_MISMATCH";
+    // Documento fiscal sin documento interno
+    public static final String FISCAL_ONLY = "FISCAL_ONLY";
+    // Documento interno sin documento fiscal
+    public static final String DOCUMENT_ONLY = "DOCUMENT_ONLY";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "fiscal_reconciliation_result_id", nullable = false, unique = true)
+    private Long id;
+
+    @Column(name = "reconciliation_id", nullable = false)
+    private Long reconciliationId;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    // Llave normalizada
+    @Column(name = "nit")
+    private String nit;
+
+    @Column(name = "prefix")
+    private String prefix;
+
+    @Column(name = "number")
+    private String number;
+
+    @Column(name = "fiscal_document_id")
+    private Long fiscalDocumentId;
+
+    @Column(name = "fiscal_document_total", precision = 19, scale = 2)
+    private BigDecimal fiscalDocumentTotal;
+
+    @Column(name = "document_id")
+    private Long documentId;
+
+    @Column(name = "document_total", precision = 19, scale = 2)
+    private BigDecimal documentTotal;
+}
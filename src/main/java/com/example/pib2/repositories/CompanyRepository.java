@@ -1,10 +1,26 @@
 package com.example.pib2.repositories;
 
+import com.example.pib2.models.dtos.CompanyDto;
 import com.example.pib2.models.entities.Company;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CompanyRepository extends JpaRepository<Company, Long> {
     boolean existsByIdentificationNumber(String identificationNumber);
+
+    /**
+     * Todas las compañías como DTO, en orden de ID, sin crear las entidades.
+     */
+    @Query("SELECT new com.example.pib2.models.dtos.CompanyDto(c.id, c.name, c.identificationNumber, c.address, "
+            + "c.phone, c.email) FROM Company c ORDER BY c.id")
+    List<CompanyDto> findAllDtos();
+
+    @Query("SELECT new com.example.pib2.models.dtos.CompanyDto(c.id, c.name, c.identificationNumber, c.address, "
+            + "c.phone, c.email) FROM Company c WHERE c.id = :id")
+    Optional<CompanyDto> findDtoById(Long id);
 }
@@ -1,9 +1,27 @@
 package com.example.pib2.repositories;
 
+import com.example.pib2.models.dtos.DocumentDto;
 import com.example.pib2.models.entities.Document;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
+
+    /**
+     * Todos los documentos como DTO, en orden de ID, sin crear las entidades.
+     */
+    @Query("SELECT new com.example.pib2.models.dtos.DocumentDto(d.id, d.documentTypeId, d.documentDate, "
+            + "d.documentReception, d.documentPrefix, d.documentNumber, d.documentDueDate, d.thirdPartyId, "
+            + "d.documentTotal) FROM Document d ORDER BY d.id")
+    List<DocumentDto> findAllDtos();
+
+    @Query("SELECT new com.example.pib2.models.dtos.DocumentDto(d.id, d.documentTypeId, d.documentDate, "
+            + "d.documentReception, d.documentPrefix, d.documentNumber, d.documentDueDate, d.thirdPartyId, "
+            + "d.documentTotal) FROM Document d WHERE d.id = :id")
+    Optional<DocumentDto> findDtoById(Long id);
 }
@@ -0,0 +1,78 @@
+package com.example.pib2.repositories;
+
+import com.example.pib2.models.entities.FiscalDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+/**
+ * Lectura de los documentos fiscales para la caché de análisis
+ * (FiscalDocumentColumns): solo las columnas que la caché guarda, con JDBC y sin
+ * pasar por el contexto de persistencia, que para toda la tabla tardaría varias veces
+ * más.
+ *
+ * Los métodos deben llamarse dentro de una transacción: en PostgreSQL el driver solo
+ * lee por bloques (fetch size) sin autocommit.
+ */
+@Repository
+public class FiscalDocumentAnalyticsRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String SELECT_SQL = "SELECT fiscal_document_id, issuer_nit, receiver_nit, document_type, "
+            + "status, issue_date, iva, rete_iva, rete_rent, rete_ica, total FROM fiscal_documents";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Recorre todos los documentos.
+     *
+     * @param consumer Recibe cada documento, solo con las columnas de la caché
+     */
+    public void forEachDocument(Consumer<FiscalDocument> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_SQL);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, handler(consumer));
+    }
+
+    /**
+     * Recorre los documentos que insertó o modificó por última vez una importación.
+     *
+     * @param importId ID del registro de la importación
+     * @param consumer Recibe cada documento, solo con las columnas de la caché
+     */
+    public void forEachImportedDocument(Long importId, Consumer<FiscalDocument> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_SQL + " WHERE import_id = ?");
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setLong(1, importId);
+            return statement;
+        }, handler(consumer));
+    }
+
+    private RowCallbackHandler handler(Consumer<FiscalDocument> consumer) {
+        return resultSet -> {
+            FiscalDocument document = new FiscalDocument();
+            document.setId(resultSet.getLong("fiscal_document_id"));
+            document.setIssuerNit(resultSet.getString("issuer_nit"));
+            document.setReceiverNit(resultSet.getString("receiver_nit"));
+            document.setDocumentType(resultSet.getString("document_type"));
+            document.setStatus(resultSet.getString("status"));
+            document.setIssueDate(resultSet.getObject("issue_date", LocalDate.class));
+            document.setIva(resultSet.getBigDecimal("iva"));
+            document.setReteIva(resultSet.getBigDecimal("rete_iva"));
+            document.setReteRent(resultSet.getBigDecimal("rete_rent"));
+            document.setReteIca(resultSet.getBigDecimal("rete_ica"));
+            document.setTotal(resultSet.getBigDecimal("total"));
+            consumer.accept(document);
+        };
+    }
+}
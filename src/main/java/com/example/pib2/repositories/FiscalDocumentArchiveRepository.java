@@ -0,0 +1,114 @@
+package com.example.pib2.repositories;
+
+import com.example.pib2.models.entities.FiscalDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consultas de FiscalDocumentArchiveService para pasar los documentos de un mes cerrado
+ * de fiscal_documents al histórico en disco. Funcionan igual en PostgreSQL y en H2.
+ *
+ * Los métodos deben llamarse dentro de una transacción.
+ */
+@Repository
+public class FiscalDocumentArchiveRepository {
+
+    // Documentos que se borran por sentencia del lote
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private static final String MONTHS_SQL = "SELECT DISTINCT EXTRACT(YEAR FROM issue_date), "
+            + "EXTRACT(MONTH FROM issue_date) FROM fiscal_documents WHERE issue_date < ?";
+
+    // Bloquea los documentos hasta el final de la transacción: una importación que
+    // quiera modificarlos espera a que se archiven
+    private static final String LOCK_MONTH_SQL = "SELECT fiscal_document_id, document_type, cufe_cude, folio, "
+            + "prefix, currency, payment_form, payment_method, issue_date, reception_date, issuer_nit, "
+            + "issuer_name, receiver_nit, receiver_name, iva, ica, ic, inc, timbre, inc_bags, in_carbon, "
+            + "in_fuels, ic_data, icl, inpp, ibua, icui, rete_iva, rete_rent, rete_ica, total, status, "
+            + "group_info, import_id FROM fiscal_documents WHERE issue_date >= ? AND issue_date < ? "
+            + "ORDER BY fiscal_document_id FOR UPDATE";
+
+    // Con la fecha, PostgreSQL solo busca en la partición del mes
+    private static final String DELETE_SQL =
+            "DELETE FROM fiscal_documents WHERE fiscal_document_id = ? AND issue_date = ?";
+
+    private static final RowMapper<FiscalDocument> DOCUMENT_MAPPER = (resultSet, rowNum) -> {
+        FiscalDocument document = new FiscalDocument();
+        document.setId(resultSet.getLong("fiscal_document_id"));
+        document.setDocumentType(resultSet.getString("document_type"));
+        document.setCufeCude(resultSet.getString("cufe_cude"));
+        document.setFolio(resultSet.getString("folio"));
+        document.setPrefix(resultSet.getString("prefix"));
+        document.setCurrency(resultSet.getString("currency"));
+        document.setPaymentForm(resultSet.getString("payment_form"));
+        document.setPaymentMethod(resultSet.getString("payment_method"));
+        document.setIssueDate(resultSet.getObject("issue_date", LocalDate.class));
+        document.setReceptionDate(resultSet.getObject("reception_date", LocalDate.class));
+        document.setIssuerNit(resultSet.getString("issuer_nit"));
+        document.setIssuerName(resultSet.getString("issuer_name"));
+        document.setReceiverNit(resultSet.getString("receiver_nit"));
+        document.setReceiverName(resultSet.getString("receiver_name"));
+        document.setIva(resultSet.getBigDecimal("iva"));
+        document.setIca(resultSet.getBigDecimal("ica"));
+        document.setIc(resultSet.getBigDecimal("ic"));
+        document.setInc(resultSet.getBigDecimal("inc"));
+        document.setTimbre(resultSet.getBigDecimal("timbre"));
+        document.setIncBags(resultSet.getBigDecimal("inc_bags"));
+        document.setInCarbon(resultSet.getBigDecimal("in_carbon"));
+        document.setInFuels(resultSet.getBigDecimal("in_fuels"));
+        document.setIcData(resultSet.getBigDecimal("ic_data"));
+        document.setIcl(resultSet.getBigDecimal("icl"));
+        document.setInpp(resultSet.getBigDecimal("inpp"));
+        document.setIbua(resultSet.getBigDecimal("ibua"));
+        document.setIcui(resultSet.getBigDecimal("icui"));
+        document.setReteIva(resultSet.getBigDecimal("rete_iva"));
+        document.setReteRent(resultSet.getBigDecimal("rete_rent"));
+        document.setReteIca(resultSet.getBigDecimal("rete_ica"));
+        document.setTotal(resultSet.getBigDecimal("total"));
+        document.setStatus(resultSet.getString("status"));
+        document.setGroupInfo(resultSet.getString("group_info"));
+        long importId = resultSet.getLong("import_id");
+        document.setImportId(resultSet.wasNull() ? null : importId);
+        return document;
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return Los meses con documentos anteriores a la fecha, en orden
+     */
+    public List<YearMonth> findMonthsBefore(LocalDate date) {
+        List<YearMonth> months = new ArrayList<>(jdbcTemplate.query(MONTHS_SQL,
+                (resultSet, rowNum) -> YearMonth.of(resultSet.getInt(1), resultSet.getInt(2)), date));
+        months.sort(null);
+        return months;
+    }
+
+    /**
+     * Lee y bloquea todos los documentos del mes.
+     *
+     * @return Los documentos, en orden de ID
+     */
+    public List<FiscalDocument> lockMonth(YearMonth month) {
+        return jdbcTemplate.query(LOCK_MONTH_SQL, DOCUMENT_MAPPER,
+                month.atDay(1), month.plusMonths(1).atDay(1));
+    }
+
+    /**
+     * Borra los documentos (por ID y Fecha Emisión).
+     */
+    public void delete(List<FiscalDocument> documents) {
+        jdbcTemplate.batchUpdate(DELETE_SQL, documents, DELETE_BATCH_SIZE, (statement, document) -> {
+            statement.setLong(1, document.getId());
+            statement.setObject(2, document.getIssueDate());
+        });
+    }
+}
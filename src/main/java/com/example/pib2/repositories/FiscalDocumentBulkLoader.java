@@ -0,0 +1,218 @@
+package com.example.pib2.repositories;
+
+import com.example.pib2.config.DatabasePlatform;
+import com.example.pib2.models.entities.FiscalDocument;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Carga masiva de documentos fiscales sin pasar por el contexto de persistencia.
+ *
+ * En PostgreSQL las filas se envían con COPY ... FROM STDIN (formato CSV) a través
+ * del CopyManager del driver; en otras bases de datos (H2) se usan INSERT por lotes
+ * JDBC. Los IDs se reservan de fiscal_documents_seq con la misma convención pooled-lo
+ * que usa Hibernate, así que ambas rutas pueden convivir sobre la misma tabla.
+ *
+ * {@link #upsert(List)} (solo PostgreSQL) carga las filas en una tabla temporal y las
+ * combina con fiscal_documents en una sola sentencia INSERT ... ON CONFLICT sobre el
+ * CUFE/CUDE y la Fecha Emisión. Devuelve también las columnas de los totales (FiscalDocumentSummary) de
+ * las filas escritas y de la versión anterior de las que reemplazó.
+ *
+ * Los métodos deben llamarse dentro de una transacción para que la carga use la
+ * conexión de esa transacción.
+ */
+@Repository
+public class FiscalDocumentBulkLoader {
+
+    // Debe coincidir con el allocationSize de @SequenceGenerator en FiscalDocument
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final int BATCH_SIZE = 50;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String COLUMNS = "fiscal_document_id, document_type, cufe_cude, folio, prefix, currency, "
+            + "payment_form, payment_method, issue_date, reception_date, issuer_nit, issuer_name, receiver_nit, "
+            + "receiver_name, iva, ica, ic, inc, timbre, inc_bags, in_carbon, in_fuels, ic_data, icl, inpp, ibua, "
+            + "icui, rete_iva, rete_rent, rete_ica, total, status, group_info, import_id";
+
+    // Valores de cada fila en el mismo orden de COLUMNS
+    private static final List<Function<FiscalDocument, Object>> VALUES = List.of(
+            FiscalDocument::getId,
+            FiscalDocument::getDocumentType,
+            FiscalDocument::getCufeCude,
+            FiscalDocument::getFolio,
+            FiscalDocument::getPrefix,
+            FiscalDocument::getCurrency,
+            FiscalDocument::getPaymentForm,
+            FiscalDocument::getPaymentMethod,
+            FiscalDocument::getIssueDate,
+            FiscalDocument::getReceptionDate,
+            FiscalDocument::getIssuerNit,
+            FiscalDocument::getIssuerName,
+            FiscalDocument::getReceiverNit,
+            FiscalDocument::getReceiverName,
+            FiscalDocument::getIva,
+            FiscalDocument::getIca,
+            FiscalDocument::getIc,
+            FiscalDocument::getInc,
+            FiscalDocument::getTimbre,
+            FiscalDocument::getIncBags,
+            FiscalDocument::getInCarbon,
+            FiscalDocument::getInFuels,
+            FiscalDocument::getIcData,
+            FiscalDocument::getIcl,
+            FiscalDocument::getInpp,
+            FiscalDocument::getIbua,
+            FiscalDocument::getIcui,
+            FiscalDocument::getReteIva,
+            FiscalDocument::getReteRent,
+            FiscalDocument::getReteIca,
+            FiscalDocument::getTotal,
+            FiscalDocument::getStatus,
+            FiscalDocument::getGroupInfo,
+            FiscalDocument::getImportId
+    );
+
+    private static final String INSERT_SQL = "INSERT INTO fiscal_documents (" + COLUMNS + ") VALUES (?"
+            + ", ?".repeat(VALUES.size() - 1) + ")";
+
+    private static final String COPY_SQL = "COPY %s (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+
+    private static final String STAGING_TABLE = "fiscal_documents_staging";
+
+    // Sin índices ni restricciones: solo recibe las filas del bloque y desaparece al terminar la transacción
+    private static final String CREATE_STAGING_SQL = "CREATE TEMP TABLE " + STAGING_TABLE
+            + " (LIKE fiscal_documents INCLUDING DEFAULTS) ON COMMIT DROP";
+
+    // Columnas que se actualizan cuando el documento ya existe (todas menos el ID y la llave)
+    private static final List<String> UPDATED_COLUMNS = Arrays.stream(COLUMNS.split(", "))
+            .filter(column -> !column.equals("fiscal_document_id") && !column.equals("cufe_cude")
+                    && !column.equals("issue_date"))
+            .toList();
+
+    // Columnas que deciden si una fila cambió; la importación que la trae no cuenta
+    private static final List<String> COMPARED_COLUMNS = UPDATED_COLUMNS.stream()
+            .filter(column -> !column.equals("import_id"))
+            .toList();
+
+    // Columnas que acumula fiscal_document_summaries
+    private static final String SUMMARY_COLUMNS = "receiver_nit, issuer_nit, issue_date, document_type, "
+            + "iva, rete_iva, rete_rent, rete_ica, total";
+
+    private static final String CHANGED_CONDITION = "("
+            + COMPARED_COLUMNS.stream().map(column -> "f." + column).collect(Collectors.joining(", "))
+            + ") IS DISTINCT FROM (";
+
+    // Versión actual de las filas que el upsert va a modificar (la misma condición que su
+    // WHERE). FOR UPDATE las bloquea hasta el final de la transacción y, si otra las
+    // modificó mientras tanto, devuelve la versión confirmada más reciente.
+    //
+    // Cada fila del bloque busca la suya con LATERAL ... LIMIT 1, que obliga a usar la
+    // restricción única de la única partición de su fecha. Con un JOIN el planificador
+    // calcula el costo como si cada búsqueda recorriera todas las particiones y, cuando
+    // la tabla crece, prefiere un hash join que las lee completas. Las filas se bloquean
+    // en el orden de la llave para que dos importaciones no se bloqueen mutuamente.
+    private static final String REPLACED_SQL = "SELECT "
+            + Arrays.stream(SUMMARY_COLUMNS.split(", ")).map(column -> "f." + column).collect(Collectors.joining(", "))
+            + " FROM (SELECT * FROM " + STAGING_TABLE + " ORDER BY cufe_cude, issue_date) s "
+            + "CROSS JOIN LATERAL (SELECT * FROM fiscal_documents "
+            + "WHERE cufe_cude = s.cufe_cude AND issue_date = s.issue_date LIMIT 1 FOR UPDATE) f WHERE "
+            + CHANGED_CONDITION
+            + COMPARED_COLUMNS.stream().map(column -> "s." + column).collect(Collectors.joining(", "))
+            + ")";
+
+    // Solo se reescriben las filas que cambiaron. Las filas insertadas conservan el ID
+    // reservado para el bloque y las actualizadas el suyo (xmax no se puede leer en el
+    // RETURNING de una tabla particionada).
+    private static final String UPSERT_SQL = "INSERT INTO fiscal_documents AS f (" + COLUMNS + ") "
+            + "SELECT " + COLUMNS + " FROM " + STAGING_TABLE + " "
+            + "ON CONFLICT (cufe_cude, issue_date) DO UPDATE SET "
+            + UPDATED_COLUMNS.stream().map(column -> column + " = EXCLUDED." + column).collect(Collectors.joining(", "))
+            + " WHERE " + CHANGED_CONDITION
+            + COMPARED_COLUMNS.stream().map(column -> "EXCLUDED." + column).collect(Collectors.joining(", "))
+            + ") RETURNING fiscal_document_id, " + SUMMARY_COLUMNS;
+
+    private static final RowMapper<FiscalDocument> SUMMARY_COLUMNS_MAPPER = (resultSet, rowNum) -> {
+        FiscalDocument document = new FiscalDocument();
+        document.setReceiverNit(resultSet.getString("receiver_nit"));
+        document.setIssuerNit(resultSet.getString("issuer_nit"));
+        document.setIssueDate(resultSet.getObject("issue_date", LocalDate.class));
+        document.setDocumentType(resultSet.getString("document_type"));
+        document.setIva(resultSet.getBigDecimal("iva"));
+        document.setReteIva(resultSet.getBigDecimal("rete_iva"));
+        document.setReteRent(resultSet.getBigDecimal("rete_rent"));
+        document.setReteIca(resultSet.getBigDecimal("rete_ica"));
+        document.setTotal(resultSet.getBigDecimal("total"));
+        return document;
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DatabasePlatform databasePlatform;
+
+    /**
+     * Resultado de {@link #upsert(List)}.
+     */
+    public static class UpsertResult {
+
+        private final long inserted;
+        private final long updated;
+        private final List<FiscalDocument> written;
+        private final List<FiscalDocument> replaced;
+
+        public UpsertResult(long inserted, long updated, List<FiscalDocument> written, List<FiscalDocument> replaced) {
+            this.inserted = inserted;
+            this.updated = updated;
+            this.written = written;
+            this.replaced = replaced;
+        }
+
+        public long getInserted() {
+            return inserted;
+        }
+
+        public long getUpdated() {
+            return updated;
+        }
+
+        /**
+         * @return Las filas insertadas o actualizadas, solo con las columnas de los totales
+         */
+        public List<FiscalDocument> getWritten() {
+            return written;
+        }
+
+        /**
+         * @return La versión anterior de las filas actualizadas, solo con las columnas de los totales
+         */
+        public List<FiscalDocument> getReplaced() {
+            return replaced;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.pib2.repositories;
+
+import com.example.pib2.models.entities.FiscalDocumentImport;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FiscalDocumentImportRepository extends JpaRepository<FiscalDocumentImport, Long> {
+
+    Optional<FiscalDocumentImport> findByJobId(String jobId);
+
+    /**
+     * Busca la importación más reciente de un contenido que hace innecesario volver a
+     * procesarlo: en cola, en curso, o completada sin filas en bloques fallidos. Una
+     * importación completada con bloques fallidos no guardó todo el archivo, así que
+     * subirlo otra vez lo vuelve a importar.
+     *
+     * @param contentHash SHA-256 del archivo
+     * @param limit Cantidad de importaciones a devolver
+     * @return Las importaciones, de la más reciente a la más antigua
+     */
+    @Query("SELECT i FROM FiscalDocumentImport i WHERE i.contentHash = :contentHash "
+            + "AND (i.status IN ('QUEUED', 'RUNNING') OR (i.status = 'COMPLETED' AND i.failed = 0)) "
+            + "ORDER BY i.id DESC")
+    List<FiscalDocumentImport> findReusable(String contentHash, Limit limit);
+
+    /**
+     * Marca como fallidas las importaciones que quedaron en curso, por ejemplo por un reinicio.
+     *
+     * @return La cantidad de importaciones actualizadas
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE FiscalDocumentImport i SET i.status = 'FAILED', i.error = :error "
+            + "WHERE i.status IN ('QUEUED', 'RUNNING')")
+    int failUnfinished(String error);
+}
@@ -0,0 +1,237 @@
+package com.example.pib2.repositories;
+
+import com.example.pib2.models.dtos.FiscalDocumentFilterDto;
+import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.models.entities.FiscalDocumentName;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+/**
+ * Consulta paginada de documentos fiscales por keyset (seek) sobre (issue_date, fiscal_document_id).
+ *
+ * En lugar de OFFSET, cada página continúa desde el último documento de la anterior
+ * con {@code (issue_date, fiscal_document_id) > (:fecha, :id)}, que el índice resuelve
+ * con un único salto; el costo de una página no depende de qué tan atrás esté.
+ *
+ * Los filtros por NIT emisor, NIT receptor, tipo de documento y estado tienen cada uno
+ * un índice compuesto (columna, issue_date, fiscal_document_id) declarado en
+ * {@link FiscalDocument}, de modo que la página filtrada también se lee en orden del índice.
+ *
+ * Los documentos sin Fecha Emisión van después de todos los demás, en orden de ID:
+ * el {@link Cursor} distingue en cuál de los dos tramos quedó la página anterior.
+ *
+ * {@link #stream} recorre con los mismos filtros y el mismo orden todos los documentos,
+ * para las exportaciones.
+ *
+ * {@link #findLatestByName} lee en orden inverso los documentos de un emisor o receptor,
+ * para la búsqueda por nombre.
+ */
+@Repository
+public class FiscalDocumentKeysetRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param filter Filtros; los valores null no filtran
+     * @param after Posición del último documento de la página anterior, o null para la primera
+     * @param limit Cantidad máxima de documentos
+     * @return Los documentos siguientes a la posición, en orden
+     */
+    public List<FiscalDocument> findPage(FiscalDocumentFilterDto filter, Cursor after, int limit) {
+        List<FiscalDocument> page = new ArrayList<>(limit);
+        boolean withoutIssueDate = after != null && after.issueDate == null;
+        if (!withoutIssueDate) {
+            page.addAll(query(filter, true, after != null ? after.issueDate : null,
+                    after != null ? after.id : null, limit));
+        }
+        // Al terminar los documentos con fecha siguen los que no la tienen
+        if (page.size() < limit && !filter.filtersIssueDate()) {
+            page.addAll(query(filter, false, null, withoutIssueDate ? after.id : null, limit - page.size()));
+        }
+        return page;
+    }
+
+    /**
+     * Todos los documentos que cumplen el filtro, en el orden de las páginas, leídos por
+     * bloques con un cursor de solo avance a medida que se recorre el stream. Debe
+     * consumirse dentro de una transacción y cerrarse al terminar.
+     *
+     * @param filter Filtros; los valores null no filtran
+     */
+    public Stream<FiscalDocument> stream(FiscalDocumentFilterDto filter) {
+        StringBuilder jpql = new StringBuilder("SELECT d FROM FiscalDocument d WHERE 1 = 1");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        addFilters(jpql, parameters, filter);
+        // Los documentos sin fecha al final, como en las páginas; coincide con el orden del índice
+        jpql.append(" ORDER BY d.issueDate ASC NULLS LAST, d.id");
+
+        TypedQuery<FiscalDocument> query = entityManager.createQuery(jpql.toString(), FiscalDocument.class)
+                .setHint(HINT_FETCH_SIZE, 500)
+                .setHint(HINT_READ_ONLY, true);
+        parameters.forEach(query::setParameter);
+        return query.getResultStream();
+    }
+
+    /**
+     * @param filter Filtros; los valores null no filtran
+     * @return Cantidad de documentos que cumplen el filtro, los mismos que recorre {@link #stream}
+     */
+    public long count(FiscalDocumentFilterDto filter) {
+        StringBuilder jpql = new StringBuilder("SELECT COUNT(d) FROM FiscalDocument d WHERE 1 = 1");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        addFilters(jpql, parameters, filter);
+
+        TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+        parameters.forEach(query::setParameter);
+        return query.getSingleResult();
+    }
+
+    /**
+     * Los documentos de un emisor o receptor, identificado por su NIT y su nombre, del
+     * más reciente al más antiguo: primero por Fecha Emisión e ID descendentes con el
+     * índice (NIT, issue_date, fiscal_document_id) y después los que no tienen fecha.
+     *
+     * @param role FiscalDocumentName.ISSUER o FiscalDocumentName.RECEIVER
+     * @param nit NIT, o cadena vacía para los documentos sin NIT
+     * @param name Nombre exacto
+     * @param limit Cantidad máxima de documentos
+     */
+    public List<FiscalDocument> findLatestByName(String role, String nit, String name, int limit) {
+        String prefix = FiscalDocumentName.ISSUER.equals(role) ? "d.issuer" : "d.receiver";
+        StringBuilder condition = new StringBuilder(" AND ").append(prefix).append("Name = :name AND ");
+        if (nit.isEmpty()) {
+            condition.append("(").append(prefix).append("Nit IS NULL OR ").append(prefix).append("Nit = '')");
+        } else {
+            condition.append(prefix).append("Nit = :nit");
+        }
+
+        List<FiscalDocument> documents = new ArrayList<>(latestByName("d.issueDate IS NOT NULL" + condition
+                + " ORDER BY d.issueDate DESC, d.id DESC", nit, name, limit));
+        if (documents.size() < limit) {
+            documents.addAll(latestByName("d.issueDate IS NULL" + condition + " ORDER BY d.id DESC",
+                    nit, name, limit - documents.size()));
+        }
+        return documents;
+    }
+
+    private List<FiscalDocument> latestByName(String condition, String nit, String name, int limit) {
+        TypedQuery<FiscalDocument> query = entityManager.createQuery(
+                        "SELECT d FROM FiscalDocument d WHERE " + condition, FiscalDocument.class)
+                .setParameter("name", name)
+                .setMaxResults(limit)
+                .setHint(HINT_READ_ONLY, true);
+        if (!nit.isEmpty()) {
+            query.setParameter("nit", nit);
+        }
+        return query.getResultList();
+    }
+
+    private List<FiscalDocument> query(FiscalDocumentFilterDto filter, boolean withIssueDate,
+                                       LocalDate afterIssueDate, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT d FROM FiscalDocument d WHERE d.issueDate IS ")
+                .append(withIssueDate ? "NOT NULL" : "NULL");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        addFilters(jpql, parameters, filter);
+
+        if (withIssueDate) {
+            if (afterIssueDate != null) {
+                // Comparación de filas: el índice la resuelve como un rango
+                jpql.append(" AND (d.issueDate, d.id) > (:afterIssueDate, :afterId)");
+                parameters.put("afterIssueDate", afterIssueDate);
+                parameters.put("afterId", afterId);
+            }
+            jpql.append(" ORDER BY d.issueDate, d.id");
+        } else {
+            addCondition(jpql, parameters, "d.id > :afterId", "afterId", afterId);
+            jpql.append(" ORDER BY d.id");
+        }
+
+        TypedQuery<FiscalDocument> query = entityManager.createQuery(jpql.toString(), FiscalDocument.class)
+                .setMaxResults(limit)
+                .setHint(HINT_READ_ONLY, true);
+        parameters.forEach(query::setParameter);
+        return query.getResultList();
+    }
+
+    /**
+     * Posición de un documento en el orden de la consulta. Como texto es
+     * {@code yyyy-MM-dd_ID}, o {@code _ID} para un documento sin Fecha Emisión.
+     */
+    public static final class Cursor {
+
+        private static final char SEPARATOR = '_';
+
+        private final LocalDate issueDate;
+        private final long id;
+
+        private Cursor(LocalDate issueDate, long id) {
+            this.issueDate = issueDate;
+            this.id = id;
+        }
+
+        public LocalDate getIssueDate() {
+            return issueDate;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public static Cursor of(FiscalDocument document) {
+            return new Cursor(document.getIssueDate(), document.getId());
+        }
+
+        /**
+         * @throws IllegalArgumentException si el texto no es un cursor válido
+         */
+        public static Cursor parse(String text) {
+            int separator = text.lastIndexOf(SEPARATOR);
+            try {
+                if (separator < 0) {
+                    throw new NumberFormatException();
+                }
+                long id = Long.parseLong(text.substring(separator + 1));
+                LocalDate issueDate = separator > 0 ? LocalDate.parse(text.substring(0, separator)) : null;
+                return new Cursor(issueDate, id);
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + text);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (issueDate != null ? issueDate.toString() : "") + SEPARATOR + id;
+        }
+    }
+
+    private void addFilters(StringBuilder jpql, Map<String, Object> parameters, FiscalDocumentFilterDto filter) {
+        addCondition(jpql, parameters, "d.issuerNit = :issuerNit", "issuerNit", filter.getIssuerNit());
+        addCondition(jpql, parameters, "d.receiverNit = :receiverNit", "receiverNit", filter.getReceiverNit());
+        addCondition(jpql, parameters, "d.documentType = :documentType", "documentType", filter.getDocumentType());
+        addCondition(jpql, parameters, "d.status = :status", "status", filter.getStatus());
+        addCondition(jpql, parameters, "d.issueDate >= :issueDateFrom", "issueDateFrom", filter.getIssueDateFrom());
+        addCondition(jpql, parameters, "d.issueDate <= :issueDateTo", "issueDateTo", filter.getIssueDateTo());
+    }
+
+    private void addCondition(StringBuilder jpql, Map<String, Object> parameters, String condition,
+                              String name, Object value) {
+        if (value != null) {
+            jpql.append(" AND ").append(condition);
+            parameters.put(name, value);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.pib2.repositories;
+
+import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.models.entities.FiscalDocumentName;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Directorio de nombres de emisor y receptor (fiscal_document_names).
+ *
+ * Cada bloque de importación agrega sus nombres con {@link #addAll(Collection)} en la
+ * misma transacción en que guarda los documentos. En PostgreSQL con la extensión
+ * pg_trgm la tabla tiene un índice GIN de trigramas sobre el nombre
+ * ({@link #createTrigramIndex()}) con el que {@link #findMatching} resuelve
+ * {@code ILIKE '%palabra%'} sin recorrer la tabla.
+ */
+@Repository
+public class FiscalDocumentNameRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String COLUMNS = "fiscal_document_name_id, role, nit, name";
+
+    // Todo el bloque en una sola sentencia; los nombres que ya estaban se omiten
+    private static final String UPSERT_SQL = "INSERT INTO fiscal_document_names (role, nit, name) "
+            + "SELECT * FROM unnest(?::varchar[], ?::varchar[], ?::varchar[]) "
+            + "ON CONFLICT (role, nit, name) DO NOTHING";
+
+    // Fuera de PostgreSQL (H2)
+    private static final String INSERT_MISSING_SQL = "INSERT INTO fiscal_document_names (role, nit, name) "
+            + "SELECT ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM fiscal_document_names "
+            + "WHERE role = ? AND nit = ? AND name = ?)";
+
+    // Misma llave que addAll: el NIT null como cadena vacía y sin nombres vacíos
+    private static final String REBUILD_SQL = "INSERT INTO fiscal_document_names (role, nit, name) "
+            + "SELECT DISTINCT '" + FiscalDocumentName.ISSUER + "', COALESCE(issuer_nit, ''), issuer_name "
+            + "FROM fiscal_documents WHERE issuer_name <> '' "
+            + "UNION SELECT DISTINCT '" + FiscalDocumentName.RECEIVER + "', COALESCE(receiver_nit, ''), receiver_name "
+            + "FROM fiscal_documents WHERE receiver_name <> ''";
+
+    private static final RowMapper<FiscalDocumentName> NAME_MAPPER = (resultSet, rowNum) -> {
+        FiscalDocumentName name = new FiscalDocumentName();
+        name.setId(resultSet.getLong("fiscal_document_name_id"));
+        name.setRole(resultSet.getString("role"));
+        name.setNit(resultSet.getString("nit"));
+        name.setName(resultSet.getString("name"));
+        return name;
+    };
+
+    // Orden fijo de las filas que se insertan, para que dos importaciones no se bloqueen entre sí
+    private static final Comparator<FiscalDocumentName> KEY_ORDER = Comparator
+            .comparing(FiscalDocumentName::getRole)
+            .thenComparing(FiscalDocumentName::getNit)
+            .thenComparing(FiscalDocumentName::getName);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgreSql;
+
+    /**
+     * Agrega los nombres de emisor y receptor de los documentos que todavía no están.
+     * Debe llamarse dentro de una transacción.
+     */
+    public void addAll(Collection<FiscalDocument> documents) {
+        TreeSet<FiscalDocumentName> names = new TreeSet<>(KEY_ORDER);
+        for (FiscalDocument document : documents) {
+            addName(names, FiscalDocumentName.ISSUER, document.getIssuerNit(), document.getIssuerName());
+            addName(names, FiscalDocumentName.RECEIVER, document.getReceiverNit(), document.getReceiverName());
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+
+        if (isPostgreSql()) {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(UPSERT_SQL);
+                statement.setArray(1, connection.createArrayOf("varchar",
+                        names.stream().map(FiscalDocumentName::getRole).toArray()));
+                statement.setArray(2, connection.createArrayOf("varchar",
+                        names.stream().map(FiscalDocumentName::getNit).toArray()));
+                statement.setArray(3, connection.createArrayOf("varchar",
+                        names.stream().map(FiscalDocumentName::getName).toArray()));
+                return statement;
+            });
+        } else {
+            jdbcTemplate.batchUpdate(INSERT_MISSING_SQL, new ArrayList<>(names), BATCH_SIZE, (statement, name) -> {
+                for (int offset : new int[]{0, 3}) {
+                    statement.setString(offset + 1, name.getRole());
+                    statement.setString(offset + 2, name.getNit());
+                    statement.setString(offset + 3, name.getName());
+                }
+            });
+        }
+    }
+
+    /**
+     * Reemplaza el directorio por los nombres de fiscal_documents. Debe llamarse dentro
+     * de una transacción.
+     *
+     * @return La cantidad de nombres
+     */
+    public long rebuild() {
+        jdbcTemplate.update("DELETE FROM fiscal_document_names");
+        return jdbcTemplate.update(REBUILD_SQL);
+    }
+
+    /**
+     * @return true si el directorio está vacío pero hay documentos, como al crear la
+     *         tabla sobre una base de datos con documentos importados
+     */
+    public boolean needsRebuild() {
+        Boolean names = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM fiscal_document_names)", Boolean.class);
+        Boolean documents = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM fiscal_documents)", Boolean.class);
+        return !Boolean.TRUE.equals(names) && Boolean.TRUE.equals(documents);
+    }
+
+    /**
+     * Crea la extensión pg_trgm, si no existe, y el índice GIN de trigramas sobre el
+     * nombre. Solo PostgreSQL; no debe llamarse dentro de una transacción, para que un
+     * error (por ejemplo, sin permiso para crear la extensión) no la deje abortada.
+     *
+     * @throws org.springframework.dao.DataAccessException si no se pudo crear
+     */
+    public void createTrigramIndex() {
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_fiscal_document_names_name_trgm "
+                + "ON fiscal_document_names USING gin (name gin_trgm_ops)");
+    }
+
+    /**
+     * Nombres que contienen todas las palabras, sin distinguir mayúsculas, del más
+     * parecido al texto buscado (similarity de pg_trgm) al menos parecido. Solo
+     * PostgreSQL con pg_trgm.
+     *
+     * @param words Palabras en minúsculas
+     * @param role {@link FiscalDocumentName#ISSUER}, {@link FiscalDocumentName#RECEIVER}
+     *             o null para los dos
+     * @param text Texto buscado, con el que se ordena
+     * @param offset Nombres que se omiten al comienzo
+     * @param limit Cantidad máxima de nombres
+     */
+    public List<FiscalDocumentName> findMatching(List<String> words, String role, String text,
+                                                 int offset, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS).append(" FROM fiscal_document_names WHERE ");
+        List<Object> parameters = new ArrayList<>();
+        for (int i = 0; i < words.size(); i++) {
+            sql.append(i > 0 ? " AND " : "").append("name ILIKE ?");
+            parameters.add("%" + escapeLike(words.get(i)) + "%");
+        }
+        if (role != null) {
+            sql.append(" AND role = ?");
+            parameters.add(role);
+        }
+        sql.append(" ORDER BY similarity(name, ?) DESC, name, fiscal_document_name_id LIMIT ? OFFSET ?");
+        parameters.add(text);
+        parameters.add(limit);
+        parameters.add(offset);
+        return jdbcTemplate.query(sql.toString(), NAME_MAPPER, parameters.toArray());
+    }
+
+    /**
+     * Recorre en orden de ID los nombres agregados después de afterId.
+     */
+    public void forEachNameAfter(long afterId, Consumer<FiscalDocumentName> consumer) {
+        jdbcTemplate.query("SELECT " + COLUMNS + " FROM fiscal_document_names WHERE fiscal_document_name_id > ? "
+                        + "ORDER BY fiscal_document_name_id",
+                resultSet -> {
+                    consumer.accept(NAME_MAPPER.mapRow(resultSet, 0));
+                }, afterId);
+    }
+
+    /**
+     * @return true si la base de datos es PostgreSQL
+     */
+    public boolean isPostgreSql() {
+        if (postgreSql == null) {
+            String database = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            postgreSql = "PostgreSQL".equalsIgnoreCase(database);
+        }
+        return postgreSql;
+    }
+
+    private static void addName(TreeSet<FiscalDocumentName> names, String role, String nit, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        FiscalDocumentName name = new FiscalDocumentName();
+        name.setRole(role);
+        name.setNit(nit != null ? nit : "");
+        name.setName(value);
+        names.add(name);
+    }
+
+    private static String escapeLike(String word) {
+        return word.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
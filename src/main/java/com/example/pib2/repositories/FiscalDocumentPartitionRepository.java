@@ -0,0 +1,297 @@
+package com.example.pib2.repositories;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DDL de fiscal_documents en PostgreSQL, particionada por mes de Fecha Emisión
+ * (PARTITION BY RANGE (issue_date)).
+ *
+ * Cada mes tiene su partición (fiscal_documents_y2025m10) y las consultas con un rango
+ * de fechas solo leen las de los meses del rango. Los documentos sin Fecha Emisión, o
+ * de meses que todavía no tienen partición, quedan en fiscal_documents_default.
+ *
+ * ddl-auto no administra esta tabla (FiscalDocumentSchemaConfig): las columnas y los
+ * índices de aquí deben coincidir con la entidad FiscalDocument.
+ *
+ * Los métodos deben llamarse dentro de una transacción.
+ */
+@Repository
+public class FiscalDocumentPartitionRepository {
+
+    public static final String TABLE = "fiscal_documents";
+
+    private static final String DEFAULT_PARTITION = TABLE + "_default";
+
+    private static final String UNPARTITIONED_TABLE = TABLE + "_unpartitioned";
+
+    public static final String CUFE_UNIQUE_CONSTRAINT = "uk_fiscal_documents_cufe_cude_issue_date";
+
+    private static final Pattern PARTITION_NAME = Pattern.compile(TABLE + "_y(\\d{4})m(\\d{2})");
+
+    private static final String COLUMNS = "fiscal_document_id, document_type, cufe_cude, folio, prefix, currency, "
+            + "payment_form, payment_method, issue_date, reception_date, issuer_nit, issuer_name, receiver_nit, "
+            + "receiver_name, iva, ica, ic, inc, timbre, inc_bags, in_carbon, in_fuels, ic_data, icl, inpp, ibua, "
+            + "icui, rete_iva, rete_rent, rete_ica, total, status, group_info, import_id";
+
+    // Sin llave primaria: en una tabla particionada tendría que incluir issue_date, que
+    // puede ser null. Los IDs vienen de fiscal_documents_seq y no se repiten.
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE " + TABLE + " ("
+            + "fiscal_document_id bigint NOT NULL, "
+            + "document_type varchar(255), "
+            + "cufe_cude varchar(500), "
+            + "folio varchar(255), "
+            + "prefix varchar(255), "
+            + "currency varchar(255), "
+            + "payment_form varchar(255), "
+            + "payment_method varchar(255), "
+            + "issue_date date, "
+            + "reception_date date, "
+            + "issuer_nit varchar(255), "
+            + "issuer_name varchar(500), "
+            + "receiver_nit varchar(255), "
+            + "receiver_name varchar(500), "
+            + "iva numeric(19,2), ica numeric(19,2), ic numeric(19,2), inc numeric(19,2), timbre numeric(19,2), "
+            + "inc_bags numeric(19,2), in_carbon numeric(19,2), in_fuels numeric(19,2), ic_data numeric(19,2), "
+            + "icl numeric(19,2), inpp numeric(19,2), ibua numeric(19,2), icui numeric(19,2), "
+            + "rete_iva numeric(19,2), rete_rent numeric(19,2), rete_ica numeric(19,2), total numeric(19,2), "
+            + "status varchar(255), "
+            + "group_info varchar(1000), "
+            + "import_id bigint"
+            + ") PARTITION BY RANGE (issue_date)";
+
+    private static final String CUFE_UNIQUE_SQL = "ALTER TABLE " + TABLE + " ADD CONSTRAINT " + CUFE_UNIQUE_CONSTRAINT
+            + " UNIQUE (cufe_cude, issue_date)";
+
+    // Los mismos de @Table en FiscalDocument, más el del ID (en H2 lo da la llave primaria).
+    // Se crean en la tabla particionada y PostgreSQL los crea en cada partición.
+    private static final List<String> INDEX_SQL = List.of(
+            "CREATE INDEX idx_fiscal_documents_id ON " + TABLE + " (fiscal_document_id)",
+            "CREATE INDEX idx_fiscal_documents_import_id ON " + TABLE + " (import_id)",
+            "CREATE INDEX idx_fiscal_documents_issue_date_id ON " + TABLE + " (issue_date, fiscal_document_id)",
+            "CREATE INDEX idx_fiscal_documents_issuer_nit_issue_date_id ON " + TABLE
+                    + " (issuer_nit, issue_date, fiscal_document_id)",
+            "CREATE INDEX idx_fiscal_documents_receiver_nit_issue_date_id ON " + TABLE
+                    + " (receiver_nit, issue_date, fiscal_document_id)",
+            "CREATE INDEX idx_fiscal_documents_document_type_issue_date_id ON " + TABLE
+                    + " (document_type, issue_date, fiscal_document_id)",
+            "CREATE INDEX idx_fiscal_documents_status_issue_date_id ON " + TABLE
+                    + " (status, issue_date, fiscal_document_id)",
+            CUFE_UNIQUE_SQL
+    );
+
+    // De cada CUFE/CUDE y Fecha Emisión repetidos deja el documento de ID mayor, el de la
+    // importación más reciente
+    private static final String DELETE_REPEATED_SQL = "DELETE FROM " + TABLE + " d USING " + TABLE + " newer "
+            + "WHERE newer.cufe_cude = d.cufe_cude AND newer.issue_date = d.issue_date "
+            + "AND newer.fiscal_document_id > d.fiscal_document_id";
+
+    // Un mes tiene a lo sumo 31 fechas distintas. Sin este dato, si ANALYZE corre cuando la
+    // partición todavía es pequeña (al comienzo de una importación grande), el planificador
+    // cree que cada fecha tiene una sola fila y busca los documentos existentes del bloque
+    // por el índice de issue_date en lugar del de la restricción única.
+    private static final String DISTINCT_DAYS_SQL = "ALTER TABLE %s ALTER COLUMN issue_date SET (n_distinct = 31)";
+
+    // Serializa la creación de particiones entre importaciones e instancias
+    private static final long PARTITION_LOCK_KEY = 0x66697363616cL;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return 'p' si fiscal_documents está particionada, 'r' si es una tabla común o
+     *         null si no existe
+     */
+    public String findTableKind() {
+        List<String> kinds = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, TABLE);
+        return kinds.isEmpty() ? null : kinds.get(0);
+    }
+
+    /**
+     * Crea la tabla particionada vacía, con su partición por defecto y una partición
+     * por cada mes indicado.
+     */
+    public void createTable(List<YearMonth> months) {
+        createPartitionedTable(months);
+        INDEX_SQL.forEach(jdbcTemplate::execute);
+    }
+
+    /**
+     * Convierte la fiscal_documents que creó ddl-auto en una tabla particionada con los
+     * mismos documentos. Bloquea la tabla hasta el final de la transacción. Si quedan
+     * documentos repetidos la restricción única falla después de copiarlos todos: se deben
+     * borrar antes, en la misma transacción (ver {@link #deleteRepeatedDocuments}).
+     *
+     * @param lastMonth Último mes con partición propia; los documentos posteriores van a
+     *                  la partición por defecto
+     * @return La cantidad de documentos copiados
+     */
+    public int migrateUnpartitionedTable(YearMonth lastMonth) {
+        jdbcTemplate.execute("LOCK TABLE " + TABLE + " IN ACCESS EXCLUSIVE MODE");
+        List<YearMonth> months = findMonths(TABLE, lastMonth);
+
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + UNPARTITIONED_TABLE);
+        // Los índices se crean después de copiar las filas, lo que es más rápido que
+        // mantenerlos fila por fila; sus nombres quedan libres al borrar la tabla anterior
+        createPartitionedTable(months);
+        int copied = jdbcTemplate.update("INSERT INTO " + TABLE + " (" + COLUMNS + ") SELECT " + COLUMNS
+                + " FROM " + UNPARTITIONED_TABLE);
+        jdbcTemplate.execute("DROP TABLE " + UNPARTITIONED_TABLE);
+        INDEX_SQL.forEach(jdbcTemplate::execute);
+        return copied;
+    }
+
+    /**
+     * @return true si fiscal_documents tiene la restricción única sobre (cufe_cude, issue_date)
+     */
+    public boolean hasCufeUniqueConstraint() {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_constraint WHERE conrelid = to_regclass(?) AND conname = ?)",
+                Boolean.class, TABLE, CUFE_UNIQUE_CONSTRAINT);
+        return Boolean.TRUE.equals(exists);
+    }
+
+    /**
+     * Borra los documentos con el mismo CUFE/CUDE y Fecha Emisión que otro de ID mayor,
+     * que las importaciones anteriores a la restricción única dejaban al volver a subir un
+     * archivo. Bloquea la tabla hasta el final de la transacción, para que ninguna
+     * importación agregue otro repetido antes de crear la restricción.
+     *
+     * @return La cantidad de documentos borrados
+     */
+    public int deleteRepeatedDocuments() {
+        jdbcTemplate.execute("LOCK TABLE " + TABLE + " IN ACCESS EXCLUSIVE MODE");
+        return jdbcTemplate.update(DELETE_REPEATED_SQL);
+    }
+
+    /**
+     * Crea la restricción única sobre (cufe_cude, issue_date); falla si hay documentos
+     * repetidos (ver {@link #deleteRepeatedDocuments}).
+     */
+    public void addCufeUniqueConstraint() {
+        jdbcTemplate.execute(CUFE_UNIQUE_SQL);
+    }
+
+    /**
+     * @return Los meses que ya tienen partición
+     */
+    public List<YearMonth> findPartitionMonths() {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT c.relname::text FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "WHERE i.inhparent = to_regclass(?)", String.class, TABLE);
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : names) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches()) {
+                months.add(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+            }
+        }
+        return months;
+    }
+
+    /**
+     * @return Los meses que tienen documentos en la partición por defecto, hasta lastMonth
+     */
+    public List<YearMonth> findMonthsInDefaultPartition(YearMonth lastMonth) {
+        return findMonths(DEFAULT_PARTITION, lastMonth);
+    }
+
+    /**
+     * Crea la partición de un mes si no existe. Los documentos de ese mes que estaban en
+     * la partición por defecto pasan a la nueva.
+     *
+     * Espera a lo sumo lockTimeoutMillis por los bloqueos: adjuntar una partición
+     * bloquea la partición por defecto, que puede estar en uso por una importación o
+     * una consulta larga.
+     *
+     * @return true si la creó, false si ya existía
+     */
+    public boolean createPartition(YearMonth month, long lockTimeoutMillis) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMillis);
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", PARTITION_LOCK_KEY);
+        String partition = partitionName(month);
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition);
+        if (Boolean.TRUE.equals(exists)) {
+            return false;
+        }
+
+        // CREATE TABLE ... PARTITION OF fallaría si la partición por defecto tiene filas
+        // del mes: se crea aparte, se le pasan esas filas y después se adjunta
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        jdbcTemplate.execute("CREATE TABLE " + partition + " (LIKE " + TABLE + " INCLUDING DEFAULTS)");
+        jdbcTemplate.execute(DISTINCT_DAYS_SQL.formatted(partition));
+        jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                + " WHERE issue_date >= ? AND issue_date < ? RETURNING " + COLUMNS + ") "
+                + "INSERT INTO " + partition + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM moved", from, to);
+        // La restricción evita que ATTACH vuelva a recorrer la partición nueva
+        jdbcTemplate.execute("ALTER TABLE " + partition + " ADD CONSTRAINT " + partition + "_range CHECK "
+                + "(issue_date IS NOT NULL AND issue_date >= '" + from + "' AND issue_date < '" + to + "')");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + partition
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        jdbcTemplate.execute("ALTER TABLE " + partition + " DROP CONSTRAINT " + partition + "_range");
+        return true;
+    }
+
+    /**
+     * Borra la partición de un mes si existe y no tiene documentos, por ejemplo después de
+     * pasarlos al histórico. Espera a lo sumo lockTimeoutMillis por los bloqueos, como
+     * {@link #createPartition}.
+     *
+     * @return true si la borró
+     */
+    public boolean dropPartitionIfEmpty(YearMonth month, long lockTimeoutMillis) {
+        jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMillis);
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(?)", PARTITION_LOCK_KEY);
+        String partition = partitionName(month);
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, partition);
+        if (!Boolean.TRUE.equals(exists)) {
+            return false;
+        }
+        // Bloquea la partición antes de comprobar que está vacía, para que nadie inserte después
+        jdbcTemplate.execute("LOCK TABLE " + partition + " IN ACCESS EXCLUSIVE MODE");
+        Boolean empty = jdbcTemplate.queryForObject("SELECT NOT EXISTS (SELECT 1 FROM " + partition + ")",
+                Boolean.class);
+        if (!Boolean.TRUE.equals(empty)) {
+            return false;
+        }
+        jdbcTemplate.execute("DROP TABLE " + partition);
+        return true;
+    }
+
+    private void createPartitionedTable(List<YearMonth> months) {
+        jdbcTemplate.execute(CREATE_TABLE_SQL);
+        jdbcTemplate.execute("CREATE TABLE " + DEFAULT_PARTITION + " PARTITION OF " + TABLE + " DEFAULT");
+        for (YearMonth month : months) {
+            jdbcTemplate.execute("CREATE TABLE " + partitionName(month) + " PARTITION OF " + TABLE
+                    + " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+            jdbcTemplate.execute(DISTINCT_DAYS_SQL.formatted(partitionName(month)));
+        }
+    }
+
+    // Meses distintos de Fecha Emisión en la tabla, hasta lastMonth inclusive
+    private List<YearMonth> findMonths(String table, YearMonth lastMonth) {
+        List<LocalDate> firstDays = jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('month', issue_date)::date FROM " + table
+                        + " WHERE issue_date < ? ORDER BY 1",
+                LocalDate.class, lastMonth.plusMonths(1).atDay(1));
+        List<YearMonth> months = new ArrayList<>();
+        for (LocalDate firstDay : firstDays) {
+            months.add(YearMonth.from(firstDay));
+        }
+        return months;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("%s_y%04dm%02d", TABLE, month.getYear(), month.getMonthValue());
+    }
+}
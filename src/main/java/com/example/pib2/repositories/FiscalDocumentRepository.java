@@ -1,10 +1,66 @@
 package com.example.pib2.repositories;
 
+import com.example.pib2.models.dtos.FiscalDocumentDto;
 import com.example.pib2.models.entities.FiscalDocument;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
 @Repository
 public interface FiscalDocumentRepository extends JpaRepository<FiscalDocument, Long> {
-}
 
+    /**
+     * Busca los documentos existentes con alguno de los CUFE/CUDE indicados.
+     *
+     * @param cufeCudes Los CUFE/CUDE a buscar
+     * @return Los documentos encontrados (a lo sumo uno por CUFE/CUDE y Fecha Emisión)
+     */
+    List<FiscalDocument> findByCufeCudeIn(Collection<String> cufeCudes);
+
+    /**
+     * Proyección de un documento a FiscalDocumentDto: Hibernate arma el DTO con los
+     * valores de la fila, sin crear la entidad ni registrarla en el contexto de
+     * persistencia.
+     */
+    String DTO_SELECT = "SELECT new com.example.pib2.models.dtos.FiscalDocumentDto(d.id, d.documentType, "
+            + "d.cufeCude, d.folio, d.prefix, d.currency, d.paymentForm, d.paymentMethod, d.issueDate, "
+            + "d.receptionDate, d.issuerNit, d.issuerName, d.receiverNit, d.receiverName, d.iva, d.ica, d.ic, "
+            + "d.inc, d.timbre, d.incBags, d.inCarbon, d.inFuels, d.icData, d.icl, d.inpp, d.ibua, d.icui, "
+            + "d.reteIva, d.reteRent, d.reteIca, d.total, d.status, d.groupInfo) FROM FiscalDocument d";
+
+    /**
+     * Documentos insertados o modificados por una importación, en orden de ID, como DTO.
+     *
+     * Las filas se traen de la base de datos por bloques a medida que se recorre el
+     * stream; debe consumirse dentro de una transacción y cerrarse al terminar.
+     *
+     * @param importId ID del registro de la importación
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(DTO_SELECT + " WHERE d.importId = :importId ORDER BY d.id")
+    Stream<FiscalDocumentDto> streamDtosByImportId(Long importId);
+
+    /**
+     * Todos los documentos en orden de ID, como DTO, leídos por bloques con un cursor de
+     * solo avance a medida que se recorre el stream. Debe consumirse dentro de una
+     * transacción (en PostgreSQL el driver solo usa el fetch size sin autocommit)
+     * y cerrarse al terminar.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(DTO_SELECT + " ORDER BY d.id")
+    Stream<FiscalDocumentDto> streamAllDtos();
+
+    @Query("SELECT MIN(d.id) FROM FiscalDocument d WHERE d.importId = :importId")
+    Long findFirstIdByImportId(Long importId);
+
+    @Query("SELECT MAX(d.id) FROM FiscalDocument d WHERE d.importId = :importId")
+    Long findLastIdByImportId(Long importId);
+}
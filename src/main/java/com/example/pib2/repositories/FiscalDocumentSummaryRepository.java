@@ -0,0 +1,323 @@
+package com.example.pib2.repositories;
+
+import com.example.pib2.models.dtos.FiscalDocumentSummaryFilterDto;
+import com.example.pib2.models.entities.FiscalDocumentSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+/**
+ * Totales precalculados de documentos fiscales (fiscal_document_summaries).
+ *
+ * Las importaciones no recalculan los grupos: cada bloque suma a sus filas el cambio
+ * que produjo ({@link #apply(List)}) en la misma transacción en que guarda los
+ * documentos, así que los totales quedan al día con cada bloque confirmado y un
+ * bloque fallido no los altera. En PostgreSQL el cambio se aplica con
+ * INSERT ... ON CONFLICT, que suma de forma atómica aunque dos importaciones toquen
+ * el mismo grupo.
+ *
+ * {@link #rebuild()} recalcula la tabla completa desde fiscal_documents.
+ *
+ * Los métodos que escriben deben llamarse dentro de una transacción.
+ */
+@Repository
+public class FiscalDocumentSummaryRepository {
+
+    private static final int BATCH_SIZE = 50;
+
+    private static final String KEY_COLUMNS = "receiver_nit, issuer_nit, issue_month, document_type";
+
+    private static final List<String> AMOUNT_COLUMNS = List.of("iva", "rete_iva", "rete_rent", "rete_ica", "total");
+
+    // Valores de AMOUNT_COLUMNS, en el mismo orden
+    private static final List<Function<FiscalDocumentSummary, BigDecimal>> AMOUNTS = List.of(
+            FiscalDocumentSummary::getIva,
+            FiscalDocumentSummary::getReteIva,
+            FiscalDocumentSummary::getReteRent,
+            FiscalDocumentSummary::getReteIca,
+            FiscalDocumentSummary::getTotal
+    );
+
+    private static final String COLUMNS = KEY_COLUMNS + ", document_count, " + String.join(", ", AMOUNT_COLUMNS);
+
+    private static final String KEY_CONDITION =
+            "receiver_nit = ? AND issuer_nit = ? AND issue_month = ? AND document_type = ?";
+
+    // Un arreglo por columna: todo el bloque en una sola sentencia
+    private static final String UPSERT_SQL = "INSERT INTO fiscal_document_summaries AS s (" + COLUMNS + ") "
+            + "SELECT * FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::bigint[]"
+            + ", ?::numeric[]".repeat(AMOUNT_COLUMNS.size()) + ") "
+            + "ON CONFLICT (" + KEY_COLUMNS + ") DO UPDATE SET "
+            + "document_count = s.document_count + EXCLUDED.document_count, "
+            + AMOUNT_COLUMNS.stream().map(column -> column + " = s." + column + " + EXCLUDED." + column)
+                    .collect(Collectors.joining(", "));
+
+    // Fuera de PostgreSQL (H2): se actualiza el grupo y, si no existía, se inserta
+    private static final String UPDATE_SQL = "UPDATE fiscal_document_summaries SET document_count = document_count + ?, "
+            + AMOUNT_COLUMNS.stream().map(column -> column + " = " + column + " + ?").collect(Collectors.joining(", "))
+            + " WHERE " + KEY_CONDITION;
+
+    private static final String INSERT_SQL = "INSERT INTO fiscal_document_summaries (" + COLUMNS + ") VALUES (?"
+            + ", ?".repeat(9) + ")";
+
+    private static final String DELETE_EMPTY_SQL = "DELETE FROM fiscal_document_summaries WHERE " + KEY_CONDITION
+            + " AND document_count = 0";
+
+    // Misma llave que FiscalDocumentSummaryDelta: null como cadena vacía y el mes como yyyy-MM
+    private static final String REBUILD_SQL = "INSERT INTO fiscal_document_summaries (" + COLUMNS + ") "
+            + "SELECT " + KEY_COLUMNS + ", COUNT(*), "
+            + AMOUNT_COLUMNS.stream().map(column -> "COALESCE(SUM(" + column + "), 0)").collect(Collectors.joining(", "))
+            + " FROM (SELECT COALESCE(receiver_nit, '') AS receiver_nit, COALESCE(issuer_nit, '') AS issuer_nit, "
+            + "COALESCE(TO_CHAR(issue_date, 'YYYY-MM'), '') AS issue_month, "
+            + "COALESCE(document_type, '') AS document_type, " + String.join(", ", AMOUNT_COLUMNS)
+            + " FROM fiscal_documents) d GROUP BY " + KEY_COLUMNS;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgreSql;
+
+    /**
+     * Suma a cada grupo su cambio y elimina los grupos que quedan sin documentos.
+     * En PostgreSQL todos los grupos se envían en una sola sentencia.
+     *
+     * @param changes Cambio de cada grupo (FiscalDocumentSummaryDelta), en orden de llave
+     */
+    public void apply(List<FiscalDocumentSummary> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        if (isPostgreSql()) {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement statement = connection.prepareStatement(UPSERT_SQL);
+                statement.setArray(1, connection.createArrayOf("varchar",
+                        changes.stream().map(FiscalDocumentSummary::getReceiverNit).toArray()));
+                statement.setArray(2, connection.createArrayOf("varchar",
+                        changes.stream().map(FiscalDocumentSummary::getIssuerNit).toArray()));
+                statement.setArray(3, connection.createArrayOf("varchar",
+                        changes.stream().map(FiscalDocumentSummary::getIssueMonth).toArray()));
+                statement.setArray(4, connection.createArrayOf("varchar",
+                        changes.stream().map(FiscalDocumentSummary::getDocumentType).toArray()));
+                statement.setArray(5, connection.createArrayOf("bigint",
+                        changes.stream().map(FiscalDocumentSummary::getDocumentCount).toArray()));
+                for (int i = 0; i < AMOUNTS.size(); i++) {
+                    statement.setArray(6 + i, connection.createArrayOf("numeric",
+                            changes.stream().map(AMOUNTS.get(i)).toArray()));
+                }
+                return statement;
+            });
+        } else {
+            for (FiscalDocumentSummary change : changes) {
+                int updated = jdbcTemplate.update(UPDATE_SQL, statement -> {
+                    setCountAndAmounts(statement, 1, change);
+                    setKey(statement, 7, change);
+                });
+                if (updated == 0) {
+                    jdbcTemplate.update(INSERT_SQL, statement -> {
+                        setKey(statement, 1, change);
+                        setCountAndAmounts(statement, 5, change);
+                    });
+                }
+            }
+        }
+
+        List<FiscalDocumentSummary> shrunk = changes.stream().filter(change -> change.getDocumentCount() < 0).toList();
+        if (!shrunk.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_EMPTY_SQL, shrunk, BATCH_SIZE,
+                    (statement, change) -> setKey(statement, 1, change));
+        }
+    }
+
+    /**
+     * Reemplaza todos los totales por los que resultan de fiscal_documents.
+     *
+     * En PostgreSQL bloquea la tabla de totales hasta el final de la transacción: los
+     * bloques de importación que terminan mientras tanto esperan y aplican su cambio
+     * sobre los totales recalculados.
+     *
+     * @return La cantidad de grupos
+     */
+    public long rebuild() {
+        if (isPostgreSql()) {
+            jdbcTemplate.execute("LOCK TABLE fiscal_document_summaries IN EXCLUSIVE MODE");
+        }
+        jdbcTemplate.update("DELETE FROM fiscal_document_summaries");
+        return jdbcTemplate.update(REBUILD_SQL);
+    }
+
+    /**
+     * @return La cantidad de grupos
+     */
+    public long count() {
+        Long groups = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM fiscal_document_summaries", Long.class);
+        return groups != null ? groups : 0;
+    }
+
+    /**
+     * @return true si no hay totales pero sí documentos, como al crear la tabla sobre
+     *         una base de datos con documentos importados
+     */
+    public boolean needsRebuild() {
+        Boolean summaries = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM fiscal_document_summaries)", Boolean.class);
+        Boolean documents = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM fiscal_documents)", Boolean.class);
+        return !Boolean.TRUE.equals(summaries) && Boolean.TRUE.equals(documents);
+    }
+
+    /**
+     * Suma los grupos que cumplen el filtro agrupándolos solo por las dimensiones
+     * indicadas; sin dimensiones devuelve el total general.
+     *
+     * @param filter Filtros; los valores null no filtran
+     * @param groupBy Dimensiones por las que se agrupa
+     * @return Un resumen por grupo, en orden de las dimensiones; las dimensiones por las
+     *         que no se agrupa quedan en null
+     */
+    public List<FiscalDocumentSummary> find(FiscalDocumentSummaryFilterDto filter, Set<Dimension> groupBy) {
+        List<Dimension> dimensions = new ArrayList<>();
+        for (Dimension dimension : Dimension.values()) {
+            if (groupBy.contains(dimension)) {
+                dimensions.add(dimension);
+            }
+        }
+        String grouped = dimensions.stream().map(dimension -> "s." + dimension.attribute)
+                .collect(Collectors.joining(", "));
+
+        StringBuilder jpql = new StringBuilder("SELECT ");
+        if (!dimensions.isEmpty()) {
+            jpql.append(grouped).append(", ");
+        }
+        jpql.append("SUM(s.documentCount), SUM(s.iva), SUM(s.reteIva), SUM(s.reteRent), SUM(s.reteIca), SUM(s.total)")
+                .append(" FROM FiscalDocumentSummary s WHERE 1 = 1");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        addCondition(jpql, parameters, "s.receiverNit = :receiverNit", "receiverNit", filter.getReceiverNit());
+        addCondition(jpql, parameters, "s.issuerNit = :issuerNit", "issuerNit", filter.getIssuerNit());
+        addCondition(jpql, parameters, "s.documentType = :documentType", "documentType", filter.getDocumentType());
+        // yyyy-MM se ordena como texto igual que como fecha
+        if (filter.getIssueMonthFrom() != null) {
+            addCondition(jpql, parameters, "s.issueMonth >= :issueMonthFrom", "issueMonthFrom",
+                    filter.getIssueMonthFrom().toString());
+        }
+        if (filter.getIssueMonthTo() != null) {
+            // Sin los documentos sin fecha, que tienen el mes vacío
+            addCondition(jpql, parameters, "s.issueMonth <= :issueMonthTo AND s.issueMonth <> ''", "issueMonthTo",
+                    filter.getIssueMonthTo().toString());
+        }
+        if (!dimensions.isEmpty()) {
+            jpql.append(" GROUP BY ").append(grouped).append(" ORDER BY ").append(grouped);
+        }
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class)
+                .setHint(HINT_READ_ONLY, true);
+        parameters.forEach(query::setParameter);
+
+        List<FiscalDocumentSummary> summaries = new ArrayList<>();
+        for (Object[] row : query.getResultList()) {
+            int column = dimensions.size();
+            if (row[column] == null) {
+                // Total general sin grupos que cumplan el filtro
+                continue;
+            }
+            FiscalDocumentSummary summary = new FiscalDocumentSummary();
+            for (int i = 0; i < dimensions.size(); i++) {
+                dimensions.get(i).setter.accept(summary, (String) row[i]);
+            }
+            summary.setDocumentCount(((Number) row[column]).longValue());
+            summary.setIva((BigDecimal) row[column + 1]);
+            summary.setReteIva((BigDecimal) row[column + 2]);
+            summary.setReteRent((BigDecimal) row[column + 3]);
+            summary.setReteIca((BigDecimal) row[column + 4]);
+            summary.setTotal((BigDecimal) row[column + 5]);
+            summaries.add(summary);
+        }
+        return summaries;
+    }
+
+    /**
+     * Dimensiones de la llave por las que se pueden agrupar los totales.
+     */
+    public enum Dimension {
+
+        RECEIVER_NIT("receiverNit", FiscalDocumentSummary::setReceiverNit),
+        ISSUER_NIT("issuerNit", FiscalDocumentSummary::setIssuerNit),
+        ISSUE_MONTH("issueMonth", FiscalDocumentSummary::setIssueMonth),
+        DOCUMENT_TYPE("documentType", FiscalDocumentSummary::setDocumentType);
+
+        private final String attribute;
+        private final BiConsumer<FiscalDocumentSummary, String> setter;
+
+        Dimension(String attribute, BiConsumer<FiscalDocumentSummary, String> setter) {
+            this.attribute = attribute;
+            this.setter = setter;
+        }
+
+        /**
+         * @param name Nombre del campo: receiverNit, issuerNit, issueMonth o documentType
+         * @throws IllegalArgumentException si no es una dimensión
+         */
+        public static Dimension fromName(String name) {
+            for (Dimension dimension : values()) {
+                if (dimension.attribute.equals(name)) {
+                    return dimension;
+                }
+            }
+            throw new IllegalArgumentException("No se puede agrupar por " + name
+                    + "; use receiverNit, issuerNit, issueMonth o documentType");
+        }
+    }
+
+    private void setKey(PreparedStatement statement, int index, FiscalDocumentSummary summary) throws SQLException {
+        statement.setString(index, summary.getReceiverNit());
+        statement.setString(index + 1, summary.getIssuerNit());
+        statement.setString(index + 2, summary.getIssueMonth());
+        statement.setString(index + 3, summary.getDocumentType());
+    }
+
+    private void setCountAndAmounts(PreparedStatement statement, int index, FiscalDocumentSummary summary)
+            throws SQLException {
+        statement.setLong(index, summary.getDocumentCount());
+        for (int i = 0; i < AMOUNTS.size(); i++) {
+            statement.setBigDecimal(index + 1 + i, AMOUNTS.get(i).apply(summary));
+        }
+    }
+
+    private void addCondition(StringBuilder jpql, Map<String, Object> parameters, String condition,
+                              String name, Object value) {
+        if (value != null) {
+            jpql.append(" AND ").append(condition);
+            parameters.put(name, value);
+        }
+    }
+
+    private boolean isPostgreSql() {
+        if (postgreSql == null) {
+            String database = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            postgreSql = "PostgreSQL".equalsIgnoreCase(database);
+        }
+        return postgreSql;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.pib2.repositories;
+
+import com.example.pib2.config.DatabasePlatform;
+import com.example.pib2.models.entities.FiscalReconciliationResult;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lecturas y escrituras de la conciliación (FiscalReconciliationService) con JDBC, sin
+ * pasar por el contexto de persistencia.
+ *
+ * Los dos lados del mes se leen con un cursor de solo avance (fetch size) y solo con las
+ * columnas de la llave y el total. Los resultados se escriben con COPY en PostgreSQL y
+ * con INSERT por lotes en H2.
+ *
+ * Los métodos deben llamarse dentro de una transacción: en PostgreSQL el driver solo
+ * lee por bloques sin autocommit.
+ */
+@Repository
+public class FiscalReconciliationJdbcRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // El NIT del documento interno es el número de documento de su tercero
+    private static final String DOCUMENTS_SQL = "SELECT d.document_id, t.document_number, d.document_prefix, "
+            + "d.document_number, d.document_total FROM documents d LEFT JOIN third_party t ON t.id = d.third_party_id "
+            + "WHERE d.document_date >= ? AND d.document_date < ?";
+
+    // Con la fecha, PostgreSQL solo lee la partición del mes
+    private static final String FISCAL_DOCUMENTS_SQL = "SELECT fiscal_document_id, issuer_nit, prefix, folio, total "
+            + "FROM fiscal_documents WHERE issue_date >= ? AND issue_date < ?";
+
+    private static final String RESULT_COLUMNS = "reconciliation_id, status, nit, prefix, number, "
+            + "fiscal_document_id, fiscal_document_total, document_id, document_total";
+
+    private static final String INSERT_RESULT_SQL = "INSERT INTO fiscal_reconciliation_results ("
+            + RESULT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String COPY_RESULTS_SQL = "COPY fiscal_reconciliation_results ("
+            + RESULT_COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+
+    private static final RowMapper<FiscalReconciliationResult> RESULT_MAPPER = (resultSet, rowNum) -> {
+        FiscalReconciliationResult result = new FiscalReconciliationResult();
+        result.setId(resultSet.getLong("fiscal_reconciliation_result_id"));
+        result.setReconciliationId(resultSet.getLong("reconciliation_id"));
+        result.setStatus(resultSet.getString("status"));
+        result.setNit(resultSet.getString("nit"));
+        result.setPrefix(resultSet.getString("prefix"));
+        result.setNumber(resultSet.getString("number"));
+        long fiscalDocumentId = resultSet.getLong("fiscal_document_id");
+        result.setFiscalDocumentId(resultSet.wasNull() ? null : fiscalDocumentId);
+        result.setFiscalDocumentTotal(resultSet.getBigDecimal("fiscal_document_total"));
+        long documentId = resultSet.getLong("document_id");
+        result.setDocumentId(resultSet.wasNull() ? null : documentId);
+        result.setDocumentTotal(resultSet.getBigDecimal("document_total"));
+        return result;
+    };
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DatabasePlatform databasePlatform;
+
+    private void forEachRow(String sql, YearMonth month, RowConsumer consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setObject(1, month.atDay(1));
+            statement.setObject(2, month.plusMonths(1).atDay(1));
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(resultSet.getLong(1), resultSet.getString(2),
+                resultSet.getString(3), resultSet.getString(4), resultSet.getBigDecimal(5)));
+    }
+
+    private long copy(Connection connection, long reconciliationId, List<FiscalReconciliationResult> results)
+            throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_RESULTS_SQL);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new PGCopyOutputStream(copyIn, BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE);
+            StringBuilder line = new StringBuilder(128);
+            for (FiscalReconciliationResult result : results) {
+                // La llave normalizada solo tiene letras y dígitos; las comillas distinguen
+                // la cadena vacía de NULL
+                line.setLength(0);
+                line.append(reconciliationId).append(',')
+                        .append(result.getStatus()).append(',')
+                        .append('"').append(result.getNit()).append("\",")
+                        .append('"').append(result.getPrefix()).append("\",")
+                        .append('"').append(result.getNumber()).append("\",");
+                appendValue(line, result.getFiscalDocumentId());
+                line.append(',');
+                appendValue(line, result.getFiscalDocumentTotal() != null
+                        ? result.getFiscalDocumentTotal().toPlainString() : null);
+                line.append(',');
+                appendValue(line, result.getDocumentId());
+                line.append(',');
+                appendValue(line, result.getDocumentTotal() != null ? result.getDocumentTotal().toPlainString() : null);
+                line.append('\n');
+                writer.append(line);
+            }
+            writer.flush();
+            return copyIn.endCopy();
+        } catch (IOException | SQLException e) {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+            throw e instanceof SQLException sqlException ? sqlException : new SQLException(e.getMessage(), e);
+        }
+    }
+
+    private static void appendValue(StringBuilder line, Object value) {
+        if (value != null) {
+            line.append(value);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.pib2.repositories;
+
+import com.example.pib2.models.entities.FiscalReconciliation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface FiscalReconciliationRepository extends JpaRepository<FiscalReconciliation, Long> {
+
+    /**
+     * @return Las conciliaciones del mes (yyyy-MM), de la más reciente a la más antigua
+     */
+    List<FiscalReconciliation> findByPeriodOrderByIdDesc(String period);
+
+    /**
+     * Marca como fallidas las conciliaciones que quedaron en curso, por ejemplo por un reinicio.
+     *
+     * @return La cantidad de conciliaciones actualizadas
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE FiscalReconciliation r SET r.status = 'FAILED', r.error = :error WHERE r.status = 'RUNNING'")
+    int failUnfinished(String error);
+}
@@ -1,9 +1,27 @@
 package com.example.pib2.repositories;
 
+import com.example.pib2.models.dtos.UserCompanyDto;
 import com.example.pib2.models.entities.UserCompany;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface UserCompanyRepository extends JpaRepository<UserCompany, Long> {
+
+    /**
+     * Todas las relaciones como DTO, en orden de ID. Los IDs del usuario y de la
+     * compañía se leen de las llaves foráneas: no se cargan los usuarios ni las
+     * compañías, que findAll trae con una consulta por cada uno.
+     */
+    @Query("SELECT new com.example.pib2.models.dtos.UserCompanyDto(uc.id, uc.user.id, uc.company.id) "
+            + "FROM UserCompany uc ORDER BY uc.id")
+    List<UserCompanyDto> findAllDtos();
+
+    @Query("SELECT new com.example.pib2.models.dtos.UserCompanyDto(uc.id, uc.user.id, uc.company.id) "
+            + "FROM UserCompany uc WHERE uc.id = :id")
+    Optional<UserCompanyDto> findDtoById(Long id);
 }
@@ -7,7 +7,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 import java.time.LocalDateTime;
 
 @Service
@@ -39,15 +38,11 @@ public class CompanyService {
     }
 
     public List<CompanyDto> getAllCompanies() {
-        return companyRepository.findAll().stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return companyRepository.findAllDtos();
     }
 
     public CompanyDto getCompanyById(Long id) {
-        return companyRepository.findById(id)
-                .map(this::toDto)
-                .orElse(null);
+        return companyRepository.findDtoById(id).orElse(null);
     }
 
     public CompanyDto createCompany(CompanyDto companyDto) {
@@ -7,7 +7,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class DocumentService {
@@ -25,6 +24,7 @@ public class DocumentService {
         dto.setDocumentNumber(document.getDocumentNumber());
         dto.setDocumentDueDate(document.getDocumentDueDate());
         dto.setThirdPartyId(document.getThirdPartyId());
+        dto.setDocumentTotal(document.getDocumentTotal());
         return dto;
     }
 
@@ -38,19 +38,16 @@ public class DocumentService {
         document.setDocumentNumber(dto.getDocumentNumber());
         document.setDocumentDueDate(dto.getDocumentDueDate());
         document.setThirdPartyId(dto.getThirdPartyId());
+        document.setDocumentTotal(dto.getDocumentTotal());
         return document;
     }
 
     public List<DocumentDto> getAllDocuments() {
-        return documentRepository.findAll().stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return documentRepository.findAllDtos();
     }
 
     public DocumentDto getDocumentById(Long id) {
-        return documentRepository.findById(id)
-                .map(this::toDto)
-                .orElse(null);
+        return documentRepository.findDtoById(id).orElse(null);
     }
 
     public DocumentDto createDocument(DocumentDto dto) {
@@ -68,6 +65,7 @@ public class DocumentService {
             document.setDocumentNumber(dto.getDocumentNumber());
             document.setDocumentDueDate(dto.getDocumentDueDate());
             document.setThirdPartyId(dto.getThirdPartyId());
+            document.setDocumentTotal(dto.getDocumentTotal());
             Document updated = documentRepository.save(document);
             return toDto(updated);
         }).orElse(null);
@@ -0,0 +1,487 @@
+package com.example.pib2.servicios.FiscalAnalytics;
+
+import com.example.pib2.models.dtos.FiscalDocumentAggregateDto;
+import com.example.pib2.models.dtos.FiscalDocumentFilterDto;
+import com.example.pib2.models.entities.FiscalDocument;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Copia en memoria, por columnas, de los campos de los documentos fiscales por los que
+ * se filtra y agrupa en los análisis, guardados en arreglos primitivos:
+ * <ul>
+ *   <li>NIT emisor, NIT receptor, tipo de documento y estado: códigos de diccionario</li>
+ *   <li>Fecha Emisión: días desde 1970-01-01, y el mes en otra columna para agrupar
+ *       por mes sin convertir fechas</li>
+ *   <li>IVA, ReteIVA, ReteRenta, ReteICA y Total: centavos en long (un monto vacío es 0)</li>
+ * </ul>
+ *
+ * Una consulta recorre una columna a la vez: cada filtro reduce el vector de filas
+ * seleccionadas y cada dimensión de agrupación reasigna el grupo de esas filas, en
+ * bucles sobre arreglos sin objetos por fila. Ocupa unos 100 bytes por documento.
+ *
+ * Las consultas se ejecutan a la vez entre sí; {@link #putAll(Collection)} las excluye
+ * mientras aplica los cambios.
+ */
+public class FiscalDocumentColumns {
+
+    // Fecha Emisión vacía, en las columnas de día y de mes
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    // Tamaño máximo del arreglo con el que se agrupa sin mapa (4 MB)
+    private static final int DENSE_GROUPS = 1 << 20;
+
+    private static final List<Function<FiscalDocument, BigDecimal>> AMOUNTS = List.of(
+            FiscalDocument::getIva,
+            FiscalDocument::getReteIva,
+            FiscalDocument::getReteRent,
+            FiscalDocument::getReteIca,
+            FiscalDocument::getTotal
+    );
+
+    // Destino de cada suma de AMOUNTS, en el mismo orden
+    private static final List<BiConsumer<FiscalDocumentAggregateDto, BigDecimal>> TOTALS = List.of(
+            FiscalDocumentAggregateDto::setIva,
+            FiscalDocumentAggregateDto::setReteIva,
+            FiscalDocumentAggregateDto::setReteRent,
+            FiscalDocumentAggregateDto::setReteIca,
+            FiscalDocumentAggregateDto::setTotal
+    );
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Fila de cada ID de documento, para reemplazar los documentos que se reimportan
+    private final LongIntHashMap rowById;
+
+    private final StringDictionary issuerNits = new StringDictionary();
+    private final StringDictionary receiverNits = new StringDictionary();
+    private final StringDictionary documentTypes = new StringDictionary();
+    private final StringDictionary statuses = new StringDictionary();
+
+    private int size;
+    private int[] issuerNitCodes;
+    private int[] receiverNitCodes;
+    private int[] documentTypeCodes;
+    private int[] statusCodes;
+    private int[] issueDays;
+    private int[] issueMonths;
+    private final long[][] amounts = new long[AMOUNTS.size()][];
+
+    /**
+     * @param expectedSize Cantidad de documentos esperada; las columnas crecen si hay más
+     */
+    public FiscalDocumentColumns(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        rowById = new LongIntHashMap(capacity);
+        issuerNitCodes = new int[capacity];
+        receiverNitCodes = new int[capacity];
+        documentTypeCodes = new int[capacity];
+        statusCodes = new int[capacity];
+        issueDays = new int[capacity];
+        issueMonths = new int[capacity];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = new long[capacity];
+        }
+    }
+
+    /**
+     * Agrega los documentos, o reemplaza los valores de los que ya estaban (por ID).
+     * Los documentos sin ID se ignoran.
+     */
+    public void putAll(Collection<FiscalDocument> documents) {
+        lock.writeLock().lock();
+        try {
+            for (FiscalDocument document : documents) {
+                if (document.getId() != null) {
+                    put(document);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return Cantidad de documentos
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cantidad de documentos y totales por grupo, con los filtros de la consulta
+     * paginada ({@link FiscalDocumentFilterDto}).
+     *
+     * @param filter Filtros; los valores null no filtran
+     * @param groupBy Dimensiones por las que se agrupa; vacío para el total general
+     * @return Los grupos con al menos un documento, en orden de las dimensiones (los
+     *         valores vacíos al final)
+     * @throws ArithmeticException si una suma no cabe en un long de centavos
+     */
+    public List<FiscalDocumentAggregateDto> aggregate(FiscalDocumentFilterDto filter, Set<Dimension> groupBy) {
+        List<Dimension> dimensions = groupBy.stream().sorted().toList();
+        lock.readLock().lock();
+        try {
+            Selection selection = select(filter);
+            if (selection.size == 0) {
+                return List.of();
+            }
+
+            // Todas las filas empiezan en el grupo 0 y cada dimensión lo subdivide
+            int[] groupOf = new int[selection.size];
+            int groupCount = 1;
+            for (Dimension dimension : dimensions) {
+                groupCount = regroup(selection, groupOf, groupCount, column(dimension));
+            }
+            return totals(selection, groupOf, groupCount, dimensions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(FiscalDocument document) {
+        int row = rowById.get(document.getId());
+        if (row < 0) {
+            if (size == issueDays.length) {
+                grow();
+            }
+            row = size++;
+            rowById.putIfAbsent(document.getId(), row);
+        }
+
+        issuerNitCodes[row] = issuerNits.encode(document.getIssuerNit());
+        receiverNitCodes[row] = receiverNits.encode(document.getReceiverNit());
+        documentTypeCodes[row] = documentTypes.encode(document.getDocumentType());
+        statusCodes[row] = statuses.encode(document.getStatus());
+
+        LocalDate issueDate = document.getIssueDate();
+        issueDays[row] = issueDate != null ? Math.clamp(issueDate.toEpochDay(), NO_DATE + 1, Integer.MAX_VALUE) : NO_DATE;
+        issueMonths[row] = issueDate != null
+                ? Math.clamp(issueDate.getYear() * 12L + issueDate.getMonthValue() - 1, NO_DATE + 1, Integer.MAX_VALUE)
+                : NO_DATE;
+
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i][row] = toCents(AMOUNTS.get(i).apply(document));
+        }
+    }
+
+    private void grow() {
+        int capacity = issueDays.length * 2;
+        issuerNitCodes = Arrays.copyOf(issuerNitCodes, capacity);
+        receiverNitCodes = Arrays.copyOf(receiverNitCodes, capacity);
+        documentTypeCodes = Arrays.copyOf(documentTypeCodes, capacity);
+        statusCodes = Arrays.copyOf(statusCodes, capacity);
+        issueDays = Arrays.copyOf(issueDays, capacity);
+        issueMonths = Arrays.copyOf(issueMonths, capacity);
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = Arrays.copyOf(amounts[i], capacity);
+        }
+    }
+
+    private Selection select(FiscalDocumentFilterDto filter) {
+        Selection selection = new Selection(size);
+        selection.keepEqual(issuerNitCodes, issuerNits, filter.getIssuerNit());
+        selection.keepEqual(receiverNitCodes, receiverNits, filter.getReceiverNit());
+        selection.keepEqual(documentTypeCodes, documentTypes, filter.getDocumentType());
+        selection.keepEqual(statusCodes, statuses, filter.getStatus());
+        if (filter.filtersIssueDate()) {
+            // Como en SQL, un rango de fechas excluye los documentos sin Fecha Emisión
+            int from = filter.getIssueDateFrom() != null
+                    ? Math.clamp(filter.getIssueDateFrom().toEpochDay(), NO_DATE + 1, Integer.MAX_VALUE)
+                    : NO_DATE + 1;
+            int to = filter.getIssueDateTo() != null
+                    ? Math.clamp(filter.getIssueDateTo().toEpochDay(), NO_DATE + 1, Integer.MAX_VALUE)
+                    : Integer.MAX_VALUE;
+            selection.keepBetween(issueDays, from, to);
+        }
+        return selection;
+    }
+
+    /**
+     * Subdivide los grupos de las filas seleccionadas según el valor de column.
+     *
+     * Si los grupos actuales por el rango de valores de la columna caben en
+     * {@value #DENSE_GROUPS} posiciones, el grupo nuevo se busca en un arreglo indexado
+     * por ambos; si no, en un mapa cuya llave combina el grupo anterior y el valor en un
+     * long.
+     *
+     * @return Cantidad de grupos nuevos
+     */
+    private static int regroup(Selection selection, int[] groupOf, int groupCount, int[] column) {
+        int[] rows = selection.rows;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < selection.size; i++) {
+            int value = column[rows[i]];
+            if (value != NO_DATE) {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+        }
+        // Posición 0 para las fechas vacías
+        long width = min <= max ? (long) max - min + 2 : 1;
+
+        int newGroupCount = 0;
+        if (groupCount * width <= DENSE_GROUPS) {
+            int[] groups = new int[(int) (groupCount * width)];
+            Arrays.fill(groups, -1);
+            for (int i = 0; i < selection.size; i++) {
+                int value = column[rows[i]];
+                int slot = (int) (groupOf[i] * width + (value != NO_DATE ? value - min + 1 : 0));
+                int group = groups[slot];
+                if (group < 0) {
+                    group = newGroupCount++;
+                    groups[slot] = group;
+                }
+                groupOf[i] = group;
+            }
+        } else {
+            LongIntHashMap groups = new LongIntHashMap(64);
+            for (int i = 0; i < selection.size; i++) {
+                long key = (long) groupOf[i] << 32 | (column[rows[i]] & 0xffffffffL);
+                int group = groups.putIfAbsent(key, newGroupCount);
+                groupOf[i] = group >= 0 ? group : newGroupCount++;
+            }
+        }
+        return newGroupCount;
+    }
+
+    private List<FiscalDocumentAggregateDto> totals(Selection selection, int[] groupOf, int groupCount,
+                                                    List<Dimension> dimensions) {
+        int[] rows = selection.rows;
+        long[] counts = new long[groupCount];
+        // Una fila de cada grupo, de la que se leen los valores de las dimensiones
+        int[] firstRows = new int[groupCount];
+        Arrays.fill(firstRows, -1);
+        for (int i = 0; i < selection.size; i++) {
+            int group = groupOf[i];
+            counts[group]++;
+            if (firstRows[group] < 0) {
+                firstRows[group] = rows[i];
+            }
+        }
+
+        long[][] sums = new long[amounts.length][groupCount];
+        for (int column = 0; column < amounts.length; column++) {
+            long[] values = amounts[column];
+            long[] sum = sums[column];
+            if (groupCount == 1) {
+                // Total general: se acumula en una variable y no en el arreglo
+                long total = 0;
+                for (int i = 0; i < selection.size; i++) {
+                    total = Math.addExact(total, values[rows[i]]);
+                }
+                sum[0] = total;
+            } else {
+                for (int i = 0; i < selection.size; i++) {
+                    int group = groupOf[i];
+                    sum[group] = Math.addExact(sum[group], values[rows[i]]);
+                }
+            }
+        }
+
+        int[] order = sortGroups(firstRows, dimensions);
+        List<FiscalDocumentAggregateDto> result = new ArrayList<>(groupCount);
+        for (int group : order) {
+            FiscalDocumentAggregateDto dto = new FiscalDocumentAggregateDto();
+            for (Dimension dimension : dimensions) {
+                setValue(dto, dimension, column(dimension)[firstRows[group]]);
+            }
+            dto.setDocumentCount(counts[group]);
+            for (int column = 0; column < amounts.length; column++) {
+                TOTALS.get(column).accept(dto, BigDecimal.valueOf(sums[column][group], 2));
+            }
+            result.add(dto);
+        }
+        return result;
+    }
+
+    /**
+     * Ordena los grupos por sus dimensiones, de la última a la primera: cada pasada
+     * ordena un long[] con el valor de la dimensión en los 32 bits altos y la posición
+     * actual del grupo en los bajos, así que respeta el orden de la pasada anterior y
+     * no compara textos ni crea objetos por grupo.
+     *
+     * @param firstRows Una fila de cada grupo
+     * @return Los grupos en orden
+     */
+    private int[] sortGroups(int[] firstRows, List<Dimension> dimensions) {
+        int[] order = new int[firstRows.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        long[] keys = new long[order.length];
+        for (int d = dimensions.size() - 1; d >= 0; d--) {
+            Dimension dimension = dimensions.get(d);
+            int[] column = column(dimension);
+            int[] ranks = ranks(dimension);
+            for (int position = 0; position < order.length; position++) {
+                int value = column[firstRows[order[position]]];
+                int sortValue;
+                if (ranks != null) {
+                    sortValue = ranks[value];
+                } else {
+                    // Las fechas se ordenan por su valor, las vacías al final
+                    sortValue = value != NO_DATE ? value : Integer.MAX_VALUE;
+                }
+                keys[position] = (long) sortValue << 32 | position;
+            }
+            Arrays.sort(keys);
+            int[] sorted = new int[order.length];
+            for (int position = 0; position < order.length; position++) {
+                sorted[position] = order[(int) keys[position]];
+            }
+            order = sorted;
+        }
+        return order;
+    }
+
+    private int[] column(Dimension dimension) {
+        return switch (dimension) {
+            case ISSUER_NIT -> issuerNitCodes;
+            case RECEIVER_NIT -> receiverNitCodes;
+            case DOCUMENT_TYPE -> documentTypeCodes;
+            case STATUS -> statusCodes;
+            case ISSUE_DATE -> issueDays;
+            case ISSUE_MONTH -> issueMonths;
+        };
+    }
+
+    private void setValue(FiscalDocumentAggregateDto dto, Dimension dimension, int value) {
+        switch (dimension) {
+            case ISSUER_NIT -> dto.setIssuerNit(issuerNits.decode(value));
+            case RECEIVER_NIT -> dto.setReceiverNit(receiverNits.decode(value));
+            case DOCUMENT_TYPE -> dto.setDocumentType(documentTypes.decode(value));
+            case STATUS -> dto.setStatus(statuses.decode(value));
+            case ISSUE_DATE -> dto.setIssueDate(value != NO_DATE ? LocalDate.ofEpochDay(value) : null);
+            case ISSUE_MONTH -> dto.setIssueMonth(value != NO_DATE
+                    ? YearMonth.of(Math.floorDiv(value, 12), Math.floorMod(value, 12) + 1).toString()
+                    : null);
+        }
+    }
+
+    /**
+     * @return El orden de cada código de la dimensión, o null si la columna no es de
+     *         diccionario y se ordena por su valor
+     */
+    private int[] ranks(Dimension dimension) {
+        return switch (dimension) {
+            case ISSUER_NIT -> issuerNits.ranks();
+            case RECEIVER_NIT -> receiverNits.ranks();
+            case DOCUMENT_TYPE -> documentTypes.ranks();
+            case STATUS -> statuses.ranks();
+            case ISSUE_DATE, ISSUE_MONTH -> null;
+        };
+    }
+
+    private static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        // Las columnas de montos tienen dos decimales
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Dimensiones por las que se puede agrupar.
+     */
+    public enum Dimension {
+
+        ISSUER_NIT("issuerNit"),
+        RECEIVER_NIT("receiverNit"),
+        DOCUMENT_TYPE("documentType"),
+        STATUS("status"),
+        ISSUE_DATE("issueDate"),
+        ISSUE_MONTH("issueMonth");
+
+        private final String attribute;
+
+        Dimension(String attribute) {
+            this.attribute = attribute;
+        }
+
+        /**
+         * @param name Nombre del campo: issuerNit, receiverNit, documentType, status,
+         *             issueDate o issueMonth
+         * @throws IllegalArgumentException si no es una dimensión
+         */
+        public static Dimension fromName(String name) {
+            for (Dimension dimension : values()) {
+                if (dimension.attribute.equals(name)) {
+                    return dimension;
+                }
+            }
+            throw new IllegalArgumentException("No se puede agrupar por " + name
+                    + "; use issuerNit, receiverNit, documentType, status, issueDate o issueMonth");
+        }
+    }
+
+    /**
+     * Vector con los números de las filas que cumplen los filtros aplicados hasta ahora.
+     */
+    private static final class Selection {
+
+        private final int[] rows;
+        private int size;
+
+        Selection(int rowCount) {
+            rows = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                rows[i] = i;
+            }
+            size = rowCount;
+        }
+
+        /**
+         * Conserva las filas cuyo código en column es el de value. No filtra si value es null.
+         */
+        void keepEqual(int[] column, StringDictionary dictionary, String value) {
+            if (value == null) {
+                return;
+            }
+            int code = dictionary.find(value);
+            if (code < 0) {
+                size = 0;
+                return;
+            }
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                // Sin salto condicional: la fila se escribe siempre y solo avanza si se conserva
+                int row = rows[i];
+                rows[kept] = row;
+                kept += column[row] == code ? 1 : 0;
+            }
+            size = kept;
+        }
+
+        /**
+         * Conserva las filas cuyo valor en column está entre from y to, inclusive.
+         */
+        void keepBetween(int[] column, int from, int to) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int row = rows[i];
+                int value = column[row];
+                rows[kept] = row;
+                kept += value >= from & value <= to ? 1 : 0;
+            }
+            size = kept;
+        }
+    }
+}
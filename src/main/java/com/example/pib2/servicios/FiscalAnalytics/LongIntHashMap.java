@@ -0,0 +1,94 @@
+package com.example.pib2.servicios.FiscalAnalytics;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de long no negativo a int con direccionamiento abierto, sin objetos por entrada:
+ * un HashMap&lt;Long, Integer&gt; con millones de documentos ocuparía varias veces más.
+ */
+class LongIntHashMap {
+
+    private static final long EMPTY = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return El valor de la llave, o -1 si no está
+     */
+    int get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return values[slot];
+            }
+            if (current == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return El valor de la llave; si no está, la agrega con value y devuelve -1
+     */
+    int putIfAbsent(long key, int value) {
+        int slot = slot(key);
+        while (true) {
+            long current = keys[slot];
+            if (current == key) {
+                return values[slot];
+            }
+            if (current == EMPTY) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        // Ocupación máxima del 50 %
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private int slot(long key) {
+        // Mezcla de bits (Stafford, variante 13) para que llaves consecutivas no queden juntas
+        long hash = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return (int) (hash ^ (hash >>> 31)) & mask;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.pib2.servicios.FiscalAnalytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codificación por diccionario de una columna de texto: cada valor distinto se guarda
+ * una vez y las filas guardan su código. El código 0 es null.
+ */
+class StringDictionary {
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    // Orden alfabético de cada código; se recalcula cuando aparece un valor nuevo
+    private volatile int[] ranks;
+
+    StringDictionary() {
+        values.add(null);
+    }
+
+    /**
+     * @return El código del valor; lo agrega si es nuevo
+     */
+    int encode(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+            ranks = null;
+        }
+        return code;
+    }
+
+    /**
+     * @return El código del valor, o -1 si ninguna fila lo tiene
+     */
+    int find(String value) {
+        if (value == null) {
+            return 0;
+        }
+        return codes.getOrDefault(value, -1);
+    }
+
+    /**
+     * @return La posición de cada código en orden alfabético de su valor; null va al final
+     */
+    int[] ranks() {
+        int[] current = ranks;
+        if (current == null) {
+            Integer[] sorted = new Integer[values.size() - 1];
+            for (int i = 0; i < sorted.length; i++) {
+                sorted[i] = i + 1;
+            }
+            Arrays.sort(sorted, Comparator.comparing(values::get));
+            current = new int[values.size()];
+            for (int i = 0; i < sorted.length; i++) {
+                current[sorted[i]] = i;
+            }
+            current[0] = sorted.length;
+            ranks = current;
+        }
+        return current;
+    }
+
+    String decode(int code) {
+        return values.get(code);
+    }
+
+    /**
+     * @return Cantidad de códigos, incluido el de null
+     */
+    int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,727 @@
+package com.example.pib2.servicios.FiscalArchive;
+
+import com.example.pib2.models.dtos.FiscalDocumentFilterDto;
+import com.example.pib2.models.entities.FiscalDocument;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Archivo del histórico de documentos fiscales: los documentos de un mes ya cerrado,
+ * por columnas y comprimidos. Un archivo no se modifica después de escrito.
+ *
+ * Formato:
+ * <pre>
+ * encabezado  MAGIC, VERSION, año, mes, filas, ID mínimo y máximo, Fecha Emisión
+ *             mínima y máxima (días desde 1970-01-01) y el tamaño de cada bloque
+ * bloques     el diccionario de textos y una columna por bloque, cada uno comprimido
+ *             con Deflate por separado
+ * </pre>
+ *
+ * Las filas van en orden de Fecha Emisión e ID. Los NIT, nombres, tipos, estados y
+ * demás textos que se repiten se guardan una vez en el diccionario y cada fila guarda
+ * su código; CUFE/CUDE y Folio, que casi nunca se repiten, se guardan completos. Los
+ * montos se guardan como centavos y los enteros con longitud variable, así que los
+ * valores pequeños ocupan uno o dos bytes.
+ *
+ * El encabezado funciona como índice: con {@link #readHeader(Path)} se decide, sin
+ * leer los bloques, si un ID o un rango de fechas puede estar en el archivo. Las
+ * búsquedas descomprimen primero solo las columnas de los filtros y arman documentos
+ * únicamente para las filas que los cumplen.
+ */
+public final class FiscalDocumentArchiveFile {
+
+    // "FDA1"
+    private static final int MAGIC = 0x46444131;
+    private static final int VERSION = 1;
+
+    private static final Codec<String> DICTIONARY = new DictionaryCodec();
+    private static final Codec<String> TEXT = new TextCodec();
+    private static final Codec<LocalDate> DATE = new DateCodec();
+    private static final Codec<BigDecimal> AMOUNT = new AmountCodec();
+    private static final Codec<Long> NUMBER = new NumberCodec();
+
+    private static final Column<LocalDate> ISSUE_DATE =
+            new Column<>(DATE, FiscalDocument::getIssueDate, FiscalDocument::setIssueDate);
+    private static final Column<String> ISSUER_NIT =
+            new Column<>(DICTIONARY, FiscalDocument::getIssuerNit, FiscalDocument::setIssuerNit);
+    private static final Column<String> RECEIVER_NIT =
+            new Column<>(DICTIONARY, FiscalDocument::getReceiverNit, FiscalDocument::setReceiverNit);
+    private static final Column<String> DOCUMENT_TYPE =
+            new Column<>(DICTIONARY, FiscalDocument::getDocumentType, FiscalDocument::setDocumentType);
+    private static final Column<String> STATUS =
+            new Column<>(DICTIONARY, FiscalDocument::getStatus, FiscalDocument::setStatus);
+
+    // Un bloque por columna, en este orden, después del de IDs. Para agregar una columna
+    // se agrega al final y se sube VERSION
+    private static final List<Column<?>> COLUMNS = List.of(
+            ISSUE_DATE,
+            ISSUER_NIT,
+            RECEIVER_NIT,
+            DOCUMENT_TYPE,
+            STATUS,
+            new Column<>(TEXT, FiscalDocument::getCufeCude, FiscalDocument::setCufeCude),
+            new Column<>(TEXT, FiscalDocument::getFolio, FiscalDocument::setFolio),
+            new Column<>(DICTIONARY, FiscalDocument::getPrefix, FiscalDocument::setPrefix),
+            new Column<>(DICTIONARY, FiscalDocument::getCurrency, FiscalDocument::setCurrency),
+            new Column<>(DICTIONARY, FiscalDocument::getPaymentForm, FiscalDocument::setPaymentForm),
+            new Column<>(DICTIONARY, FiscalDocument::getPaymentMethod, FiscalDocument::setPaymentMethod),
+            new Column<>(DATE, FiscalDocument::getReceptionDate, FiscalDocument::setReceptionDate),
+            new Column<>(DICTIONARY, FiscalDocument::getIssuerName, FiscalDocument::setIssuerName),
+            new Column<>(DICTIONARY, FiscalDocument::getReceiverName, FiscalDocument::setReceiverName),
+            new Column<>(AMOUNT, FiscalDocument::getIva, FiscalDocument::setIva),
+            new Column<>(AMOUNT, FiscalDocument::getIca, FiscalDocument::setIca),
+            new Column<>(AMOUNT, FiscalDocument::getIc, FiscalDocument::setIc),
+            new Column<>(AMOUNT, FiscalDocument::getInc, FiscalDocument::setInc),
+            new Column<>(AMOUNT, FiscalDocument::getTimbre, FiscalDocument::setTimbre),
+            new Column<>(AMOUNT, FiscalDocument::getIncBags, FiscalDocument::setIncBags),
+            new Column<>(AMOUNT, FiscalDocument::getInCarbon, FiscalDocument::setInCarbon),
+            new Column<>(AMOUNT, FiscalDocument::getInFuels, FiscalDocument::setInFuels),
+            new Column<>(AMOUNT, FiscalDocument::getIcData, FiscalDocument::setIcData),
+            new Column<>(AMOUNT, FiscalDocument::getIcl, FiscalDocument::setIcl),
+            new Column<>(AMOUNT, FiscalDocument::getInpp, FiscalDocument::setInpp),
+            new Column<>(AMOUNT, FiscalDocument::getIbua, FiscalDocument::setIbua),
+            new Column<>(AMOUNT, FiscalDocument::getIcui, FiscalDocument::setIcui),
+            new Column<>(AMOUNT, FiscalDocument::getReteIva, FiscalDocument::setReteIva),
+            new Column<>(AMOUNT, FiscalDocument::getReteRent, FiscalDocument::setReteRent),
+            new Column<>(AMOUNT, FiscalDocument::getReteIca, FiscalDocument::setReteIca),
+            new Column<>(AMOUNT, FiscalDocument::getTotal, FiscalDocument::setTotal),
+            new Column<>(DICTIONARY, FiscalDocument::getGroupInfo, FiscalDocument::setGroupInfo),
+            new Column<>(NUMBER, FiscalDocument::getImportId, FiscalDocument::setImportId)
+    );
+
+    // Diccionario, IDs y columnas
+    private static final int BLOCK_COUNT = COLUMNS.size() + 2;
+
+    // Orden de las filas dentro del archivo, el mismo de las consultas
+    public static final Comparator<FiscalDocument> ORDER = Comparator
+            .comparing(FiscalDocument::getIssueDate)
+            .thenComparing(FiscalDocument::getId);
+
+    private final Header header;
+    private final byte[][] blocks;
+
+    // Se descomprime la primera vez que se necesita
+    private String[] dictionary;
+
+    private FiscalDocumentArchiveFile(Header header, byte[][] blocks) {
+        this.header = header;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Escribe los documentos de un mes en un archivo nuevo y lo sincroniza con el disco.
+     *
+     * @param documents Documentos con ID y con Fecha Emisión dentro del mes, en cualquier orden
+     * @throws IllegalArgumentException si algún documento no tiene ID o es de otro mes
+     * @throws ArithmeticException si un monto no cabe en el formato (más de 2 decimales
+     *                             o más de 18 dígitos enteros)
+     */
+    public static void write(Path file, YearMonth month, List<FiscalDocument> documents) throws IOException {
+        if (documents.isEmpty()) {
+            throw new IllegalArgumentException("No hay documentos para archivar de " + month);
+        }
+        for (FiscalDocument document : documents) {
+            if (document.getId() == null || document.getIssueDate() == null
+                    || !YearMonth.from(document.getIssueDate()).equals(month)) {
+                throw new IllegalArgumentException("El documento " + document.getId() + " no es de " + month);
+            }
+        }
+        List<FiscalDocument> sorted = new ArrayList<>(documents);
+        sorted.sort(ORDER);
+
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        byte[][] blocks = new byte[BLOCK_COUNT][];
+
+        // Los IDs como diferencia con el anterior
+        Encoder ids = new Encoder();
+        long previousId = 0;
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        for (FiscalDocument document : sorted) {
+            ids.writeSigned(document.getId() - previousId);
+            previousId = document.getId();
+            minId = Math.min(minId, previousId);
+            maxId = Math.max(maxId, previousId);
+        }
+        blocks[1] = deflate(ids);
+
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            Encoder column = new Encoder();
+            for (FiscalDocument document : sorted) {
+                COLUMNS.get(i).write(document, column, codes, values);
+            }
+            blocks[i + 2] = deflate(column);
+        }
+
+        // El diccionario queda completo después de las columnas
+        Encoder dictionary = new Encoder();
+        dictionary.writeUnsigned(values.size());
+        for (String value : values) {
+            TEXT.write(value, dictionary, codes, values);
+        }
+        blocks[0] = deflate(dictionary);
+
+        Header header = new Header(month, sorted.size(), minId, maxId,
+                sorted.get(0).getIssueDate(), sorted.get(sorted.size() - 1).getIssueDate());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            header.write(new DataOutputStream(headerBytes), blocks);
+            writeFully(channel, headerBytes.toByteArray());
+            for (byte[] block : blocks) {
+                writeFully(channel, block);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Lee solo el encabezado.
+     *
+     * @throws IOException si el archivo no es un archivo del histórico o no se puede leer
+     */
+    public static Header readHeader(Path file) throws IOException {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+            return Header.read(new DataInputStream(input), file, null);
+        }
+    }
+
+    /**
+     * Lee el archivo completo en memoria, comprimido; las columnas se descomprimen a
+     * medida que las búsquedas las necesitan.
+     */
+    public static FiscalDocumentArchiveFile open(Path file) throws IOException {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+            byte[][] blocks = new byte[BLOCK_COUNT][];
+            Header header = Header.read(new DataInputStream(input), file, blocks);
+            return new FiscalDocumentArchiveFile(header, blocks);
+        }
+    }
+
+    public Header getHeader() {
+        return header;
+    }
+
+    /**
+     * @return El documento con ese ID, o null si no está en el archivo
+     */
+    public FiscalDocument find(long id) throws IOException {
+        if (!header.containsId(id)) {
+            return null;
+        }
+        long[] ids = ids();
+        FiscalDocument[] rows = new FiscalDocument[header.rows];
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                rows[i] = new FiscalDocument();
+                rows[i].setId(id);
+                readColumns(rows);
+                return rows[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param filter Filtros; los valores null no filtran
+     * @return Los documentos que cumplen el filtro, en orden de Fecha Emisión e ID
+     */
+    public List<FiscalDocument> find(FiscalDocumentFilterDto filter) throws IOException {
+        boolean[] matches = new boolean[header.rows];
+        int matching = match(filter, matches);
+        if (matching == 0) {
+            return List.of();
+        }
+
+        long[] ids = ids();
+        FiscalDocument[] rows = new FiscalDocument[header.rows];
+        List<FiscalDocument> documents = new ArrayList<>(matching);
+        for (int i = 0; i < header.rows; i++) {
+            if (matches[i]) {
+                rows[i] = new FiscalDocument();
+                rows[i].setId(ids[i]);
+                documents.add(rows[i]);
+            }
+        }
+        readColumns(rows);
+        return documents;
+    }
+
+    /**
+     * Como {@link #find(FiscalDocumentFilterDto)}, pero solo lee las columnas filtradas.
+     *
+     * @param filter Filtros; los valores null no filtran
+     * @return Cantidad de documentos que cumplen el filtro
+     */
+    public int count(FiscalDocumentFilterDto filter) throws IOException {
+        return match(filter, new boolean[header.rows]);
+    }
+
+    // Marca en matches las filas que cumplen el filtro y devuelve cuántas son
+    private int match(FiscalDocumentFilterDto filter, boolean[] matches) throws IOException {
+        if (!header.overlaps(filter.getIssueDateFrom(), filter.getIssueDateTo())) {
+            return 0;
+        }
+        Arrays.fill(matches, true);
+        int matching = header.rows;
+        matching = keep(matches, matching, ISSUER_NIT, filter.getIssuerNit());
+        matching = keep(matches, matching, RECEIVER_NIT, filter.getReceiverNit());
+        matching = keep(matches, matching, DOCUMENT_TYPE, filter.getDocumentType());
+        matching = keep(matches, matching, STATUS, filter.getStatus());
+        if (matching > 0 && (filter.getIssueDateFrom() != null || filter.getIssueDateTo() != null)) {
+            List<LocalDate> dates = ISSUE_DATE.readAll(decoder(columnBlock(ISSUE_DATE)), dictionary(), header.rows);
+            for (int i = 0; i < header.rows; i++) {
+                LocalDate date = dates.get(i);
+                if (matches[i] && ((filter.getIssueDateFrom() != null && date.isBefore(filter.getIssueDateFrom()))
+                        || (filter.getIssueDateTo() != null && date.isAfter(filter.getIssueDateTo())))) {
+                    matches[i] = false;
+                    matching--;
+                }
+            }
+        }
+        return matching;
+    }
+
+    // Descarta las filas cuyo valor en la columna no es el del filtro
+    private int keep(boolean[] matches, int matching, Column<String> column, String value) throws IOException {
+        if (value == null || matching == 0) {
+            return matching;
+        }
+        List<String> values = column.readAll(decoder(columnBlock(column)), dictionary(), header.rows);
+        for (int i = 0; i < header.rows; i++) {
+            if (matches[i] && !value.equals(values.get(i))) {
+                matches[i] = false;
+                matching--;
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * @return Los IDs de todas las filas, en el orden del archivo
+     */
+    public long[] ids() throws IOException {
+        Decoder decoder = decoder(blocks[1]);
+        long[] ids = new long[header.rows];
+        long previous = 0;
+        for (int i = 0; i < ids.length; i++) {
+            previous += decoder.readSigned();
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    // Completa las filas no nulas con todas las columnas
+    private void readColumns(FiscalDocument[] rows) throws IOException {
+        String[] values = dictionary();
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            Decoder decoder = decoder(blocks[i + 2]);
+            for (FiscalDocument row : rows) {
+                COLUMNS.get(i).read(decoder, values, row);
+            }
+        }
+    }
+
+    private String[] dictionary() throws IOException {
+        if (dictionary == null) {
+            Decoder decoder = decoder(blocks[0]);
+            String[] values = new String[(int) decoder.readUnsigned()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = TEXT.read(decoder, null);
+            }
+            dictionary = values;
+        }
+        return dictionary;
+    }
+
+    private byte[] columnBlock(Column<?> column) {
+        return blocks[COLUMNS.indexOf(column) + 2];
+    }
+
+    private static byte[] deflate(Encoder encoder) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(encoder.size() / 4 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (OutputStream output = new DeflaterOutputStream(compressed, deflater)) {
+            encoder.writeTo(output);
+        } finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+
+    private static Decoder decoder(byte[] block) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(block);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(block.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Bloque del histórico incompleto");
+                }
+                output.write(buffer, 0, length);
+            }
+            return new Decoder(output.toByteArray());
+        } catch (DataFormatException e) {
+            throw new IOException("Bloque del histórico dañado: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Encabezado de un archivo: el mes, la cantidad de documentos y los rangos de ID y
+     * Fecha Emisión que contiene.
+     */
+    public static final class Header {
+
+        private final YearMonth month;
+        private final int rows;
+        private final long minId;
+        private final long maxId;
+        private final LocalDate minIssueDate;
+        private final LocalDate maxIssueDate;
+
+        private Header(YearMonth month, int rows, long minId, long maxId, LocalDate minIssueDate,
+                       LocalDate maxIssueDate) {
+            this.month = month;
+            this.rows = rows;
+            this.minId = minId;
+            this.maxId = maxId;
+            this.minIssueDate = minIssueDate;
+            this.maxIssueDate = maxIssueDate;
+        }
+
+        public YearMonth getMonth() {
+            return month;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public LocalDate getMinIssueDate() {
+            return minIssueDate;
+        }
+
+        public LocalDate getMaxIssueDate() {
+            return maxIssueDate;
+        }
+
+        public boolean containsId(long id) {
+            return id >= minId && id <= maxId;
+        }
+
+        /**
+         * @return false si ninguna Fecha Emisión del archivo está entre from y to
+         *         (inclusive; null no limita)
+         */
+        public boolean overlaps(LocalDate from, LocalDate to) {
+            return (from == null || !maxIssueDate.isBefore(from)) && (to == null || !minIssueDate.isAfter(to));
+        }
+
+        private void write(DataOutputStream output, byte[][] blocks) throws IOException {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(month.getYear());
+            output.writeInt(month.getMonthValue());
+            output.writeInt(rows);
+            output.writeLong(minId);
+            output.writeLong(maxId);
+            output.writeLong(minIssueDate.toEpochDay());
+            output.writeLong(maxIssueDate.toEpochDay());
+            output.writeInt(blocks.length);
+            for (byte[] block : blocks) {
+                output.writeInt(block.length);
+            }
+            output.flush();
+        }
+
+        // Lee también los bloques si blocks no es null
+        private static Header read(DataInputStream input, Path file, byte[][] blocks) throws IOException {
+            if (input.readInt() != MAGIC) {
+                throw new IOException(file + " no es un archivo del histórico de documentos fiscales");
+            }
+            int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException(file + " tiene una versión no soportada: " + version);
+            }
+            YearMonth month = YearMonth.of(input.readInt(), input.readInt());
+            Header header = new Header(month, input.readInt(), input.readLong(), input.readLong(),
+                    LocalDate.ofEpochDay(input.readLong()), LocalDate.ofEpochDay(input.readLong()));
+            int blockCount = input.readInt();
+            if (blockCount != BLOCK_COUNT) {
+                throw new IOException(file + " tiene " + blockCount + " bloques, se esperaban " + BLOCK_COUNT);
+            }
+            if (blocks != null) {
+                int[] lengths = new int[blockCount];
+                for (int i = 0; i < blockCount; i++) {
+                    lengths[i] = input.readInt();
+                }
+                for (int i = 0; i < blockCount; i++) {
+                    blocks[i] = input.readNBytes(lengths[i]);
+                    if (blocks[i].length != lengths[i]) {
+                        throw new IOException(file + " está incompleto");
+                    }
+                }
+            }
+            return header;
+        }
+    }
+
+    /**
+     * Una columna de FiscalDocument y cómo se codifica.
+     */
+    private static final class Column<T> {
+
+        private final Codec<T> codec;
+        private final Function<FiscalDocument, T> getter;
+        private final BiConsumer<FiscalDocument, T> setter;
+
+        Column(Codec<T> codec, Function<FiscalDocument, T> getter, BiConsumer<FiscalDocument, T> setter) {
+            this.codec = codec;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        void write(FiscalDocument document, Encoder encoder, Map<String, Integer> codes, List<String> values) {
+            codec.write(getter.apply(document), encoder, codes, values);
+        }
+
+        // Lee el valor de la fila siguiente y lo asigna si el documento no es null
+        void read(Decoder decoder, String[] dictionary, FiscalDocument document) {
+            T value = codec.read(decoder, dictionary);
+            if (document != null) {
+                setter.accept(document, value);
+            }
+        }
+
+        List<T> readAll(Decoder decoder, String[] dictionary, int rows) {
+            List<T> values = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                values.add(codec.read(decoder, dictionary));
+            }
+            return values;
+        }
+    }
+
+    private interface Codec<T> {
+
+        void write(T value, Encoder encoder, Map<String, Integer> codes, List<String> values);
+
+        T read(Decoder decoder, String[] dictionary);
+    }
+
+    // Código en el diccionario del archivo; 0 es null
+    private static final class DictionaryCodec implements Codec<String> {
+
+        @Override
+        public void write(String value, Encoder encoder, Map<String, Integer> codes, List<String> values) {
+            if (value == null) {
+                encoder.writeUnsigned(0);
+                return;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                values.add(value);
+                code = values.size();
+                codes.put(value, code);
+            }
+            encoder.writeUnsigned(code);
+        }
+
+        @Override
+        public String read(Decoder decoder, String[] dictionary) {
+            int code = (int) decoder.readUnsigned();
+            return code == 0 ? null : dictionary[code - 1];
+        }
+    }
+
+    // Longitud + 1 (0 es null) y los bytes en UTF-8
+    private static final class TextCodec implements Codec<String> {
+
+        @Override
+        public void write(String value, Encoder encoder, Map<String, Integer> codes, List<String> values) {
+            if (value == null) {
+                encoder.writeUnsigned(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            encoder.writeUnsigned(bytes.length + 1L);
+            encoder.writeBytes(bytes);
+        }
+
+        @Override
+        public String read(Decoder decoder, String[] dictionary) {
+            int length = (int) decoder.readUnsigned();
+            return length == 0 ? null : decoder.readString(length - 1);
+        }
+    }
+
+    // Días desde 1970-01-01; 0 es null
+    private static final class DateCodec implements Codec<LocalDate> {
+
+        @Override
+        public void write(LocalDate value, Encoder encoder, Map<String, Integer> codes, List<String> values) {
+            encoder.writeNullableSigned(value == null ? null : value.toEpochDay());
+        }
+
+        @Override
+        public LocalDate read(Decoder decoder, String[] dictionary) {
+            Long day = decoder.readNullableSigned();
+            return day == null ? null : LocalDate.ofEpochDay(day);
+        }
+    }
+
+    // Centavos; 0 es null. Las columnas son numeric(19,2)
+    private static final class AmountCodec implements Codec<BigDecimal> {
+
+        @Override
+        public void write(BigDecimal value, Encoder encoder, Map<String, Integer> codes, List<String> values) {
+            encoder.writeNullableSigned(value == null ? null
+                    : value.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        }
+
+        @Override
+        public BigDecimal read(Decoder decoder, String[] dictionary) {
+            Long cents = decoder.readNullableSigned();
+            return cents == null ? null : BigDecimal.valueOf(cents, 2);
+        }
+    }
+
+    private static final class NumberCodec implements Codec<Long> {
+
+        @Override
+        public void write(Long value, Encoder encoder, Map<String, Integer> codes, List<String> values) {
+            encoder.writeNullableSigned(value);
+        }
+
+        @Override
+        public Long read(Decoder decoder, String[] dictionary) {
+            return decoder.readNullableSigned();
+        }
+    }
+
+    /**
+     * Enteros de longitud variable (7 bits por byte) sobre un buffer en memoria.
+     */
+    private static final class Encoder {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+
+        void writeUnsigned(long value) {
+            while ((value & ~0x7FL) != 0) {
+                bytes.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            bytes.write((int) value);
+        }
+
+        // Zigzag: los negativos pequeños también ocupan pocos bytes
+        void writeSigned(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        // Zigzag + 1, con 0 para null
+        void writeNullableSigned(Long value) {
+            if (value == null) {
+                writeUnsigned(0);
+                return;
+            }
+            if (value == Long.MIN_VALUE) {
+                throw new ArithmeticException("Valor fuera de rango para el histórico: " + value);
+            }
+            writeUnsigned(((value << 1) ^ (value >> 63)) + 1);
+        }
+
+        void writeBytes(byte[] value) {
+            bytes.write(value, 0, value.length);
+        }
+
+        int size() {
+            return bytes.size();
+        }
+
+        void writeTo(OutputStream output) throws IOException {
+            bytes.writeTo(output);
+        }
+    }
+
+    private static final class Decoder {
+
+        private final byte[] bytes;
+        private int position;
+
+        Decoder(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long readUnsigned() {
+            long value = 0;
+            int shift = 0;
+            byte current;
+            do {
+                current = bytes[position++];
+                value |= (long) (current & 0x7F) << shift;
+                shift += 7;
+            } while ((current & 0x80) != 0);
+            return value;
+        }
+
+        long readSigned() {
+            long value = readUnsigned();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        Long readNullableSigned() {
+            long value = readUnsigned();
+            if (value == 0) {
+                return null;
+            }
+            value -= 1;
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        String readString(int length) {
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.pib2.servicios;
+
+import com.example.pib2.models.dtos.FiscalDocumentAggregateDto;
+import com.example.pib2.models.dtos.FiscalDocumentFilterDto;
+import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.repositories.FiscalDocumentAnalyticsRepository;
+import com.example.pib2.repositories.FiscalDocumentRepository;
+import com.example.pib2.servicios.FiscalAnalytics.FiscalDocumentColumns;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Caché opcional en memoria para análisis interactivos sobre los documentos fiscales:
+ * filtra y agrupa por NIT, tipo, estado y Fecha Emisión sin consultar la base de datos
+ * (ver {@link FiscalDocumentColumns}).
+ *
+ * Se activa con {@code fiscal.analytics.enabled=true}. Se carga completa al arrancar y,
+ * al terminar cada importación, se actualizan los documentos que esa importación
+ * insertó o modificó. Los cambios hechos fuera de las importaciones solo se ven
+ * después de {@link #reload()}.
+ */
+@Service
+public class FiscalDocumentAnalyticsService {
+
+    // Documentos que se aplican a la caché por vez; las consultas esperan mientras tanto
+    private static final int BATCH_SIZE = 4096;
+
+    @Autowired
+    private FiscalDocumentAnalyticsRepository fiscalDocumentAnalyticsRepository;
+
+    @Autowired
+    private FiscalDocumentRepository fiscalDocumentRepository;
+
+    @Autowired
+    private FiscalDocumentArchiveService fiscalDocumentArchiveService;
+
+    @Value("${fiscal.analytics.enabled:false}")
+    private boolean enabled;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Una carga o actualización a la vez, para que la de una importación anterior no
+    // pise los valores que escribió una posterior
+    private final Object refreshLock = new Object();
+
+    // Null mientras no termina la primera carga
+    private volatile FiscalDocumentColumns columns;
+
+    @Autowired
+    public FiscalDocumentAnalyticsService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long startNanos = System.nanoTime();
+            int documents = reload();
+            System.out.println("Caché de análisis de documentos fiscales cargada: " + documents + " documentos en "
+                    + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo cargar la caché de análisis de documentos fiscales: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Vuelve a cargar todos los documentos, los del histórico incluidos. Las consultas
+     * siguen usando la copia anterior hasta que termina la carga.
+     *
+     * @return Cantidad de documentos cargados
+     * @throws IllegalStateException si la caché no está activada
+     */
+    public int reload() {
+        if (!enabled) {
+            throw new IllegalStateException("La caché de análisis no está activada (fiscal.analytics.enabled)");
+        }
+        synchronized (refreshLock) {
+            FiscalDocumentColumns loaded = new FiscalDocumentColumns(
+                    (int) (fiscalDocumentRepository.count() + fiscalDocumentArchiveService.count()));
+            // Primero el histórico: si un documento quedó en los dos lados prevalece el de la tabla
+            inBatches(loaded, fiscalDocumentArchiveService::forEachDocument);
+            transactionTemplate.executeWithoutResult(status ->
+                    inBatches(loaded, fiscalDocumentAnalyticsRepository::forEachDocument));
+            columns = loaded;
+            return loaded.size();
+        }
+    }
+
+    /**
+     * Aplica a la caché los documentos que insertó o modificó una importación, aunque
+     * haya fallado: sus bloques confirmados ya están en la base de datos.
+     *
+     * @param importId ID del registro de la importación
+     */
+    public void refreshImport(Long importId) {
+        if (!enabled || importId == null) {
+            return;
+        }
+        synchronized (refreshLock) {
+            FiscalDocumentColumns current = columns;
+            if (current == null) {
+                // La primera carga no terminó o falló; la próxima ya incluye la importación
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> inBatches(current,
+                        consumer -> fiscalDocumentAnalyticsRepository.forEachImportedDocument(importId, consumer)));
+            } catch (RuntimeException e) {
+                // La importación ya terminó: un error aquí no debe marcarla como fallida
+                System.err.println("No se pudo actualizar la caché de análisis con la importación " + importId
+                        + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param filter Filtros; los valores null no filtran
+     * @param groupBy Dimensiones por las que se agrupa; vacío para el total general
+     * @throws IllegalStateException si la caché no está activada o todavía no se cargó
+     */
+    public List<FiscalDocumentAggregateDto> aggregate(FiscalDocumentFilterDto filter,
+                                                      Set<FiscalDocumentColumns.Dimension> groupBy) {
+        FiscalDocumentColumns current = columns;
+        if (current == null) {
+            throw new IllegalStateException(enabled
+                    ? "La caché de análisis todavía no está cargada"
+                    : "La caché de análisis no está activada (fiscal.analytics.enabled)");
+        }
+        return current.aggregate(filter, groupBy);
+    }
+
+    private void inBatches(FiscalDocumentColumns target, Consumer<Consumer<FiscalDocument>> source) {
+        List<FiscalDocument> batch = new ArrayList<>(BATCH_SIZE);
+        source.accept(document -> {
+            batch.add(document);
+            if (batch.size() == BATCH_SIZE) {
+                target.putAll(batch);
+                batch.clear();
+            }
+        });
+        target.putAll(batch);
+    }
+}
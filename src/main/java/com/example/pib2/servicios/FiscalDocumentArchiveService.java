@@ -0,0 +1,462 @@
+package com.example.pib2.servicios;
+
+import com.example.pib2.models.dtos.FiscalDocumentFilterDto;
+import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.repositories.FiscalDocumentArchiveRepository;
+import com.example.pib2.repositories.FiscalDocumentKeysetRepository;
+import com.example.pib2.servicios.FiscalArchive.FiscalDocumentArchiveFile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Histórico en disco de los documentos fiscales de meses cerrados.
+ *
+ * Con {@code fiscal.archive.enabled=true}, todas las noches ({@code fiscal.archive.cron})
+ * los documentos con Fecha Emisión anterior a los últimos
+ * {@code fiscal.archive.retention-months} meses pasan de fiscal_documents a archivos
+ * {@link FiscalDocumentArchiveFile} en {@code fiscal.archive.directory}, uno por mes,
+ * y en PostgreSQL se borra la partición del mes. Los archivos no se modifican: si más
+ * adelante aparecen documentos de un mes archivado (quedaron de una importación en
+ * curso), la siguiente ejecución los agrega en otro archivo del mismo mes.
+ *
+ * La búsqueda por ID, la consulta paginada, la exportación a Excel, la caché de análisis
+ * y el recálculo de totales leen el histórico junto con la tabla (FiscalDocumentService);
+ * la exportación completa en orden de ID y los documentos de una importación solo leen
+ * la tabla. Las importaciones rechazan las filas de meses archivados.
+ *
+ * Al leer, el encabezado de cada archivo (mes y rangos de ID y Fecha Emisión) decide si
+ * hace falta abrirlo; los encabezados se leen una sola vez.
+ */
+@Service
+public class FiscalDocumentArchiveService {
+
+    // fiscal-documents-2019-03-1.fda: mes y número del archivo dentro del mes
+    private static final Pattern FILE_NAME = Pattern.compile("fiscal-documents-(\\d{4})-(\\d{2})-(\\d+)\\.fda");
+
+    @Autowired
+    private FiscalDocumentArchiveRepository fiscalDocumentArchiveRepository;
+
+    @Autowired
+    private FiscalDocumentPartitionService fiscalDocumentPartitionService;
+
+    @Value("${fiscal.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${fiscal.archive.directory:data/fiscal-archive}")
+    private String directory;
+
+    // Meses, además del actual, que se quedan en la base de datos
+    @Value("${fiscal.archive.retention-months:60}")
+    private int retentionMonths;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Un proceso de archivo a la vez
+    private final Object archiveLock = new Object();
+
+    // Archivos de cada mes; se reemplaza completo al agregar uno. Null hasta que se leen
+    // los encabezados
+    private volatile NavigableMap<YearMonth, List<ArchivedFile>> files;
+
+    // Mes que se está archivando: las importaciones ya no lo aceptan
+    private volatile YearMonth archivingMonth;
+
+    @Autowired
+    public FiscalDocumentArchiveService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Scheduled(cron = "${fiscal.archive.cron:0 30 2 * * *}")
+    public void archiveOnSchedule() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archive();
+        } catch (RuntimeException e) {
+            System.err.println("Error archivando documentos fiscales: "
+                    + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+    }
+
+    /**
+     * Pasa al histórico los documentos de los meses anteriores al período de retención,
+     * un mes por transacción.
+     *
+     * @return Cantidad de documentos archivados
+     * @throws IllegalStateException si el histórico no está activado
+     */
+    public long archive() {
+        if (!enabled) {
+            throw new IllegalStateException("El histórico no está activado (fiscal.archive.enabled)");
+        }
+        synchronized (archiveLock) {
+            LocalDate cutoff = YearMonth.now().minusMonths(retentionMonths).atDay(1);
+            List<YearMonth> months = transactionTemplate.execute(status ->
+                    fiscalDocumentArchiveRepository.findMonthsBefore(cutoff));
+            long archived = 0;
+            for (YearMonth month : months) {
+                long startNanos = System.nanoTime();
+                int documents = archiveMonth(month);
+                archived += documents;
+                System.out.println("Documentos fiscales de " + month + " archivados: " + documents + " en "
+                        + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+                fiscalDocumentPartitionService.dropIfEmpty(month);
+            }
+            return archived;
+        }
+    }
+
+    /**
+     * @return true si el mes de la fecha está en el histórico y ya no recibe documentos
+     */
+    public boolean isArchived(LocalDate issueDate) {
+        if (issueDate == null) {
+            return false;
+        }
+        YearMonth month = YearMonth.from(issueDate);
+        return month.equals(archivingMonth) || files().containsKey(month);
+    }
+
+    /**
+     * @return El documento archivado con ese ID, o null
+     */
+    public FiscalDocument findById(long id) {
+        for (List<ArchivedFile> monthFiles : files().values()) {
+            for (ArchivedFile file : monthFiles) {
+                if (file.header.containsId(id)) {
+                    try {
+                        FiscalDocument document = open(file).find(id);
+                        if (document != null) {
+                            return document;
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Documentos archivados que siguen a la posición, en el orden de
+     * {@link FiscalDocumentKeysetRepository#findPage}. Como todos tienen Fecha Emisión, no
+     * hay ninguno después de un cursor del tramo sin fecha.
+     *
+     * @param filter Filtros; los valores null no filtran
+     * @param after Posición del último documento de la página anterior, o null para la primera
+     * @param limit Cantidad máxima de documentos
+     */
+    public List<FiscalDocument> findPage(FiscalDocumentFilterDto filter, FiscalDocumentKeysetRepository.Cursor after,
+                                         int limit) {
+        List<FiscalDocument> page = new ArrayList<>();
+        if (after != null && after.getIssueDate() == null) {
+            return page;
+        }
+        NavigableMap<YearMonth, List<ArchivedFile>> months = files();
+        if (after != null) {
+            months = months.tailMap(YearMonth.from(after.getIssueDate()), true);
+        }
+        for (Map.Entry<YearMonth, List<ArchivedFile>> month : months.entrySet()) {
+            for (FiscalDocument document : findInMonth(month.getValue(), filter)) {
+                if (after == null || document.getIssueDate().isAfter(after.getIssueDate())
+                        || (document.getIssueDate().equals(after.getIssueDate()) && document.getId() > after.getId())) {
+                    page.add(document);
+                }
+            }
+            // Los meses siguientes solo tienen documentos posteriores
+            if (page.size() >= limit) {
+                return page.subList(0, limit);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Documentos archivados que cumplen el filtro, en orden de Fecha Emisión e ID. Se lee
+     * un mes a la vez, a medida que se recorre.
+     *
+     * @param filter Filtros; los valores null no filtran
+     */
+    public Iterator<FiscalDocument> iterator(FiscalDocumentFilterDto filter) {
+        Iterator<List<ArchivedFile>> months = files().values().iterator();
+        return new Iterator<>() {
+
+            private Iterator<FiscalDocument> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && months.hasNext()) {
+                    current = findInMonth(months.next(), filter).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public FiscalDocument next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Recorre todos los documentos archivados, un mes a la vez.
+     */
+    public void forEachDocument(Consumer<FiscalDocument> consumer) {
+        iterator(new FiscalDocumentFilterDto()).forEachRemaining(consumer);
+    }
+
+    /**
+     * @return Cantidad de documentos archivados, según los encabezados
+     */
+    public long count() {
+        long count = 0;
+        for (List<ArchivedFile> monthFiles : files().values()) {
+            for (ArchivedFile file : monthFiles) {
+                count += file.header.getRows();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Como {@link #iterator(FiscalDocumentFilterDto)}, pero sin armar los documentos.
+     *
+     * @return Cantidad de documentos archivados que cumplen el filtro
+     */
+    public long count(FiscalDocumentFilterDto filter) {
+        long count = 0;
+        for (List<ArchivedFile> monthFiles : files().values()) {
+            for (ArchivedFile file : monthFiles) {
+                if (file.header.overlaps(filter.getIssueDateFrom(), filter.getIssueDateTo())) {
+                    try {
+                        count += open(file).count(filter);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private int archiveMonth(YearMonth month) {
+        Path target = nextFile(month);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        archivingMonth = month;
+        try {
+            Integer archived = transactionTemplate.execute(status -> {
+                List<FiscalDocument> documents = fiscalDocumentArchiveRepository.lockMonth(month);
+                // Los que ya están en un archivo quedaron de un intento cuya transacción
+                // no se confirmó: solo falta borrarlos
+                Set<Long> alreadyArchived = archivedIds(month);
+                List<FiscalDocument> pending = new ArrayList<>(documents.size());
+                for (FiscalDocument document : documents) {
+                    if (!alreadyArchived.contains(document.getId())) {
+                        pending.add(document);
+                    }
+                }
+                try {
+                    if (!pending.isEmpty()) {
+                        Files.deleteIfExists(temp);
+                        FiscalDocumentArchiveFile.write(temp, month, pending);
+                    }
+                    fiscalDocumentArchiveRepository.delete(documents);
+                    // El archivo queda en su lugar antes de confirmar el borrado: si la
+                    // confirmación falla los documentos están en los dos lados, nunca en ninguno
+                    if (!pending.isEmpty()) {
+                        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return pending.size();
+            });
+            if (archived != null && archived > 0) {
+                addFile(target);
+            }
+            return archived != null ? archived : 0;
+        } finally {
+            archivingMonth = null;
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                System.err.println("No se pudo eliminar el archivo temporal " + temp + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private Set<Long> archivedIds(YearMonth month) {
+        Set<Long> ids = new HashSet<>();
+        List<ArchivedFile> monthFiles = files().get(month);
+        if (monthFiles != null) {
+            for (ArchivedFile file : monthFiles) {
+                try {
+                    for (long id : open(file).ids()) {
+                        ids.add(id);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        return ids;
+    }
+
+    // Documentos de los archivos de un mes que cumplen el filtro, en orden
+    private List<FiscalDocument> findInMonth(List<ArchivedFile> monthFiles, FiscalDocumentFilterDto filter) {
+        List<FiscalDocument> documents = new ArrayList<>();
+        for (ArchivedFile file : monthFiles) {
+            if (file.header.overlaps(filter.getIssueDateFrom(), filter.getIssueDateTo())) {
+                try {
+                    documents.addAll(open(file).find(filter));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        if (monthFiles.size() > 1) {
+            documents.sort(FiscalDocumentArchiveFile.ORDER);
+        }
+        return documents;
+    }
+
+    private FiscalDocumentArchiveFile open(ArchivedFile file) {
+        try {
+            return FiscalDocumentArchiveFile.open(file.path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path nextFile(YearMonth month) {
+        Path archiveDirectory = Paths.get(directory);
+        try {
+            Files.createDirectories(archiveDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<ArchivedFile> monthFiles = files().get(month);
+        int number = 1;
+        if (monthFiles != null) {
+            for (ArchivedFile file : monthFiles) {
+                number = Math.max(number, file.number + 1);
+            }
+        }
+        return archiveDirectory.resolve(String.format("fiscal-documents-%04d-%02d-%d.fda",
+                month.getYear(), month.getMonthValue(), number));
+    }
+
+    private void addFile(Path path) {
+        synchronized (archiveLock) {
+            NavigableMap<YearMonth, List<ArchivedFile>> updated = new TreeMap<>(files());
+            ArchivedFile file = readFile(path);
+            if (file != null) {
+                List<ArchivedFile> monthFiles = new ArrayList<>(updated.getOrDefault(file.header.getMonth(), List.of()));
+                monthFiles.add(file);
+                updated.put(file.header.getMonth(), List.copyOf(monthFiles));
+            }
+            files = Collections.unmodifiableNavigableMap(updated);
+        }
+    }
+
+    private NavigableMap<YearMonth, List<ArchivedFile>> files() {
+        NavigableMap<YearMonth, List<ArchivedFile>> current = files;
+        if (current == null) {
+            synchronized (archiveLock) {
+                current = files;
+                if (current == null) {
+                    current = Collections.unmodifiableNavigableMap(readFiles());
+                    files = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private NavigableMap<YearMonth, List<ArchivedFile>> readFiles() {
+        NavigableMap<YearMonth, List<ArchivedFile>> byMonth = new TreeMap<>();
+        Path archiveDirectory = Paths.get(directory);
+        if (!Files.isDirectory(archiveDirectory)) {
+            return byMonth;
+        }
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(archiveDirectory, "*.fda")) {
+            for (Path path : paths) {
+                ArchivedFile file = readFile(path);
+                if (file != null) {
+                    byMonth.computeIfAbsent(file.header.getMonth(), month -> new ArrayList<>()).add(file);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("No se pudo leer el histórico de documentos fiscales en " + archiveDirectory + ": "
+                    + e.getMessage());
+        }
+        byMonth.replaceAll((month, monthFiles) -> {
+            monthFiles.sort((a, b) -> Integer.compare(a.number, b.number));
+            return List.copyOf(monthFiles);
+        });
+        return byMonth;
+    }
+
+    // Null si el nombre o el contenido no son de un archivo del histórico
+    private ArchivedFile readFile(Path path) {
+        Matcher matcher = FILE_NAME.matcher(path.getFileName().toString());
+        if (!matcher.matches()) {
+            return null;
+        }
+        try {
+            return new ArchivedFile(path, Integer.parseInt(matcher.group(3)),
+                    FiscalDocumentArchiveFile.readHeader(path));
+        } catch (IOException e) {
+            System.err.println("Se omite el archivo del histórico " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static class ArchivedFile {
+
+        private final Path path;
+        private final int number;
+        private final FiscalDocumentArchiveFile.Header header;
+
+        ArchivedFile(Path path, int number, FiscalDocumentArchiveFile.Header header) {
+            this.path = path;
+            this.number = number;
+            this.header = header;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.pib2.servicios;
+
+import com.example.pib2.models.dtos.FiscalDocumentImportJobDto;
+import com.example.pib2.models.dtos.FiscalDocumentImportReportDto;
+import com.example.pib2.models.entities.FiscalDocumentImport;
+import com.example.pib2.repositories.FiscalDocumentImportRepository;
+import com.example.pib2.servicios.FiscalImport.FiscalDocumentFileFormat;
+import com.example.pib2.servicios.FiscalImport.FiscalDocumentImportJob;
+import com.example.pib2.servicios.FiscalImport.FiscalDocumentImportProgress;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ejecuta las importaciones de documentos fiscales en segundo plano y guarda su estado
+ * en memoria para que el cliente pueda consultar el avance.
+ *
+ * Cada archivo recibido queda registrado en fiscal_document_imports con el SHA-256 de
+ * su contenido. Si llega un archivo idéntico a uno ya importado sin bloques fallidos (o
+ * en curso) no se vuelve a procesar: se responde con una referencia a la importación
+ * anterior.
+ */
+@Service
+public class FiscalDocumentImportJobService {
+
+    private static final String DUPLICATE_STATUS = "DUPLICATE";
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    // Bytes que se piden en cada llamada a transferFrom al copiar el archivo subido
+    private static final long TRANSFER_SIZE = 8L * 1024 * 1024;
+
+    @Autowired
+    private FiscalDocumentService fiscalDocumentService;
+
+    @Autowired
+    private FiscalDocumentImportRepository fiscalDocumentImportRepository;
+
+    @Autowired
+    private FiscalDocumentAnalyticsService fiscalDocumentAnalyticsService;
+
+    @Autowired
+    private FiscalDocumentSearchService fiscalDocumentSearchService;
+
+    @Autowired
+    @Qualifier("fiscalImportExecutor")
+    private ThreadPoolTaskExecutor fiscalImportExecutor;
+
+    // Minutos que se conserva el estado de un trabajo terminado
+    @Value("${fiscal.import.job-retention-minutes:60}")
+    private long jobRetentionMinutes;
+
+    private final Map<String, FiscalDocumentImportJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Las importaciones que estaban en curso cuando se detuvo la aplicación no van a
+     * terminar; se marcan como fallidas para que el mismo archivo se pueda volver a subir.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedImports() {
+        try {
+            int interrupted = fiscalDocumentImportRepository.failUnfinished("Importación interrumpida por un reinicio");
+            if (interrupted > 0) {
+                System.err.println(interrupted + " importaciones de documentos fiscales quedaron interrumpidas");
+            }
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo actualizar el registro de importaciones: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copia el archivo a un temporal calculando su SHA-256 y encola su importación.
+     *
+     * La copia es necesaria porque el archivo subido deja de existir cuando termina
+     * la petición, antes de que el trabajo se ejecute.
+     *
+     * @param file El archivo subido
+     * @param format Formato del archivo, ya validado por quien lo recibe
+     * @return El estado inicial del trabajo, o uno con estado DUPLICATE y
+     *         {@code duplicateOf} si el mismo contenido ya se importó
+     * @throws TaskRejectedException si ya hay demasiadas importaciones en curso o en cola
+     */
+    public FiscalDocumentImportJobDto submit(MultipartFile file, FiscalDocumentFileFormat format) throws IOException {
+        removeExpiredJobs();
+
+        String filename = file.getOriginalFilename();
+        Path tempFile = Files.createTempFile("fiscal-import-", format.getExtension());
+        String contentHash;
+        try {
+            contentHash = copyAndHash(file, tempFile);
+        } catch (IOException e) {
+            deleteTempFile(tempFile);
+            throw e;
+        }
+
+        Optional<FiscalDocumentImport> previous = fiscalDocumentImportRepository
+                .findReusable(contentHash, Limit.of(1)).stream().findFirst();
+        if (previous.isPresent()) {
+            deleteTempFile(tempFile);
+            FiscalDocumentImportJobDto dto = new FiscalDocumentImportJobDto();
+            dto.setFilename(filename);
+            dto.setStatus(DUPLICATE_STATUS);
+            dto.setContentHash(contentHash);
+            dto.setDuplicateOf(previous.get().getJobId());
+            return dto;
+        }
+
+        FiscalDocumentImportJob job = new FiscalDocumentImportJob(UUID.randomUUID().toString(), filename);
+        FiscalDocumentImport ledgerEntry = new FiscalDocumentImport();
+        ledgerEntry.setJobId(job.getId());
+        ledgerEntry.setContentHash(contentHash);
+        ledgerEntry.setFilename(filename);
+        ledgerEntry.setFileSize(file.getSize());
+        ledgerEntry.setStatus(job.getStatus().name());
+        Long ledgerId = fiscalDocumentImportRepository.save(ledgerEntry).getId();
+
+        jobs.put(job.getId(), job);
+        try {
+            fiscalImportExecutor.execute(() -> run(job, ledgerId, tempFile, format));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.getId());
+            fiscalDocumentImportRepository.deleteById(ledgerId);
+            deleteTempFile(tempFile);
+            throw e;
+        }
+
+        FiscalDocumentImportJobDto dto = toDto(job);
+        dto.setContentHash(contentHash);
+        return dto;
+    }
+
+    /**
+     * @param id ID del trabajo
+     * @return El estado del trabajo; si ya no está en memoria, el que quedó en el
+     *         registro de importaciones (sin el detalle por bloques). Null si no existe
+     */
+    public FiscalDocumentImportJobDto getJob(String id) {
+        FiscalDocumentImportJob job = jobs.get(id);
+        if (job != null) {
+            return toDto(job);
+        }
+        return fiscalDocumentImportRepository.findByJobId(id).map(this::toDto).orElse(null);
+    }
+
+    /**
+     * @param id ID del trabajo
+     * @return El ID del registro de importaciones del trabajo, con el que se marcan sus
+     *         documentos. Null si no existe
+     */
+    public Long getImportId(String id) {
+        return fiscalDocumentImportRepository.findByJobId(id).map(FiscalDocumentImport::getId).orElse(null);
+    }
+
+    private void run(FiscalDocumentImportJob job, Long ledgerId, Path tempFile, FiscalDocumentFileFormat format) {
+        job.start();
+        updateLedger(ledgerId, job);
+        try {
+            FiscalDocumentImportReportDto report = fiscalDocumentService.processFile(
+                    tempFile, job.getFilename(), format, ledgerId, job.getProgress());
+            // La caché de análisis y la búsqueda quedan al día antes de informar que la importación terminó
+            fiscalDocumentAnalyticsService.refreshImport(ledgerId);
+            fiscalDocumentSearchService.refresh();
+            job.complete(report);
+        } catch (Exception e) {
+            System.err.println("Error en la importación " + job.getId() + " (" + job.getFilename() + "): " + e.getMessage());
+            // Los bloques confirmados antes del error quedan guardados
+            fiscalDocumentAnalyticsService.refreshImport(ledgerId);
+            fiscalDocumentSearchService.refresh();
+            job.fail(e.getMessage());
+        } finally {
+            deleteTempFile(tempFile);
+        }
+        updateLedger(ledgerId, job);
+    }
+
+    /**
+     * Escribe el archivo subido en el temporal con FileChannel.transferFrom, que copia
+     * directamente del canal de origen al archivo, y calcula el SHA-256 en la misma pasada.
+     *
+     * @return El SHA-256 del contenido en hexadecimal
+     */
+    private String copyAndHash(MultipartFile file, Path target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible", e);
+        }
+        try (ReadableByteChannel source = Channels.newChannel(new DigestInputStream(file.getInputStream(), digest));
+             FileChannel destination = FileChannel.open(target, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            long transferred;
+            while ((transferred = destination.transferFrom(source, position, TRANSFER_SIZE)) > 0) {
+                position += transferred;
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void updateLedger(Long ledgerId, FiscalDocumentImportJob job) {
+        try {
+            fiscalDocumentImportRepository.findById(ledgerId).ifPresent(ledgerEntry -> {
+                FiscalDocumentImportProgress progress = job.getProgress();
+                ledgerEntry.setStatus(job.getStatus().name());
+                ledgerEntry.setRowsRead(progress.getRowsRead());
+                ledgerEntry.setInserted(progress.getInserted());
+                ledgerEntry.setUpdated(progress.getUpdated());
+                ledgerEntry.setDuplicates(progress.getDuplicates());
+                ledgerEntry.setRejected(progress.getRejected());
+                ledgerEntry.setFailed(progress.getFailed());
+                ledgerEntry.setFinishedAt(job.getFinishedAt());
+                String error = job.getError();
+                ledgerEntry.setError(error != null && error.length() > MAX_ERROR_LENGTH
+                        ? error.substring(0, MAX_ERROR_LENGTH) : error);
+                fiscalDocumentImportRepository.save(ledgerEntry);
+            });
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo actualizar el registro de la importación " + job.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private void removeExpiredJobs() {
+        LocalDateTime limit = LocalDateTime.now().minusMinutes(jobRetentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(limit));
+    }
+
+    private void deleteTempFile(Path tempFile) {
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            System.err.println("No se pudo eliminar el archivo temporal " + tempFile + ": " + e.getMessage());
+        }
+    }
+
+    private FiscalDocumentImportJobDto toDto(FiscalDocumentImportJob job) {
+        FiscalDocumentImportProgress progress = job.getProgress();
+        FiscalDocumentImportJobDto dto = new FiscalDocumentImportJobDto();
+        dto.setId(job.getId());
+        dto.setFilename(job.getFilename());
+        dto.setStatus(job.getStatus().name());
+        dto.setCreatedAt(job.getCreatedAt());
+        dto.setStartedAt(job.getStartedAt());
+        dto.setFinishedAt(job.getFinishedAt());
+        dto.setRowsRead(progress.getRowsRead());
+        dto.setPersisted(progress.getPersisted());
+        dto.setInserted(progress.getInserted());
+        dto.setUpdated(progress.getUpdated());
+        dto.setDuplicates(progress.getDuplicates());
+        dto.setRejected(progress.getRejected());
+        dto.setFailed(progress.getFailed());
+        dto.setRowsPerSecond(job.getRowsPerSecond());
+        dto.setError(job.getError());
+        dto.setReport(job.getReport());
+        return dto;
+    }
+
+    private FiscalDocumentImportJobDto toDto(FiscalDocumentImport ledgerEntry) {
+        FiscalDocumentImportJobDto dto = new FiscalDocumentImportJobDto();
+        dto.setId(ledgerEntry.getJobId());
+        dto.setFilename(ledgerEntry.getFilename());
+        dto.setStatus(ledgerEntry.getStatus());
+        dto.setContentHash(ledgerEntry.getContentHash());
+        dto.setCreatedAt(ledgerEntry.getCreatedAt());
+        dto.setFinishedAt(ledgerEntry.getFinishedAt());
+        dto.setRowsRead(ledgerEntry.getRowsRead());
+        dto.setInserted(ledgerEntry.getInserted());
+        dto.setUpdated(ledgerEntry.getUpdated());
+        dto.setDuplicates(ledgerEntry.getDuplicates());
+        dto.setPersisted(ledgerEntry.getInserted() + ledgerEntry.getUpdated() + ledgerEntry.getDuplicates());
+        dto.setRejected(ledgerEntry.getRejected());
+        dto.setFailed(ledgerEntry.getFailed());
+        dto.setError(ledgerEntry.getError());
+        return dto;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.pib2.servicios;
+
+import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.repositories.FiscalDocumentPartitionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Particiones mensuales de fiscal_documents en PostgreSQL
+ * (ver {@link FiscalDocumentPartitionRepository}).
+ *
+ * Al arrancar crea la tabla particionada, o convierte la que creó ddl-auto, y las
+ * particiones del mes actual y de los {@code fiscal.documents.partition-months-ahead}
+ * meses siguientes. Las importaciones crean antes de cada bloque las particiones de los
+ * meses anteriores que todavía no existen, por ejemplo al cargar documentos históricos.
+ *
+ * Los meses posteriores a esa ventana no se crean al importar, para que una fecha mal
+ * escrita no deje una partición vacía por cada año futuro: esos documentos quedan en la
+ * partición por defecto hasta que su mes entre en la ventana y la aplicación se reinicie.
+ */
+@Service
+public class FiscalDocumentPartitionService {
+
+    @Autowired
+    private FiscalDocumentPartitionRepository fiscalDocumentPartitionRepository;
+
+    @Value("${fiscal.documents.partition-months-ahead:3}")
+    private int monthsAhead;
+
+    // Tiempo máximo de espera por los bloqueos al adjuntar una partición
+    @Value("${fiscal.documents.partition-lock-timeout-ms:5000}")
+    private long lockTimeoutMillis;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Meses con partición y meses cuya creación falló (no se reintentan hasta reiniciar)
+    private final Set<YearMonth> knownMonths = ConcurrentHashMap.newKeySet();
+
+    // False en H2 o mientras no se prepara la tabla: no hay particiones que crear
+    private volatile boolean partitioned;
+
+    @Autowired
+    public FiscalDocumentPartitionService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Prepara la tabla particionada. Solo debe llamarse en PostgreSQL.
+     *
+     * @return La cantidad de documentos repetidos que se borraron al convertir la tabla
+     *         (ver {@link FiscalDocumentPartitionRepository#deleteRepeatedDocuments})
+     */
+    public int initialize() {
+        int repeated = 0;
+        YearMonth lastMonth = lastMonth();
+        String kind = transactionTemplate.execute(status -> fiscalDocumentPartitionRepository.findTableKind());
+        if (kind == null) {
+            List<YearMonth> months = new ArrayList<>();
+            for (YearMonth month = YearMonth.now(); !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+                months.add(month);
+            }
+            transactionTemplate.executeWithoutResult(status -> fiscalDocumentPartitionRepository.createTable(months));
+            System.out.println("Tabla fiscal_documents creada con particiones mensuales hasta " + lastMonth);
+        } else if ("r".equals(kind)) {
+            long startNanos = System.nanoTime();
+            // Sin borrar antes los repetidos la restricción única de la tabla nueva fallaría
+            // después de copiarla entera, y la conversión se desharía en cada arranque
+            int[] counts = transactionTemplate.execute(status -> new int[] {
+                    fiscalDocumentPartitionRepository.deleteRepeatedDocuments(),
+                    fiscalDocumentPartitionRepository.migrateUnpartitionedTable(lastMonth)});
+            repeated = counts[0];
+            System.out.println("Tabla fiscal_documents convertida a particiones mensuales: " + counts[1]
+                    + " documentos en " + (System.nanoTime() - startNanos) / 1_000_000
+                    + " ms; documentos repetidos borrados: " + repeated);
+        }
+
+        knownMonths.addAll(transactionTemplate.execute(status ->
+                fiscalDocumentPartitionRepository.findPartitionMonths()));
+        partitioned = true;
+
+        // Meses de la ventana que faltan, y los que quedaron en la partición por defecto
+        // porque su creación falló o su mes estaba fuera de la ventana
+        List<YearMonth> inDefaultPartition = transactionTemplate.execute(status ->
+                fiscalDocumentPartitionRepository.findMonthsInDefaultPartition(lastMonth));
+        Set<YearMonth> months = new TreeSet<>(inDefaultPartition);
+        for (YearMonth month = YearMonth.now(); !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            months.add(month);
+        }
+        createMissing(months);
+        return repeated;
+    }
+
+    /**
+     * Crea, cada una en su propia transacción, las particiones que faltan para los
+     * documentos. Si una no se puede crear sus documentos van a la partición por defecto.
+     *
+     * @param documents Documentos que se van a guardar
+     */
+    public void ensurePartitions(Collection<FiscalDocument> documents) {
+        if (!partitioned) {
+            return;
+        }
+        YearMonth lastMonth = lastMonth();
+        Set<YearMonth> months = new TreeSet<>();
+        for (FiscalDocument document : documents) {
+            if (document.getIssueDate() != null) {
+                YearMonth month = YearMonth.from(document.getIssueDate());
+                if (!knownMonths.contains(month) && !month.isAfter(lastMonth)) {
+                    months.add(month);
+                }
+            }
+        }
+        createMissing(months);
+    }
+
+    /**
+     * Borra la partición de un mes que quedó vacía, en su propia transacción. Sin
+     * particiones no hace nada; si no se puede borrar solo lo informa.
+     */
+    public void dropIfEmpty(YearMonth month) {
+        if (!partitioned) {
+            return;
+        }
+        try {
+            Boolean dropped = transactionTemplate.execute(status ->
+                    fiscalDocumentPartitionRepository.dropPartitionIfEmpty(month, lockTimeoutMillis));
+            if (Boolean.TRUE.equals(dropped)) {
+                // Si vuelven a llegar documentos del mes se crea otra vez
+                knownMonths.remove(month);
+                System.out.println("Partición de fiscal_documents borrada para " + month);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("No se pudo borrar la partición de fiscal_documents para " + month + ": "
+                    + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+    }
+
+    private void createMissing(Set<YearMonth> months) {
+        for (YearMonth month : months) {
+            if (knownMonths.contains(month)) {
+                continue;
+            }
+            try {
+                Boolean created = transactionTemplate.execute(status ->
+                        fiscalDocumentPartitionRepository.createPartition(month, lockTimeoutMillis));
+                if (Boolean.TRUE.equals(created)) {
+                    System.out.println("Partición de fiscal_documents creada para " + month);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("No se pudo crear la partición de fiscal_documents para " + month + ": "
+                        + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            }
+            knownMonths.add(month);
+        }
+    }
+
+    private YearMonth lastMonth() {
+        return YearMonth.now().plusMonths(monthsAhead);
+    }
+}
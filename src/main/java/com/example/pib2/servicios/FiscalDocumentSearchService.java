@@ -0,0 +1,174 @@
+package com.example.pib2.servicios;
+
+import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.models.entities.FiscalDocumentName;
+import com.example.pib2.repositories.FiscalDocumentKeysetRepository;
+import com.example.pib2.repositories.FiscalDocumentNameRepository;
+import com.example.pib2.servicios.FiscalSearch.FiscalDocumentNameIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Búsqueda de documentos fiscales por parte del nombre del emisor o del receptor.
+ *
+ * La búsqueda no recorre fiscal_documents: primero busca en el directorio de nombres
+ * (fiscal_document_names, una fila por empresa) los que contienen todas las palabras,
+ * del más parecido al texto al menos parecido, y después lee los documentos más
+ * recientes de cada nombre por el índice de su NIT, hasta completar el límite.
+ *
+ * En PostgreSQL el directorio se busca con el índice GIN de trigramas de pg_trgm. Si la
+ * extensión no está disponible, o en H2, se busca en un índice de trigramas en memoria
+ * ({@link FiscalDocumentNameIndex}) que se carga al arrancar y se actualiza al terminar
+ * cada importación.
+ *
+ * Solo encuentra los documentos de fiscal_documents, no los del histórico.
+ */
+@Service
+public class FiscalDocumentSearchService {
+
+    public static final int MAX_RESULTS = 100;
+
+    // Nombres que se revisan como máximo por cada documento pedido: los nombres que ya
+    // no tienen documentos (se archivaron o cambiaron) no aportan resultados
+    private static final int NAMES_PER_RESULT = 5;
+
+    // Nombres que se agregan al índice en memoria por vez
+    private static final int BATCH_SIZE = 4096;
+
+    @Autowired
+    private FiscalDocumentNameRepository fiscalDocumentNameRepository;
+
+    @Autowired
+    private FiscalDocumentKeysetRepository fiscalDocumentKeysetRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final FiscalDocumentNameIndex nameIndex = new FiscalDocumentNameIndex();
+
+    // Una actualización del índice en memoria a la vez
+    private final Object refreshLock = new Object();
+
+    // True en PostgreSQL con pg_trgm: el directorio se busca en la base de datos
+    private volatile boolean trigramIndex;
+
+    @Autowired
+    public FiscalDocumentSearchService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Llena el directorio si está vacío y hay documentos, como la primera vez que se
+     * ejecuta sobre una base de datos con importaciones anteriores, y prepara el
+     * índice de trigramas que corresponda.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            if (Boolean.TRUE.equals(transactionTemplate.execute(status -> fiscalDocumentNameRepository.needsRebuild()))) {
+                Long names = transactionTemplate.execute(status -> fiscalDocumentNameRepository.rebuild());
+                System.out.println("Directorio de nombres de documentos fiscales creado: " + names + " nombres");
+            }
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo crear el directorio de nombres de documentos fiscales: " + e.getMessage());
+        }
+
+        if (fiscalDocumentNameRepository.isPostgreSql()) {
+            try {
+                fiscalDocumentNameRepository.createTrigramIndex();
+                trigramIndex = true;
+                return;
+            } catch (DataAccessException e) {
+                System.err.println("No se pudo crear el índice pg_trgm de fiscal_document_names, la búsqueda por "
+                        + "nombre usa el índice en memoria: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+            }
+        }
+        long startNanos = System.nanoTime();
+        refresh();
+        System.out.println("Índice de nombres de documentos fiscales cargado: " + nameIndex.size() + " nombres en "
+                + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Agrega al índice en memoria los nombres que las importaciones agregaron al
+     * directorio. Con pg_trgm no hace nada.
+     */
+    public void refresh() {
+        if (trigramIndex) {
+            return;
+        }
+        synchronized (refreshLock) {
+            try {
+                List<FiscalDocumentName> batch = new ArrayList<>(BATCH_SIZE);
+                fiscalDocumentNameRepository.forEachNameAfter(nameIndex.getLastId(), name -> {
+                    batch.add(name);
+                    if (batch.size() == BATCH_SIZE) {
+                        nameIndex.addAll(batch);
+                        batch.clear();
+                    }
+                });
+                nameIndex.addAll(batch);
+            } catch (DataAccessException e) {
+                // Si es al terminar una importación, esta no debe marcarse como fallida
+                System.err.println("No se pudo actualizar el índice de nombres de documentos fiscales: "
+                        + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @param text Palabras buscadas; cada una debe aparecer en el nombre, sin distinguir
+     *             mayúsculas
+     * @param role {@link FiscalDocumentName#ISSUER} o {@link FiscalDocumentName#RECEIVER}
+     *             para buscar solo en ese nombre, o null para los dos
+     * @param limit Cantidad máxima de documentos, hasta {@value #MAX_RESULTS}
+     * @return Los documentos del nombre más parecido al texto primero y, de cada nombre,
+     *         del más reciente al más antiguo
+     * @throws IllegalArgumentException si el texto no tiene ninguna palabra de
+     *                                  {@value FiscalDocumentNameIndex#MIN_WORD_LENGTH} caracteres
+     */
+    @Transactional(readOnly = true)
+    public List<FiscalDocument> search(String text, String role, int limit) {
+        List<String> words = FiscalDocumentNameIndex.words(text);
+        String normalized = String.join(" ", words);
+
+        // Por ID: un documento puede aparecer por su emisor y por su receptor
+        Map<Long, FiscalDocument> documents = new LinkedHashMap<>();
+        int offset = 0;
+        while (documents.size() < limit && offset < limit * NAMES_PER_RESULT) {
+            List<FiscalDocumentName> names = findNames(words, role, normalized, offset, limit);
+            for (FiscalDocumentName name : names) {
+                if (documents.size() == limit) {
+                    break;
+                }
+                for (FiscalDocument document : fiscalDocumentKeysetRepository.findLatestByName(
+                        name.getRole(), name.getNit(), name.getName(), limit - documents.size())) {
+                    documents.putIfAbsent(document.getId(), document);
+                }
+            }
+            if (names.size() < limit) {
+                break;
+            }
+            offset += names.size();
+        }
+        return new ArrayList<>(documents.values());
+    }
+
+    private List<FiscalDocumentName> findNames(List<String> words, String role, String text, int offset, int limit) {
+        if (trigramIndex) {
+            return fiscalDocumentNameRepository.findMatching(words, role, text, offset, limit);
+        }
+        return nameIndex.find(words, role, text, offset, limit);
+    }
+}
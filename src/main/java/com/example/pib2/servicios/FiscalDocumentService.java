@@ -1,23 +1,50 @@
 package com.example.pib2.servicios;
 
+import com.example.pib2.config.FiscalImportConfig;
+import com.example.pib2.models.dtos.FiscalDocumentDto;
+import com.example.pib2.models.dtos.FiscalDocumentFilterDto;
+import com.example.pib2.models.dtos.FiscalDocumentImportChunkDto;
+import com.example.pib2.models.dtos.FiscalDocumentImportReportDto;
+import com.example.pib2.models.dtos.FiscalDocumentValidationErrorDto;
+import com.example.pib2.models.dtos.FiscalDocumentValidationSummaryDto;
 import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.repositories.FiscalDocumentKeysetRepository;
 import com.example.pib2.repositories.FiscalDocumentRepository;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import com.example.pib2.servicios.FiscalImport.ColombianAmountParser;
+import com.example.pib2.servicios.FiscalImport.CsvRowReader;
+import com.example.pib2.servicios.FiscalImport.ExcelRowReader;
+import com.example.pib2.servicios.FiscalImport.FiscalDateParser;
+import com.example.pib2.servicios.FiscalImport.FiscalDocumentFileFormat;
+import com.example.pib2.servicios.FiscalImport.FiscalDocumentChunkWriter;
+import com.example.pib2.servicios.FiscalImport.FiscalDocumentExcelWriter;
+import com.example.pib2.servicios.FiscalImport.FiscalDocumentImportProgress;
+import com.example.pib2.servicios.FiscalImport.RowMappingPipeline;
+import com.example.pib2.servicios.FiscalImport.SpreadsheetRow;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.time.YearMonth;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Service
 public class FiscalDocumentService {
@@ -25,19 +52,53 @@ public class FiscalDocumentService {
     @Autowired
     private FiscalDocumentRepository fiscalDocumentRepository;
 
-    // Formato específico para Fecha Emisión: dd-MM-yyyy (ej: 30-10-2025)
-    private static final DateTimeFormatter ISSUE_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy");
-    
-    // Formato específico para Fecha Recepción: dd-MM-yyyy HH:mm:ss (ej: 30-10-2025 14:30:45)
-    private static final DateTimeFormatter RECEPTION_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
-    
-    private static final DateTimeFormatter[] DATE_FORMATTERS = {
-            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
-            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
-            DateTimeFormatter.ofPattern("MM/dd/yyyy"),
-            DateTimeFormatter.ofPattern("dd-MM-yyyy"),
-            DateTimeFormatter.ofPattern("yyyy/MM/dd")
-    };
+    @Autowired
+    private FiscalDocumentKeysetRepository fiscalDocumentKeysetRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ExcelRowReader excelRowReader;
+
+    @Autowired
+    private CsvRowReader csvRowReader;
+
+    @Autowired
+    private FiscalDocumentChunkWriter fiscalDocumentChunkWriter;
+
+    @Autowired
+    private FiscalDocumentArchiveService fiscalDocumentArchiveService;
+
+    @Autowired
+    @Qualifier("fiscalImportMappingExecutor")
+    private ThreadPoolTaskExecutor fiscalImportMappingExecutor;
+
+    @Autowired
+    @Qualifier("fiscalImportWriterExecutor")
+    private ThreadPoolTaskExecutor fiscalImportWriterExecutor;
+
+    // Cantidad de documentos que se guardan por transacción durante una importación
+    @Value("${fiscal.import.chunk-size:1000}")
+    private int chunkSize;
+
+    // Hilos que convierten filas en documentos; 0 para convertir en el mismo hilo que lee
+    private final int mappingThreads;
+
+    // Filas por lote enviado a los hilos de conversión
+    private static final int MAPPING_BATCH_SIZE = 256;
+
+    // Lotes en conversión o esperando al escritor, por cada hilo de conversión
+    private static final int PENDING_BATCHES_PER_THREAD = 4;
+
+    public FiscalDocumentService(@Value("${fiscal.import.mapping-threads:-1}") int mappingThreads) {
+        this.mappingThreads = FiscalImportConfig.mappingThreads(mappingThreads);
+    }
+
+    // Orden de /query: Fecha Emisión e ID, los documentos sin fecha al final
+    private static final Comparator<FiscalDocument> QUERY_ORDER = Comparator
+            .comparing(FiscalDocument::getIssueDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(FiscalDocument::getId);
 
     // Nombres esperados de las columnas en el orden correcto
     private static final List<String> EXPECTED_COLUMNS = Arrays.asList(
@@ -75,63 +136,351 @@ public class FiscalDocumentService {
             "Grupo"
     );
 
-    @Transactional
-    public List<FiscalDocument> processExcelFile(MultipartFile file) throws Exception {
-        List<FiscalDocument> documents = new ArrayList<>();
+    // Columnas de montos que se totalizan en el resumen, desde IVA (índice 13) hasta Total
+    private static final int FIRST_AMOUNT_COLUMN = 13;
+    private static final List<Function<FiscalDocument, BigDecimal>> AMOUNTS = List.of(
+            FiscalDocument::getIva,
+            FiscalDocument::getIca,
+            FiscalDocument::getIc,
+            FiscalDocument::getInc,
+            FiscalDocument::getTimbre,
+            FiscalDocument::getIncBags,
+            FiscalDocument::getInCarbon,
+            FiscalDocument::getInFuels,
+            FiscalDocument::getIcData,
+            FiscalDocument::getIcl,
+            FiscalDocument::getInpp,
+            FiscalDocument::getIbua,
+            FiscalDocument::getIcui,
+            FiscalDocument::getReteIva,
+            FiscalDocument::getReteRent,
+            FiscalDocument::getReteIca,
+            FiscalDocument::getTotal
+    );
+
+    /**
+     * Importa un archivo Excel o CSV de documentos fiscales.
+     *
+     * Las filas se leen una a una y se guardan en bloques de {@code fiscal.import.chunk-size}
+     * documentos, cada uno en su propia transacción. Si un bloque falla, los bloques ya
+     * guardados se conservan y la importación continúa con el siguiente.
+     *
+     * Con {@code fiscal.import.mapping-threads} mayor que cero la conversión de filas a
+     * documentos se reparte entre varios hilos mientras un hilo escritor guarda los bloques
+     * en el orden del archivo; el resultado es el mismo que en modo secuencial.
+     *
+     * El resumen no incluye los documentos: se guardan con el ID de la importación y se
+     * pueden recorrer después con {@link #forEachImportedDocument}.
+     *
+     * @param file Ruta del archivo (.xlsx, .xls o .csv) en disco
+     * @param filename Nombre original del archivo
+     * @param format Formato del archivo
+     * @param importId ID del registro de la importación, que se guarda en cada documento; puede ser null
+     * @param progress Contadores que se actualizan a medida que avanza la importación
+     * @return El resumen de la importación con el resultado de cada bloque
+     */
+    public FiscalDocumentImportReportDto processFile(Path file, String filename, FiscalDocumentFileFormat format,
+                                                     Long importId, FiscalDocumentImportProgress progress)
+            throws Exception {
+        DocumentRowHandler rowHandler = new DocumentRowHandler(filename, importId, progress, null);
+        readRows(file, format, rowHandler);
+
+        // Guardar el último bloque incompleto
+        return rowHandler.finish();
+    }
 
-        String filename = file.getOriginalFilename();
-        Workbook workbook;
+    /**
+     * Valida un archivo Excel o CSV de documentos fiscales sin guardar nada: aplica las
+     * mismas validaciones de encabezados y celdas que la importación y entrega los
+     * problemas de cada fila a medida que se leen, en el orden del archivo.
+     *
+     * Las filas se convierten en el hilo que llama, sin {@code fiscal.import.mapping-threads}:
+     * los hilos de conversión y el escritor de cada importación están dimensionados para
+     * las importaciones en curso, y las validaciones, que no tienen límite, los ocuparían.
+     *
+     * @param file Ruta del archivo (.xlsx, .xls o .csv) en disco
+     * @param filename Nombre original del archivo
+     * @param format Formato del archivo
+     * @param errors Recibe cada problema encontrado
+     * @return El resumen de la validación
+     * @throws IllegalArgumentException si los encabezados no coinciden
+     */
+    public FiscalDocumentValidationSummaryDto validateFile(Path file, String filename, FiscalDocumentFileFormat format,
+                                                           Consumer<FiscalDocumentValidationErrorDto> errors)
+            throws Exception {
+        DocumentRowHandler rowHandler = new DocumentRowHandler(filename, null, new FiscalDocumentImportProgress(), errors);
+        readRows(file, format, rowHandler);
+        return rowHandler.finishValidation();
+    }
+
+    private void readRows(Path file, FiscalDocumentFileFormat format, DocumentRowHandler rowHandler) throws Exception {
+        // Leer la primera hoja (o el texto delimitado) fila por fila
+        try {
+            switch (format) {
+                case XLSX -> excelRowReader.readXlsx(file.toFile(), EXPECTED_COLUMNS.size(), rowHandler);
+                case XLS -> excelRowReader.readXls(file.toFile(), EXPECTED_COLUMNS.size(), rowHandler);
+                case CSV -> csvRowReader.read(file.toFile(), EXPECTED_COLUMNS.size(), rowHandler);
+            }
+        } catch (Exception e) {
+            rowHandler.abort();
+            throw e;
+        }
 
-        // Determinar el tipo de archivo Excel
-        if (filename != null && filename.endsWith(".xlsx")) {
-            workbook = new XSSFWorkbook(file.getInputStream());
-        } else if (filename != null && filename.endsWith(".xls")) {
-            workbook = new HSSFWorkbook(file.getInputStream());
-        } else {
-            throw new IllegalArgumentException("El archivo debe ser un Excel (.xlsx o .xls)");
+        // Una hoja vacía no tiene fila de encabezados
+        if (!rowHandler.isHeaderValidated()) {
+            validateHeader(null);
         }
+    }
 
-        try (workbook) {
-            Sheet sheet = workbook.getSheetAt(0);
+    /**
+     * Recibe las filas del lector en orden: valida la primera como encabezado,
+     * convierte las siguientes en documentos y los guarda por bloques. En una
+     * validación, en lugar de guardarlos reporta los problemas de cada fila.
+     *
+     * En una importación la conversión ({@link #map}) puede correr en varios hilos; la escritura
+     * ({@link #write}) siempre recibe las filas en orden desde un único hilo.
+     */
+    private class DocumentRowHandler implements Consumer<SpreadsheetRow> {
+
+        private final FiscalDocumentImportReportDto report = new FiscalDocumentImportReportDto();
+        private final long startNanos = System.nanoTime();
+        private final Long importId;
+        private final FiscalDocumentImportProgress progress;
+        // Null en una importación; en una validación recibe los problemas en lugar de guardar
+        private final Consumer<FiscalDocumentValidationErrorDto> validationErrors;
+        // Las fechas se repiten mucho dentro de un mismo archivo
+        private final FiscalDateParser dateParser = new FiscalDateParser();
+        private RowMappingPipeline<MappedRow> pipeline;
+        private List<FiscalDocument> chunk = new ArrayList<>(chunkSize);
+        private int chunkFirstRow;
+        private int lastRow;
+        private boolean headerValidated;
+        private long rowsWithErrors;
+        private long errorCount;
+        // Suma de cada columna de AMOUNTS en los bloques guardados
+        private final BigDecimal[] totals = new BigDecimal[AMOUNTS.size()];
+
+        DocumentRowHandler(String filename, Long importId, FiscalDocumentImportProgress progress,
+                           Consumer<FiscalDocumentValidationErrorDto> validationErrors) {
+            this.importId = importId;
+            this.progress = progress;
+            Arrays.fill(totals, BigDecimal.ZERO);
+            this.validationErrors = validationErrors;
+            report.setFilename(filename);
+            report.setChunkSize(chunkSize);
+        }
 
-            // Validar los nombres de las columnas en el encabezado
-            validateHeader(sheet);
+        @Override
+        public void accept(SpreadsheetRow row) {
+            if (!headerValidated) {
+                // La primera fila de la hoja debe ser la de encabezados
+                validateHeader(row.getRowNum() == 0 ? row : null);
+                headerValidated = true;
+                // Solo en una importación (ver validateFile)
+                if (mappingThreads > 0 && validationErrors == null) {
+                    pipeline = new RowMappingPipeline<>(fiscalImportMappingExecutor, fiscalImportWriterExecutor,
+                            MAPPING_BATCH_SIZE, mappingThreads * PENDING_BATCHES_PER_THREAD, this::map, this::write);
+                }
+                return;
+            }
 
-            // Saltar la primera fila (encabezados)
-            int startRow = 1;
+            if (pipeline != null) {
+                pipeline.accept(row);
+            } else {
+                write(map(row));
+            }
+        }
 
-            for (int rowIndex = startRow; rowIndex <= sheet.getLastRowNum(); rowIndex++) {
-                Row row = sheet.getRow(rowIndex);
-                if (row == null) {
-                    continue;
+        boolean isHeaderValidated() {
+            return headerValidated;
+        }
+
+        void abort() {
+            if (pipeline != null) {
+                pipeline.abort();
+            }
+        }
+
+        FiscalDocumentImportReportDto finish() throws Exception {
+            if (pipeline != null) {
+                pipeline.finish();
+            }
+            if (!chunk.isEmpty()) {
+                writeChunk();
+            }
+            report.setRowsRead(progress.getRowsRead());
+            report.setRejected(progress.getRejected());
+            report.setPersisted(progress.getPersisted());
+            report.setInserted(progress.getInserted());
+            report.setUpdated(progress.getUpdated());
+            report.setDuplicates(progress.getDuplicates());
+            report.setFailed(progress.getFailed());
+            for (int i = 0; i < totals.length; i++) {
+                report.getTotals().put(EXPECTED_COLUMNS.get(FIRST_AMOUNT_COLUMN + i), totals[i]);
+            }
+            if (importId != null) {
+                report.setFirstId(fiscalDocumentRepository.findFirstIdByImportId(importId));
+                report.setLastId(fiscalDocumentRepository.findLastIdByImportId(importId));
+            }
+            report.setDurationMillis((System.nanoTime() - startNanos) / 1_000_000);
+            return report;
+        }
+
+        FiscalDocumentValidationSummaryDto finishValidation() throws Exception {
+            if (pipeline != null) {
+                pipeline.finish();
+            }
+            FiscalDocumentValidationSummaryDto summary = new FiscalDocumentValidationSummaryDto();
+            summary.setFilename(report.getFilename());
+            summary.setValid(errorCount == 0);
+            summary.setRowsRead(progress.getRowsRead());
+            summary.setRejected(progress.getRejected());
+            summary.setRowsWithErrors(rowsWithErrors);
+            summary.setErrors(errorCount);
+            return summary;
+        }
+
+        private MappedRow map(SpreadsheetRow row) {
+            RowErrors cellErrors = new RowErrors(row.getRowNum());
+            try {
+                FiscalDocument document = mapRowToDocument(row, dateParser, cellErrors);
+                if (fiscalDocumentArchiveService.isArchived(document.getIssueDate())) {
+                    return new MappedRow(row.getRowNum(), null, "El período "
+                            + YearMonth.from(document.getIssueDate()) + " está cerrado y archivado", cellErrors.errors);
                 }
+                return new MappedRow(row.getRowNum(), document, null, cellErrors.errors);
+            } catch (Exception e) {
+                return new MappedRow(row.getRowNum(), null, e.getMessage(), cellErrors.errors);
+            }
+        }
+
+        private void write(MappedRow row) {
+            progress.rowRead();
+            if (validationErrors != null) {
+                report(row);
+                return;
+            }
 
-                FiscalDocument document = mapRowToDocument(row);
-                if (document != null) {
-                    documents.add(document);
+            if (row.cellErrors != null) {
+                for (FiscalDocumentValidationErrorDto cellError : row.cellErrors) {
+                    System.err.println(cellError.getValue() != null
+                            ? cellError.getError() + ": " + cellError.getValue()
+                            : cellError.getError());
                 }
             }
+            if (row.document == null) {
+                // Log error y descartar la fila
+                System.err.println("Error procesando fila " + row.rowNum + ": " + row.error);
+                progress.rowRejected();
+                return;
+            }
 
-            // Guardar todos los documentos en la base de datos
-            return fiscalDocumentRepository.saveAll(documents);
+            // Filas numeradas como en Excel
+            lastRow = row.rowNum + 1;
+            if (chunk.isEmpty()) {
+                chunkFirstRow = lastRow;
+            }
+            row.document.setImportId(importId);
+            chunk.add(row.document);
+            if (chunk.size() >= chunkSize) {
+                writeChunk();
+            }
+        }
+
+        private void report(MappedRow row) {
+            if (row.cellErrors == null && row.document != null) {
+                return;
+            }
+            rowsWithErrors++;
+            if (row.cellErrors != null) {
+                for (FiscalDocumentValidationErrorDto cellError : row.cellErrors) {
+                    errorCount++;
+                    validationErrors.accept(cellError);
+                }
+            }
+            if (row.document == null) {
+                errorCount++;
+                progress.rowRejected();
+                validationErrors.accept(new FiscalDocumentValidationErrorDto(row.rowNum + 1, null, null, row.error));
+            }
+        }
+
+        private void writeChunk() {
+            FiscalDocumentImportChunkDto result = fiscalDocumentChunkWriter.writeChunk(
+                    report.getChunks().size() + 1, chunkFirstRow, lastRow, chunk);
+            report.getChunks().add(result);
+            progress.chunkWritten(result);
+            if (result.isCommitted()) {
+                addToTotals(chunk);
+            }
+            chunk = new ArrayList<>(chunkSize);
+        }
+
+        private void addToTotals(List<FiscalDocument> documents) {
+            for (FiscalDocument document : documents) {
+                for (int i = 0; i < totals.length; i++) {
+                    BigDecimal amount = AMOUNTS.get(i).apply(document);
+                    if (amount != null) {
+                        totals[i] = totals[i].add(amount);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Resultado de convertir una fila: el documento, o el error si la fila se descarta,
+     * y las celdas que no se pudieron convertir (null si no hay).
+     */
+    private static class MappedRow {
+
+        private final int rowNum;
+        private final FiscalDocument document;
+        private final String error;
+        private final List<FiscalDocumentValidationErrorDto> cellErrors;
+
+        MappedRow(int rowNum, FiscalDocument document, String error, List<FiscalDocumentValidationErrorDto> cellErrors) {
+            this.rowNum = rowNum;
+            this.document = document;
+            this.error = error;
+            this.cellErrors = cellErrors;
+        }
+    }
+
+    /**
+     * Celdas de una fila que no se pudieron convertir; el documento las deja vacías.
+     */
+    private static class RowErrors {
+
+        private final int rowNum;
+        private List<FiscalDocumentValidationErrorDto> errors;
+
+        RowErrors(int rowNum) {
+            this.rowNum = rowNum;
+        }
+
+        void add(int column, String value, String error) {
+            if (errors == null) {
+                errors = new ArrayList<>(2);
+            }
+            // Filas numeradas como en Excel
+            errors.add(new FiscalDocumentValidationErrorDto(rowNum + 1, EXPECTED_COLUMNS.get(column), value, error));
         }
     }
 
     /**
      * Valida que los nombres de las columnas en el encabezado coincidan con los esperados
-     * @param sheet La hoja de Excel a validar
+     * @param headerRow La fila de encabezados, o null si la hoja no la tiene
      * @throws IllegalArgumentException Si las columnas no coinciden
      */
-    private void validateHeader(Sheet sheet) {
-        Row headerRow = sheet.getRow(0);
+    private void validateHeader(SpreadsheetRow headerRow) {
         if (headerRow == null) {
-            throw new IllegalArgumentException("El archivo Excel no contiene encabezados en la primera fila");
+            throw new IllegalArgumentException("El archivo no contiene encabezados en la primera fila");
         }
 
         List<String> actualColumns = new ArrayList<>();
         for (int i = 0; i < EXPECTED_COLUMNS.size(); i++) {
-            Cell cell = headerRow.getCell(i);
-            String columnName = getCellValueAsString(cell);
+            String columnName = getCellValueAsString(headerRow, i);
             if (columnName == null || columnName.trim().isEmpty()) {
                 columnName = "";
             } else {
@@ -186,65 +535,64 @@ public class FiscalDocumentService {
         }
     }
 
-    private FiscalDocument mapRowToDocument(Row row) {
-        try {
-            FiscalDocument document = new FiscalDocument();
-
-            document.setDocumentType(getCellValueAsString(row.getCell(0)));
-            document.setCufeCude(getCellValueAsString(row.getCell(1)));
-            document.setFolio(getCellValueAsString(row.getCell(2)));
-            document.setPrefix(getCellValueAsString(row.getCell(3)));
-            document.setCurrency(getCellValueAsString(row.getCell(4)));
-            document.setPaymentForm(getCellValueAsString(row.getCell(5)));
-            document.setPaymentMethod(getCellValueAsString(row.getCell(6)));
-            document.setIssueDate(getCellValueAsIssueDate(row.getCell(7)));
-            document.setReceptionDate(getCellValueAsReceptionDate(row.getCell(8)));
-            document.setIssuerNit(getCellValueAsString(row.getCell(9)));
-            document.setIssuerName(getCellValueAsString(row.getCell(10)));
-            document.setReceiverNit(getCellValueAsString(row.getCell(11)));
-            document.setReceiverName(getCellValueAsString(row.getCell(12)));
-            document.setIva(getCellValueAsBigDecimal(row.getCell(13)));
-            document.setIca(getCellValueAsBigDecimal(row.getCell(14)));
-            document.setIc(getCellValueAsBigDecimal(row.getCell(15)));
-            document.setInc(getCellValueAsBigDecimal(row.getCell(16)));
-            document.setTimbre(getCellValueAsBigDecimal(row.getCell(17)));
-            document.setIncBags(getCellValueAsBigDecimal(row.getCell(18)));
-            document.setInCarbon(getCellValueAsBigDecimal(row.getCell(19)));
-            document.setInFuels(getCellValueAsBigDecimal(row.getCell(20)));
-            document.setIcData(getCellValueAsBigDecimal(row.getCell(21)));
-            document.setIcl(getCellValueAsBigDecimal(row.getCell(22)));
-            document.setInpp(getCellValueAsBigDecimal(row.getCell(23)));
-            document.setIbua(getCellValueAsBigDecimal(row.getCell(24)));
-            document.setIcui(getCellValueAsBigDecimal(row.getCell(25)));
-            document.setReteIva(getCellValueAsBigDecimal(row.getCell(26)));
-            document.setReteRent(getCellValueAsBigDecimal(row.getCell(27)));
-            document.setReteIca(getCellValueAsBigDecimal(row.getCell(28)));
-            document.setTotal(getCellValueAsBigDecimal(row.getCell(29)));
-            document.setStatus(getCellValueAsString(row.getCell(30)));
-            document.setGroupInfo(getCellValueAsString(row.getCell(31)));
-
-            return document;
-        } catch (Exception e) {
-            // Log error y retornar null para esta fila
-            System.err.println("Error procesando fila " + row.getRowNum() + ": " + e.getMessage());
-            return null;
-        }
+    /**
+     * Convierte una fila en un documento fiscal. Las celdas de fecha o monto que no se
+     * pueden convertir quedan vacías y se registran en {@code errors}; cualquier otro
+     * problema lanza una excepción y la fila se descarta.
+     */
+    private FiscalDocument mapRowToDocument(SpreadsheetRow row, FiscalDateParser dateParser, RowErrors errors) {
+        FiscalDocument document = new FiscalDocument();
+
+        document.setDocumentType(getCellValueAsString(row, 0));
+        // Un CUFE/CUDE vacío no identifica al documento
+        String cufeCude = getCellValueAsString(row, 1);
+        document.setCufeCude(cufeCude != null && !cufeCude.isEmpty() ? cufeCude : null);
+        document.setFolio(getCellValueAsString(row, 2));
+        document.setPrefix(getCellValueAsString(row, 3));
+        document.setCurrency(getCellValueAsString(row, 4));
+        document.setPaymentForm(getCellValueAsString(row, 5));
+        document.setPaymentMethod(getCellValueAsString(row, 6));
+        document.setIssueDate(getCellValueAsIssueDate(row, 7, dateParser, errors));
+        document.setReceptionDate(getCellValueAsReceptionDate(row, 8, dateParser, errors));
+        document.setIssuerNit(getCellValueAsString(row, 9));
+        document.setIssuerName(getCellValueAsString(row, 10));
+        document.setReceiverNit(getCellValueAsString(row, 11));
+        document.setReceiverName(getCellValueAsString(row, 12));
+        document.setIva(getCellValueAsBigDecimal(row, 13, errors));
+        document.setIca(getCellValueAsBigDecimal(row, 14, errors));
+        document.setIc(getCellValueAsBigDecimal(row, 15, errors));
+        document.setInc(getCellValueAsBigDecimal(row, 16, errors));
+        document.setTimbre(getCellValueAsBigDecimal(row, 17, errors));
+        document.setIncBags(getCellValueAsBigDecimal(row, 18, errors));
+        document.setInCarbon(getCellValueAsBigDecimal(row, 19, errors));
+        document.setInFuels(getCellValueAsBigDecimal(row, 20, errors));
+        document.setIcData(getCellValueAsBigDecimal(row, 21, errors));
+        document.setIcl(getCellValueAsBigDecimal(row, 22, errors));
+        document.setInpp(getCellValueAsBigDecimal(row, 23, errors));
+        document.setIbua(getCellValueAsBigDecimal(row, 24, errors));
+        document.setIcui(getCellValueAsBigDecimal(row, 25, errors));
+        document.setReteIva(getCellValueAsBigDecimal(row, 26, errors));
+        document.setReteRent(getCellValueAsBigDecimal(row, 27, errors));
+        document.setReteIca(getCellValueAsBigDecimal(row, 28, errors));
+        document.setTotal(getCellValueAsBigDecimal(row, 29, errors));
+        document.setStatus(getCellValueAsString(row, 30));
+        document.setGroupInfo(getCellValueAsString(row, 31));
+
+        return document;
     }
 
-    private String getCellValueAsString(Cell cell) {
-        if (cell == null) {
-            return null;
-        }
-
-        switch (cell.getCellType()) {
+    private String getCellValueAsString(SpreadsheetRow row, int column) {
+        // Para las fórmulas se usa el resultado calculado, no el texto de la fórmula
+        CellType type = row.getType(column) == CellType.FORMULA ? row.getResultType(column) : row.getType(column);
+        switch (type) {
             case STRING:
-                return cell.getStringCellValue().trim();
+                return row.getValue(column).trim();
             case NUMERIC:
-                if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getDateCellValue().toString();
+                if (row.isDate(column)) {
+                    return DateUtil.getJavaDate(row.getNumericValue(column)).toString();
                 } else {
                     // Convertir número a string sin decimales si es entero
-                    double numericValue = cell.getNumericCellValue();
+                    double numericValue = row.getNumericValue(column);
                     if (numericValue == (long) numericValue) {
                         return String.valueOf((long) numericValue);
                     } else {
@@ -252,9 +600,7 @@ public class FiscalDocumentService {
                     }
                 }
             case BOOLEAN:
-                return String.valueOf(cell.getBooleanCellValue());
-            case FORMULA:
-                return cell.getCellFormula();
+                return row.getValue(column);
             default:
                 return null;
         }
@@ -263,50 +609,29 @@ public class FiscalDocumentService {
     /**
      * Parsea la Fecha Emisión en formato dd-MM-yyyy (ej: 30-10-2025)
      */
-    private LocalDate getCellValueAsIssueDate(Cell cell) {
-        if (cell == null) {
-            return null;
-        }
-
+    private LocalDate getCellValueAsIssueDate(SpreadsheetRow row, int column, FiscalDateParser dateParser,
+                                              RowErrors errors) {
         try {
-            switch (cell.getCellType()) {
+            switch (row.getType(column)) {
                 case STRING:
-                    String dateString = cell.getStringCellValue().trim();
+                    String dateString = row.getValue(column).trim();
                     if (dateString.isEmpty()) {
                         return null;
                     }
-                    // Intentar parsear con el formato específico dd-MM-yyyy
-                    try {
-                        return LocalDate.parse(dateString, ISSUE_DATE_FORMATTER);
-                    } catch (DateTimeParseException e) {
-                        // Si falla, intentar con otros formatos como fallback
-                        for (DateTimeFormatter formatter : DATE_FORMATTERS) {
-                            try {
-                                return LocalDate.parse(dateString, formatter);
-                            } catch (DateTimeParseException ex) {
-                                // Continuar con el siguiente formato
-                            }
-                        }
-                        System.err.println("No se pudo parsear la Fecha Emisión: " + dateString);
-                        return null;
+                    // dd-MM-yyyy y, como fallback, los demás formatos
+                    LocalDate date = dateParser.parseIssueDate(dateString);
+                    if (date == null) {
+                        errors.add(column, dateString, "No se pudo parsear la Fecha Emisión");
                     }
+                    return date;
                 case NUMERIC:
-                    if (DateUtil.isCellDateFormatted(cell)) {
-                        return cell.getDateCellValue().toInstant()
-                                .atZone(java.time.ZoneId.systemDefault())
-                                .toLocalDate();
-                    } else {
-                        // Intentar parsear como número de días desde 1900 (formato Excel)
-                        double numericValue = cell.getNumericCellValue();
-                        return org.apache.poi.ss.usermodel.DateUtil.getJavaDate(numericValue).toInstant()
-                                .atZone(java.time.ZoneId.systemDefault())
-                                .toLocalDate();
-                    }
+                    // Fechas con formato de Excel o número de días desde 1900
+                    return toLocalDate(row.getNumericValue(column));
                 default:
                     return null;
             }
         } catch (Exception e) {
-            System.err.println("Error parseando Fecha Emisión: " + e.getMessage());
+            errors.add(column, row.getValue(column), "Error parseando Fecha Emisión (" + e.getMessage() + ")");
             return null;
         }
     }
@@ -315,166 +640,193 @@ public class FiscalDocumentService {
      * Parsea la Fecha Recepción en formato dd-MM-yyyy HH:mm:ss (ej: 30-10-2025 14:30:45)
      * Extrae solo la parte de la fecha para almacenarla como LocalDate
      */
-    private LocalDate getCellValueAsReceptionDate(Cell cell) {
-        if (cell == null) {
-            return null;
-        }
-
+    private LocalDate getCellValueAsReceptionDate(SpreadsheetRow row, int column, FiscalDateParser dateParser,
+                                                  RowErrors errors) {
         try {
-            switch (cell.getCellType()) {
+            switch (row.getType(column)) {
                 case STRING:
-                    String dateString = cell.getStringCellValue().trim();
+                    String dateString = row.getValue(column).trim();
                     if (dateString.isEmpty()) {
                         return null;
                     }
-                    // Intentar parsear con el formato específico dd-MM-yyyy HH:mm:ss
-                    try {
-                        LocalDateTime dateTime = LocalDateTime.parse(dateString, RECEPTION_DATE_FORMATTER);
-                        return dateTime.toLocalDate();
-                    } catch (DateTimeParseException e) {
-                        // Si falla, intentar solo con la fecha dd-MM-yyyy
-                        try {
-                            return LocalDate.parse(dateString, ISSUE_DATE_FORMATTER);
-                        } catch (DateTimeParseException e2) {
-                            // Si falla, intentar con otros formatos como fallback
-                            for (DateTimeFormatter formatter : DATE_FORMATTERS) {
-                                try {
-                                    return LocalDate.parse(dateString, formatter);
-                                } catch (DateTimeParseException ex) {
-                                    // Continuar con el siguiente formato
-                                }
-                            }
-                            System.err.println("No se pudo parsear la Fecha Recepción: " + dateString);
-                            return null;
-                        }
+                    // dd-MM-yyyy HH:mm:ss, solo la fecha dd-MM-yyyy y, como fallback, los demás formatos
+                    LocalDate date = dateParser.parseReceptionDate(dateString);
+                    if (date == null) {
+                        errors.add(column, dateString, "No se pudo parsear la Fecha Recepción");
                     }
+                    return date;
                 case NUMERIC:
-                    if (DateUtil.isCellDateFormatted(cell)) {
-                        return cell.getDateCellValue().toInstant()
-                                .atZone(java.time.ZoneId.systemDefault())
-                                .toLocalDate();
-                    } else {
-                        // Intentar parsear como número de días desde 1900 (formato Excel)
-                        double numericValue = cell.getNumericCellValue();
-                        return org.apache.poi.ss.usermodel.DateUtil.getJavaDate(numericValue).toInstant()
-                                .atZone(java.time.ZoneId.systemDefault())
-                                .toLocalDate();
-                    }
+                    // Fechas con formato de Excel o número de días desde 1900
+                    return toLocalDate(row.getNumericValue(column));
                 default:
                     return null;
             }
         } catch (Exception e) {
-            System.err.println("Error parseando Fecha Recepción: " + e.getMessage());
+            errors.add(column, row.getValue(column), "Error parseando Fecha Recepción (" + e.getMessage() + ")");
             return null;
         }
     }
 
-    private LocalDate getCellValueAsDate(Cell cell) {
-        if (cell == null) {
-            return null;
-        }
+    /**
+     * Convierte un número de serie de fecha de Excel en LocalDate
+     */
+    private LocalDate toLocalDate(double excelDate) {
+        return DateUtil.getJavaDate(excelDate).toInstant()
+                .atZone(java.time.ZoneId.systemDefault())
+                .toLocalDate();
+    }
 
+    private BigDecimal getCellValueAsBigDecimal(SpreadsheetRow row, int column, RowErrors errors) {
         try {
-            switch (cell.getCellType()) {
+            switch (row.getType(column)) {
+                case NUMERIC:
+                    return BigDecimal.valueOf(row.getNumericValue(column));
                 case STRING:
-                    String dateString = cell.getStringCellValue().trim();
-                    if (dateString.isEmpty()) {
-                        return null;
-                    }
-                    // Intentar parsear con diferentes formatos
-                    for (DateTimeFormatter formatter : DATE_FORMATTERS) {
-                        try {
-                            return LocalDate.parse(dateString, formatter);
-                        } catch (DateTimeParseException e) {
-                            // Continuar con el siguiente formato
-                        }
+                    // Formatos colombiano (1.234.567,89) y americano (1234.56)
+                    return ColombianAmountParser.parse(row.getValue(column));
+                case FORMULA:
+                    // Usar el resultado calculado de la fórmula
+                    if (row.getResultType(column) == CellType.NUMERIC) {
+                        return BigDecimal.valueOf(row.getNumericValue(column));
                     }
-                    // Si ninguno funcionó, retornar null
-                    System.err.println("No se pudo parsear la fecha: " + dateString);
                     return null;
-                case NUMERIC:
-                    if (DateUtil.isCellDateFormatted(cell)) {
-                        return cell.getDateCellValue().toInstant()
-                                .atZone(java.time.ZoneId.systemDefault())
-                                .toLocalDate();
-                    } else {
-                        // Intentar parsear como número de días desde 1900 (formato Excel)
-                        double numericValue = cell.getNumericCellValue();
-                        return org.apache.poi.ss.usermodel.DateUtil.getJavaDate(numericValue).toInstant()
-                                .atZone(java.time.ZoneId.systemDefault())
-                                .toLocalDate();
-                    }
                 default:
                     return null;
             }
         } catch (Exception e) {
-            System.err.println("Error parseando fecha: " + e.getMessage());
+            errors.add(column, row.getValue(column), "No se pudo parsear el monto");
             return null;
         }
     }
 
-    private BigDecimal getCellValueAsBigDecimal(Cell cell) {
-        if (cell == null) {
-            return null;
+    /**
+     * Recorre los documentos que insertó o modificó una importación, en orden de ID,
+     * sin cargarlos todos en memoria: se leen por bloques y se entregan como DTO, sin
+     * pasar por la entidad.
+     *
+     * @param importId ID del registro de la importación
+     * @param consumer Recibe cada documento
+     */
+    @Transactional(readOnly = true)
+    public void forEachImportedDocument(Long importId, Consumer<FiscalDocumentDto> consumer) {
+        try (Stream<FiscalDocumentDto> documents = fiscalDocumentRepository.streamDtosByImportId(importId)) {
+            documents.forEach(consumer);
         }
+    }
 
-        try {
-            switch (cell.getCellType()) {
-                case NUMERIC:
-                    return BigDecimal.valueOf(cell.getNumericCellValue());
-                case STRING:
-                    String stringValue = cell.getStringCellValue().trim();
-                    if (stringValue.isEmpty()) {
-                        return null;
-                    }
-                    // Remover espacios
-                    stringValue = stringValue.replaceAll(" ", "");
-                    // Manejar diferentes formatos de número
-                    // Si tiene punto y coma: formato colombiano (1.234.567,89)
-                    if (stringValue.contains(".") && stringValue.contains(",")) {
-                        stringValue = stringValue.replace(".", "").replace(",", ".");
-                    }
-                    // Si solo tiene coma como separador decimal
-                    else if (stringValue.contains(",") && !stringValue.matches(".*\\..*")) {
-                        stringValue = stringValue.replace(",", ".");
-                    }
-                    // Si solo tiene punto, asumir que es decimal si hay más de un punto o si es
-                    // formato americano
-                    else if (stringValue.matches(".*\\d\\.\\d.*")) {
-                        // Es un decimal con punto
-                        // Si hay múltiples puntos, remover todos excepto el último
-                        if (stringValue.chars().filter(ch -> ch == '.').count() > 1) {
-                            int lastDotIndex = stringValue.lastIndexOf('.');
-                            stringValue = stringValue.substring(0, lastDotIndex).replace(".", "") +
-                                    stringValue.substring(lastDotIndex);
-                        }
-                    }
-                    return new BigDecimal(stringValue);
-                case FORMULA:
-                    // Evaluar fórmula
-                    FormulaEvaluator evaluator = cell.getSheet().getWorkbook().getCreationHelper()
-                            .createFormulaEvaluator();
-                    CellValue cellValue = evaluator.evaluate(cell);
-                    if (cellValue.getCellType() == CellType.NUMERIC) {
-                        return BigDecimal.valueOf(cellValue.getNumberValue());
-                    }
-                    return null;
-                default:
-                    return null;
+    /**
+     * Recorre toda la tabla en orden de ID con un cursor de solo avance: la memoria
+     * usada no depende de la cantidad de documentos. No incluye el histórico
+     * (FiscalDocumentArchiveService).
+     *
+     * Los documentos se entregan como DTO: no se crean las entidades ni se registran en
+     * el contexto de persistencia.
+     *
+     * @param consumer Recibe cada documento
+     */
+    @Transactional(readOnly = true)
+    public void forEachDocument(Consumer<FiscalDocumentDto> consumer) {
+        try (Stream<FiscalDocumentDto> documents = fiscalDocumentRepository.streamAllDtos()) {
+            documents.forEach(consumer);
+        }
+    }
+
+    /**
+     * Escribe en output un .xlsx con los documentos que cumplen el filtro, en el orden de
+     * {@code /query} y con las columnas de la importación, así que el archivo se puede
+     * volver a importar.
+     *
+     * Los documentos se leen con un cursor de solo avance, junto con los del histórico de
+     * a un mes por vez, y las filas ya escritas pasan a un archivo temporal comprimido:
+     * la memoria usada no depende de la cantidad de documentos.
+     *
+     * El archivo tiene una sola hoja, así que antes hay que comprobar con
+     * {@link #countExportable} que los documentos caben en ella.
+     *
+     * @param filter Filtros; los valores null no filtran
+     * @return Cantidad de documentos exportados
+     * @throws IllegalStateException Si hay más de {@link FiscalDocumentExcelWriter#MAX_DOCUMENTS} documentos
+     */
+    @Transactional(readOnly = true)
+    public int exportExcel(FiscalDocumentFilterDto filter, OutputStream output) throws IOException {
+        try (FiscalDocumentExcelWriter writer = new FiscalDocumentExcelWriter(EXPECTED_COLUMNS)) {
+            try (Stream<FiscalDocument> documents = fiscalDocumentKeysetRepository.stream(filter)) {
+                forEachMerged(documents.iterator(), fiscalDocumentArchiveService.iterator(filter), writer::write);
             }
-        } catch (Exception e) {
-            System.err.println("Error parseando BigDecimal: " + e.getMessage());
-            return null;
+            writer.finish(output);
+            return writer.getDocumentCount();
         }
     }
 
+    /**
+     * Cuenta los documentos que exportaría {@link #exportExcel} sin leerlos: los de la
+     * tabla con un COUNT y los del histórico con las columnas filtradas. Un documento
+     * que está en los dos porque se interrumpió el archivado se cuenta dos veces.
+     *
+     * @param filter Filtros; los valores null no filtran
+     */
     @Transactional(readOnly = true)
-    public List<FiscalDocument> getAllDocuments() {
-        return fiscalDocumentRepository.findAll();
+    public long countExportable(FiscalDocumentFilterDto filter) {
+        return fiscalDocumentKeysetRepository.count(filter) + fiscalDocumentArchiveService.count(filter);
     }
 
+    /**
+     * Recorre en orden de Fecha Emisión e ID (sin fecha al final) los documentos de la
+     * tabla y los del histórico. Si un documento está en los dos, porque el proceso de
+     * archivo no terminó, se usa el de la tabla. Los de la tabla se liberan del contexto
+     * de persistencia al volver del consumer.
+     */
+    private void forEachMerged(Iterator<FiscalDocument> live, Iterator<FiscalDocument> archived,
+                               Consumer<FiscalDocument> consumer) {
+        FiscalDocument nextLive = live.hasNext() ? live.next() : null;
+        FiscalDocument nextArchived = archived.hasNext() ? archived.next() : null;
+        while (nextLive != null || nextArchived != null) {
+            int order = nextLive == null ? 1 : nextArchived == null ? -1 : QUERY_ORDER.compare(nextLive, nextArchived);
+            if (order <= 0) {
+                consumer.accept(nextLive);
+                entityManager.detach(nextLive);
+                if (order == 0) {
+                    nextArchived = archived.hasNext() ? archived.next() : null;
+                }
+                nextLive = live.hasNext() ? live.next() : null;
+            } else {
+                consumer.accept(nextArchived);
+                nextArchived = archived.hasNext() ? archived.next() : null;
+            }
+        }
+    }
+
+    /**
+     * Página de documentos en orden de Fecha Emisión e ID, por keyset: el tiempo de
+     * respuesta no depende de la profundidad de la página. Incluye los del histórico.
+     *
+     * @param filter Filtros; los valores null no filtran
+     * @param cursor Cursor del último documento de la página anterior, o null para la primera
+     * @param limit Cantidad máxima de documentos
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    @Transactional(readOnly = true)
+    public List<FiscalDocument> findDocumentsPage(FiscalDocumentFilterDto filter, String cursor, int limit) {
+        // Se interpreta aquí: en el repositorio el error quedaría envuelto en una DataAccessException
+        FiscalDocumentKeysetRepository.Cursor after = cursor != null
+                ? FiscalDocumentKeysetRepository.Cursor.parse(cursor)
+                : null;
+        List<FiscalDocument> live = fiscalDocumentKeysetRepository.findPage(filter, after, limit);
+        List<FiscalDocument> archived = fiscalDocumentArchiveService.findPage(filter, after, limit);
+        if (archived.isEmpty()) {
+            return live;
+        }
+        List<FiscalDocument> page = new ArrayList<>(limit);
+        forEachMerged(live.iterator(), archived.iterator(), page::add);
+        return page.size() > limit ? page.subList(0, limit) : page;
+    }
+
+    /**
+     * @return El documento de la tabla o del histórico con ese ID, o null
+     */
     @Transactional(readOnly = true)
     public FiscalDocument getDocumentById(Long id) {
-        return fiscalDocumentRepository.findById(id).orElse(null);
+        FiscalDocument document = fiscalDocumentRepository.findById(id).orElse(null);
+        return document != null ? document : fiscalDocumentArchiveService.findById(id);
     }
 }
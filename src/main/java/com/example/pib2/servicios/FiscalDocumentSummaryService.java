@@ -0,0 +1,80 @@
+package com.example.pib2.servicios;
+
+import com.example.pib2.models.dtos.FiscalDocumentSummaryFilterDto;
+import com.example.pib2.models.entities.FiscalDocumentSummary;
+import com.example.pib2.repositories.FiscalDocumentSummaryRepository;
+import com.example.pib2.servicios.FiscalImport.FiscalDocumentSummaryDelta;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Totales de IVA, ReteIVA, ReteRenta, ReteICA y Total de los documentos fiscales por
+ * NIT receptor, NIT emisor, mes de emisión y tipo de documento.
+ *
+ * Los totales se leen de fiscal_document_summaries, que las importaciones mantienen al
+ * día bloque a bloque: una consulta recorre a lo sumo un grupo por combinación de la
+ * llave, nunca los documentos.
+ */
+@Service
+public class FiscalDocumentSummaryService {
+
+    @Autowired
+    private FiscalDocumentSummaryRepository fiscalDocumentSummaryRepository;
+
+    @Autowired
+    private FiscalDocumentArchiveService fiscalDocumentArchiveService;
+
+    /**
+     * Calcula los totales al arrancar si la tabla está vacía y ya hay documentos, como
+     * la primera vez que se ejecuta sobre una base de datos con importaciones anteriores.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildIfMissing() {
+        try {
+            if (fiscalDocumentSummaryRepository.needsRebuild()) {
+                long groups = rebuild();
+                System.out.println("Totales de documentos fiscales calculados: " + groups + " grupos");
+            }
+        } catch (DataAccessException e) {
+            System.err.println("No se pudieron calcular los totales de documentos fiscales: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Recalcula todos los totales desde fiscal_documents y el histórico, por ejemplo
+     * después de modificar documentos directamente en la base de datos.
+     *
+     * @return La cantidad de grupos
+     */
+    @Transactional
+    public long rebuild() {
+        long groups = fiscalDocumentSummaryRepository.rebuild();
+        // Los documentos archivados siguen contando en los totales
+        FiscalDocumentSummaryDelta archived = new FiscalDocumentSummaryDelta();
+        fiscalDocumentArchiveService.forEachDocument(archived::add);
+        List<FiscalDocumentSummary> changes = archived.getChanges();
+        if (changes.isEmpty()) {
+            return groups;
+        }
+        fiscalDocumentSummaryRepository.apply(changes);
+        return fiscalDocumentSummaryRepository.count();
+    }
+
+    /**
+     * @param filter Filtros; los valores null no filtran
+     * @param groupBy Dimensiones por las que se agrupa; vacío para el total general
+     */
+    @Transactional(readOnly = true)
+    public List<FiscalDocumentSummary> findSummaries(FiscalDocumentSummaryFilterDto filter,
+                                                     Set<FiscalDocumentSummaryRepository.Dimension> groupBy) {
+        return fiscalDocumentSummaryRepository.find(filter, groupBy);
+    }
+}
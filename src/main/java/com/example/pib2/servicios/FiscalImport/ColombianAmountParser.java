@@ -0,0 +1,154 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import java.math.BigDecimal;
+
+/**
+ * Convierte montos escritos como texto ({@code 1.234.567,89}, {@code 1234,5},
+ * {@code 1.234.56}) en BigDecimal.
+ *
+ * Reglas, aplicadas después de quitar los espacios:
+ * <ul>
+ *   <li>Con punto y coma, los puntos son separadores de miles y la coma es el decimal.</li>
+ *   <li>Solo con coma, la coma es el decimal.</li>
+ *   <li>Solo con puntos y algún dígito-punto-dígito, el último punto es el decimal
+ *       y los demás se descartan.</li>
+ * </ul>
+ *
+ * Los valores comunes se leen en una sola pasada sobre los caracteres, acumulando los
+ * dígitos en un long, sin expresiones regulares ni cadenas intermedias. Lo que no encaja
+ * en ese camino (notación científica, caracteres no ASCII, más de 18 dígitos o valores
+ * inválidos) se resuelve con el procedimiento original basado en reemplazos, así que el
+ * resultado es siempre el mismo.
+ */
+public final class ColombianAmountParser {
+
+    private static final int MAX_DIGITS = 18;
+
+    private ColombianAmountParser() {
+    }
+
+    /**
+     * @param value Texto del monto
+     * @return El monto, o null si el texto está vacío
+     * @throws NumberFormatException si el texto no es un monto válido
+     */
+    public static BigDecimal parse(String value) {
+        // Mismo recorte que String.trim()
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+
+        boolean negative = false;
+        boolean signAllowed = true;
+        long unscaled = 0;
+        int digits = 0;
+        int dots = 0;
+        int commas = 0;
+        // Dígitos después del último punto y de la última coma
+        int digitsAfterDot = 0;
+        int digitsAfterComma = 0;
+        boolean digitDotDigit = false;
+        // Último carácter distinto de espacio: 'd' dígito, '.' punto, otro valor en otro caso
+        char previous = 0;
+        boolean previousIsDigitThenDot = false;
+
+        for (int i = start; i < end; i++) {
+            char ch = value.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                if (++digits > MAX_DIGITS) {
+                    return parseWithReplacements(value);
+                }
+                unscaled = unscaled * 10 + (ch - '0');
+                digitsAfterDot++;
+                digitsAfterComma++;
+                if (previousIsDigitThenDot) {
+                    digitDotDigit = true;
+                }
+                previous = 'd';
+                previousIsDigitThenDot = false;
+                signAllowed = false;
+            } else if (ch == '.') {
+                dots++;
+                digitsAfterDot = 0;
+                previousIsDigitThenDot = previous == 'd';
+                previous = '.';
+                signAllowed = false;
+            } else if (ch == ',') {
+                commas++;
+                digitsAfterComma = 0;
+                previous = ',';
+                previousIsDigitThenDot = false;
+                signAllowed = false;
+            } else if (ch == ' ') {
+                // Los espacios se eliminan: no cambian el carácter anterior
+            } else if ((ch == '-' || ch == '+') && signAllowed) {
+                negative = ch == '-';
+                previous = ch;
+                signAllowed = false;
+            } else {
+                return parseWithReplacements(value);
+            }
+        }
+
+        if (digits == 0) {
+            return parseWithReplacements(value);
+        }
+
+        int scale;
+        if (commas > 0) {
+            // Con o sin puntos, la coma es el decimal; dos comas dejan dos puntos decimales
+            if (commas > 1) {
+                return parseWithReplacements(value);
+            }
+            scale = digitsAfterComma;
+        } else if (dots > 1 && !digitDotDigit) {
+            return parseWithReplacements(value);
+        } else {
+            scale = dots > 0 ? digitsAfterDot : 0;
+        }
+
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    /**
+     * Procedimiento original basado en reemplazos y expresiones regulares; se usa para
+     * los valores que la lectura rápida no cubre.
+     */
+    static BigDecimal parseWithReplacements(String value) {
+        String stringValue = value.trim();
+        if (stringValue.isEmpty()) {
+            return null;
+        }
+        // Remover espacios
+        stringValue = stringValue.replaceAll(" ", "");
+        // Manejar diferentes formatos de número
+        // Si tiene punto y coma: formato colombiano (1.234.567,89)
+        if (stringValue.contains(".") && stringValue.contains(",")) {
+            stringValue = stringValue.replace(".", "").replace(",", ".");
+        }
+        // Si solo tiene coma como separador decimal
+        else if (stringValue.contains(",") && !stringValue.matches(".*\\..*")) {
+            stringValue = stringValue.replace(",", ".");
+        }
+        // Si solo tiene punto, asumir que es decimal si hay más de un punto o si es
+        // formato americano
+        else if (stringValue.matches(".*\\d\\.\\d.*")) {
+            // Es un decimal con punto
+            // Si hay múltiples puntos, remover todos excepto el último
+            if (stringValue.chars().filter(ch -> ch == '.').count() > 1) {
+                int lastDotIndex = stringValue.lastIndexOf('.');
+                stringValue = stringValue.substring(0, lastDotIndex).replace(".", "") +
+                        stringValue.substring(lastDotIndex);
+            }
+        }
+        return new BigDecimal(stringValue);
+    }
+}
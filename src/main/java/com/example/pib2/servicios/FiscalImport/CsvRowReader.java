@@ -0,0 +1,361 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Lector de archivos de texto delimitado (CSV) que entrega las filas una a una con el
+ * mismo modelo de fila que {@link ExcelRowReader}: cada campo no vacío es una celda STRING.
+ *
+ * Los bytes se leen del canal a un único buffer que se reutiliza durante todo el archivo
+ * y se recorren directamente, sin construir una cadena por línea ni partirla; solo se crea
+ * una cadena por cada campo que se conserva. Un registro que no cabe en el buffer lo hace
+ * crecer, hasta {@value #MAX_RECORD_SIZE} bytes.
+ *
+ * Formato aceptado:
+ * <ul>
+ *   <li>El separador (';', ',' o tabulador) se detecta en la primera línea: el que más
+ *       se repite fuera de comillas.</li>
+ *   <li>Campos entre comillas dobles, que pueden contener el separador, saltos de línea
+ *       y comillas escritas como {@code ""}.</li>
+ *   <li>Fin de línea {@code \n} o {@code \r\n}; las líneas vacías se omiten.</li>
+ *   <li>UTF-8, con o sin BOM. Si la primera línea no es UTF-8 válido el archivo se lee
+ *       como Windows-1252, la codificación de los CSV que guarda Excel en español.</li>
+ * </ul>
+ *
+ * El número de fila es el del registro en el archivo (base 0, el encabezado es la fila 0);
+ * coincide con el número de línea mientras ningún campo contenga saltos de línea.
+ */
+@Component
+public class CsvRowReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Un registro más grande casi siempre es una comilla sin cerrar
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+
+    /**
+     * Lee un archivo CSV en disco.
+     *
+     * @param file Archivo en disco
+     * @param maxColumns Cantidad de columnas que se conservan por fila
+     * @param consumer Recibe cada fila en el orden del archivo
+     * @throws IllegalArgumentException si un registro supera el tamaño máximo
+     */
+    public void read(File file, int maxColumns, Consumer<SpreadsheetRow> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            read(channel, maxColumns, consumer);
+        }
+    }
+
+    /**
+     * Lee un CSV desde un canal hasta el final. El canal no se cierra.
+     *
+     * @param channel Contenido del archivo
+     * @param maxColumns Cantidad de columnas que se conservan por fila
+     * @param consumer Recibe cada fila en el orden del archivo
+     * @throws IllegalArgumentException si un registro supera el tamaño máximo
+     */
+    public void read(ReadableByteChannel channel, int maxColumns, Consumer<SpreadsheetRow> consumer) throws IOException {
+        new Tokenizer(channel, maxColumns).read(consumer);
+    }
+
+    /**
+     * Estado de la lectura de un archivo.
+     *
+     * Los registros se recorren en dos pasos: primero se ubican los límites de cada campo
+     * dentro del buffer y, cuando el registro está completo, se crean las cadenas. Si el
+     * buffer termina a mitad de un registro se leen más bytes y el registro se recorre de
+     * nuevo desde su inicio, sin haber creado nada.
+     */
+    private static final class Tokenizer {
+
+        private final ReadableByteChannel channel;
+        private final int maxColumns;
+
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private byte[] data = buffer.array();
+        // Inicio del registro actual y fin de los bytes leídos
+        private int position;
+        private int limit;
+        private boolean endOfInput;
+
+        private byte delimiter;
+        private Charset charset;
+
+        // Límites de los campos del registro actual
+        private final int[] fieldStart;
+        private final int[] fieldEnd;
+        // true si el campo tiene comillas escritas como "" o texto después de la comilla de cierre
+        private final boolean[] fieldEscaped;
+        private int fieldCount;
+        // Para quitar las comillas de los campos escapados
+        private byte[] unescaped = new byte[256];
+
+        private int rowNum;
+
+        Tokenizer(ReadableByteChannel channel, int maxColumns) {
+            this.channel = channel;
+            this.maxColumns = maxColumns;
+            this.fieldStart = new int[maxColumns];
+            this.fieldEnd = new int[maxColumns];
+            this.fieldEscaped = new boolean[maxColumns];
+        }
+
+        void read(Consumer<SpreadsheetRow> consumer) throws IOException {
+            readHeaderLine();
+            while (true) {
+                if (position >= limit) {
+                    if (endOfInput) {
+                        return;
+                    }
+                    fill();
+                    continue;
+                }
+                int next = scanRecord();
+                if (next < 0) {
+                    // El registro sigue en los bytes que aún no se leen
+                    fill();
+                    continue;
+                }
+                // Una línea vacía deja un único campo vacío
+                if (fieldCount > 1 || fieldEnd[0] > fieldStart[0]) {
+                    consumer.accept(toRow());
+                }
+                rowNum++;
+                position = next;
+            }
+        }
+
+        /**
+         * Lee hasta tener la primera línea completa, salta el BOM y detecta el separador
+         * y la codificación.
+         */
+        private void readHeaderLine() throws IOException {
+            int lineEnd;
+            while ((lineEnd = indexOf((byte) '\n', 0)) < 0 && !endOfInput) {
+                fill();
+            }
+            if (lineEnd < 0) {
+                lineEnd = limit;
+            }
+
+            if (limit >= 3 && data[0] == (byte) 0xEF && data[1] == (byte) 0xBB && data[2] == (byte) 0xBF) {
+                position = 3;
+            }
+
+            int semicolons = 0;
+            int commas = 0;
+            int tabs = 0;
+            boolean quoted = false;
+            for (int i = position; i < lineEnd; i++) {
+                switch (data[i]) {
+                    case '"' -> quoted = !quoted;
+                    case ';' -> semicolons += quoted ? 0 : 1;
+                    case ',' -> commas += quoted ? 0 : 1;
+                    case '\t' -> tabs += quoted ? 0 : 1;
+                    default -> {
+                    }
+                }
+            }
+            if (semicolons >= commas && semicolons >= tabs && semicolons > 0) {
+                delimiter = ';';
+            } else if (tabs > commas) {
+                delimiter = '\t';
+            } else {
+                delimiter = ',';
+            }
+
+            try {
+                StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(ByteBuffer.wrap(data, position, lineEnd - position));
+                charset = StandardCharsets.UTF_8;
+            } catch (CharacterCodingException e) {
+                charset = WINDOWS_1252;
+            }
+        }
+
+        private int indexOf(byte value, int from) {
+            for (int i = from; i < limit; i++) {
+                if (data[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Ubica los campos del registro que empieza en {@link #position}.
+         *
+         * @return La posición donde empieza el siguiente registro, o -1 si faltan bytes
+         *         por leer para completar este
+         */
+        private int scanRecord() {
+            byte[] bytes = data;
+            byte separator = delimiter;
+            int end = limit;
+            int p = position;
+            fieldCount = 0;
+
+            while (true) {
+                int start = p;
+                int quoteEnd = -1;
+                boolean escaped = false;
+
+                if (p < end && bytes[p] == '"') {
+                    p++;
+                    while (true) {
+                        if (p >= end) {
+                            if (!endOfInput) {
+                                return -1;
+                            }
+                            // Comilla sin cerrar al final del archivo: se toma el resto
+                            escaped = true;
+                            break;
+                        }
+                        if (bytes[p] == '"') {
+                            if (p + 1 >= end && !endOfInput) {
+                                return -1;
+                            }
+                            if (p + 1 < end && bytes[p + 1] == '"') {
+                                escaped = true;
+                                p += 2;
+                                continue;
+                            }
+                            quoteEnd = ++p;
+                            break;
+                        }
+                        p++;
+                    }
+                }
+
+                while (p < end && bytes[p] != separator && bytes[p] != '\n') {
+                    p++;
+                }
+                if (p >= end && !endOfInput) {
+                    return -1;
+                }
+
+                boolean lastField = p >= end || bytes[p] == '\n';
+                int valueEnd = p;
+                if (lastField && valueEnd > start && bytes[valueEnd - 1] == '\r') {
+                    valueEnd--;
+                }
+                if (quoteEnd >= 0 && valueEnd != quoteEnd) {
+                    // Texto después de la comilla de cierre
+                    escaped = true;
+                }
+
+                if (fieldCount < maxColumns) {
+                    if (quoteEnd >= 0 && !escaped) {
+                        fieldStart[fieldCount] = start + 1;
+                        fieldEnd[fieldCount] = quoteEnd - 1;
+                    } else {
+                        fieldStart[fieldCount] = start;
+                        fieldEnd[fieldCount] = valueEnd;
+                    }
+                    fieldEscaped[fieldCount] = escaped;
+                }
+                fieldCount++;
+
+                if (lastField) {
+                    return p >= end ? end : p + 1;
+                }
+                // Separador: sigue otro campo, aunque esté vacío al final del archivo
+                p++;
+            }
+        }
+
+        private SpreadsheetRow toRow() {
+            SpreadsheetRow row = new SpreadsheetRow(rowNum, maxColumns);
+            int columns = Math.min(fieldCount, maxColumns);
+            for (int column = 0; column < columns; column++) {
+                String value = fieldEscaped[column]
+                        ? unescape(fieldStart[column], fieldEnd[column])
+                        : decode(data, fieldStart[column], fieldEnd[column] - fieldStart[column]);
+                // Un campo vacío es una celda vacía, como en Excel
+                if (value != null) {
+                    row.setCell(column, CellType.STRING, CellType.STRING, value, false);
+                }
+            }
+            return row;
+        }
+
+        private String decode(byte[] bytes, int offset, int length) {
+            return length > 0 ? new String(bytes, offset, length, charset) : null;
+        }
+
+        /**
+         * Quita las comillas de un campo: las que abren y cierran tramos entre comillas
+         * desaparecen y cada {@code ""} dentro de un tramo queda como una comilla.
+         */
+        private String unescape(int start, int end) {
+            if (unescaped.length < end - start) {
+                unescaped = new byte[end - start];
+            }
+            int length = 0;
+            boolean quoted = false;
+            for (int i = start; i < end; i++) {
+                byte b = data[i];
+                if (b != '"') {
+                    unescaped[length++] = b;
+                } else if (quoted && i + 1 < end && data[i + 1] == '"') {
+                    unescaped[length++] = b;
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            }
+            return decode(unescaped, 0, length);
+        }
+
+        /**
+         * Conserva los bytes del registro actual al inicio del buffer y lee más del canal.
+         * Si el registro ocupa todo el buffer, lo duplica.
+         */
+        private void fill() throws IOException {
+            if (position > 0) {
+                System.arraycopy(data, position, data, 0, limit - position);
+                limit -= position;
+                position = 0;
+            }
+            if (limit == data.length) {
+                if (data.length >= MAX_RECORD_SIZE) {
+                    throw new IllegalArgumentException("La fila " + (rowNum + 1) + " del archivo CSV supera "
+                            + (MAX_RECORD_SIZE / 1024) + " KB; revise que no haya comillas sin cerrar");
+                }
+                ByteBuffer larger = ByteBuffer.allocate(data.length * 2);
+                System.arraycopy(data, 0, larger.array(), 0, limit);
+                buffer = larger;
+                data = larger.array();
+            }
+
+            buffer.limit(data.length).position(limit);
+            int read;
+            do {
+                read = channel.read(buffer);
+            } while (read == 0);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                limit = buffer.position();
+            }
+        }
+    }
+}
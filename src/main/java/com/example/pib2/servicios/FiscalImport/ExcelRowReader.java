@@ -0,0 +1,382 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import org.apache.poi.hssf.record.RecalcIdRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Lector de archivos Excel que entrega las filas de la primera hoja una a una.
+ *
+ * Los archivos .xlsx se leen con la API de eventos de POI (XSSFReader + SAX),
+ * de modo que nunca se construye el modelo DOM del libro. Los archivos .xls
+ * (limitados a 65.536 filas por el formato) se leen con HSSF y se adaptan al
+ * mismo modelo de fila.
+ *
+ * Se lee desde un archivo en disco: POI accede al zip de un .xlsx (o al contenedor
+ * OLE2 de un .xls) de forma aleatoria y descomprime cada parte a medida que se lee.
+ * Desde un InputStream, en cambio, tendría que descomprimir todas las partes en
+ * memoria antes de empezar.
+ */
+@Component
+public class ExcelRowReader {
+
+    /**
+     * Lee la primera hoja de un archivo .xlsx en modo streaming.
+     *
+     * @param file Archivo en disco; se abre en modo solo lectura
+     * @param maxColumns Cantidad de columnas que se conservan por fila
+     * @param consumer Recibe cada fila en el orden del archivo
+     */
+    public void readXlsx(File file, int maxColumns, Consumer<SpreadsheetRow> consumer)
+            throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        readXlsx(OPCPackage.open(file, PackageAccess.READ), maxColumns, consumer);
+    }
+
+    private void readXlsx(OPCPackage pkg, int maxColumns, Consumer<SpreadsheetRow> consumer)
+            throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            SharedStrings sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new SheetHandler(sharedStrings, styles, maxColumns, consumer));
+                parser.parse(new InputSource(sheet));
+            }
+        } finally {
+            // Cerrar sin intentar guardar el paquete
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Lee la primera hoja de un archivo .xls y la adapta al modelo de fila.
+     *
+     * Las fórmulas toman el resultado que Excel guarda junto a cada una. Si el archivo
+     * no trae resultados confiables (ver {@link #hasCalculatedResults}) se evalúan con
+     * un único FormulaEvaluator para todo el libro, que conserva los resultados de las
+     * celdas ya evaluadas: una columna de totales acumulados se calcula en una pasada.
+     *
+     * @param file Archivo en disco; POIFS lo lee a través de un FileChannel en modo solo lectura
+     * @param maxColumns Cantidad de columnas que se conservan por fila
+     * @param consumer Recibe cada fila en el orden del archivo
+     */
+    public void readXls(File file, int maxColumns, Consumer<SpreadsheetRow> consumer) throws IOException {
+        try (POIFSFileSystem fileSystem = new POIFSFileSystem(file, true);
+             HSSFWorkbook workbook = new HSSFWorkbook(fileSystem.getRoot(), true)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            FormulaEvaluator evaluator = hasCalculatedResults(workbook, sheet)
+                    ? null
+                    : workbook.getCreationHelper().createFormulaEvaluator();
+            for (Row row : sheet) {
+                consumer.accept(toSpreadsheetRow(row, maxColumns, evaluator));
+            }
+        }
+    }
+
+    /**
+     * Excel guarda en el libro el identificador del motor de cálculo que produjo los
+     * resultados de las fórmulas. Los libros generados por POI y otras herramientas lo
+     * dejan en 0 (o no lo incluyen), y sus resultados guardados pueden ser 0 o estar
+     * desactualizados; lo mismo si la hoja está marcada para recalcular al abrirse.
+     */
+    private static boolean hasCalculatedResults(HSSFWorkbook workbook, Sheet sheet) {
+        RecalcIdRecord recalcId = (RecalcIdRecord) workbook.getInternalWorkbook()
+                .findFirstRecordBySid(RecalcIdRecord.sid);
+        return recalcId != null && recalcId.getEngineId() != 0 && !sheet.getForceFormulaRecalculation();
+    }
+
+    private SpreadsheetRow toSpreadsheetRow(Row row, int maxColumns, FormulaEvaluator evaluator) {
+        SpreadsheetRow result = new SpreadsheetRow(row.getRowNum(), maxColumns);
+        for (int i = 0; i < maxColumns; i++) {
+            Cell cell = row.getCell(i);
+            if (cell == null) {
+                continue;
+            }
+
+            switch (cell.getCellType()) {
+                case STRING:
+                    result.setCell(i, CellType.STRING, CellType.STRING, cell.getStringCellValue(), false);
+                    break;
+                case NUMERIC:
+                    result.setCell(i, CellType.NUMERIC, CellType.NUMERIC,
+                            Double.toString(cell.getNumericCellValue()), DateUtil.isCellDateFormatted(cell));
+                    break;
+                case BOOLEAN:
+                    result.setCell(i, CellType.BOOLEAN, CellType.BOOLEAN,
+                            String.valueOf(cell.getBooleanCellValue()), false);
+                    break;
+                case FORMULA:
+                    setFormulaCell(result, i, cell, evaluator);
+                    break;
+                case ERROR:
+                    result.setCell(i, CellType.ERROR, CellType.ERROR, null, false);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param evaluator Evaluador del libro, o null para usar el resultado guardado en el archivo
+     */
+    private void setFormulaCell(SpreadsheetRow result, int column, Cell cell, FormulaEvaluator evaluator) {
+        CellType resultType;
+        String value = null;
+        try {
+            if (evaluator == null) {
+                resultType = cell.getCachedFormulaResultType();
+                switch (resultType) {
+                    case NUMERIC -> value = Double.toString(cell.getNumericCellValue());
+                    case STRING -> value = cell.getStringCellValue();
+                    case BOOLEAN -> value = String.valueOf(cell.getBooleanCellValue());
+                    default -> resultType = CellType.ERROR;
+                }
+            } else {
+                CellValue cellValue = evaluator.evaluate(cell);
+                resultType = cellValue.getCellType();
+                switch (resultType) {
+                    case NUMERIC -> value = Double.toString(cellValue.getNumberValue());
+                    case STRING -> value = cellValue.getStringValue();
+                    case BOOLEAN -> value = String.valueOf(cellValue.getBooleanValue());
+                    default -> resultType = CellType.ERROR;
+                }
+            }
+        } catch (Exception e) {
+            resultType = CellType.ERROR;
+            value = null;
+        }
+        result.setCell(column, CellType.FORMULA, resultType, value, false);
+    }
+
+    /**
+     * Convierte la referencia de una celda (ej: "AB12") en el índice de su columna (base 0).
+     */
+    static int columnIndex(String cellReference) {
+        int column = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            char ch = cellReference.charAt(i);
+            if (ch < 'A' || ch > 'Z') {
+                break;
+            }
+            column = column * 26 + (ch - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    /**
+     * Handler SAX para el XML de una hoja (sheetN.xml).
+     *
+     * Resuelve las cadenas compartidas y los formatos de fecha a partir de la
+     * tabla de estilos, y arma una {@link SpreadsheetRow} por cada elemento &lt;row&gt;.
+     */
+    private static class SheetHandler extends DefaultHandler {
+
+        private final SharedStrings sharedStrings;
+        private final StylesTable styles;
+        private final int maxColumns;
+        private final Consumer<SpreadsheetRow> consumer;
+        private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+        private final StringBuilder value = new StringBuilder();
+
+        private SpreadsheetRow currentRow;
+        private int lastRowNum = -1;
+        private int nextColumn;
+        private int column;
+        private String cellType;
+        private String cellStyle;
+        private boolean hasFormula;
+        private boolean inValue;
+        private boolean inInlineString;
+        private boolean inPhonetic;
+        private boolean inText;
+
+        SheetHandler(SharedStrings sharedStrings, StylesTable styles, int maxColumns,
+                     Consumer<SpreadsheetRow> consumer) {
+            this.sharedStrings = sharedStrings;
+            this.styles = styles;
+            this.maxColumns = maxColumns;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (elementName(localName, qName)) {
+                case "row":
+                    String rowReference = attributes.getValue("r");
+                    int rowNum = rowReference != null ? Integer.parseInt(rowReference) - 1 : lastRowNum + 1;
+                    currentRow = new SpreadsheetRow(rowNum, maxColumns);
+                    nextColumn = 0;
+                    break;
+                case "c":
+                    String cellReference = attributes.getValue("r");
+                    column = cellReference != null ? columnIndex(cellReference) : nextColumn;
+                    nextColumn = column + 1;
+                    cellType = attributes.getValue("t");
+                    cellStyle = attributes.getValue("s");
+                    hasFormula = false;
+                    value.setLength(0);
+                    break;
+                case "v":
+                    inValue = true;
+                    break;
+                case "f":
+                    hasFormula = true;
+                    break;
+                case "is":
+                    inInlineString = true;
+                    break;
+                case "rPh":
+                    inPhonetic = true;
+                    break;
+                case "t":
+                    inText = inInlineString && !inPhonetic;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue || inText) {
+                value.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (elementName(localName, qName)) {
+                case "v":
+                    inValue = false;
+                    break;
+                case "is":
+                    inInlineString = false;
+                    break;
+                case "rPh":
+                    inPhonetic = false;
+                    break;
+                case "t":
+                    inText = false;
+                    break;
+                case "c":
+                    finishCell();
+                    break;
+                case "row":
+                    if (currentRow != null) {
+                        lastRowNum = currentRow.getRowNum();
+                        consumer.accept(currentRow);
+                        currentRow = null;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void finishCell() {
+            if (currentRow == null || column >= maxColumns) {
+                return;
+            }
+
+            String raw = value.toString();
+            CellType resultType;
+            String cellValue = raw;
+            boolean date = false;
+
+            if ("s".equals(cellType)) {
+                if (raw.isEmpty()) {
+                    return;
+                }
+                cellValue = sharedStrings.getItemAt(Integer.parseInt(raw.trim())).getString();
+                resultType = CellType.STRING;
+            } else if ("inlineStr".equals(cellType) || "str".equals(cellType)) {
+                resultType = CellType.STRING;
+            } else if ("b".equals(cellType)) {
+                cellValue = "1".equals(raw) ? "true" : "false";
+                resultType = raw.isEmpty() ? CellType.BLANK : CellType.BOOLEAN;
+            } else if ("e".equals(cellType)) {
+                cellValue = null;
+                resultType = CellType.ERROR;
+            } else if (raw.isEmpty()) {
+                resultType = CellType.BLANK;
+            } else {
+                resultType = CellType.NUMERIC;
+                date = !hasFormula && isDateStyle(cellStyle) && DateUtil.isValidExcelDate(Double.parseDouble(raw));
+            }
+
+            CellType type = hasFormula ? CellType.FORMULA : resultType;
+            if (type == CellType.BLANK) {
+                return;
+            }
+            if (resultType == CellType.BLANK) {
+                cellValue = null;
+            }
+            currentRow.setCell(column, type, resultType, cellValue, date);
+        }
+
+        private boolean isDateStyle(String styleIndex) {
+            if (styleIndex == null || styles == null) {
+                return false;
+            }
+            return dateStyles.computeIfAbsent(Integer.parseInt(styleIndex), index -> {
+                XSSFCellStyle style = styles.getStyleAt(index);
+                if (style == null) {
+                    return false;
+                }
+                int format = style.getDataFormat();
+                String formatString = style.getDataFormatString();
+                if (formatString == null) {
+                    formatString = BuiltinFormats.getBuiltinFormat(format);
+                }
+                return DateUtil.isADateFormat(format, formatString);
+            });
+        }
+
+        private static String elementName(String localName, String qName) {
+            String name = localName != null && !localName.isEmpty() ? localName : qName;
+            int colon = name.indexOf(':');
+            return colon >= 0 ? name.substring(colon + 1) : name;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Convierte en LocalDate las fechas escritas como texto en las columnas Fecha Emisión
+ * ({@code 30-10-2025}) y Fecha Recepción ({@code 30-10-2025 14:30:45}).
+ *
+ * Formatos aceptados, en orden de prueba:
+ * <ul>
+ *   <li>Solo Fecha Recepción: dd-MM-yyyy HH:mm:ss (se conserva solo la fecha).</li>
+ *   <li>dd-MM-yyyy, yyyy-MM-dd, dd/MM/yyyy, MM/dd/yyyy y yyyy/MM/dd.</li>
+ * </ul>
+ *
+ * Los casos comunes se reconocen por la posición de los separadores y la cantidad de
+ * dígitos, sin lanzar excepciones. Lo demás (días fuera del mes, que DateTimeFormatter
+ * ajusta al último día, hora 24, años de más de cuatro dígitos, texto inválido) se
+ * resuelve con la cadena original de DateTimeFormatter, así que el resultado es siempre
+ * el mismo.
+ *
+ * Cada instancia guarda el resultado de hasta {@value #MAX_CACHED_VALUES} textos distintos
+ * por columna; se usa una por importación y puede compartirse entre hilos.
+ */
+public class FiscalDateParser {
+
+    private static final int MAX_CACHED_VALUES = 4096;
+
+    // Marca de texto que no es una fecha; ningún formato produce un año negativo
+    private static final LocalDate UNPARSEABLE = LocalDate.MIN;
+
+    // Formato específico para Fecha Emisión: dd-MM-yyyy (ej: 30-10-2025)
+    private static final DateTimeFormatter ISSUE_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    // Formato específico para Fecha Recepción: dd-MM-yyyy HH:mm:ss (ej: 30-10-2025 14:30:45)
+    private static final DateTimeFormatter RECEPTION_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    private static final DateTimeFormatter[] DATE_FORMATTERS = {
+            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+            DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+            DateTimeFormatter.ofPattern("MM/dd/yyyy"),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy"),
+            DateTimeFormatter.ofPattern("yyyy/MM/dd")
+    };
+
+    private final Map<String, LocalDate> issueDates = new ConcurrentHashMap<>();
+    private final Map<String, LocalDate> receptionDates = new ConcurrentHashMap<>();
+
+    /**
+     * @param value Texto de la Fecha Emisión, sin espacios al inicio ni al final
+     * @return La fecha, o null si el texto no está en ninguno de los formatos aceptados
+     */
+    public LocalDate parseIssueDate(String value) {
+        LocalDate date = issueDates.get(value);
+        if (date == null) {
+            date = recognize(value, false);
+            if (date == null) {
+                date = parseIssueDateWithFormatters(value);
+            }
+            date = cache(issueDates, value, date);
+        }
+        return date != UNPARSEABLE ? date : null;
+    }
+
+    /**
+     * @param value Texto de la Fecha Recepción, sin espacios al inicio ni al final
+     * @return La fecha (sin la hora), o null si el texto no está en ninguno de los formatos aceptados
+     */
+    public LocalDate parseReceptionDate(String value) {
+        LocalDate date = receptionDates.get(value);
+        if (date == null) {
+            date = recognize(value, true);
+            if (date == null) {
+                date = parseReceptionDateWithFormatters(value);
+            }
+            date = cache(receptionDates, value, date);
+        }
+        return date != UNPARSEABLE ? date : null;
+    }
+
+    private static LocalDate cache(Map<String, LocalDate> cache, String value, LocalDate date) {
+        if (date == null) {
+            date = UNPARSEABLE;
+        }
+        // Al llenarse se dejan de agregar textos; los que ya están siguen sirviendo
+        if (cache.size() < MAX_CACHED_VALUES) {
+            cache.put(value, date);
+        }
+        return date;
+    }
+
+    /**
+     * Reconoce los formatos comunes sin lanzar excepciones.
+     *
+     * @param withTime true para aceptar también dd-MM-yyyy HH:mm:ss
+     * @return La fecha, o null si el texto debe resolverse con DateTimeFormatter
+     */
+    static LocalDate recognize(String value, boolean withTime) {
+        int length = value.length();
+        if (length == 19) {
+            // dd-MM-yyyy HH:mm:ss
+            if (!withTime || value.charAt(10) != ' ' || value.charAt(13) != ':' || value.charAt(16) != ':') {
+                return null;
+            }
+            int hour = twoDigits(value, 11);
+            int minute = twoDigits(value, 14);
+            int second = twoDigits(value, 17);
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+                return null;
+            }
+            return value.charAt(2) == '-' && value.charAt(5) == '-'
+                    ? toDate(fourDigits(value, 6), twoDigits(value, 3), twoDigits(value, 0))
+                    : null;
+        }
+        if (length != 10) {
+            return null;
+        }
+
+        char separator = value.charAt(2);
+        if ((separator == '-' || separator == '/') && value.charAt(5) == separator) {
+            int first = twoDigits(value, 0);
+            int second = twoDigits(value, 3);
+            int year = fourDigits(value, 6);
+            if (separator == '-' || second <= 12) {
+                // dd-MM-yyyy y dd/MM/yyyy
+                return toDate(year, second, first);
+            }
+            // MM/dd/yyyy solo se prueba cuando el segundo número no puede ser el mes
+            return toDate(year, first, second);
+        }
+
+        separator = value.charAt(4);
+        if ((separator == '-' || separator == '/') && value.charAt(7) == separator) {
+            // yyyy-MM-dd y yyyy/MM/dd
+            return toDate(fourDigits(value, 0), twoDigits(value, 5), twoDigits(value, 8));
+        }
+        return null;
+    }
+
+    /**
+     * @return La fecha si existe tal cual, o null (un valor negativo indica que no eran dígitos)
+     */
+    private static LocalDate toDate(int year, int month, int day) {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 28 && day > lengthOfMonth(year, month)) {
+            return null;
+        }
+        return LocalDate.of(year, month, day);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static int twoDigits(String value, int index) {
+        int tens = digit(value.charAt(index));
+        int units = digit(value.charAt(index + 1));
+        return tens < 0 || units < 0 ? -1 : tens * 10 + units;
+    }
+
+    private static int fourDigits(String value, int index) {
+        int high = twoDigits(value, index);
+        int low = twoDigits(value, index + 2);
+        return high < 0 || low < 0 ? -1 : high * 100 + low;
+    }
+
+    private static int digit(char ch) {
+        return ch >= '0' && ch <= '9' ? ch - '0' : -1;
+    }
+
+    /**
+     * Cadena original de formatos para Fecha Emisión; se usa para los textos que
+     * {@link #recognize} no resuelve.
+     */
+    static LocalDate parseIssueDateWithFormatters(String dateString) {
+        // Intentar parsear con el formato específico dd-MM-yyyy
+        try {
+            return LocalDate.parse(dateString, ISSUE_DATE_FORMATTER);
+        } catch (DateTimeParseException e) {
+            // Si falla, intentar con otros formatos como fallback
+            return parseWithDateFormatters(dateString);
+        }
+    }
+
+    /**
+     * Cadena original de formatos para Fecha Recepción; se usa para los textos que
+     * {@link #recognize} no resuelve.
+     */
+    static LocalDate parseReceptionDateWithFormatters(String dateString) {
+        // Intentar parsear con el formato específico dd-MM-yyyy HH:mm:ss
+        try {
+            LocalDateTime dateTime = LocalDateTime.parse(dateString, RECEPTION_DATE_FORMATTER);
+            return dateTime.toLocalDate();
+        } catch (DateTimeParseException e) {
+            // Si falla, intentar solo con la fecha y luego con los demás formatos
+            return parseIssueDateWithFormatters(dateString);
+        }
+    }
+
+    private static LocalDate parseWithDateFormatters(String dateString) {
+        for (DateTimeFormatter formatter : DATE_FORMATTERS) {
+            try {
+                return LocalDate.parse(dateString, formatter);
+            } catch (DateTimeParseException e) {
+                // Continuar con el siguiente formato
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import com.example.pib2.models.dtos.FiscalDocumentImportChunkDto;
+import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.repositories.FiscalDocumentBulkLoader;
+import com.example.pib2.repositories.FiscalDocumentNameRepository;
+import com.example.pib2.repositories.FiscalDocumentRepository;
+import com.example.pib2.repositories.FiscalDocumentSummaryRepository;
+import com.example.pib2.servicios.FiscalDocumentPartitionService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Persiste documentos fiscales por bloques.
+ *
+ * Cada bloque se guarda en una transacción independiente y al terminar se hace
+ * flush y clear del contexto de persistencia, de modo que la memoria, el tiempo
+ * de bloqueo y el costo de un error quedan acotados por el tamaño del bloque.
+ * Un bloque fallido no revierte los bloques anteriores.
+ *
+ * Los documentos se identifican por su CUFE/CUDE y su Fecha Emisión: los nuevos se
+ * insertan, los que ya existen se actualizan si cambió algún campo y los idénticos se
+ * cuentan como duplicados. Los documentos sin CUFE/CUDE o sin Fecha Emisión siempre se
+ * insertan.
+ *
+ * Antes de cada bloque se crean las particiones mensuales que le faltan a
+ * fiscal_documents (FiscalDocumentPartitionService), fuera de su transacción.
+ *
+ * En la misma transacción se actualizan los totales de fiscal_document_summaries con
+ * lo que el bloque suma y resta ({@link FiscalDocumentSummaryDelta}) y se agregan al
+ * directorio fiscal_document_names los nombres de emisor y receptor nuevos.
+ *
+ * Con {@code fiscal.import.bulk-load=true} los bloques se escriben con
+ * {@link FiscalDocumentBulkLoader} (COPY + INSERT ... ON CONFLICT en PostgreSQL)
+ * en lugar de JPA.
+ */
+@Component
+public class FiscalDocumentChunkWriter {
+
+    // Límite de parámetros por consulta al buscar los CUFE/CUDE existentes
+    private static final int LOOKUP_BATCH_SIZE = 1000;
+
+    // Campos que se comparan y copian al actualizar un documento existente
+    private static final List<Field<?>> FIELDS = List.of(
+            new Field<>(FiscalDocument::getDocumentType, FiscalDocument::setDocumentType),
+            new Field<>(FiscalDocument::getFolio, FiscalDocument::setFolio),
+            new Field<>(FiscalDocument::getPrefix, FiscalDocument::setPrefix),
+            new Field<>(FiscalDocument::getCurrency, FiscalDocument::setCurrency),
+            new Field<>(FiscalDocument::getPaymentForm, FiscalDocument::setPaymentForm),
+            new Field<>(FiscalDocument::getPaymentMethod, FiscalDocument::setPaymentMethod),
+            new Field<>(FiscalDocument::getIssueDate, FiscalDocument::setIssueDate),
+            new Field<>(FiscalDocument::getReceptionDate, FiscalDocument::setReceptionDate),
+            new Field<>(FiscalDocument::getIssuerNit, FiscalDocument::setIssuerNit),
+            new Field<>(FiscalDocument::getIssuerName, FiscalDocument::setIssuerName),
+            new Field<>(FiscalDocument::getReceiverNit, FiscalDocument::setReceiverNit),
+            new Field<>(FiscalDocument::getReceiverName, FiscalDocument::setReceiverName),
+            new Field<>(FiscalDocument::getIva, FiscalDocument::setIva),
+            new Field<>(FiscalDocument::getIca, FiscalDocument::setIca),
+            new Field<>(FiscalDocument::getIc, FiscalDocument::setIc),
+            new Field<>(FiscalDocument::getInc, FiscalDocument::setInc),
+            new Field<>(FiscalDocument::getTimbre, FiscalDocument::setTimbre),
+            new Field<>(FiscalDocument::getIncBags, FiscalDocument::setIncBags),
+            new Field<>(FiscalDocument::getInCarbon, FiscalDocument::setInCarbon),
+            new Field<>(FiscalDocument::getInFuels, FiscalDocument::setInFuels),
+            new Field<>(FiscalDocument::getIcData, FiscalDocument::setIcData),
+            new Field<>(FiscalDocument::getIcl, FiscalDocument::setIcl),
+            new Field<>(FiscalDocument::getInpp, FiscalDocument::setInpp),
+            new Field<>(FiscalDocument::getIbua, FiscalDocument::setIbua),
+            new Field<>(FiscalDocument::getIcui, FiscalDocument::setIcui),
+            new Field<>(FiscalDocument::getReteIva, FiscalDocument::setReteIva),
+            new Field<>(FiscalDocument::getReteRent, FiscalDocument::setReteRent),
+            new Field<>(FiscalDocument::getReteIca, FiscalDocument::setReteIca),
+            new Field<>(FiscalDocument::getTotal, FiscalDocument::setTotal),
+            new Field<>(FiscalDocument::getStatus, FiscalDocument::setStatus),
+            new Field<>(FiscalDocument::getGroupInfo, FiscalDocument::setGroupInfo)
+    );
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private FiscalDocumentRepository fiscalDocumentRepository;
+
+    @Autowired
+    private FiscalDocumentBulkLoader fiscalDocumentBulkLoader;
+
+    @Autowired
+    private FiscalDocumentSummaryRepository fiscalDocumentSummaryRepository;
+
+    @Autowired
+    private FiscalDocumentNameRepository fiscalDocumentNameRepository;
+
+    @Autowired
+    private FiscalDocumentPartitionService fiscalDocumentPartitionService;
+
+    @Value("${fiscal.import.bulk-load:false}")
+    private boolean bulkLoad;
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public FiscalDocumentChunkWriter(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Guarda un bloque de documentos en su propia transacción.
+     *
+     * @param chunkIndex Número del bloque dentro de la importación (base 1)
+     * @param firstRow Primera fila de Excel del bloque
+     * @param lastRow Última fila de Excel del bloque
+     * @param documents Documentos del bloque
+     * @return El resultado del bloque; nunca lanza excepción por errores de base de datos
+     */
+    public FiscalDocumentImportChunkDto writeChunk(int chunkIndex, int firstRow, int lastRow,
+                                                   List<FiscalDocument> documents) {
+        FiscalDocumentImportChunkDto result = new FiscalDocumentImportChunkDto();
+        result.setChunk(chunkIndex);
+        result.setFirstRow(firstRow);
+        result.setLastRow(lastRow);
+        result.setDocuments(documents.size());
+
+        // Si un documento se repite dentro del bloque, prevalece la última fila
+        List<FiscalDocument> unique = removeRepeatedDocuments(documents);
+        try {
+            fiscalDocumentPartitionService.ensurePartitions(unique);
+            transactionTemplate.executeWithoutResult(status -> {
+                FiscalDocumentSummaryDelta summaryDelta = new FiscalDocumentSummaryDelta();
+                if (bulkLoad && fiscalDocumentBulkLoader.isPostgreSql()) {
+                    FiscalDocumentBulkLoader.UpsertResult upsert = fiscalDocumentBulkLoader.upsert(unique);
+                    result.setInserted(upsert.getInserted());
+                    result.setUpdated(upsert.getUpdated());
+                    upsert.getWritten().forEach(summaryDelta::add);
+                    upsert.getReplaced().forEach(summaryDelta::subtract);
+                } else {
+                    merge(unique, result, summaryDelta);
+                }
+                fiscalDocumentSummaryRepository.apply(summaryDelta.getChanges());
+                fiscalDocumentNameRepository.addAll(unique);
+            });
+            result.setDuplicates(documents.size() - result.getInserted() - result.getUpdated());
+            result.setCommitted(true);
+        } catch (RuntimeException e) {
+            Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+            System.err.println("Error guardando el bloque " + chunkIndex + " (filas " + firstRow + "-" + lastRow
+                    + "): " + cause.getMessage());
+            result.setInserted(0);
+            result.setUpdated(0);
+            result.setCommitted(false);
+            result.setError(cause.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Compara el bloque con los documentos existentes (una consulta por cada
+     * LOOKUP_BATCH_SIZE CUFE/CUDE), inserta los nuevos y actualiza los que cambiaron.
+     */
+    private void merge(List<FiscalDocument> documents, FiscalDocumentImportChunkDto result,
+                       FiscalDocumentSummaryDelta summaryDelta) {
+        Map<String, FiscalDocument> existing = findExisting(documents);
+
+        List<FiscalDocument> newDocuments = new ArrayList<>();
+        long updated = 0;
+        for (FiscalDocument document : documents) {
+            String key = key(document);
+            FiscalDocument current = key != null ? existing.get(key) : null;
+            if (current == null) {
+                newDocuments.add(document);
+                summaryDelta.add(document);
+            } else {
+                // Sin cambios, lo que se resta y lo que se suma es lo mismo
+                summaryDelta.subtract(current);
+                if (copyIfChanged(document, current)) {
+                    updated++;
+                }
+                summaryDelta.add(current);
+            }
+        }
+
+        if (bulkLoad) {
+            fiscalDocumentBulkLoader.load(newDocuments);
+        } else {
+            for (FiscalDocument document : newDocuments) {
+                entityManager.persist(document);
+            }
+        }
+        // Las entidades existentes modificadas se actualizan en el flush
+        entityManager.flush();
+        entityManager.clear();
+
+        result.setInserted(newDocuments.size());
+        result.setUpdated(updated);
+    }
+
+    private Map<String, FiscalDocument> findExisting(List<FiscalDocument> documents) {
+        List<String> cufes = new ArrayList<>();
+        for (FiscalDocument document : documents) {
+            if (key(document) != null) {
+                cufes.add(document.getCufeCude());
+            }
+        }
+
+        // Un CUFE/CUDE puede traer documentos de otras fechas, que no son los mismos
+        Map<String, FiscalDocument> existing = new HashMap<>();
+        for (int i = 0; i < cufes.size(); i += LOOKUP_BATCH_SIZE) {
+            List<String> batch = cufes.subList(i, Math.min(i + LOOKUP_BATCH_SIZE, cufes.size()));
+            for (FiscalDocument document : fiscalDocumentRepository.findByCufeCudeIn(batch)) {
+                String key = key(document);
+                if (key != null) {
+                    existing.put(key, document);
+                }
+            }
+        }
+        return existing;
+    }
+
+    private List<FiscalDocument> removeRepeatedDocuments(List<FiscalDocument> documents) {
+        Map<String, FiscalDocument> byKey = new LinkedHashMap<>();
+        List<FiscalDocument> unique = new ArrayList<>(documents.size());
+        for (FiscalDocument document : documents) {
+            String key = key(document);
+            if (key == null) {
+                unique.add(document);
+            } else {
+                byKey.put(key, document);
+            }
+        }
+        unique.addAll(byKey.values());
+        return unique;
+    }
+
+    /**
+     * @return La llave que identifica el documento (CUFE/CUDE y Fecha Emisión), o null
+     *         si le falta alguno de los dos
+     */
+    private static String key(FiscalDocument document) {
+        if (document.getCufeCude() == null || document.getIssueDate() == null) {
+            return null;
+        }
+        return document.getCufeCude() + '|' + document.getIssueDate();
+    }
+
+    /**
+     * Copia los campos del documento importado sobre el existente si alguno es distinto.
+     * Los montos se comparan por valor, sin importar la escala (1.5 = 1.50). Si cambió,
+     * el documento pasa a ser de la importación nueva.
+     *
+     * @return true si el documento existente cambió
+     */
+    private boolean copyIfChanged(FiscalDocument source, FiscalDocument target) {
+        boolean changed = false;
+        for (Field<?> field : FIELDS) {
+            changed |= field.copyIfChanged(source, target);
+        }
+        if (changed) {
+            target.setImportId(source.getImportId());
+        }
+        return changed;
+    }
+
+    private static class Field<T> {
+
+        private final Function<FiscalDocument, T> getter;
+        private final BiConsumer<FiscalDocument, T> setter;
+
+        Field(Function<FiscalDocument, T> getter, BiConsumer<FiscalDocument, T> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        boolean copyIfChanged(FiscalDocument source, FiscalDocument target) {
+            T value = getter.apply(source);
+            T current = getter.apply(target);
+            boolean same = value instanceof BigDecimal number && current instanceof BigDecimal currentNumber
+                    ? number.compareTo(currentNumber) == 0
+                    : Objects.equals(value, current);
+            if (same) {
+                return false;
+            }
+            setter.accept(target, value);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import com.example.pib2.models.entities.FiscalDocument;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Escribe documentos fiscales en un .xlsx con las mismas 32 columnas que recibe la
+ * importación, de modo que el archivo se puede volver a importar sin cambios.
+ *
+ * Usa SXSSF: solo las últimas {@value #ROW_WINDOW} filas quedan en memoria y las
+ * anteriores se pasan a un archivo temporal comprimido. Los textos se escriben en
+ * línea (sin tabla de textos compartidos, que crecería con cada valor distinto), así
+ * que la memoria usada no depende de la cantidad de filas.
+ *
+ * Las fechas se escriben como fechas de Excel (dd-mm-yyyy) y los montos como números,
+ * salvo los de más de 15 dígitos, que un double no representa exactamente y se
+ * escriben como texto. Los NIT, el folio y los demás campos se escriben como texto.
+ *
+ * Todo va en una sola hoja, la única que lee la importación, así que caben a lo sumo
+ * {@link #MAX_DOCUMENTS} documentos.
+ */
+public class FiscalDocumentExcelWriter implements AutoCloseable {
+
+    /**
+     * Documentos que caben en la hoja: las filas de un .xlsx menos la del encabezado.
+     */
+    public static final int MAX_DOCUMENTS = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+
+    private static final int ROW_WINDOW = 100;
+
+    // Precisión exacta de un double
+    private static final int MAX_NUMERIC_DIGITS = 15;
+
+    private enum Kind { TEXT, DATE, AMOUNT }
+
+    // Valor de cada columna en el orden de la importación
+    private static final List<Column> COLUMNS = List.of(
+            new Column(Kind.TEXT, FiscalDocument::getDocumentType, 22),
+            new Column(Kind.TEXT, FiscalDocument::getCufeCude, 40),
+            new Column(Kind.TEXT, FiscalDocument::getFolio, 12),
+            new Column(Kind.TEXT, FiscalDocument::getPrefix, 10),
+            new Column(Kind.TEXT, FiscalDocument::getCurrency, 8),
+            new Column(Kind.TEXT, FiscalDocument::getPaymentForm, 14),
+            new Column(Kind.TEXT, FiscalDocument::getPaymentMethod, 16),
+            new Column(Kind.DATE, FiscalDocument::getIssueDate, 14),
+            new Column(Kind.DATE, FiscalDocument::getReceptionDate, 14),
+            new Column(Kind.TEXT, FiscalDocument::getIssuerNit, 14),
+            new Column(Kind.TEXT, FiscalDocument::getIssuerName, 30),
+            new Column(Kind.TEXT, FiscalDocument::getReceiverNit, 14),
+            new Column(Kind.TEXT, FiscalDocument::getReceiverName, 30),
+            new Column(Kind.AMOUNT, FiscalDocument::getIva, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getIca, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getIc, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getInc, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getTimbre, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getIncBags, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getInCarbon, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getInFuels, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getIcData, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getIcl, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getInpp, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getIbua, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getIcui, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getReteIva, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getReteRent, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getReteIca, 14),
+            new Column(Kind.AMOUNT, FiscalDocument::getTotal, 16),
+            new Column(Kind.TEXT, FiscalDocument::getStatus, 14),
+            new Column(Kind.TEXT, FiscalDocument::getGroupInfo, 20)
+    );
+
+    private final SXSSFWorkbook workbook;
+    private final SXSSFSheet sheet;
+    private final CellStyle dateStyle;
+    private final CellStyle amountStyle;
+    private int nextRow;
+
+    /**
+     * @param headers Nombres de las columnas, en el orden de la importación
+     */
+    public FiscalDocumentExcelWriter(List<String> headers) {
+        if (headers.size() != COLUMNS.size()) {
+            throw new IllegalArgumentException("Se esperaban " + COLUMNS.size() + " columnas y se recibieron " + headers.size());
+        }
+        workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        sheet = workbook.createSheet("Documentos");
+
+        dateStyle = workbook.createCellStyle();
+        dateStyle.setDataFormat(workbook.createDataFormat().getFormat("dd-mm-yyyy"));
+        amountStyle = workbook.createCellStyle();
+        amountStyle.setDataFormat(workbook.createDataFormat().getFormat("#,##0.00"));
+
+        CellStyle headerStyle = workbook.createCellStyle();
+        Font bold = workbook.createFont();
+        bold.setBold(true);
+        headerStyle.setFont(bold);
+        Row header = sheet.createRow(nextRow++);
+        for (int i = 0; i < headers.size(); i++) {
+            Cell cell = header.createCell(i);
+            cell.setCellValue(headers.get(i));
+            cell.setCellStyle(headerStyle);
+            sheet.setColumnWidth(i, COLUMNS.get(i).width * 256);
+        }
+        sheet.createFreezePane(0, 1);
+    }
+
+    /**
+     * Agrega el documento como la fila siguiente.
+     *
+     * @throws IllegalStateException Si la hoja ya tiene {@link #MAX_DOCUMENTS} documentos
+     */
+    public void write(FiscalDocument document) {
+        if (getDocumentCount() == MAX_DOCUMENTS) {
+            throw new IllegalStateException("Una hoja de Excel admite hasta " + MAX_DOCUMENTS + " documentos");
+        }
+        Row row = sheet.createRow(nextRow++);
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            Column column = COLUMNS.get(i);
+            Object value = column.value.apply(document);
+            if (value == null) {
+                continue;
+            }
+            Cell cell = row.createCell(i);
+            switch (column.kind) {
+                case DATE -> {
+                    cell.setCellValue((LocalDate) value);
+                    cell.setCellStyle(dateStyle);
+                }
+                case AMOUNT -> {
+                    BigDecimal amount = (BigDecimal) value;
+                    if (amount.precision() <= MAX_NUMERIC_DIGITS) {
+                        cell.setCellValue(amount.doubleValue());
+                        cell.setCellStyle(amountStyle);
+                    } else {
+                        cell.setCellValue(amount.toPlainString());
+                    }
+                }
+                default -> cell.setCellValue(value.toString());
+            }
+        }
+    }
+
+    /**
+     * @return Cantidad de documentos escritos
+     */
+    public int getDocumentCount() {
+        return nextRow - 1;
+    }
+
+    /**
+     * Escribe el libro completo en output. Las filas se copian desde el archivo
+     * temporal, así que la salida empieza después de la última fila.
+     */
+    public void finish(OutputStream output) throws IOException {
+        workbook.write(output);
+    }
+
+    /**
+     * Elimina el archivo temporal.
+     */
+    @Override
+    public void close() throws IOException {
+        workbook.dispose();
+        workbook.close();
+    }
+
+    private static class Column {
+
+        private final Kind kind;
+        private final Function<FiscalDocument, ?> value;
+        // Ancho en caracteres
+        private final int width;
+
+        Column(Kind kind, Function<FiscalDocument, ?> value, int width) {
+            this.kind = kind;
+            this.value = value;
+            this.width = width;
+        }
+    }
+}
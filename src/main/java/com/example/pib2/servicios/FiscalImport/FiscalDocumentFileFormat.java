@@ -0,0 +1,77 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import java.util.Locale;
+
+/**
+ * Formatos de archivo aceptados para importar documentos fiscales.
+ */
+public enum FiscalDocumentFileFormat {
+
+    XLSX(".xlsx"),
+    XLS(".xls"),
+    // Texto delimitado por ';', ',' o tabulador, como los que exporta la DIAN
+    CSV(".csv");
+
+    private final String extension;
+
+    FiscalDocumentFileFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return La extensión con el punto; se usa como sufijo de los archivos temporales
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Determina el formato por el tipo de contenido de la subida y, cuando este no es
+     * concluyente, por la extensión del nombre.
+     *
+     * Los navegadores en Windows envían {@code application/vnd.ms-excel} también para los
+     * .csv, y {@code application/octet-stream} cuando no conocen la extensión; en esos
+     * casos decide la extensión.
+     *
+     * @param filename Nombre original del archivo; puede ser null
+     * @param contentType Tipo de contenido declarado en la subida; puede ser null
+     * @return El formato, o null si el archivo no es un Excel ni un CSV
+     */
+    public static FiscalDocumentFileFormat detect(String filename, String contentType) {
+        if (contentType != null) {
+            // Sin parámetros como "; charset=UTF-8"
+            int parameters = contentType.indexOf(';');
+            String mediaType = (parameters >= 0 ? contentType.substring(0, parameters) : contentType)
+                    .trim().toLowerCase(Locale.ROOT);
+            switch (mediaType) {
+                case "text/csv", "application/csv", "text/plain", "text/tab-separated-values":
+                    return CSV;
+                case "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet":
+                    return XLSX;
+                default:
+                    break;
+            }
+        }
+        return fromFilename(filename);
+    }
+
+    /**
+     * @return El formato según la extensión del nombre (.xlsx, .xls, .csv o .txt), o null
+     */
+    public static FiscalDocumentFileFormat fromFilename(String filename) {
+        if (filename == null) {
+            return null;
+        }
+        String name = filename.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xlsx")) {
+            return XLSX;
+        }
+        if (name.endsWith(".xls")) {
+            return XLS;
+        }
+        if (name.endsWith(".csv") || name.endsWith(".txt")) {
+            return CSV;
+        }
+        return null;
+    }
+}
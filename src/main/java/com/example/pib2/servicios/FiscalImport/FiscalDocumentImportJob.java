@@ -0,0 +1,110 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import com.example.pib2.models.dtos.FiscalDocumentImportReportDto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trabajo de importación de un archivo de documentos fiscales que se ejecuta en segundo plano.
+ */
+public class FiscalDocumentImportJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final String id;
+    private final String filename;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final FiscalDocumentImportProgress progress = new FiscalDocumentImportProgress();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile String error;
+    private volatile FiscalDocumentImportReportDto report;
+
+    public FiscalDocumentImportJob(String id, String filename) {
+        this.id = id;
+        this.filename = filename;
+    }
+
+    public void start() {
+        startedAt = LocalDateTime.now();
+        startedNanos = System.nanoTime();
+        status = Status.RUNNING;
+    }
+
+    public void complete(FiscalDocumentImportReportDto report) {
+        this.report = report;
+        finish(Status.COMPLETED);
+    }
+
+    public void fail(String error) {
+        this.error = error;
+        finish(Status.FAILED);
+    }
+
+    private void finish(Status finalStatus) {
+        finishedNanos = System.nanoTime();
+        finishedAt = LocalDateTime.now();
+        status = finalStatus;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    /**
+     * @return Filas leídas por segundo desde que empezó el trabajo (0 si aún no empieza)
+     */
+    public double getRowsPerSecond() {
+        if (startedAt == null) {
+            return 0;
+        }
+        long end = isFinished() ? finishedNanos : System.nanoTime();
+        double seconds = (end - startedNanos) / 1_000_000_000.0;
+        return seconds > 0 ? progress.getRowsRead() / seconds : 0;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public FiscalDocumentImportProgress getProgress() {
+        return progress;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public FiscalDocumentImportReportDto getReport() {
+        return report;
+    }
+}
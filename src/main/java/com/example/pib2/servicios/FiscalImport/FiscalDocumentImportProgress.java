@@ -0,0 +1,69 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import com.example.pib2.models.dtos.FiscalDocumentImportChunkDto;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contadores de avance de una importación.
+ *
+ * Los actualiza el hilo que importa y se pueden leer en cualquier momento desde
+ * otros hilos (por ejemplo, al consultar el estado de un trabajo).
+ */
+public class FiscalDocumentImportProgress {
+
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    public void rowRejected() {
+        rejected.incrementAndGet();
+    }
+
+    public void chunkWritten(FiscalDocumentImportChunkDto chunk) {
+        if (!chunk.isCommitted()) {
+            failed.addAndGet(chunk.getDocuments());
+            return;
+        }
+        inserted.addAndGet(chunk.getInserted());
+        updated.addAndGet(chunk.getUpdated());
+        duplicates.addAndGet(chunk.getDuplicates());
+        persisted.addAndGet(chunk.getDocuments());
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getPersisted() {
+        return persisted.get();
+    }
+
+    public long getInserted() {
+        return inserted.get();
+    }
+
+    public long getUpdated() {
+        return updated.get();
+    }
+
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+}
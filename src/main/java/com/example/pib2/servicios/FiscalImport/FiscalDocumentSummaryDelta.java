@@ -0,0 +1,108 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.models.entities.FiscalDocumentSummary;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cambio que un bloque de la importación produce en los totales de
+ * fiscal_document_summaries: suma los documentos que escribe y resta la versión
+ * anterior de los que reemplaza. Un documento reimportado sin cambios se suma y se
+ * resta, y no deja cambio.
+ */
+public class FiscalDocumentSummaryDelta {
+
+    private static final Comparator<FiscalDocumentSummary> KEY_ORDER = Comparator
+            .comparing(FiscalDocumentSummary::getReceiverNit)
+            .thenComparing(FiscalDocumentSummary::getIssuerNit)
+            .thenComparing(FiscalDocumentSummary::getIssueMonth)
+            .thenComparing(FiscalDocumentSummary::getDocumentType);
+
+    private final Map<List<String>, FiscalDocumentSummary> groups = new HashMap<>();
+
+    /**
+     * Suma un documento a su grupo.
+     */
+    public void add(FiscalDocument document) {
+        apply(document, false);
+    }
+
+    /**
+     * Resta un documento de su grupo.
+     */
+    public void subtract(FiscalDocument document) {
+        apply(document, true);
+    }
+
+    /**
+     * @return Los grupos que cambian, en orden de su llave para que dos bloques
+     *         concurrentes bloqueen las filas de totales en el mismo orden
+     */
+    public List<FiscalDocumentSummary> getChanges() {
+        List<FiscalDocumentSummary> changes = new ArrayList<>();
+        for (FiscalDocumentSummary group : groups.values()) {
+            if (group.getDocumentCount() != 0 || group.getIva().signum() != 0 || group.getReteIva().signum() != 0
+                    || group.getReteRent().signum() != 0 || group.getReteIca().signum() != 0
+                    || group.getTotal().signum() != 0) {
+                changes.add(group);
+            }
+        }
+        changes.sort(KEY_ORDER);
+        return changes;
+    }
+
+    private void apply(FiscalDocument document, boolean subtract) {
+        List<String> key = List.of(
+                keyPart(document.getReceiverNit()),
+                keyPart(document.getIssuerNit()),
+                issueMonth(document.getIssueDate()),
+                keyPart(document.getDocumentType()));
+        FiscalDocumentSummary group = groups.computeIfAbsent(key, k -> {
+            FiscalDocumentSummary summary = new FiscalDocumentSummary();
+            summary.setReceiverNit(k.get(0));
+            summary.setIssuerNit(k.get(1));
+            summary.setIssueMonth(k.get(2));
+            summary.setDocumentType(k.get(3));
+            summary.setIva(BigDecimal.ZERO);
+            summary.setReteIva(BigDecimal.ZERO);
+            summary.setReteRent(BigDecimal.ZERO);
+            summary.setReteIca(BigDecimal.ZERO);
+            summary.setTotal(BigDecimal.ZERO);
+            return summary;
+        });
+
+        group.setDocumentCount(group.getDocumentCount() + (subtract ? -1 : 1));
+        group.setIva(accumulate(group.getIva(), document, FiscalDocument::getIva, subtract));
+        group.setReteIva(accumulate(group.getReteIva(), document, FiscalDocument::getReteIva, subtract));
+        group.setReteRent(accumulate(group.getReteRent(), document, FiscalDocument::getReteRent, subtract));
+        group.setReteIca(accumulate(group.getReteIca(), document, FiscalDocument::getReteIca, subtract));
+        group.setTotal(accumulate(group.getTotal(), document, FiscalDocument::getTotal, subtract));
+    }
+
+    private static BigDecimal accumulate(BigDecimal sum, FiscalDocument document,
+                                         Function<FiscalDocument, BigDecimal> amount, boolean subtract) {
+        BigDecimal value = amount.apply(document);
+        if (value == null) {
+            return sum;
+        }
+        return subtract ? sum.subtract(value) : sum.add(value);
+    }
+
+    // Mes de la fecha como yyyy-MM
+    private static String issueMonth(LocalDate issueDate) {
+        return issueDate != null ? YearMonth.from(issueDate).toString() : "";
+    }
+
+    private static String keyPart(String value) {
+        return value != null ? value : "";
+    }
+}
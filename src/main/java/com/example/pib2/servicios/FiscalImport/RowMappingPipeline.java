@@ -0,0 +1,160 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Procesa las filas de una hoja en tres etapas que corren en paralelo.
+ *
+ * El hilo lector entrega las filas con {@link #accept(SpreadsheetRow)}; se agrupan en
+ * lotes que un pool de hilos convierte con la función de mapeo. Los lotes convertidos
+ * pasan por una cola acotada a un único hilo escritor, que los consume en el mismo
+ * orden en que se leyeron, así que el resultado no depende de qué lote termine primero.
+ * Cuando la cola está llena el lector espera, de modo que la memoria queda limitada
+ * a {@code maxPendingBatches} lotes.
+ *
+ * @param <T> Tipo del resultado de convertir una fila
+ */
+public class RowMappingPipeline<T> implements Consumer<SpreadsheetRow> {
+
+    // Cada cuánto revisa el lector, mientras espera lugar en la cola, si el escritor falló
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final CompletableFuture<List<T>> end = new CompletableFuture<>();
+    private final BlockingQueue<CompletableFuture<List<T>>> batches;
+    private final Executor mappingExecutor;
+    private final Function<SpreadsheetRow, T> mapper;
+    private final Consumer<T> writer;
+    private final int batchSize;
+    private final Future<Void> writerTask;
+
+    private List<SpreadsheetRow> batch;
+    private volatile boolean aborted;
+
+    /**
+     * @param mappingExecutor Pool que convierte los lotes de filas
+     * @param writerExecutor Ejecutor donde corre el hilo escritor de esta importación
+     * @param batchSize Filas por lote
+     * @param maxPendingBatches Lotes que pueden estar en conversión o esperando al escritor
+     * @param mapper Conversión de una fila; se llama desde varios hilos a la vez
+     * @param writer Recibe los resultados en el orden de las filas; siempre desde el mismo hilo
+     */
+    public RowMappingPipeline(Executor mappingExecutor, AsyncTaskExecutor writerExecutor, int batchSize,
+                              int maxPendingBatches, Function<SpreadsheetRow, T> mapper, Consumer<T> writer) {
+        this.mappingExecutor = mappingExecutor;
+        this.mapper = mapper;
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.batches = new ArrayBlockingQueue<>(maxPendingBatches);
+        this.batch = new ArrayList<>(batchSize);
+        this.writerTask = writerExecutor.submit(this::drain);
+    }
+
+    @Override
+    public void accept(SpreadsheetRow row) {
+        batch.add(row);
+        if (batch.size() >= batchSize) {
+            submitBatch();
+        }
+    }
+
+    /**
+     * Envía el último lote y espera a que el escritor procese todas las filas.
+     *
+     * @throws Exception La excepción del escritor o de la conversión, si alguna falló
+     */
+    public void finish() throws Exception {
+        if (!batch.isEmpty()) {
+            submitBatch();
+        }
+        enqueue(end);
+        awaitWriter();
+    }
+
+    /**
+     * Detiene el escritor sin procesar los lotes pendientes, por ejemplo cuando falla
+     * la lectura del archivo, y espera a que termine el lote que está escribiendo.
+     */
+    public void abort() {
+        aborted = true;
+        batches.clear();
+        batches.offer(end);
+        try {
+            awaitWriter();
+        } catch (Exception e) {
+            // Se conserva la excepción original de la lectura
+        }
+    }
+
+    private void submitBatch() {
+        List<SpreadsheetRow> rows = batch;
+        batch = new ArrayList<>(batchSize);
+        enqueue(CompletableFuture.supplyAsync(() -> map(rows), mappingExecutor));
+    }
+
+    private List<T> map(List<SpreadsheetRow> rows) {
+        List<T> results = new ArrayList<>(rows.size());
+        for (SpreadsheetRow row : rows) {
+            results.add(mapper.apply(row));
+        }
+        return results;
+    }
+
+    private void enqueue(CompletableFuture<List<T>> mapped) {
+        try {
+            while (!batches.offer(mapped, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (writerTask.isDone()) {
+                    // El escritor terminó antes de tiempo: awaitWriter lanza su excepción
+                    awaitWriter();
+                    throw new IllegalStateException("El escritor de la importación terminó antes de tiempo");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Importación interrumpida", e);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private Void drain() throws InterruptedException, ExecutionException {
+        while (true) {
+            CompletableFuture<List<T>> next = batches.take();
+            if (next == end || aborted) {
+                return null;
+            }
+            for (T result : next.get()) {
+                writer.accept(result);
+            }
+        }
+    }
+
+    private void awaitWriter() throws Exception {
+        try {
+            writerTask.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            // La conversión falla dentro del CompletableFuture del lote
+            if (cause instanceof ExecutionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import org.apache.poi.ss.usermodel.CellType;
+
+/**
+ * Fila leída de una hoja de cálculo, independiente del modelo DOM de POI.
+ *
+ * Guarda únicamente los valores crudos de las primeras columnas de la fila
+ * para que el lector pueda entregar una fila a la vez sin retener el libro
+ * completo en memoria.
+ *
+ * Para las celdas con fórmula, {@link #getType(int)} retorna FORMULA y
+ * {@link #getResultType(int)} el tipo del valor calculado guardado en el archivo.
+ */
+public class SpreadsheetRow {
+
+    private final int rowNum;
+    private final CellType[] types;
+    private final CellType[] resultTypes;
+    private final String[] values;
+    private final boolean[] dates;
+
+    /**
+     * @param rowNum Número de la fila (base 0, como en POI)
+     * @param columns Cantidad de columnas que se conservan de la fila
+     */
+    public SpreadsheetRow(int rowNum, int columns) {
+        this.rowNum = rowNum;
+        this.types = new CellType[columns];
+        this.resultTypes = new CellType[columns];
+        this.values = new String[columns];
+        this.dates = new boolean[columns];
+    }
+
+    public int getRowNum() {
+        return rowNum;
+    }
+
+    /**
+     * Registra el valor de una celda. Las columnas fuera de rango se ignoran.
+     *
+     * @param column Índice de la columna (base 0)
+     * @param type Tipo de la celda; FORMULA si la celda contiene una fórmula
+     * @param resultType Tipo del valor (el resultado calculado en el caso de fórmulas)
+     * @param value Valor crudo: texto, número en notación Java o "true"/"false"
+     * @param date true si el formato de la celda es de fecha
+     */
+    public void setCell(int column, CellType type, CellType resultType, String value, boolean date) {
+        if (column < 0 || column >= types.length) {
+            return;
+        }
+        types[column] = type;
+        resultTypes[column] = resultType;
+        values[column] = value;
+        dates[column] = date;
+    }
+
+    /**
+     * @return El tipo de la celda, o BLANK si la celda no existe
+     */
+    public CellType getType(int column) {
+        if (column < 0 || column >= types.length || types[column] == null) {
+            return CellType.BLANK;
+        }
+        return types[column];
+    }
+
+    /**
+     * @return El tipo del valor de la celda (resultado de la fórmula si aplica)
+     */
+    public CellType getResultType(int column) {
+        if (column < 0 || column >= resultTypes.length || resultTypes[column] == null) {
+            return CellType.BLANK;
+        }
+        return resultTypes[column];
+    }
+
+    public String getValue(int column) {
+        if (column < 0 || column >= values.length) {
+            return null;
+        }
+        return values[column];
+    }
+
+    public boolean isDate(int column) {
+        return column >= 0 && column < dates.length && dates[column];
+    }
+
+    /**
+     * @return El valor numérico de la celda; solo válido para celdas NUMERIC
+     */
+    public double getNumericValue(int column) {
+        return Double.parseDouble(values[column]);
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.pib2.servicios.FiscalReconciliation;
+
+import com.example.pib2.models.entities.FiscalReconciliationResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Cruce por hash (hash join) de los documentos internos con los documentos fiscales
+ * sobre su {@link FiscalReconciliationKey}, con memoria acotada.
+ *
+ * Mientras se leen, los dos lados se reparten por el hash de la llave en particiones,
+ * cada una en un archivo temporal propio: un documento y el documento fiscal con su
+ * misma llave quedan en la partición del mismo número. Después, para cada partición,
+ * se arma en memoria la tabla hash de sus documentos internos y se recorren sus
+ * documentos fiscales buscando cada uno en ella. Solo una partición está en memoria a
+ * la vez: con suficientes particiones, la memoria no depende de la cantidad de
+ * documentos del mes.
+ *
+ * Si varios documentos tienen la misma llave se emparejan de a uno, en el orden en que
+ * se agregaron; los que sobran quedan sin pareja. Un documento fiscal que se agrega dos
+ * veces (está en la tabla y en el histórico) se cuenta una sola vez. Los documentos sin
+ * NIT o sin número no se cruzan con nada; se reparten en las particiones por su ID.
+ *
+ * No es seguro para usar desde varios hilos.
+ */
+public class FiscalReconciliationJoin implements Closeable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Path directory;
+    private final int partitions;
+
+    private final DataOutputStream[] documentFiles;
+    private final DataOutputStream[] fiscalDocumentFiles;
+
+    private long documents;
+    private long fiscalDocuments;
+
+    /**
+     * @param directory Directorio donde se crean los archivos de las particiones; se
+     *                  borran al cerrar
+     * @param partitions Cantidad de particiones ({@link #partitionsFor})
+     */
+    public FiscalReconciliationJoin(Path directory, int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Se necesita al menos una partición");
+        }
+        this.directory = directory;
+        this.partitions = partitions;
+        this.documentFiles = new DataOutputStream[partitions];
+        this.fiscalDocumentFiles = new DataOutputStream[partitions];
+    }
+
+    /**
+     * @param documents Cantidad de documentos internos que se van a agregar
+     * @param documentsPerPartition Cantidad de documentos internos que caben en memoria a la vez
+     * @return La cantidad de particiones para que cada una tenga, en promedio, a lo sumo
+     *         documentsPerPartition documentos internos
+     */
+    public static int partitionsFor(long documents, int documentsPerPartition) {
+        return (int) Math.max(1, (documents + documentsPerPartition - 1) / documentsPerPartition);
+    }
+
+    public void addDocument(long id, String nit, String prefix, String number, BigDecimal total) {
+        documents++;
+        write(documentFiles, FiscalReconciliationKey.of(nit, prefix, number), id, total);
+    }
+
+    public void addFiscalDocument(long id, String issuerNit, String prefix, String folio, BigDecimal total) {
+        write(fiscalDocumentFiles, FiscalReconciliationKey.of(issuerNit, prefix, folio), id, total);
+    }
+
+    /**
+     * Cruza los documentos agregados, una partición a la vez. Se llama una sola vez,
+     * después de agregar todos los documentos.
+     *
+     * @param consumer Recibe cada resultado, sin el ID de la conciliación
+     */
+    public void join(Consumer<FiscalReconciliationResult> consumer) {
+        try {
+            closeFiles(documentFiles);
+            closeFiles(fiscalDocumentFiles);
+            for (int partition = 0; partition < partitions; partition++) {
+                joinPartition(partition, consumer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return Cantidad de documentos internos agregados
+     */
+    public long getDocuments() {
+        return documents;
+    }
+
+    /**
+     * @return Cantidad de documentos fiscales distintos; se conoce después de {@link #join}
+     */
+    public long getFiscalDocuments() {
+        return fiscalDocuments;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeFiles(documentFiles);
+        closeFiles(fiscalDocumentFiles);
+        for (int partition = 0; partition < partitions; partition++) {
+            Files.deleteIfExists(file("documents", partition));
+            Files.deleteIfExists(file("fiscal-documents", partition));
+        }
+    }
+
+    private void joinPartition(int partition, Consumer<FiscalReconciliationResult> consumer) throws IOException {
+        // Tabla hash de los documentos internos de la partición
+        Map<FiscalReconciliationKey, ArrayDeque<Entry>> table = new HashMap<>();
+        Path documentsFile = file("documents", partition);
+        if (Files.exists(documentsFile)) {
+            try (DataInputStream input = open(documentsFile)) {
+                Entry entry;
+                while ((entry = read(input)) != null) {
+                    if (entry.key.isComplete()) {
+                        table.computeIfAbsent(entry.key, key -> new ArrayDeque<>(1)).add(entry);
+                    } else {
+                        consumer.accept(result(FiscalReconciliationResult.DOCUMENT_ONLY, entry.key,
+                                null, null, entry.id, entry.total));
+                    }
+                }
+            }
+            Files.delete(documentsFile);
+        }
+
+        Path fiscalDocumentsFile = file("fiscal-documents", partition);
+        if (Files.exists(fiscalDocumentsFile)) {
+            Set<Long> seen = new HashSet<>();
+            try (DataInputStream input = open(fiscalDocumentsFile)) {
+                Entry fiscal;
+                while ((fiscal = read(input)) != null) {
+                    if (!seen.add(fiscal.id)) {
+                        continue;
+                    }
+                    fiscalDocuments++;
+                    ArrayDeque<Entry> candidates = fiscal.key.isComplete() ? table.get(fiscal.key) : null;
+                    Entry document = candidates != null ? candidates.poll() : null;
+                    if (document == null) {
+                        consumer.accept(result(FiscalReconciliationResult.FISCAL_ONLY, fiscal.key,
+                                fiscal.id, fiscal.total, null, null));
+                    } else {
+                        boolean sameTotal = fiscal.total == null || document.total == null
+                                || fiscal.total.compareTo(document.total) == 0;
+                        consumer.accept(result(sameTotal ? FiscalReconciliationResult.MATCHED
+                                        : FiscalReconciliationResult.AMOUNT_MISMATCH, fiscal.key,
+                                fiscal.id, fiscal.total, document.id, document.total));
+                    }
+                }
+            }
+            Files.delete(fiscalDocumentsFile);
+        }
+
+        for (ArrayDeque<Entry> remaining : table.values()) {
+            for (Entry document : remaining) {
+                consumer.accept(result(FiscalReconciliationResult.DOCUMENT_ONLY, document.key,
+                        null, null, document.id, document.total));
+            }
+        }
+    }
+
+    private void write(DataOutputStream[] files, FiscalReconciliationKey key, long id, BigDecimal total) {
+        int partition = partition(key, id);
+        try {
+            DataOutputStream output = files[partition];
+            if (output == null) {
+                String side = files == documentFiles ? "documents" : "fiscal-documents";
+                output = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(file(side, partition)), BUFFER_SIZE));
+                files[partition] = output;
+            }
+            output.writeLong(id);
+            output.writeUTF(key.getNit());
+            output.writeUTF(key.getPrefix());
+            output.writeUTF(key.getNumber());
+            output.writeUTF(total != null ? total.toPlainString() : "");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Entry read(DataInputStream input) throws IOException {
+        long id;
+        try {
+            id = input.readLong();
+        } catch (EOFException e) {
+            return null;
+        }
+        FiscalReconciliationKey key = FiscalReconciliationKey.ofNormalized(
+                input.readUTF(), input.readUTF(), input.readUTF());
+        String total = input.readUTF();
+        return new Entry(id, key, total.isEmpty() ? null : new BigDecimal(total));
+    }
+
+    /**
+     * Número de partición de la llave, o del ID si la llave está incompleta. El hash se
+     * mezcla antes de tomar el resto: la tabla hash de la partición usa los bits bajos
+     * del mismo hashCode, que serían iguales en todas sus llaves.
+     */
+    private int partition(FiscalReconciliationKey key, long id) {
+        long hash = key.isComplete() ? key.hashCode() & 0xffffffffL : id;
+        return (int) Long.remainderUnsigned((hash * 0x9E3779B97F4A7C15L) >>> 32, partitions);
+    }
+
+    private Path file(String side, int partition) {
+        return directory.resolve(side + "-" + partition + ".bin");
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+    }
+
+    private static void closeFiles(DataOutputStream[] files) throws IOException {
+        for (int i = 0; i < files.length; i++) {
+            if (files[i] != null) {
+                files[i].close();
+                files[i] = null;
+            }
+        }
+    }
+
+    private static FiscalReconciliationResult result(String status, FiscalReconciliationKey key,
+                                                     Long fiscalDocumentId, BigDecimal fiscalDocumentTotal,
+                                                     Long documentId, BigDecimal documentTotal) {
+        FiscalReconciliationResult result = new FiscalReconciliationResult();
+        result.setStatus(status);
+        result.setNit(key.getNit());
+        result.setPrefix(key.getPrefix());
+        result.setNumber(key.getNumber());
+        result.setFiscalDocumentId(fiscalDocumentId);
+        result.setFiscalDocumentTotal(fiscalDocumentTotal);
+        result.setDocumentId(documentId);
+        result.setDocumentTotal(documentTotal);
+        return result;
+    }
+
+    private static final class Entry {
+
+        private final long id;
+        private final FiscalReconciliationKey key;
+        private final BigDecimal total;
+
+        Entry(long id, FiscalReconciliationKey key, BigDecimal total) {
+            this.id = id;
+            this.key = key;
+            this.total = total;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.pib2.servicios.FiscalReconciliation;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Llave con la que se concilia un documento fiscal con un documento interno: NIT
+ * emisor, prefijo y número, normalizados para que las diferencias de formato entre la
+ * DIAN y lo que se digitó no impidan el cruce.
+ *
+ * <ul>
+ *   <li>NIT: solo dígitos, sin dígito de verificación (lo que sigue al último guion)
+ *   y sin ceros a la izquierda. {@code "900.123.456-7"} queda {@code "900123456"}.</li>
+ *   <li>Prefijo: solo letras y dígitos, en mayúsculas. {@code "fe-"} queda {@code "FE"}.</li>
+ *   <li>Número: solo letras y dígitos, en mayúsculas, sin el prefijo si lo repite y sin
+ *   ceros a la izquierda. {@code "FE-000123"} con prefijo {@code "FE"} queda {@code "123"}.</li>
+ * </ul>
+ */
+public final class FiscalReconciliationKey {
+
+    private final String nit;
+    private final String prefix;
+    private final String number;
+
+    private FiscalReconciliationKey(String nit, String prefix, String number) {
+        this.nit = nit;
+        this.prefix = prefix;
+        this.number = number;
+    }
+
+    public static FiscalReconciliationKey of(String nit, String prefix, String number) {
+        String normalizedPrefix = normalizePrefix(prefix);
+        return new FiscalReconciliationKey(normalizeNit(nit), normalizedPrefix, normalizeNumber(number, normalizedPrefix));
+    }
+
+    /**
+     * Llave con valores que ya están normalizados, como los que se leen de vuelta de un
+     * archivo: normalizar dos veces podría quitar dos veces el prefijo del número.
+     */
+    static FiscalReconciliationKey ofNormalized(String nit, String prefix, String number) {
+        return new FiscalReconciliationKey(nit, prefix, number);
+    }
+
+    public static String normalizeNit(String nit) {
+        if (nit == null) {
+            return "";
+        }
+        String value = nit.trim();
+        int dash = value.lastIndexOf('-');
+        if (dash > 0) {
+            value = value.substring(0, dash);
+        }
+        return stripLeadingZeros(keepLettersAndDigits(value, true));
+    }
+
+    public static String normalizePrefix(String prefix) {
+        return prefix == null ? "" : keepLettersAndDigits(prefix, false);
+    }
+
+    /**
+     * @param prefix Prefijo ya normalizado
+     */
+    public static String normalizeNumber(String number, String prefix) {
+        if (number == null) {
+            return "";
+        }
+        String value = keepLettersAndDigits(number, false);
+        if (!prefix.isEmpty() && value.length() > prefix.length() && value.startsWith(prefix)) {
+            value = value.substring(prefix.length());
+        }
+        return stripLeadingZeros(value);
+    }
+
+    /**
+     * @return true si tiene NIT y número; sin ellos un documento no se puede conciliar
+     */
+    public boolean isComplete() {
+        return !nit.isEmpty() && !number.isEmpty();
+    }
+
+    public String getNit() {
+        return nit;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getNumber() {
+        return number;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof FiscalReconciliationKey key)) {
+            return false;
+        }
+        return nit.equals(key.nit) && prefix.equals(key.prefix) && number.equals(key.number);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(nit, prefix, number);
+    }
+
+    @Override
+    public String toString() {
+        return nit + "/" + prefix + "/" + number;
+    }
+
+    private static String keepLettersAndDigits(String value, boolean digitsOnly) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (digitsOnly ? ch >= '0' && ch <= '9' : Character.isLetterOrDigit(ch)) {
+                result.append(ch);
+            }
+        }
+        return result.toString().toUpperCase(Locale.ROOT);
+    }
+
+    private static String stripLeadingZeros(String value) {
+        int start = 0;
+        while (start < value.length() - 1 && value.charAt(start) == '0') {
+            start++;
+        }
+        return value.substring(start);
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.pib2.servicios;
+
+import com.example.pib2.models.dtos.FiscalDocumentFilterDto;
+import com.example.pib2.models.entities.FiscalReconciliation;
+import com.example.pib2.models.entities.FiscalReconciliationResult;
+import com.example.pib2.repositories.FiscalReconciliationJdbcRepository;
+import com.example.pib2.repositories.FiscalReconciliationRepository;
+import com.example.pib2.servicios.FiscalReconciliation.FiscalReconciliationJoin;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conciliación mensual de los documentos fiscales de la DIAN (FiscalDocument) con los
+ * documentos internos (Document).
+ *
+ * Un documento fiscal y uno interno se corresponden si tienen el mismo NIT emisor,
+ * prefijo y número ({@code FiscalReconciliationKey}); el NIT del documento interno es el
+ * número de documento de su tercero. Se comparan los documentos fiscales con Fecha
+ * Emisión en el mes, de la tabla y del histórico, con los internos con fecha en el mes:
+ * un documento registrado en otro mes que el de su emisión queda sin pareja en los dos.
+ *
+ * Los dos lados se leen una sola vez con un cursor de solo avance y se cruzan con
+ * {@link FiscalReconciliationJoin}, que reparte los documentos en particiones en
+ * archivos temporales para que solo una esté en memoria a la vez
+ * ({@code fiscal.reconciliation.documents-per-partition}). Los resultados se guardan por
+ * lotes a medida que salen, en la misma transacción: si la conciliación falla, no queda
+ * ninguno.
+ *
+ * Cada ejecución guarda sus propios resultados; las de un mismo mes no se reemplazan.
+ */
+@Service
+public class FiscalReconciliationService {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    // Resultados que se guardan por vez
+    private static final int RESULT_BATCH_SIZE = 5000;
+
+    @Autowired
+    private FiscalReconciliationRepository fiscalReconciliationRepository;
+
+    @Autowired
+    private FiscalReconciliationJdbcRepository fiscalReconciliationJdbcRepository;
+
+    @Autowired
+    private FiscalDocumentArchiveService fiscalDocumentArchiveService;
+
+    // Documentos internos que se cargan en memoria a la vez (unos 200 bytes cada uno)
+    @Value("${fiscal.reconciliation.documents-per-partition:50000}")
+    private int documentsPerPartition;
+
+    private final TransactionTemplate transactionTemplate;
+
+    // Una conciliación a la vez
+    private final Object reconcileLock = new Object();
+
+    @Autowired
+    public FiscalReconciliationService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Las conciliaciones que estaban en curso cuando se detuvo la aplicación no guardaron
+     * resultados; se marcan como fallidas.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedReconciliations() {
+        try {
+            int interrupted = fiscalReconciliationRepository.failUnfinished("Conciliación interrumpida por un reinicio");
+            if (interrupted > 0) {
+                System.err.println(interrupted + " conciliaciones de documentos fiscales quedaron interrumpidas");
+            }
+        } catch (DataAccessException e) {
+            System.err.println("No se pudo actualizar el registro de conciliaciones: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Concilia los documentos del mes y guarda los resultados.
+     *
+     * @return La conciliación, COMPLETED con la cantidad de resultados de cada tipo o
+     *         FAILED con el error
+     */
+    public FiscalReconciliation reconcile(YearMonth month) {
+        synchronized (reconcileLock) {
+            FiscalReconciliation reconciliation = new FiscalReconciliation();
+            reconciliation.setPeriod(month.toString());
+            reconciliation.setStatus(RUNNING);
+            FiscalReconciliation saved = transactionTemplate.execute(status ->
+                    fiscalReconciliationRepository.save(reconciliation));
+
+            long startNanos = System.nanoTime();
+            try {
+                transactionTemplate.executeWithoutResult(status -> run(saved, month));
+                saved.setStatus(COMPLETED);
+                System.out.println("Conciliación de " + month + ": " + saved.getFiscalDocuments()
+                        + " documentos fiscales y " + saved.getDocuments() + " documentos, " + saved.getMatched()
+                        + " conciliados, " + saved.getAmountMismatches() + " con otro total, "
+                        + saved.getFiscalOnly() + " solo en la DIAN y " + saved.getDocumentOnly() + " solo internos, en "
+                        + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+            } catch (RuntimeException e) {
+                String message = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                System.err.println("Error en la conciliación de " + month + ": " + message);
+                // Los resultados no se guardaron
+                saved.setFiscalDocuments(0);
+                saved.setDocuments(0);
+                saved.setMatched(0);
+                saved.setAmountMismatches(0);
+                saved.setFiscalOnly(0);
+                saved.setDocumentOnly(0);
+                saved.setStatus(FAILED);
+                saved.setError(message != null && message.length() > 1000 ? message.substring(0, 1000) : message);
+            }
+            saved.setFinishedAt(LocalDateTime.now());
+            return transactionTemplate.execute(status -> fiscalReconciliationRepository.save(saved));
+        }
+    }
+
+    /**
+     * @return La conciliación con ese ID, o null
+     */
+    @Transactional(readOnly = true)
+    public FiscalReconciliation getReconciliation(Long id) {
+        return fiscalReconciliationRepository.findById(id).orElse(null);
+    }
+
+    /**
+     * @return Las conciliaciones del mes, de la más reciente a la más antigua
+     */
+    @Transactional(readOnly = true)
+    public List<FiscalReconciliation> findReconciliations(YearMonth month) {
+        return fiscalReconciliationRepository.findByPeriodOrderByIdDesc(month.toString());
+    }
+
+    /**
+     * Página de resultados de una conciliación, en orden de ID.
+     *
+     * @param status Tipo de resultado (FiscalReconciliationResult), o null para todos
+     * @param afterId ID del último resultado de la página anterior, o null para la primera
+     * @param limit Cantidad máxima de resultados
+     */
+    @Transactional(readOnly = true)
+    public List<FiscalReconciliationResult> findResults(Long reconciliationId, String status, Long afterId, int limit) {
+        return fiscalReconciliationJdbcRepository.findResults(reconciliationId, status, afterId, limit);
+    }
+
+    private void run(FiscalReconciliation reconciliation, YearMonth month) {
+        Path directory;
+        try {
+            directory = Files.createTempDirectory("fiscal-reconciliation-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int partitions = FiscalReconciliationJoin.partitionsFor(
+                fiscalReconciliationJdbcRepository.countDocuments(month), documentsPerPartition);
+        try (FiscalReconciliationJoin join = new FiscalReconciliationJoin(directory, partitions)) {
+            fiscalReconciliationJdbcRepository.forEachDocument(month, join::addDocument);
+            fiscalReconciliationJdbcRepository.forEachFiscalDocument(month, join::addFiscalDocument);
+            // Si el mes está en el histórico; un documento que también sigue en la tabla se cuenta una vez
+            FiscalDocumentFilterDto filter = new FiscalDocumentFilterDto();
+            filter.setIssueDateFrom(month.atDay(1));
+            filter.setIssueDateTo(month.atEndOfMonth());
+            fiscalDocumentArchiveService.iterator(filter).forEachRemaining(document -> join.addFiscalDocument(
+                    document.getId(), document.getIssuerNit(), document.getPrefix(), document.getFolio(),
+                    document.getTotal()));
+
+            List<FiscalReconciliationResult> batch = new ArrayList<>(RESULT_BATCH_SIZE);
+            join.join(result -> {
+                count(reconciliation, result.getStatus());
+                batch.add(result);
+                if (batch.size() == RESULT_BATCH_SIZE) {
+                    fiscalReconciliationJdbcRepository.insertResults(reconciliation.getId(), batch);
+                    batch.clear();
+                }
+            });
+            fiscalReconciliationJdbcRepository.insertResults(reconciliation.getId(), batch);
+            reconciliation.setDocuments(join.getDocuments());
+            reconciliation.setFiscalDocuments(join.getFiscalDocuments());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            try {
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                System.err.println("No se pudo eliminar el directorio temporal " + directory + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void count(FiscalReconciliation reconciliation, String status) {
+        switch (status) {
+            case FiscalReconciliationResult.MATCHED -> reconciliation.setMatched(reconciliation.getMatched() + 1);
+            case FiscalReconciliationResult.AMOUNT_MISMATCH ->
+                    reconciliation.setAmountMismatches(reconciliation.getAmountMismatches() + 1);
+            case FiscalReconciliationResult.FISCAL_ONLY ->
+                    reconciliation.setFiscalOnly(reconciliation.getFiscalOnly() + 1);
+            default -> reconciliation.setDocumentOnly(reconciliation.getDocumentOnly() + 1);
+        }
+    }
+}
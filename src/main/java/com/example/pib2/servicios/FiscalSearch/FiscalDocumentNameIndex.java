@@ -0,0 +1,306 @@
+package com.example.pib2.servicios.FiscalSearch;
+
+import com.example.pib2.models.entities.FiscalDocumentName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido en memoria de trigramas sobre el directorio de nombres
+ * (fiscal_document_names), para buscar por partes del nombre cuando la base de datos
+ * no tiene pg_trgm, como H2.
+ *
+ * Cada nombre, en minúsculas, se parte en todas sus secuencias de tres caracteres y
+ * cada trigrama guarda la lista, en orden, de los nombres que lo contienen. Un nombre
+ * que contiene una palabra contiene todos los trigramas de la palabra, así que basta
+ * con revisar los nombres de la lista más corta entre los trigramas buscados y
+ * confirmar con {@link String#contains} que tienen todas las palabras.
+ *
+ * Los resultados se ordenan como {@code similarity()} de pg_trgm: la proporción de
+ * trigramas de palabra (con dos espacios al comienzo y uno al final) que comparten el
+ * texto buscado y el nombre.
+ *
+ * Las búsquedas se ejecutan a la vez entre sí; {@link #addAll(Collection)} las excluye
+ * mientras agrega nombres.
+ */
+public class FiscalDocumentNameIndex {
+
+    /**
+     * Longitud mínima de la palabra más larga de una búsqueda: una palabra más corta
+     * no tiene trigramas con los que usar el índice.
+     */
+    public static final int MIN_WORD_LENGTH = 3;
+
+    private static final int MAX_WORDS = 10;
+
+    private static final long[] NO_TRIGRAMS = new long[0];
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<FiscalDocumentName> names = new ArrayList<>();
+
+    // Por posición en names: el nombre en minúsculas y sus trigramas de palabra, en orden
+    private final List<String> lowerNames = new ArrayList<>();
+    private final List<long[]> wordTrigrams = new ArrayList<>();
+
+    // Posiciones en names de los nombres que contienen cada trigrama, en orden
+    private final Map<Long, Postings> postings = new HashMap<>();
+
+    private long lastId;
+
+    /**
+     * Separa el texto buscado en palabras en minúsculas, sin repetir.
+     *
+     * @throws IllegalArgumentException si ninguna palabra tiene {@value #MIN_WORD_LENGTH}
+     *                                  caracteres o hay más de {@value #MAX_WORDS}
+     */
+    public static List<String> words(String text) {
+        Set<String> words = new LinkedHashSet<>();
+        if (text != null) {
+            for (String word : text.toLowerCase(Locale.ROOT).split("\\s+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        if (words.stream().noneMatch(word -> word.length() >= MIN_WORD_LENGTH)) {
+            throw new IllegalArgumentException("La búsqueda debe tener al menos una palabra de "
+                    + MIN_WORD_LENGTH + " caracteres");
+        }
+        if (words.size() > MAX_WORDS) {
+            throw new IllegalArgumentException("La búsqueda admite a lo sumo " + MAX_WORDS + " palabras");
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * Agrega los nombres en orden de ID. Los que tienen un ID que no es mayor que el del
+     * último agregado se ignoran, así que se puede volver a enviar un nombre sin
+     * duplicarlo.
+     */
+    public void addAll(Collection<FiscalDocumentName> added) {
+        lock.writeLock().lock();
+        try {
+            for (FiscalDocumentName name : added) {
+                if (name.getId() != null && name.getId() > lastId) {
+                    add(name);
+                    lastId = name.getId();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return El ID del último nombre agregado, o 0
+     */
+    public long getLastId() {
+        lock.readLock().lock();
+        try {
+            return lastId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Cantidad de nombres
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Nombres que contienen todas las palabras, del más parecido al texto buscado al
+     * menos parecido; a igual parecido, en orden de nombre e ID.
+     *
+     * @param words Palabras en minúsculas ({@link #words(String)})
+     * @param role {@link FiscalDocumentName#ISSUER}, {@link FiscalDocumentName#RECEIVER}
+     *             o null para los dos
+     * @param text Texto buscado, con el que se ordena
+     * @param offset Nombres que se omiten al comienzo
+     * @param limit Cantidad máxima de nombres
+     */
+    public List<FiscalDocumentName> find(List<String> words, String role, String text, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            Postings candidates = null;
+            for (String word : words) {
+                for (int i = 0; i + 3 <= word.length(); i++) {
+                    Postings list = postings.get(trigram(word.charAt(i), word.charAt(i + 1), word.charAt(i + 2)));
+                    if (list == null) {
+                        return List.of();
+                    }
+                    if (candidates == null || list.size < candidates.size) {
+                        candidates = list;
+                    }
+                }
+            }
+            if (candidates == null) {
+                return List.of();
+            }
+
+            long[] textTrigrams = wordTrigrams(text);
+            List<Match> matches = new ArrayList<>();
+            for (int i = 0; i < candidates.size; i++) {
+                int position = candidates.positions[i];
+                FiscalDocumentName name = names.get(position);
+                if ((role == null || role.equals(name.getRole())) && containsAll(lowerNames.get(position), words)) {
+                    matches.add(new Match(name, similarity(textTrigrams, wordTrigrams.get(position))));
+                }
+            }
+            matches.sort(Match.ORDER);
+
+            List<FiscalDocumentName> page = new ArrayList<>(Math.min(limit, Math.max(0, matches.size() - offset)));
+            for (int i = offset; i < matches.size() && page.size() < limit; i++) {
+                page.add(matches.get(i).name);
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Parecido entre dos textos como {@code similarity()} de pg_trgm: trigramas de
+     * palabra comunes sobre trigramas de palabra distintos de los dos, entre 0 y 1.
+     */
+    public static double similarity(String first, String second) {
+        return similarity(wordTrigrams(first), wordTrigrams(second));
+    }
+
+    private void add(FiscalDocumentName name) {
+        int position = names.size();
+        String lowerName = name.getName().toLowerCase(Locale.ROOT);
+        names.add(name);
+        lowerNames.add(lowerName);
+        wordTrigrams.add(wordTrigrams(name.getName()));
+        for (int i = 0; i + 3 <= lowerName.length(); i++) {
+            long trigram = trigram(lowerName.charAt(i), lowerName.charAt(i + 1), lowerName.charAt(i + 2));
+            postings.computeIfAbsent(trigram, key -> new Postings()).add(position);
+        }
+    }
+
+    private static boolean containsAll(String lowerName, List<String> words) {
+        for (String word : words) {
+            if (!lowerName.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Trigramas de cada palabra (letras y dígitos seguidos) del texto en minúsculas,
+     * con dos espacios antes y uno después, sin repetir y en orden.
+     */
+    private static long[] wordTrigrams(String text) {
+        if (text == null || text.isEmpty()) {
+            return NO_TRIGRAMS;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        long[] trigrams = new long[lower.length() * 3];
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                // "  palabra ": el primer trigrama empieza dos posiciones antes de la palabra
+                for (int j = start - 2; j < i - 1; j++) {
+                    trigrams[count++] = trigram(charAt(lower, j, start, i), charAt(lower, j + 1, start, i),
+                            charAt(lower, j + 2, start, i));
+                }
+                start = -1;
+            }
+        }
+        long[] sorted = Arrays.copyOf(trigrams, count);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    // Carácter de la palabra [start, end) con los espacios de relleno fuera de ella
+    private static char charAt(String text, int index, int start, int end) {
+        return index >= start && index < end ? text.charAt(index) : ' ';
+    }
+
+    private static double similarity(long[] first, long[] second) {
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] == second[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (first[i] < second[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int total = first.length + second.length - common;
+        return total == 0 ? 0 : (double) common / total;
+    }
+
+    private static long trigram(char first, char second, char third) {
+        return (long) first << 32 | (long) second << 16 | third;
+    }
+
+    private static final class Match {
+
+        static final Comparator<Match> ORDER = Comparator.comparingDouble((Match match) -> match.similarity).reversed()
+                .thenComparing(match -> match.name.getName())
+                .thenComparing(match -> match.name.getId());
+
+        private final FiscalDocumentName name;
+        private final double similarity;
+
+        Match(FiscalDocumentName name, double similarity) {
+            this.name = name;
+            this.similarity = similarity;
+        }
+    }
+
+    /**
+     * Lista de posiciones que crece al agregar; cada nombre se agrega en orden y una
+     * sola vez por trigrama.
+     */
+    private static final class Postings {
+
+        private int[] positions = new int[4];
+        private int size;
+
+        void add(int position) {
+            if (size > 0 && positions[size - 1] == position) {
+                return;
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+    }
+}
@@ -9,7 +9,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class UserCompanyService {
@@ -38,15 +37,11 @@ public class UserCompanyService {
     }
 
     public List<UserCompanyDto> getAllUserCompanies() {
-        return userCompanyRepository.findAll().stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return userCompanyRepository.findAllDtos();
     }
 
     public UserCompanyDto getUserCompanyById(Long id) {
-        return userCompanyRepository.findById(id)
-                .map(this::toDto)
-                .orElse(null);
+        return userCompanyRepository.findDtoById(id).orElse(null);
     }
 
     public UserCompanyDto createUserCompany(UserCompanyDto dto) {
@@ -0,0 +1,352 @@
+package com.example.pib2.repositories;
+
+import com.example.pib2.models.dtos.DocumentDto;
+import com.example.pib2.models.dtos.FiscalDocumentDto;
+import com.example.pib2.models.dtos.UserCompanyDto;
+import com.example.pib2.models.entities.Company;
+import com.example.pib2.models.entities.Document;
+import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.models.entities.User;
+import com.example.pib2.models.entities.UserCompany;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.beans.PropertyDescriptor;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Pruebas de las proyecciones a DTO de los repositorios: cada campo del DTO debe tener el
+ * valor del campo de la entidad con el mismo nombre, así que un campo fuera de orden en
+ * la consulta se detecta aquí.
+ *
+ * Incluye un benchmark que no corre con el build normal:
+ * <pre>
+ * mvn test -Dtest=DtoProjectionTests -Dbenchmark=true
+ * </pre>
+ * -Dbenchmark.rows controla la cantidad de filas de cada tabla (por defecto 50000).
+ */
+@SpringBootTest
+@Transactional
+class DtoProjectionTests {
+
+	private static final int ROWS = Integer.getInteger("benchmark.rows", 50_000);
+
+	// Los datos del benchmark usan IDs desde aquí y se borran al terminar
+	private static final long FIRST_ID = 1_000_000_000L;
+	private static final int USERS = 1000;
+	private static final int COMPANIES = 200;
+
+	@Autowired
+	private DocumentRepository documentRepository;
+
+	@Autowired
+	private CompanyRepository companyRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private UserCompanyRepository userCompanyRepository;
+
+	@Autowired
+	private FiscalDocumentRepository fiscalDocumentRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	@Test
+	void documentProjectionsCopyEveryField() {
+		for (int seed = 1; seed <= 3; seed++) {
+			documentRepository.save(filled(new Document(), seed));
+		}
+		reload();
+
+		List<DocumentDto> documents = documentRepository.findAllDtos();
+		assertFalse(documents.isEmpty());
+		for (DocumentDto dto : documents) {
+			assertSameProperties(documentRepository.findById(dto.getId()).orElseThrow(), dto);
+		}
+		assertEquals(documents.get(0), documentRepository.findDtoById(documents.get(0).getId()).orElseThrow());
+	}
+
+	@Test
+	void companyAndUserCompanyProjectionsCopyEveryField() {
+		List<UserCompany> userCompanies = new ArrayList<>();
+		for (int seed = 1; seed <= 3; seed++) {
+			UserCompany userCompany = new UserCompany();
+			userCompany.setUser(userRepository.save(filled(new User(), seed)));
+			userCompany.setCompany(companyRepository.save(filled(new Company(), seed)));
+			userCompanies.add(userCompanyRepository.save(userCompany));
+		}
+		reload();
+
+		companyRepository.findAllDtos().forEach(dto ->
+				assertSameProperties(companyRepository.findById(dto.getId()).orElseThrow(), dto));
+		for (UserCompanyDto dto : userCompanyRepository.findAllDtos()) {
+			UserCompany userCompany = userCompanyRepository.findById(dto.getId()).orElseThrow();
+			assertEquals(userCompany.getUser().getId(), dto.getUserId());
+			assertEquals(userCompany.getCompany().getId(), dto.getCompanyId());
+		}
+		UserCompany first = userCompanies.get(0);
+		UserCompanyDto dto = userCompanyRepository.findDtoById(first.getId()).orElseThrow();
+		assertEquals(first.getUser().getId(), dto.getUserId());
+		assertEquals(first.getCompany().getId(), dto.getCompanyId());
+	}
+
+	@Test
+	void fiscalDocumentProjectionsCopyEveryField() {
+		for (int seed = 1; seed <= 3; seed++) {
+			FiscalDocument document = filled(new FiscalDocument(), seed);
+			document.setImportId(seed == 3 ? 7L : 6L);
+			fiscalDocumentRepository.save(document);
+		}
+		reload();
+
+		List<FiscalDocumentDto> documents;
+		try (Stream<FiscalDocumentDto> stream = fiscalDocumentRepository.streamAllDtos()) {
+			documents = stream.toList();
+		}
+		assertEquals(3, documents.size());
+		for (FiscalDocumentDto dto : documents) {
+			assertSameProperties(fiscalDocumentRepository.findById(dto.getId()).orElseThrow(), dto);
+		}
+		try (Stream<FiscalDocumentDto> imported = fiscalDocumentRepository.streamDtosByImportId(6L)) {
+			assertEquals(2, imported.toList().size());
+		}
+	}
+
+	/**
+	 * Antes: las entidades (con el contexto de persistencia y, en las relaciones
+	 * usuario-compañía, una consulta por cada usuario y compañía) y la copia a DTO.
+	 * Después: las proyecciones. Mide los bytes asignados por el hilo, que incluyen los
+	 * del driver JDBC en los dos casos.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	void projectionsAllocateLessThanEntities() {
+		insertBenchmarkRows();
+		try {
+			// Como en los endpoints: cada lectura en su propia transacción de solo lectura
+			TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+			readOnly.setReadOnly(true);
+
+			measure("Document, entidades y toDto", () -> readOnly.execute(status ->
+					(long) documentRepository.findAll().stream().map(DtoProjectionTests::toDto).toList().size()));
+			measure("Document, proyección", () -> documentRepository.findAllDtos().size());
+
+			measure("UserCompany, entidades y toDto", () -> readOnly.execute(status ->
+					(long) userCompanyRepository.findAll().stream().map(DtoProjectionTests::toDto).toList().size()));
+			measure("UserCompany, proyección", () -> userCompanyRepository.findAllDtos().size());
+
+			// Como lo recorría forEachDocument; sin contar la copia a DTO
+			measure("FiscalDocument, entidades de solo lectura", () -> readOnly.execute(status -> {
+				long[] count = {0};
+				try (Stream<FiscalDocument> documents = entityManager
+						.createQuery("SELECT d FROM FiscalDocument d ORDER BY d.id", FiscalDocument.class)
+						.setHint(HINT_FETCH_SIZE, 500)
+						.setHint(HINT_READ_ONLY, true)
+						.getResultStream()) {
+					documents.forEach(document -> {
+						count[0]++;
+						entityManager.detach(document);
+					});
+				}
+				return count[0];
+			}));
+			measure("FiscalDocument, proyección", () -> readOnly.execute(status -> {
+				long[] count = {0};
+				try (Stream<FiscalDocumentDto> documents = fiscalDocumentRepository.streamAllDtos()) {
+					documents.forEach(document -> count[0]++);
+				}
+				return count[0];
+			}));
+		} finally {
+			jdbcTemplate.update("DELETE FROM users_companies WHERE id >= ?", FIRST_ID);
+			jdbcTemplate.update("DELETE FROM users WHERE id >= ?", FIRST_ID);
+			jdbcTemplate.update("DELETE FROM companies WHERE id >= ?", FIRST_ID);
+			jdbcTemplate.update("DELETE FROM documents WHERE document_id >= ?", FIRST_ID);
+			jdbcTemplate.update("DELETE FROM fiscal_documents WHERE fiscal_document_id >= ?", FIRST_ID);
+		}
+	}
+
+	private void insertBenchmarkRows() {
+		LocalDate today = LocalDate.now();
+		jdbcTemplate.batchUpdate("INSERT INTO documents (document_id, document_type_id, document_date, "
+						+ "document_reception, document_prefix, document_number, document_due_date, third_party_id, "
+						+ "document_total) VALUES (?, 1, ?, ?, 'FE', ?, ?, ?, ?)",
+				ids(ROWS), ROWS, (statement, id) -> {
+					statement.setLong(1, id);
+					statement.setDate(2, Date.valueOf(today.minusDays(id % 365)));
+					statement.setDate(3, Date.valueOf(today));
+					statement.setString(4, String.valueOf(id));
+					statement.setDate(5, Date.valueOf(today.plusDays(30)));
+					statement.setLong(6, id % 5000);
+					statement.setBigDecimal(7, BigDecimal.valueOf(id % 10_000_000, 2));
+				});
+		jdbcTemplate.batchUpdate("INSERT INTO users (id, identification, email, password, role, first_name, "
+						+ "last_name, enabled, account_non_expired, account_non_locked, credentials_non_expired) "
+						+ "VALUES (?, ?, ?, 'x', 'USER', 'Nombre', 'Apellido', TRUE, TRUE, TRUE, TRUE)",
+				ids(USERS), USERS, (statement, id) -> {
+					statement.setLong(1, id);
+					statement.setString(2, "B" + id);
+					statement.setString(3, id + "@benchmark.test");
+				});
+		jdbcTemplate.batchUpdate("INSERT INTO companies (id, company_name, company_identification_number, "
+						+ "company_address, company_phone, company_email, created_at) "
+						+ "VALUES (?, 'Compañía', ?, 'Calle 1', '6010000000', 'compania@benchmark.test', ?)",
+				ids(COMPANIES), COMPANIES, (statement, id) -> {
+					statement.setLong(1, id);
+					statement.setString(2, "B" + id);
+					statement.setObject(3, LocalDateTime.now());
+				});
+		jdbcTemplate.batchUpdate("INSERT INTO users_companies (id, app_user_id, company_id) VALUES (?, ?, ?)",
+				ids(ROWS), ROWS, (statement, id) -> {
+					statement.setLong(1, id);
+					statement.setLong(2, FIRST_ID + id % USERS);
+					statement.setLong(3, FIRST_ID + id % COMPANIES);
+				});
+		jdbcTemplate.batchUpdate("INSERT INTO fiscal_documents (fiscal_document_id, document_type, cufe_cude, folio, "
+						+ "prefix, currency, issue_date, reception_date, issuer_nit, issuer_name, receiver_nit, "
+						+ "receiver_name, iva, rete_iva, total, status) "
+						+ "VALUES (?, 'Factura electrónica', ?, ?, 'FE', 'COP', ?, ?, ?, ?, '800123456', "
+						+ "'Receptor S.A.S.', ?, ?, ?, 'Aprobado')",
+				ids(ROWS), ROWS, (statement, id) -> {
+					BigDecimal total = BigDecimal.valueOf(id % 10_000_000, 2);
+					statement.setLong(1, id);
+					statement.setString(2, Long.toHexString(id * 0x9E3779B97F4A7C15L).repeat(6));
+					statement.setString(3, String.valueOf(id));
+					statement.setDate(4, Date.valueOf(today.minusDays(id % 365)));
+					statement.setDate(5, Date.valueOf(today.minusDays(id % 365)));
+					statement.setString(6, String.valueOf(900_000_000 + id % 500));
+					statement.setString(7, "Emisor " + id % 500 + " S.A.S.");
+					statement.setBigDecimal(8, total.multiply(new BigDecimal("0.19")).setScale(2, RoundingMode.HALF_UP));
+					statement.setBigDecimal(9, BigDecimal.ZERO);
+					statement.setBigDecimal(10, total);
+				});
+	}
+
+	private static List<Long> ids(int count) {
+		List<Long> ids = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			ids.add(FIRST_ID + i);
+		}
+		return ids;
+	}
+
+	private static void measure(String name, LongSupplier run) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		// Calentamiento
+		run.getAsLong();
+		long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+		long start = System.nanoTime();
+		long rows = run.getAsLong();
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+		System.out.printf("%-42s %7d filas, %5d ms, %6d MB asignados, %5d bytes por fila%n",
+				name, rows, millis, allocated / (1024 * 1024), allocated / Math.max(1, rows));
+	}
+
+	// Los mapeos que hacían los servicios antes de las proyecciones
+	private static DocumentDto toDto(Document document) {
+		DocumentDto dto = new DocumentDto();
+		dto.setId(document.getId());
+		dto.setDocumentTypeId(document.getDocumentTypeId());
+		dto.setDocumentDate(document.getDocumentDate());
+		dto.setDocumentReception(document.getDocumentReception());
+		dto.setDocumentPrefix(document.getDocumentPrefix());
+		dto.setDocumentNumber(document.getDocumentNumber());
+		dto.setDocumentDueDate(document.getDocumentDueDate());
+		dto.setThirdPartyId(document.getThirdPartyId());
+		dto.setDocumentTotal(document.getDocumentTotal());
+		return dto;
+	}
+
+	private static UserCompanyDto toDto(UserCompany userCompany) {
+		UserCompanyDto dto = new UserCompanyDto();
+		dto.setId(userCompany.getId());
+		dto.setUserId(userCompany.getUser().getId());
+		dto.setCompanyId(userCompany.getCompany().getId());
+		return dto;
+	}
+
+	// Escribe lo pendiente y vacía el contexto de persistencia: las entidades se leen de nuevo
+	private void reload() {
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	/**
+	 * Asigna a cada propiedad simple un valor distinto según su posición y seed, para que
+	 * dos campos intercambiados en una proyección no coincidan.
+	 */
+	private static <T> T filled(T bean, int seed) {
+		BeanWrapper wrapper = new BeanWrapperImpl(bean);
+		int position = 0;
+		for (PropertyDescriptor property : wrapper.getPropertyDescriptors()) {
+			String name = property.getName();
+			position++;
+			if ("id".equals(name) || !wrapper.isWritableProperty(name)) {
+				continue;
+			}
+			int value = seed * 100 + position;
+			Class<?> type = property.getPropertyType();
+			if (type == String.class) {
+				wrapper.setPropertyValue(name, "v" + value);
+			} else if (type == BigDecimal.class) {
+				wrapper.setPropertyValue(name, BigDecimal.valueOf(value, 2));
+			} else if (type == LocalDate.class) {
+				wrapper.setPropertyValue(name, LocalDate.of(2024, 1, 1).plusDays(value));
+			} else if (type == LocalDateTime.class) {
+				wrapper.setPropertyValue(name, LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(value));
+			} else if (type == int.class || type == Long.class) {
+				wrapper.setPropertyValue(name, value);
+			} else if (type == boolean.class) {
+				wrapper.setPropertyValue(name, true);
+			}
+		}
+		return bean;
+	}
+
+	private static void assertSameProperties(Object entity, Object dto) {
+		BeanWrapper entityWrapper = new BeanWrapperImpl(entity);
+		BeanWrapper dtoWrapper = new BeanWrapperImpl(dto);
+		for (PropertyDescriptor property : dtoWrapper.getPropertyDescriptors()) {
+			String name = property.getName();
+			if (!"class".equals(name)) {
+				assertEquals(entityWrapper.getPropertyValue(name), dtoWrapper.getPropertyValue(name), name);
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.example.pib2.repositories;
+
+import com.example.pib2.models.entities.FiscalDocumentImport;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de la búsqueda de importaciones anteriores del mismo contenido: solo se
+ * reutiliza una importación en curso o completada sin bloques fallidos.
+ */
+@SpringBootTest
+@Transactional
+class FiscalDocumentImportRepositoryTests {
+
+	@Autowired
+	private FiscalDocumentImportRepository fiscalDocumentImportRepository;
+
+	@Test
+	void completedImportWithFailedChunksIsNotReused() {
+		String hash = hash();
+		save(hash, "COMPLETED", 0);
+		FiscalDocumentImport partial = save(hash, "COMPLETED", 1000);
+
+		List<FiscalDocumentImport> reusable = fiscalDocumentImportRepository.findReusable(hash, Limit.of(1));
+
+		assertEquals(1, reusable.size());
+		assertTrue(reusable.get(0).getId() < partial.getId());
+	}
+
+	@Test
+	void onlyFailedImportsAreNotReused() {
+		String hash = hash();
+		save(hash, "COMPLETED", 1000);
+		save(hash, "FAILED", 0);
+
+		assertTrue(fiscalDocumentImportRepository.findReusable(hash, Limit.of(1)).isEmpty());
+	}
+
+	@Test
+	void runningImportIsReused() {
+		String hash = hash();
+		save(hash, "COMPLETED", 1000);
+		FiscalDocumentImport running = save(hash, "RUNNING", 1000);
+
+		List<FiscalDocumentImport> reusable = fiscalDocumentImportRepository.findReusable(hash, Limit.of(1));
+
+		assertEquals(List.of(running.getId()), reusable.stream().map(FiscalDocumentImport::getId).toList());
+	}
+
+	private FiscalDocumentImport save(String hash, String status, long failed) {
+		FiscalDocumentImport ledgerEntry = new FiscalDocumentImport();
+		ledgerEntry.setJobId(UUID.randomUUID().toString());
+		ledgerEntry.setContentHash(hash);
+		ledgerEntry.setFilename("documentos.csv");
+		ledgerEntry.setStatus(status);
+		ledgerEntry.setFailed(failed);
+		return fiscalDocumentImportRepository.save(ledgerEntry);
+	}
+
+	private static String hash() {
+		return (UUID.randomUUID().toString() + UUID.randomUUID()).replace("-", "");
+	}
+}
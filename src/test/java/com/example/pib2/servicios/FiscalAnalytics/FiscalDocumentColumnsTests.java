@@ -0,0 +1,199 @@
+package com.example.pib2.servicios.FiscalAnalytics;
+
+import com.example.pib2.models.dtos.FiscalDocumentAggregateDto;
+import com.example.pib2.models.dtos.FiscalDocumentFilterDto;
+import com.example.pib2.models.entities.FiscalDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de la caché por columnas.
+ *
+ * Incluye un benchmark que no corre con el build normal:
+ * <pre>
+ * mvn test -Dtest=FiscalDocumentColumnsTests -Dbenchmark=true
+ * </pre>
+ */
+class FiscalDocumentColumnsTests {
+
+	private static final long SEED = 20251017L;
+
+	@Test
+	void filtersLikeTheQueryAndGroupsByTheRequestedDimensions() {
+		FiscalDocumentColumns columns = new FiscalDocumentColumns(0);
+		columns.putAll(List.of(
+				document(1, "900", "Aceptado", LocalDate.of(2025, 10, 1), "100.50"),
+				document(2, "900", "Aceptado", LocalDate.of(2025, 10, 31), "200"),
+				document(3, "900", "Rechazado", LocalDate.of(2025, 11, 1), "7.25"),
+				document(4, "800", "Aceptado", LocalDate.of(2025, 10, 15), "1"),
+				document(5, "900", "Aceptado", null, "1000")));
+
+		FiscalDocumentFilterDto filter = new FiscalDocumentFilterDto();
+		filter.setIssuerNit("900");
+		List<FiscalDocumentAggregateDto> groups = columns.aggregate(filter,
+				EnumSet.of(FiscalDocumentColumns.Dimension.STATUS, FiscalDocumentColumns.Dimension.ISSUE_MONTH));
+
+		assertEquals(3, groups.size());
+		FiscalDocumentAggregateDto october = groups.get(0);
+		assertEquals("Aceptado", october.getStatus());
+		assertEquals("2025-10", october.getIssueMonth());
+		assertEquals(2, october.getDocumentCount());
+		assertEquals(new BigDecimal("300.50"), october.getTotal());
+		assertEquals(new BigDecimal("30.05"), october.getIva());
+		assertNull(october.getIssuerNit());
+		// Sin Fecha Emisión, al final de su estado
+		assertNull(groups.get(1).getIssueMonth());
+		assertEquals(new BigDecimal("1000.00"), groups.get(1).getTotal());
+		assertEquals("Rechazado", groups.get(2).getStatus());
+
+		// Un rango de fechas excluye los documentos sin Fecha Emisión
+		filter.setIssueDateFrom(LocalDate.of(2025, 10, 2));
+		List<FiscalDocumentAggregateDto> total = columns.aggregate(filter, Set.of());
+		assertEquals(1, total.size());
+		assertEquals(2, total.get(0).getDocumentCount());
+		assertEquals(new BigDecimal("207.25"), total.get(0).getTotal());
+
+		// Un valor que ningún documento tiene no devuelve grupos
+		filter.setStatus("Anulado");
+		assertTrue(columns.aggregate(filter, Set.of()).isEmpty());
+	}
+
+	@Test
+	void aReimportedDocumentReplacesItsPreviousValues() {
+		FiscalDocumentColumns columns = new FiscalDocumentColumns(0);
+		columns.putAll(List.of(document(1, "900", "Aceptado", LocalDate.of(2025, 10, 1), "100")));
+		columns.putAll(List.of(document(1, "900", "Rechazado", LocalDate.of(2025, 11, 1), "120")));
+
+		assertEquals(1, columns.size());
+		List<FiscalDocumentAggregateDto> groups = columns.aggregate(new FiscalDocumentFilterDto(),
+				EnumSet.of(FiscalDocumentColumns.Dimension.STATUS, FiscalDocumentColumns.Dimension.ISSUE_DATE));
+		assertEquals(1, groups.size());
+		assertEquals("Rechazado", groups.get(0).getStatus());
+		assertEquals(LocalDate.of(2025, 11, 1), groups.get(0).getIssueDate());
+		assertEquals(new BigDecimal("120.00"), groups.get(0).getTotal());
+	}
+
+	@Test
+	void growsPastTheExpectedSizeAndMatchesAPlainSum() {
+		Random random = new Random(SEED);
+		FiscalDocumentColumns columns = new FiscalDocumentColumns(16);
+		List<FiscalDocument> documents = randomDocuments(random, 10_000);
+		columns.putAll(documents);
+
+		FiscalDocumentFilterDto filter = new FiscalDocumentFilterDto();
+		filter.setIssuerNit("NIT-7");
+		BigDecimal expected = documents.stream()
+				.filter(document -> "NIT-7".equals(document.getIssuerNit()))
+				.map(FiscalDocument::getTotal)
+				.reduce(BigDecimal.ZERO, BigDecimal::add);
+		long expectedCount = documents.stream().filter(document -> "NIT-7".equals(document.getIssuerNit())).count();
+
+		List<FiscalDocumentAggregateDto> total = columns.aggregate(filter, Set.of());
+		assertEquals(10_000, columns.size());
+		assertEquals(expectedCount, total.get(0).getDocumentCount());
+		assertEquals(0, expected.compareTo(total.get(0).getTotal()));
+
+		long grouped = columns.aggregate(new FiscalDocumentFilterDto(), EnumSet.allOf(FiscalDocumentColumns.Dimension.class))
+				.stream()
+				.mapToLong(FiscalDocumentAggregateDto::getDocumentCount)
+				.sum();
+		assertEquals(10_000, grouped);
+	}
+
+	@Test
+	void rejectsUnknownDimensions() {
+		assertEquals(FiscalDocumentColumns.Dimension.ISSUE_MONTH, FiscalDocumentColumns.Dimension.fromName("issueMonth"));
+		assertThrows(IllegalArgumentException.class, () -> FiscalDocumentColumns.Dimension.fromName("folio"));
+	}
+
+	/**
+	 * Mide consultas típicas sobre dos millones de documentos.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void aggregatesMillionsOfDocuments() {
+		int rows = 2_000_000;
+		Random random = new Random(SEED);
+		FiscalDocumentColumns columns = new FiscalDocumentColumns(rows);
+		for (int loaded = 0; loaded < rows; loaded += 100_000) {
+			List<FiscalDocument> batch = randomDocuments(random, 100_000);
+			for (int i = 0; i < batch.size(); i++) {
+				batch.get(i).setId((long) loaded + i + 1);
+			}
+			columns.putAll(batch);
+		}
+
+		FiscalDocumentFilterDto all = new FiscalDocumentFilterDto();
+		FiscalDocumentFilterDto byIssuer = new FiscalDocumentFilterDto();
+		byIssuer.setIssuerNit("NIT-42");
+		FiscalDocumentFilterDto byQuarter = new FiscalDocumentFilterDto();
+		byQuarter.setStatus("Aceptado");
+		byQuarter.setIssueDateFrom(LocalDate.of(2025, 7, 1));
+		byQuarter.setIssueDateTo(LocalDate.of(2025, 9, 30));
+
+		measure(columns, all, Set.of());
+		measure(columns, byQuarter, EnumSet.of(FiscalDocumentColumns.Dimension.ISSUER_NIT));
+		System.out.printf("total general:                        %4d ms%n", measure(columns, all, Set.of()));
+		System.out.printf("por estado y mes:                     %4d ms%n", measure(columns, all,
+				EnumSet.of(FiscalDocumentColumns.Dimension.STATUS, FiscalDocumentColumns.Dimension.ISSUE_MONTH)));
+		System.out.printf("un emisor, por día:                   %4d ms%n", measure(columns, byIssuer,
+				EnumSet.of(FiscalDocumentColumns.Dimension.ISSUE_DATE)));
+		System.out.printf("aceptados del trimestre, por emisor: %4d ms%n", measure(columns, byQuarter,
+				EnumSet.of(FiscalDocumentColumns.Dimension.ISSUER_NIT)));
+		System.out.printf("por emisor y receptor:                %4d ms%n", measure(columns, all,
+				EnumSet.of(FiscalDocumentColumns.Dimension.ISSUER_NIT, FiscalDocumentColumns.Dimension.RECEIVER_NIT)));
+	}
+
+	// El mejor de cinco intentos, en milisegundos
+	private long measure(FiscalDocumentColumns columns, FiscalDocumentFilterDto filter,
+						 Set<FiscalDocumentColumns.Dimension> groupBy) {
+		long best = Long.MAX_VALUE;
+		for (int attempt = 0; attempt < 5; attempt++) {
+			long start = System.nanoTime();
+			columns.aggregate(filter, groupBy);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best / 1_000_000;
+	}
+
+	private List<FiscalDocument> randomDocuments(Random random, int count) {
+		String[] statuses = {"Aceptado", "Rechazado", "Pendiente"};
+		List<FiscalDocument> documents = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			FiscalDocument document = document(i + 1, "NIT-" + random.nextInt(1000), statuses[random.nextInt(3)],
+					random.nextInt(50) == 0 ? null : LocalDate.of(2025, 1, 1).plusDays(random.nextInt(365)),
+					BigDecimal.valueOf(random.nextInt(100_000_000), 2).toPlainString());
+			document.setReceiverNit("REC-" + random.nextInt(20_000));
+			documents.add(document);
+		}
+		return documents;
+	}
+
+	private FiscalDocument document(long id, String issuerNit, String status, LocalDate issueDate, String total) {
+		FiscalDocument document = new FiscalDocument();
+		document.setId(id);
+		document.setIssuerNit(issuerNit);
+		document.setReceiverNit("800123456");
+		document.setDocumentType("Factura electrónica");
+		document.setStatus(status);
+		document.setIssueDate(issueDate);
+		document.setTotal(new BigDecimal(total));
+		// IVA del 10 % para distinguirlo del total
+		document.setIva(new BigDecimal(total).movePointLeft(1).setScale(2, RoundingMode.HALF_UP));
+		return document;
+	}
+}
@@ -0,0 +1,190 @@
+package com.example.pib2.servicios.FiscalArchive;
+
+import com.example.pib2.models.dtos.FiscalDocumentFilterDto;
+import com.example.pib2.models.entities.FiscalDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Escribe archivos del histórico y los vuelve a leer.
+ */
+class FiscalDocumentArchiveFileTests {
+
+	private static final YearMonth MONTH = YearMonth.of(2019, 3);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void readsBackEveryColumn() throws IOException {
+		FiscalDocument full = document(7_000_000_123L, "900123456", "Aceptado", LocalDate.of(2019, 3, 31));
+		full.setCufeCude("cufe-ñandú-7");
+		full.setFolio("000123");
+		full.setPrefix("FE");
+		full.setCurrency("COP");
+		full.setPaymentForm("Contado");
+		full.setPaymentMethod("Efectivo");
+		full.setReceptionDate(LocalDate.of(2019, 4, 2));
+		full.setIssuerName("Emisor S.A.S.");
+		full.setReceiverName("Receptor Ltda.");
+		full.setIva(new BigDecimal("190000.50"));
+		full.setIca(new BigDecimal("-12.30"));
+		full.setIc(new BigDecimal("0.00"));
+		full.setInc(new BigDecimal("0.01"));
+		full.setTimbre(new BigDecimal("1.00"));
+		full.setIncBags(new BigDecimal("2.00"));
+		full.setInCarbon(new BigDecimal("3.00"));
+		full.setInFuels(new BigDecimal("4.00"));
+		full.setIcData(new BigDecimal("5.00"));
+		full.setIcl(new BigDecimal("6.00"));
+		full.setInpp(new BigDecimal("7.00"));
+		full.setIbua(new BigDecimal("8.00"));
+		full.setIcui(new BigDecimal("9.00"));
+		full.setReteIva(new BigDecimal("10.00"));
+		full.setReteRent(new BigDecimal("11.00"));
+		full.setReteIca(new BigDecimal("12.00"));
+		full.setTotal(new BigDecimal("9999999999999999.99"));
+		full.setGroupInfo("Recibido");
+		full.setImportId(42L);
+		// Solo ID y Fecha Emisión
+		FiscalDocument empty = new FiscalDocument();
+		empty.setId(5L);
+		empty.setIssueDate(LocalDate.of(2019, 3, 1));
+
+		Path file = directory.resolve("a.fda");
+		FiscalDocumentArchiveFile.write(file, MONTH, List.of(full, empty));
+		FiscalDocumentArchiveFile archive = FiscalDocumentArchiveFile.open(file);
+
+		List<FiscalDocument> documents = archive.find(new FiscalDocumentFilterDto());
+		assertEquals(2, documents.size());
+		// En orden de Fecha Emisión
+		assertEquals(empty, documents.get(0));
+		FiscalDocument read = documents.get(1);
+		assertEquals(full, read);
+		assertEquals(full, archive.find(7_000_000_123L));
+		assertNull(archive.find(6L));
+	}
+
+	@Test
+	void amountsKeepTheColumnScale() throws IOException {
+		FiscalDocument document = document(1, "900", "Aceptado", LocalDate.of(2019, 3, 1));
+		document.setIca(new BigDecimal("-12.3"));
+		document.setIc(BigDecimal.ZERO);
+		Path file = directory.resolve("f.fda");
+		FiscalDocumentArchiveFile.write(file, MONTH, List.of(document));
+
+		// Con dos decimales, como la columna numeric(19,2)
+		FiscalDocument read = FiscalDocumentArchiveFile.open(file).find(1L);
+		assertEquals(new BigDecimal("-12.30"), read.getIca());
+		assertEquals(new BigDecimal("0.00"), read.getIc());
+
+		document.setIva(new BigDecimal("0.001"));
+		assertThrows(ArithmeticException.class,
+				() -> FiscalDocumentArchiveFile.write(directory.resolve("g.fda"), MONTH, List.of(document)));
+	}
+
+	@Test
+	void filtersLikeTheQuery() throws IOException {
+		List<FiscalDocument> documents = new ArrayList<>();
+		documents.add(document(1, "900", "Aceptado", LocalDate.of(2019, 3, 1)));
+		documents.add(document(2, "900", "Rechazado", LocalDate.of(2019, 3, 10)));
+		documents.add(document(3, "800", "Aceptado", LocalDate.of(2019, 3, 10)));
+		documents.add(document(4, "900", "Aceptado", LocalDate.of(2019, 3, 20)));
+		Path file = directory.resolve("b.fda");
+		FiscalDocumentArchiveFile.write(file, MONTH, documents);
+		FiscalDocumentArchiveFile archive = FiscalDocumentArchiveFile.open(file);
+
+		FiscalDocumentFilterDto filter = new FiscalDocumentFilterDto();
+		filter.setIssuerNit("900");
+		filter.setStatus("Aceptado");
+		assertEquals(List.of(1L, 4L), ids(archive.find(filter)));
+		assertEquals(2, archive.count(filter));
+
+		filter.setIssueDateFrom(LocalDate.of(2019, 3, 2));
+		filter.setIssueDateTo(LocalDate.of(2019, 3, 20));
+		assertEquals(List.of(4L), ids(archive.find(filter)));
+		assertEquals(1, archive.count(filter));
+
+		// Un valor que no está en el archivo
+		filter.setIssuerNit("700");
+		assertTrue(archive.find(filter).isEmpty());
+		assertEquals(0, archive.count(filter));
+
+		FiscalDocumentFilterDto receiver = new FiscalDocumentFilterDto();
+		receiver.setReceiverNit("800123456");
+		receiver.setDocumentType("Factura electrónica");
+		assertEquals(4, archive.find(receiver).size());
+		assertEquals(4, archive.count(receiver));
+		assertEquals(4, archive.count(new FiscalDocumentFilterDto()));
+	}
+
+	@Test
+	void theHeaderIndexesIdsAndDates() throws IOException {
+		Random random = new Random(20251017L);
+		List<FiscalDocument> documents = new ArrayList<>();
+		for (int i = 0; i < 5000; i++) {
+			documents.add(document(1000 + random.nextInt(1_000_000), "NIT-" + random.nextInt(50), "Aceptado",
+					LocalDate.of(2019, 3, 5 + random.nextInt(10))));
+		}
+		Path file = directory.resolve("c.fda");
+		FiscalDocumentArchiveFile.write(file, MONTH, documents);
+
+		FiscalDocumentArchiveFile.Header header = FiscalDocumentArchiveFile.readHeader(file);
+		assertEquals(MONTH, header.getMonth());
+		assertEquals(5000, header.getRows());
+		long minId = documents.stream().mapToLong(FiscalDocument::getId).min().getAsLong();
+		assertTrue(header.containsId(minId));
+		assertFalse(header.containsId(minId - 1));
+		assertTrue(header.overlaps(LocalDate.of(2019, 3, 14), null));
+		assertFalse(header.overlaps(LocalDate.of(2019, 3, 15), null));
+		assertFalse(header.overlaps(null, LocalDate.of(2019, 3, 4)));
+
+		long[] ids = FiscalDocumentArchiveFile.open(file).ids();
+		assertEquals(5000, ids.length);
+		FiscalDocument any = documents.get(1234);
+		assertEquals(any, FiscalDocumentArchiveFile.open(file).find(any.getId()));
+	}
+
+	@Test
+	void rejectsDocumentsOfAnotherMonthAndForeignFiles() throws IOException {
+		FiscalDocument april = document(1, "900", "Aceptado", LocalDate.of(2019, 4, 1));
+		assertThrows(IllegalArgumentException.class,
+				() -> FiscalDocumentArchiveFile.write(directory.resolve("d.fda"), MONTH, List.of(april)));
+
+		Path other = directory.resolve("e.fda");
+		Files.writeString(other, "no es un archivo del histórico");
+		assertThrows(IOException.class, () -> FiscalDocumentArchiveFile.readHeader(other));
+	}
+
+	private List<Long> ids(List<FiscalDocument> documents) {
+		return documents.stream().map(FiscalDocument::getId).toList();
+	}
+
+	private FiscalDocument document(long id, String issuerNit, String status, LocalDate issueDate) {
+		FiscalDocument document = new FiscalDocument();
+		document.setId(id);
+		document.setIssuerNit(issuerNit);
+		document.setReceiverNit("800123456");
+		document.setDocumentType("Factura electrónica");
+		document.setStatus(status);
+		document.setIssueDate(issueDate);
+		document.setTotal(new BigDecimal(id).movePointLeft(2));
+		return document;
+	}
+}
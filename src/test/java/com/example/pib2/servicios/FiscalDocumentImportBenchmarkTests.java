@@ -0,0 +1,305 @@
+package com.example.pib2.servicios;
+
+import com.example.pib2.Pib2Application;
+import com.example.pib2.models.dtos.FiscalDocumentImportChunkDto;
+import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.repositories.FiscalDocumentRepository;
+import com.example.pib2.servicios.FiscalImport.ExcelRowReader;
+import com.example.pib2.servicios.FiscalImport.FiscalDocumentChunkWriter;
+import jakarta.persistence.EntityManagerFactory;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.generator.Generator;
+import org.hibernate.id.IdentityGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmarks de la importación de documentos fiscales.
+ *
+ * No se ejecutan con el build normal. Para correrlos:
+ * <pre>
+ * mvn test -Dtest=FiscalDocumentImportBenchmarkTests -Dbenchmark=true
+ * </pre>
+ * Por defecto usan H2 en memoria; con -Dbenchmark.url, -Dbenchmark.user y
+ * -Dbenchmark.password se pueden correr contra un PostgreSQL local, en el que se
+ * crean y se borran bases de datos benchmark_*.
+ * -Dbenchmark.xlsx.rows controla el tamaño del .xlsx generado para medir la lectura.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FiscalDocumentImportBenchmarkTests {
+
+	private static final int ROWS = Integer.getInteger("benchmark.rows", 100_000);
+	private static final int CHUNK_SIZE = 1000;
+
+	private static final int XLSX_ROWS = Integer.getInteger("benchmark.xlsx.rows", 50_000);
+
+	private static final String URL = System.getProperty("benchmark.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+	private static final String USER = System.getProperty("benchmark.user", "sa");
+	private static final String PASSWORD = System.getProperty("benchmark.password", "");
+
+	/**
+	 * Importa las mismas filas por bloques con FiscalDocumentChunkWriter y JPA
+	 * (fiscal.import.bulk-load=false), cada vez con la aplicación completa sobre una base
+	 * de datos nueva.
+	 *
+	 * Antes: IDs IDENTITY (benchmark/fiscal-document-identity-orm.xml), con los que
+	 * Hibernate hace un INSERT por fila para leer la clave generada, y sin lotes JDBC.
+	 * Después: la configuración de la aplicación, con IDs de fiscal_documents_seq en
+	 * bloques de 50 (pooled-lo) e INSERT agrupados en lotes (hibernate.jdbc.batch_size).
+	 */
+	@Test
+	void identityInsertsVersusSequenceBatchInserts() throws SQLException {
+		double before = importThroughChunkWriter("identity", IdentityGenerator.class,
+				"--spring.jpa.mapping-resources=benchmark/fiscal-document-identity-orm.xml",
+				"--spring.jpa.properties.hibernate.jdbc.batch_size=0");
+		double after = importThroughChunkWriter("sequence", SequenceStyleGenerator.class);
+
+		System.out.printf("%s, %d filas en bloques de %d: IDENTITY %.0f filas/s, SEQUENCE con lotes %.0f filas/s (x%.1f)%n",
+				isPostgreSql() ? "PostgreSQL" : "H2", ROWS, CHUNK_SIZE, before, after, after / before);
+	}
+
+	/**
+	 * Lee el .xlsx desde el archivo en disco, con el que cada parte del paquete se
+	 * descomprime a medida que se lee (desde un InputStream POI descomprimía todo el
+	 * paquete en memoria). Se mide el tiempo y el pico de heap y de RSS de la lectura.
+	 */
+	@Test
+	void xlsxFromFile() throws Exception {
+		Path file = Files.createTempFile("benchmark-", ".xlsx");
+		try {
+			writeXlsx(file, XLSX_ROWS);
+			ExcelRowReader reader = new ExcelRowReader();
+			AtomicLong rows = new AtomicLong();
+
+			resetPeakHeap();
+			long start = System.nanoTime();
+			reader.readXlsx(file.toFile(), 32, row -> rows.incrementAndGet());
+			long millis = (System.nanoTime() - start) / 1_000_000;
+			long heap = peakHeapMegabytes();
+			String rss = peakRss();
+			assertEquals(XLSX_ROWS + 1, rows.get());
+
+			System.out.printf("%d filas (%.1f MB): %d ms, pico de heap %d MB, RSS %s%n",
+					XLSX_ROWS, Files.size(file) / (1024.0 * 1024.0), millis, heap, rss);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private void writeXlsx(Path file, int rows) throws IOException {
+		try (SXSSFWorkbook workbook = new SXSSFWorkbook(100)) {
+			Sheet sheet = workbook.createSheet("Documentos");
+			Row header = sheet.createRow(0);
+			for (int column = 0; column < 32; column++) {
+				header.createCell(column).setCellValue("Columna " + column);
+			}
+			for (int row = 1; row <= rows; row++) {
+				Row excelRow = sheet.createRow(row);
+				for (int column = 0; column < 13; column++) {
+					excelRow.createCell(column).setCellValue(column == 1 ? "cufe-" + row : "valor " + (row % 97));
+				}
+				for (int column = 13; column < 30; column++) {
+					excelRow.createCell(column).setCellValue(row * 31.0 + column);
+				}
+			}
+			try (OutputStream outputStream = Files.newOutputStream(file)) {
+				workbook.write(outputStream);
+			}
+			workbook.dispose();
+		}
+	}
+
+	private void resetPeakHeap() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	private long peakHeapMegabytes() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return peak / (1024 * 1024);
+	}
+
+	/**
+	 * @return El pico de memoria residente del proceso (VmHWM, solo Linux)
+	 */
+	private String peakRss() throws IOException {
+		File status = new File("/proc/self/status");
+		if (!status.exists()) {
+			return "n/d";
+		}
+		return Files.readAllLines(status.toPath()).stream()
+				.filter(line -> line.startsWith("VmHWM:"))
+				.map(line -> line.substring("VmHWM:".length()).trim())
+				.findFirst()
+				.orElse("n/d");
+	}
+
+	/**
+	 * Arranca la aplicación sobre una base de datos nueva, con los argumentos indicados,
+	 * y guarda ROWS documentos con FiscalDocumentChunkWriter.
+	 *
+	 * @param generator Generador de IDs que debe quedar en FiscalDocument
+	 * @return Documentos guardados por segundo
+	 */
+	private double importThroughChunkWriter(String name, Class<? extends Generator> generator, String... args)
+			throws SQLException {
+		String url = createDatabase(name);
+		List<String> arguments = new ArrayList<>(List.of(
+				"--spring.datasource.url=" + url,
+				"--spring.datasource.username=" + USER,
+				"--spring.datasource.password=" + PASSWORD,
+				"--spring.jpa.show-sql=false",
+				"--server.port=0",
+				"--fiscal.import.bulk-load=false"));
+		if (isPostgreSql()) {
+			arguments.add("--spring.datasource.driver-class-name=org.postgresql.Driver");
+			arguments.add("--spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect");
+		} else {
+			arguments.add("--spring.datasource.driver-class-name=org.h2.Driver");
+			arguments.add("--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect");
+		}
+		arguments.addAll(List.of(args));
+
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Pib2Application.class)
+				.run(arguments.toArray(new String[0]))) {
+			assertInstanceOf(generator, context.getBean(EntityManagerFactory.class)
+					.unwrap(SessionFactoryImplementor.class)
+					.getMappingMetamodel()
+					.getEntityDescriptor(FiscalDocument.class)
+					.getGenerator());
+			if (isPostgreSql() && args.length > 0) {
+				// La tabla particionada la crea FiscalDocumentSchemaInitializer, sin IDENTITY
+				context.getBean(JdbcTemplate.class).execute("ALTER TABLE fiscal_documents "
+						+ "ALTER COLUMN fiscal_document_id ADD GENERATED BY DEFAULT AS IDENTITY");
+			}
+			FiscalDocumentChunkWriter writer = context.getBean(FiscalDocumentChunkWriter.class);
+
+			long inserted = 0;
+			long start = System.nanoTime();
+			for (int first = 0; first < ROWS; first += CHUNK_SIZE) {
+				List<FiscalDocument> documents = new ArrayList<>(CHUNK_SIZE);
+				for (int row = first; row < Math.min(first + CHUNK_SIZE, ROWS); row++) {
+					documents.add(document(row));
+				}
+				FiscalDocumentImportChunkDto chunk = writer.writeChunk(first / CHUNK_SIZE + 1, first + 2,
+						first + documents.size() + 1, documents);
+				assertTrue(chunk.isCommitted(), chunk.getError());
+				inserted += chunk.getInserted();
+			}
+			double rowsPerSecond = ROWS / ((System.nanoTime() - start) / 1_000_000_000.0);
+
+			assertEquals(ROWS, inserted);
+			assertEquals(ROWS, context.getBean(FiscalDocumentRepository.class).count());
+			return rowsPerSecond;
+		} finally {
+			dropDatabase(name);
+		}
+	}
+
+	private FiscalDocument document(int row) {
+		FiscalDocument document = new FiscalDocument();
+		String value = "valor " + (row % 97);
+		document.setDocumentType(value + "-0");
+		document.setCufeCude("cufe-" + row);
+		document.setFolio(value + "-2");
+		document.setPrefix(value + "-3");
+		document.setCurrency(value + "-4");
+		document.setPaymentForm(value + "-5");
+		document.setPaymentMethod(value + "-6");
+		document.setIssuerNit(value + "-7");
+		document.setIssuerName(value + "-8");
+		document.setReceiverNit(value + "-9");
+		document.setReceiverName(value + "-10");
+		document.setStatus(value + "-11");
+		document.setGroupInfo(value + "-12");
+		LocalDate date = LocalDate.of(2025, 1 + row % 12, 1 + row % 28);
+		document.setIssueDate(date);
+		document.setReceptionDate(date);
+		BigDecimal amount = BigDecimal.valueOf(row * 31L, 2);
+		document.setIva(amount);
+		document.setIca(amount);
+		document.setIc(amount);
+		document.setInc(amount);
+		document.setTimbre(amount);
+		document.setIncBags(amount);
+		document.setInCarbon(amount);
+		document.setInFuels(amount);
+		document.setIcData(amount);
+		document.setIcl(amount);
+		document.setInpp(amount);
+		document.setIbua(amount);
+		document.setIcui(amount);
+		document.setReteIva(amount);
+		document.setReteRent(amount);
+		document.setReteIca(amount);
+		document.setTotal(amount);
+		return document;
+	}
+
+	private boolean isPostgreSql() {
+		return URL.startsWith("jdbc:postgresql:");
+	}
+
+	/**
+	 * @return La URL de una base de datos vacía: en H2 una base en memoria nueva; en
+	 *         PostgreSQL una base creada en el servidor de benchmark.url
+	 */
+	private String createDatabase(String name) throws SQLException {
+		if (!isPostgreSql()) {
+			return "jdbc:h2:mem:benchmark_" + name + ";DB_CLOSE_DELAY=-1";
+		}
+		dropDatabase(name);
+		try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+			 Statement statement = connection.createStatement()) {
+			statement.execute("CREATE DATABASE benchmark_" + name);
+		}
+		return URL.replaceFirst("^(jdbc:postgresql://[^/]*/)[^?]*", "$1benchmark_" + name);
+	}
+
+	private void dropDatabase(String name) throws SQLException {
+		if (!isPostgreSql()) {
+			return;
+		}
+		try (Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+			 Statement statement = connection.createStatement()) {
+			statement.execute("DROP DATABASE IF EXISTS benchmark_" + name + " WITH (FORCE)");
+		}
+	}
+}
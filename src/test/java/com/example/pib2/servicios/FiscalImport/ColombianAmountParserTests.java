@@ -0,0 +1,188 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Compara ColombianAmountParser con una copia del procedimiento original de
+ * FiscalDocumentService.getCellValueAsBigDecimal sobre textos generados al azar
+ * (con semilla fija) y montos con formatos reales.
+ *
+ * Incluye un microbenchmark que no corre con el build normal:
+ * <pre>
+ * mvn test -Dtest=ColombianAmountParserTests -Dbenchmark=true
+ * </pre>
+ */
+class ColombianAmountParserTests {
+
+	private static final long SEED = 20251016L;
+	private static final String ALPHABET = "0123456789012345678901234567890123456789....,,,,    --++eE\t a٣";
+
+	@Test
+	void parsesTheDocumentedFormats() {
+		assertEquals(new BigDecimal("1234567.89"), ColombianAmountParser.parse("1.234.567,89"));
+		assertEquals(new BigDecimal("1234.5"), ColombianAmountParser.parse("1234,5"));
+		assertEquals(new BigDecimal("1234.56"), ColombianAmountParser.parse("1.234.56"));
+		assertEquals(new BigDecimal("-1500"), ColombianAmountParser.parse(" -1 500 "));
+		// Con punto y coma los puntos siempre son de miles, también en el formato americano
+		assertEquals(new BigDecimal("1.23456"), ColombianAmountParser.parse("1,234.56"));
+		assertNull(ColombianAmountParser.parse("   "));
+		assertThrows(NumberFormatException.class, () -> ColombianAmountParser.parse("1..2"));
+		assertThrows(NumberFormatException.class, () -> ColombianAmountParser.parse("N/A"));
+	}
+
+	@Test
+	void matchesTheOriginalParserOnRandomText() {
+		Random random = new Random(SEED);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 300_000; i++) {
+			text.setLength(0);
+			int length = random.nextInt(22);
+			for (int j = 0; j < length; j++) {
+				text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			}
+			assertSameOutcome(text.toString());
+		}
+	}
+
+	@Test
+	void matchesTheOriginalParserOnFormattedAmounts() {
+		Random random = new Random(SEED);
+		for (int i = 0; i < 100_000; i++) {
+			long unscaled = random.nextLong() >> random.nextInt(64);
+			BigDecimal amount = BigDecimal.valueOf(unscaled, random.nextInt(5));
+			String plain = amount.toPlainString();
+			assertSameOutcome(plain);
+			assertSameOutcome(plain.replace('.', ','));
+			assertSameOutcome(group(plain, '.', ','));
+			assertSameOutcome(group(plain, ',', '.'));
+			assertSameOutcome(group(plain, ' ', ','));
+			assertSameOutcome("  " + group(plain, '.', ',') + " ");
+		}
+	}
+
+	/**
+	 * Antes: reemplazos y expresiones regulares por cada celda. Después: una pasada
+	 * sobre los caracteres. Mide el tiempo y los bytes reservados por monto.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void originalParserVersusSinglePass() {
+		Random random = new Random(SEED);
+		String[] amounts = new String[100_000];
+		for (int i = 0; i < amounts.length; i++) {
+			String plain = BigDecimal.valueOf(random.nextInt(100_000_000), 2).toPlainString();
+			amounts[i] = switch (i % 3) {
+				case 0 -> group(plain, '.', ',');
+				case 1 -> plain.replace('.', ',');
+				default -> plain;
+			};
+		}
+
+		for (int round = 0; round < 5; round++) {
+			measure(amounts, ColombianAmountParserTests::originalParse);
+			measure(amounts, ColombianAmountParser::parse);
+		}
+		long[] before = measure(amounts, ColombianAmountParserTests::originalParse);
+		long[] after = measure(amounts, ColombianAmountParser::parse);
+		System.out.printf("%d montos: original %d ns y %d bytes por monto, una pasada %d ns y %d bytes por monto (x%.1f)%n",
+				amounts.length, before[0], before[1], after[0], after[1], (double) before[0] / after[0]);
+	}
+
+	/**
+	 * @return Nanosegundos y bytes reservados por monto
+	 */
+	private long[] measure(String[] amounts, Function<String, BigDecimal> parser) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().threadId();
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		long checksum = 0;
+		for (String amount : amounts) {
+			checksum += parser.apply(amount).scale();
+		}
+		long nanos = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		if (checksum == 42) {
+			System.out.println();
+		}
+		return new long[]{nanos / amounts.length, allocated / amounts.length};
+	}
+
+	private void assertSameOutcome(String text) {
+		Object expected = outcome(() -> originalParse(text));
+		Object actual = outcome(() -> ColombianAmountParser.parse(text));
+		if (!Objects.equals(expected, actual)) {
+			fail("\"" + text + "\": se esperaba " + expected + " y se obtuvo " + actual);
+		}
+	}
+
+	/**
+	 * @return El BigDecimal (comparado con equals, es decir, también por escala), null,
+	 *         o la clase de la excepción lanzada
+	 */
+	private Object outcome(ParseCall call) {
+		try {
+			BigDecimal value = call.parse();
+			return value == null ? null : value.toString() + "@" + value.scale();
+		} catch (RuntimeException e) {
+			return e.getClass();
+		}
+	}
+
+	/**
+	 * Agrupa los miles de un número en notación simple con el separador indicado.
+	 */
+	private String group(String plain, char thousands, char decimal) {
+		int dot = plain.indexOf('.');
+		String integer = dot >= 0 ? plain.substring(0, dot) : plain;
+		String fraction = dot >= 0 ? plain.substring(dot + 1) : null;
+		String sign = integer.startsWith("-") ? "-" : "";
+		String digits = sign.isEmpty() ? integer : integer.substring(1);
+
+		StringBuilder grouped = new StringBuilder();
+		for (int i = 0; i < digits.length(); i++) {
+			if (i > 0 && (digits.length() - i) % 3 == 0) {
+				grouped.append(thousands);
+			}
+			grouped.append(digits.charAt(i));
+		}
+		return sign + grouped + (fraction != null ? decimal + fraction : "");
+	}
+
+	private interface ParseCall {
+		BigDecimal parse();
+	}
+
+	// Copia del procedimiento de FiscalDocumentService antes del parser de una sola pasada
+	private static BigDecimal originalParse(String value) {
+		String stringValue = value.trim();
+		if (stringValue.isEmpty()) {
+			return null;
+		}
+		stringValue = stringValue.replaceAll(" ", "");
+		if (stringValue.contains(".") && stringValue.contains(",")) {
+			stringValue = stringValue.replace(".", "").replace(",", ".");
+		} else if (stringValue.contains(",") && !stringValue.matches(".*\\..*")) {
+			stringValue = stringValue.replace(",", ".");
+		} else if (stringValue.matches(".*\\d\\.\\d.*")) {
+			if (stringValue.chars().filter(ch -> ch == '.').count() > 1) {
+				int lastDotIndex = stringValue.lastIndexOf('.');
+				stringValue = stringValue.substring(0, lastDotIndex).replace(".", "") +
+						stringValue.substring(lastDotIndex);
+			}
+		}
+		return new BigDecimal(stringValue);
+	}
+}
@@ -0,0 +1,190 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Pruebas del lector de CSV. Cada archivo se lee también de a un byte por lectura del
+ * canal, para recorrer los casos en que un registro queda partido entre dos lecturas.
+ *
+ * Incluye una medición de rendimiento que no corre con el build normal:
+ * <pre>
+ * mvn test -Dtest=CsvRowReaderTests -Dbenchmark=true
+ * </pre>
+ */
+class CsvRowReaderTests {
+
+	private final CsvRowReader reader = new CsvRowReader();
+
+	@Test
+	void detectsTheDelimiterFromTheHeader() throws IOException {
+		assertRows("a;b;c\n1;2,5;3\n", 3, new String[][]{{"a", "b", "c"}, {"1", "2,5", "3"}});
+		assertRows("a,b,c\n1,2;5,3\n", 3, new String[][]{{"a", "b", "c"}, {"1", "2;5", "3"}});
+		assertRows("a\tb\tc\n1\t2,5\t3\n", 3, new String[][]{{"a", "b", "c"}, {"1", "2,5", "3"}});
+		// Las comas dentro de comillas no cuentan
+		assertRows("\"a,1\";\"b,2\";c\n1;2;3\n", 3, new String[][]{{"a,1", "b,2", "c"}, {"1", "2", "3"}});
+	}
+
+	@Test
+	void readsQuotedFields() throws IOException {
+		assertRows("a;b;c\r\n\"x;y\";\"di \"\"hola\"\"\";\"dos\r\nlíneas\"\r\n", 3,
+				new String[][]{{"a", "b", "c"}, {"x;y", "di \"hola\"", "dos\r\nlíneas"}});
+		// Texto después de la comilla de cierre y comillas dentro de un campo sin comillas
+		assertRows("a;b\n\"ab\"cd;5\"\n", 2, new String[][]{{"a", "b"}, {"abcd", "5\""}});
+		// Comilla sin cerrar al final del archivo
+		assertRows("a;b\n1;\"abierta", 2, new String[][]{{"a", "b"}, {"1", "abierta"}});
+	}
+
+	@Test
+	void keepsEmptyFieldsAsBlankCellsAndSkipsEmptyLines() throws IOException {
+		List<SpreadsheetRow> rows = read("a;b;c\n\n;\"\";3\n\r\n1;;\n".getBytes(StandardCharsets.UTF_8), 3, Integer.MAX_VALUE);
+		assertEquals(3, rows.size());
+		SpreadsheetRow row = rows.get(1);
+		assertEquals(2, row.getRowNum());
+		assertEquals(CellType.BLANK, row.getType(0));
+		assertEquals(CellType.BLANK, row.getType(1));
+		assertEquals(CellType.STRING, row.getType(2));
+		assertEquals(4, rows.get(2).getRowNum());
+		assertArrayEquals(new String[]{"1", null, null}, values(rows.get(2), 3));
+	}
+
+	@Test
+	void ignoresColumnsBeyondTheLimit() throws IOException {
+		assertRows("a;b;c;d\n1;2;3;4\n5\n", 2, new String[][]{{"a", "b"}, {"1", "2"}, {"5", null}});
+	}
+
+	@Test
+	void handlesTheBomAndWindows1252() throws IOException {
+		byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+		byte[] text = "Fecha Emisión;Valor\n30-10-2025;1.234,50\n".getBytes(StandardCharsets.UTF_8);
+		byte[] withBom = Arrays.copyOf(bom, bom.length + text.length);
+		System.arraycopy(text, 0, withBom, bom.length, text.length);
+		String[][] expected = {{"Fecha Emisión", "Valor"}, {"30-10-2025", "1.234,50"}};
+		assertRows(withBom, 2, expected);
+		assertRows("Fecha Emisión;Valor\n30-10-2025;1.234,50\n".getBytes(Charset.forName("windows-1252")), 2, expected);
+	}
+
+	@Test
+	void growsTheBufferForLongRecordsUpToTheLimit() throws IOException {
+		String longValue = "x".repeat(200_000);
+		List<SpreadsheetRow> rows = read(("a;b\n\"" + longValue + "\";1\n").getBytes(StandardCharsets.UTF_8), 2, Integer.MAX_VALUE);
+		assertEquals(longValue, rows.get(1).getValue(0));
+		assertEquals("1", rows.get(1).getValue(1));
+
+		byte[] unclosed = ("a;b\n\"" + "x".repeat(2 * 1024 * 1024)).getBytes(StandardCharsets.UTF_8);
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> read(unclosed, 2, Integer.MAX_VALUE));
+		assertEquals("La fila 2 del archivo CSV supera 1024 KB; revise que no haya comillas sin cerrar", e.getMessage());
+	}
+
+	/**
+	 * Mide la lectura de un CSV en memoria con 32 columnas, como el reporte de la DIAN,
+	 * sin la conversión a documentos.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void throughput() throws IOException {
+		StringBuilder csv = new StringBuilder();
+		for (int column = 0; column < 32; column++) {
+			csv.append(column > 0 ? ";" : "").append("Columna ").append(column);
+		}
+		csv.append("\r\n");
+		for (int i = 0; i < 200_000; i++) {
+			csv.append("Factura electrónica;").append(String.format("%096x", i)).append(';').append(1000 + i)
+					.append(";SETP;COP;Contado;Efectivo;30-10-2025;30-10-2025 14:30:45;900123456;\"Emisor S.A.S.\";")
+					.append("800987654;Receptor Ltda;190.000,00");
+			for (int column = 14; column < 32; column++) {
+				csv.append(";").append(column < 29 ? "0" : "1.190.000,00");
+			}
+			csv.append("\r\n");
+		}
+		byte[] bytes = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+		for (int round = 0; round < 10; round++) {
+			long start = System.nanoTime();
+			long[] rows = {0};
+			reader.read(Channels.newChannel(new ByteArrayInputStream(bytes)), 32, row -> rows[0]++);
+			long nanos = System.nanoTime() - start;
+			System.out.printf("%d MB en %d ms: %.0f MB/s%n", bytes.length / (1024 * 1024), nanos / 1_000_000,
+					bytes.length / (1024.0 * 1024.0) / (nanos / 1e9));
+		}
+	}
+
+	private void assertRows(String csv, int maxColumns, String[][] expected) throws IOException {
+		assertRows(csv.getBytes(StandardCharsets.UTF_8), maxColumns, expected);
+	}
+
+	private void assertRows(byte[] csv, int maxColumns, String[][] expected) throws IOException {
+		// Lecturas completas y de a un byte
+		for (int readSize : new int[]{Integer.MAX_VALUE, 1}) {
+			List<SpreadsheetRow> rows = read(csv, maxColumns, readSize);
+			assertEquals(expected.length, rows.size());
+			for (int i = 0; i < expected.length; i++) {
+				assertArrayEquals(expected[i], values(rows.get(i), maxColumns), "fila " + i);
+			}
+		}
+	}
+
+	private List<SpreadsheetRow> read(byte[] csv, int maxColumns, int readSize) throws IOException {
+		List<SpreadsheetRow> rows = new ArrayList<>();
+		reader.read(new LimitedChannel(csv, readSize), maxColumns, rows::add);
+		return rows;
+	}
+
+	private String[] values(SpreadsheetRow row, int columns) {
+		String[] values = new String[columns];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = row.getValue(i);
+		}
+		return values;
+	}
+
+	// Entrega como máximo readSize bytes por lectura
+	private static class LimitedChannel implements ReadableByteChannel {
+
+		private final ByteBuffer source;
+		private final int readSize;
+
+		LimitedChannel(byte[] bytes, int readSize) {
+			this.source = ByteBuffer.wrap(bytes);
+			this.readSize = readSize;
+		}
+
+		@Override
+		public int read(ByteBuffer target) {
+			if (!source.hasRemaining()) {
+				return -1;
+			}
+			int count = Math.min(Math.min(readSize, source.remaining()), target.remaining());
+			ByteBuffer slice = source.slice(source.position(), count);
+			target.put(slice);
+			source.position(source.position() + count);
+			return count;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
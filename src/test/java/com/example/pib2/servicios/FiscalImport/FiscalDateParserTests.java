@@ -0,0 +1,219 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Compara FiscalDateParser con una copia del procedimiento original de
+ * FiscalDocumentService (getCellValueAsIssueDate y getCellValueAsReceptionDate) sobre
+ * todas las combinaciones de día, mes y hora alrededor de los límites y sobre textos
+ * generados al azar (con semilla fija).
+ *
+ * Incluye un microbenchmark que no corre con el build normal:
+ * <pre>
+ * mvn test -Dtest=FiscalDateParserTests -Dbenchmark=true
+ * </pre>
+ */
+class FiscalDateParserTests {
+
+	private static final long SEED = 20251016L;
+	private static final String ALPHABET = "01234567890123456789--//:: 0a";
+	private static final String[] YEARS = {"0000", "1900", "2000", "2024", "2025", "10000"};
+
+	private static final DateTimeFormatter ISSUE_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+	private static final DateTimeFormatter RECEPTION_DATE_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+	private static final DateTimeFormatter[] DATE_FORMATTERS = {
+			DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+			DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+			DateTimeFormatter.ofPattern("MM/dd/yyyy"),
+			DateTimeFormatter.ofPattern("dd-MM-yyyy"),
+			DateTimeFormatter.ofPattern("yyyy/MM/dd")
+	};
+
+	@Test
+	void parsesTheDocumentedFormats() {
+		FiscalDateParser parser = new FiscalDateParser();
+		assertEquals(LocalDate.of(2025, 10, 30), parser.parseIssueDate("30-10-2025"));
+		assertEquals(LocalDate.of(2025, 10, 30), parser.parseIssueDate("2025-10-30"));
+		assertEquals(LocalDate.of(2025, 10, 5), parser.parseIssueDate("05/10/2025"));
+		assertEquals(LocalDate.of(2025, 10, 30), parser.parseIssueDate("10/30/2025"));
+		assertEquals(LocalDate.of(2025, 10, 30), parser.parseIssueDate("2025/10/30"));
+		assertEquals(LocalDate.of(2025, 10, 30), parser.parseReceptionDate("30-10-2025 14:30:45"));
+		assertEquals(LocalDate.of(2025, 10, 30), parser.parseReceptionDate("30-10-2025"));
+		// DateTimeFormatter ajusta el día al último del mes
+		assertEquals(LocalDate.of(2025, 2, 28), parser.parseIssueDate("31-02-2025"));
+		assertNull(parser.parseIssueDate("30-10-2025 14:30:45"));
+		assertNull(parser.parseIssueDate("32-10-2025"));
+		assertNull(parser.parseReceptionDate("N/A"));
+		// La segunda vez sale de la caché
+		assertNull(parser.parseReceptionDate("N/A"));
+		assertEquals(LocalDate.of(2025, 10, 30), parser.parseIssueDate("30-10-2025"));
+	}
+
+	@Test
+	void matchesTheOriginalParserAroundTheLimits() {
+		FiscalDateParser parser = new FiscalDateParser();
+		String[] times = {"", " 23:59:59", " 24:00:00", " 12:00:60", " 1a:00:00"};
+		for (String year : YEARS) {
+			for (int first = 0; first <= 33; first++) {
+				for (int second = 0; second <= 33; second++) {
+					String a = twoDigits(first);
+					String b = twoDigits(second);
+					for (String time : times) {
+						assertSameOutcome(parser, a + "-" + b + "-" + year + time);
+						assertSameOutcome(parser, a + "/" + b + "/" + year + time);
+					}
+					assertSameOutcome(parser, year + "-" + a + "-" + b);
+					assertSameOutcome(parser, year + "/" + a + "/" + b);
+				}
+			}
+		}
+	}
+
+	@Test
+	void matchesTheOriginalParserOnRandomText() {
+		FiscalDateParser parser = new FiscalDateParser();
+		Random random = new Random(SEED);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 50_000; i++) {
+			text.setLength(0);
+			// Sobre todo las longitudes de los formatos aceptados
+			int length = switch (random.nextInt(4)) {
+				case 0 -> 10;
+				case 1 -> 19;
+				default -> random.nextInt(22);
+			};
+			for (int j = 0; j < length; j++) {
+				text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			}
+			assertSameOutcome(parser, text.toString());
+		}
+	}
+
+	/**
+	 * Antes: la cadena de DateTimeFormatter, con una excepción por cada formato que no
+	 * coincide. Después: FiscalDateParser (reconocimiento por separadores y caché).
+	 * Mide el tiempo y los bytes reservados por fecha para cada formato de entrada.
+	 */
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void originalParserVersusRecognizer() {
+		Random random = new Random(SEED);
+		String[] layouts = {"dd-MM-yyyy", "yyyy-MM-dd", "dd/MM/yyyy", "MM/dd/yyyy", "dd-MM-yyyy HH:mm:ss"};
+		for (String layout : layouts) {
+			// Un mes de fechas, como en un archivo mensual; la hora cambia en cada fila
+			DateTimeFormatter formatter = DateTimeFormatter.ofPattern(layout);
+			String[] dates = new String[100_000];
+			for (int i = 0; i < dates.length; i++) {
+				dates[i] = formatter.format(LocalDateTime.of(2025, 10, 13 + random.nextInt(19),
+						random.nextInt(24), random.nextInt(60), random.nextInt(60)));
+			}
+			boolean reception = layout.contains("HH");
+			Function<String, LocalDate> original = reception
+					? FiscalDateParserTests::originalReceptionDate
+					: FiscalDateParserTests::originalIssueDate;
+
+			for (int round = 0; round < 5; round++) {
+				measure(dates, original);
+				measure(dates, recognizer(reception));
+			}
+			long[] before = measure(dates, original);
+			long[] after = measure(dates, recognizer(reception));
+			System.out.printf("%-19s: original %5d ns y %5d bytes por fecha, reconocedor %3d ns y %3d bytes por fecha (x%.1f)%n",
+					layout, before[0], before[1], after[0], after[1], (double) before[0] / after[0]);
+		}
+	}
+
+	// Un parser nuevo por medición, como en cada importación
+	private Function<String, LocalDate> recognizer(boolean reception) {
+		FiscalDateParser parser = new FiscalDateParser();
+		return reception ? parser::parseReceptionDate : parser::parseIssueDate;
+	}
+
+	/**
+	 * @return Nanosegundos y bytes reservados por fecha
+	 */
+	private long[] measure(String[] dates, Function<String, LocalDate> parser) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().threadId();
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		long checksum = 0;
+		for (String date : dates) {
+			checksum += parser.apply(date).getDayOfMonth();
+		}
+		long nanos = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		if (checksum == 42) {
+			System.out.println();
+		}
+		return new long[]{nanos / dates.length, allocated / dates.length};
+	}
+
+	private void assertSameOutcome(FiscalDateParser parser, String text) {
+		LocalDate expected = originalIssueDate(text);
+		LocalDate actual = parser.parseIssueDate(text);
+		if (!Objects.equals(expected, actual)) {
+			fail("Fecha Emisión \"" + text + "\": se esperaba " + expected + " y se obtuvo " + actual);
+		}
+		expected = originalReceptionDate(text);
+		actual = parser.parseReceptionDate(text);
+		if (!Objects.equals(expected, actual)) {
+			fail("Fecha Recepción \"" + text + "\": se esperaba " + expected + " y se obtuvo " + actual);
+		}
+	}
+
+	private String twoDigits(int value) {
+		return value < 10 ? "0" + value : String.valueOf(value);
+	}
+
+	// Copia del procedimiento de FiscalDocumentService.getCellValueAsIssueDate antes de FiscalDateParser
+	private static LocalDate originalIssueDate(String dateString) {
+		try {
+			return LocalDate.parse(dateString, ISSUE_DATE_FORMATTER);
+		} catch (DateTimeParseException e) {
+			for (DateTimeFormatter formatter : DATE_FORMATTERS) {
+				try {
+					return LocalDate.parse(dateString, formatter);
+				} catch (DateTimeParseException ex) {
+					// Continuar con el siguiente formato
+				}
+			}
+			return null;
+		}
+	}
+
+	// Copia del procedimiento de FiscalDocumentService.getCellValueAsReceptionDate antes de FiscalDateParser
+	private static LocalDate originalReceptionDate(String dateString) {
+		try {
+			LocalDateTime dateTime = LocalDateTime.parse(dateString, RECEPTION_DATE_FORMATTER);
+			return dateTime.toLocalDate();
+		} catch (DateTimeParseException e) {
+			try {
+				return LocalDate.parse(dateString, ISSUE_DATE_FORMATTER);
+			} catch (DateTimeParseException e2) {
+				for (DateTimeFormatter formatter : DATE_FORMATTERS) {
+					try {
+						return LocalDate.parse(dateString, formatter);
+					} catch (DateTimeParseException ex) {
+						// Continuar con el siguiente formato
+					}
+				}
+				return null;
+			}
+		}
+	}
+}
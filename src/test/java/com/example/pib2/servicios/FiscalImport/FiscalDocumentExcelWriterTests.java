@@ -0,0 +1,141 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import com.example.pib2.models.entities.FiscalDocument;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Escribe documentos con FiscalDocumentExcelWriter y los vuelve a leer con
+ * ExcelRowReader, como lo hace la importación.
+ */
+class FiscalDocumentExcelWriterTests {
+
+	private static final int COLUMNS = 32;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void writesCellsThatTheImportReadsBack() throws Exception {
+		FiscalDocument document = new FiscalDocument();
+		document.setDocumentType("Factura electrónica");
+		document.setCufeCude("abc123");
+		// Con ceros a la izquierda: debe seguir siendo texto
+		document.setFolio("000123");
+		document.setIssuerNit("900123456");
+		document.setIssuerName("Emisor S.A.S.");
+		document.setIssueDate(LocalDate.of(2025, 10, 30));
+		document.setIva(new BigDecimal("190000.50"));
+		// Más dígitos de los que un double representa exactamente
+		document.setTotal(new BigDecimal("12345678901234567.89"));
+
+		List<SpreadsheetRow> rows = writeAndRead(List.of(document));
+		assertEquals(2, rows.size());
+		assertEquals("Columna 0", rows.get(0).getValue(0));
+
+		SpreadsheetRow row = rows.get(1);
+		assertEquals("Factura electrónica", row.getValue(0));
+		assertEquals(CellType.STRING, row.getType(2));
+		assertEquals("000123", row.getValue(2));
+		assertEquals(CellType.STRING, row.getType(9));
+		assertEquals("900123456", row.getValue(9));
+
+		assertEquals(CellType.NUMERIC, row.getType(7));
+		assertTrue(row.isDate(7));
+		assertEquals(LocalDate.of(2025, 10, 30),
+				DateUtil.getLocalDateTime(row.getNumericValue(7)).toLocalDate());
+
+		assertEquals(CellType.NUMERIC, row.getType(13));
+		assertEquals(190000.5, row.getNumericValue(13));
+		assertEquals(CellType.STRING, row.getType(29));
+		assertEquals(new BigDecimal("12345678901234567.89"), ColombianAmountParser.parse(row.getValue(29)));
+
+		// Los valores null quedan como celdas vacías
+		assertEquals(CellType.BLANK, row.getType(8));
+		assertEquals(CellType.BLANK, row.getType(14));
+	}
+
+	@Test
+	void writesTheRowsAlreadyFlushedToTheTempFile() throws Exception {
+		List<FiscalDocument> documents = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			FiscalDocument document = new FiscalDocument();
+			document.setCufeCude("cufe-" + i);
+			documents.add(document);
+		}
+		List<SpreadsheetRow> rows = writeAndRead(documents);
+		assertEquals(1001, rows.size());
+		assertEquals("cufe-999", rows.get(1000).getValue(1));
+	}
+
+	@Test
+	void fillsTheSheetUpToTheRowLimit() throws Exception {
+		// El encabezado ocupa la primera de las 1.048.576 filas
+		assertEquals(1_048_575, FiscalDocumentExcelWriter.MAX_DOCUMENTS);
+
+		FiscalDocument document = new FiscalDocument();
+		Path file = directory.resolve("limite.xlsx");
+		try (FiscalDocumentExcelWriter writer = new FiscalDocumentExcelWriter(headers());
+			 OutputStream output = Files.newOutputStream(file)) {
+			for (int i = 1; i < FiscalDocumentExcelWriter.MAX_DOCUMENTS; i++) {
+				writer.write(document);
+			}
+			document.setCufeCude("ultimo");
+			writer.write(document);
+			assertEquals(FiscalDocumentExcelWriter.MAX_DOCUMENTS, writer.getDocumentCount());
+			// Sin segunda hoja: la importación solo lee la primera
+			assertThrows(IllegalStateException.class, () -> writer.write(document));
+			writer.finish(output);
+		}
+
+		int[] count = new int[1];
+		String[] last = new String[1];
+		new ExcelRowReader().readXlsx(file.toFile(), COLUMNS, row -> {
+			count[0]++;
+			last[0] = row.getValue(1);
+		});
+		assertEquals(FiscalDocumentExcelWriter.MAX_DOCUMENTS + 1, count[0]);
+		assertEquals("ultimo", last[0]);
+	}
+
+	@Test
+	void rejectsHeadersThatDoNotMatchTheColumns() {
+		assertThrows(IllegalArgumentException.class, () -> new FiscalDocumentExcelWriter(List.of("Tipo de documento")));
+	}
+
+	private List<SpreadsheetRow> writeAndRead(List<FiscalDocument> documents) throws Exception {
+		Path file = directory.resolve("documentos.xlsx");
+		try (FiscalDocumentExcelWriter writer = new FiscalDocumentExcelWriter(headers());
+			 OutputStream output = Files.newOutputStream(file)) {
+			documents.forEach(writer::write);
+			assertEquals(documents.size(), writer.getDocumentCount());
+			writer.finish(output);
+		}
+
+		List<SpreadsheetRow> rows = new ArrayList<>();
+		new ExcelRowReader().readXlsx(file.toFile(), COLUMNS, rows::add);
+		return rows;
+	}
+
+	private List<String> headers() {
+		List<String> headers = new ArrayList<>();
+		for (int i = 0; i < COLUMNS; i++) {
+			headers.add("Columna " + i);
+		}
+		return headers;
+	}
+}
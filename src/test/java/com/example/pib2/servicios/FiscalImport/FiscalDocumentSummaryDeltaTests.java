@@ -0,0 +1,88 @@
+package com.example.pib2.servicios.FiscalImport;
+
+import com.example.pib2.models.entities.FiscalDocument;
+import com.example.pib2.models.entities.FiscalDocumentSummary;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FiscalDocumentSummaryDeltaTests {
+
+	@Test
+	void groupsByReceiverIssuerMonthAndType() {
+		FiscalDocumentSummaryDelta delta = new FiscalDocumentSummaryDelta();
+		delta.add(document("900", LocalDate.of(2025, 10, 1), "100.00"));
+		delta.add(document("900", LocalDate.of(2025, 10, 31), "50.50"));
+		delta.add(document("800", LocalDate.of(2025, 10, 15), "10"));
+		delta.add(document("900", LocalDate.of(2025, 11, 1), "1"));
+
+		List<FiscalDocumentSummary> changes = delta.getChanges();
+		assertEquals(3, changes.size());
+		// En orden de llave
+		assertEquals("800", changes.get(0).getIssuerNit());
+		FiscalDocumentSummary october = changes.get(1);
+		assertEquals("900", october.getIssuerNit());
+		assertEquals("2025-10", october.getIssueMonth());
+		assertEquals(2, october.getDocumentCount());
+		assertEquals(new BigDecimal("150.50"), october.getTotal());
+		assertEquals(0, new BigDecimal("15.05").compareTo(october.getIva()));
+		assertEquals("2025-11", changes.get(2).getIssueMonth());
+	}
+
+	@Test
+	void aReplacedDocumentWithTheSameValuesLeavesNoChange() {
+		FiscalDocumentSummaryDelta delta = new FiscalDocumentSummaryDelta();
+		delta.subtract(document("900", LocalDate.of(2025, 10, 1), "100.00"));
+		// Misma cantidad con otra escala
+		delta.add(document("900", LocalDate.of(2025, 10, 1), "100"));
+		assertTrue(delta.getChanges().isEmpty());
+	}
+
+	@Test
+	void movingADocumentToAnotherMonthChangesBothGroups() {
+		FiscalDocumentSummaryDelta delta = new FiscalDocumentSummaryDelta();
+		delta.subtract(document("900", LocalDate.of(2025, 10, 1), "100"));
+		delta.add(document("900", LocalDate.of(2025, 11, 1), "120"));
+
+		List<FiscalDocumentSummary> changes = delta.getChanges();
+		assertEquals(2, changes.size());
+		assertEquals(-1, changes.get(0).getDocumentCount());
+		assertEquals(new BigDecimal("-100"), changes.get(0).getTotal());
+		assertEquals(1, changes.get(1).getDocumentCount());
+		assertEquals(new BigDecimal("120"), changes.get(1).getTotal());
+	}
+
+	@Test
+	void storesMissingKeysAsEmptyTextAndMissingAmountsAsZero() {
+		FiscalDocumentSummaryDelta delta = new FiscalDocumentSummaryDelta();
+		FiscalDocument document = new FiscalDocument();
+		document.setTotal(new BigDecimal("7"));
+		delta.add(document);
+
+		FiscalDocumentSummary summary = delta.getChanges().get(0);
+		assertEquals("", summary.getReceiverNit());
+		assertEquals("", summary.getIssuerNit());
+		assertEquals("", summary.getIssueMonth());
+		assertEquals("", summary.getDocumentType());
+		assertEquals(1, summary.getDocumentCount());
+		assertEquals(BigDecimal.ZERO, summary.getIva());
+		assertEquals(new BigDecimal("7"), summary.getTotal());
+	}
+
+	private FiscalDocument document(String issuerNit, LocalDate issueDate, String total) {
+		FiscalDocument document = new FiscalDocument();
+		document.setReceiverNit("800123456");
+		document.setIssuerNit(issuerNit);
+		document.setIssueDate(issueDate);
+		document.setDocumentType("Factura electrónica");
+		document.setTotal(new BigDecimal(total));
+		// IVA del 10 % para distinguirlo del total
+		document.setIva(new BigDecimal(total).movePointLeft(1));
+		return document;
+	}
+}
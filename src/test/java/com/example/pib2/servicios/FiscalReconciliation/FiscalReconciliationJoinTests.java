@@ -0,0 +1,228 @@
+package com.example.pib2.servicios.FiscalReconciliation;
+
+import com.example.pib2.models.entities.FiscalReconciliationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del cruce por hash de la conciliación.
+ *
+ * Incluye un benchmark que no corre con el build normal:
+ * <pre>
+ * mvn test -Dtest=FiscalReconciliationJoinTests -Dbenchmark=true
+ * </pre>
+ * Con {@code -DargLine=-Xmx64m} el millón de documentos se concilia en 20 particiones;
+ * en una sola se agota la memoria.
+ */
+class FiscalReconciliationJoinTests {
+
+	private static final long SEED = 20251017L;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void normalizesTheKey() {
+		assertEquals("900123456", FiscalReconciliationKey.normalizeNit("900.123.456-7"));
+		assertEquals("900123456", FiscalReconciliationKey.normalizeNit(" 0900123456 "));
+		assertEquals("", FiscalReconciliationKey.normalizeNit(null));
+		assertEquals("FE", FiscalReconciliationKey.normalizePrefix(" fe- "));
+		assertEquals("123", FiscalReconciliationKey.normalizeNumber("FE-000123", "FE"));
+		assertEquals("123", FiscalReconciliationKey.normalizeNumber("000123", "FE"));
+		// Un número que es solo el prefijo no se deja vacío
+		assertEquals("FE", FiscalReconciliationKey.normalizeNumber("FE", "FE"));
+		assertEquals("0", FiscalReconciliationKey.normalizeNumber("000", ""));
+		assertEquals(FiscalReconciliationKey.of("900123456-7", "fe", "FE0123"),
+				FiscalReconciliationKey.of("900.123.456", "FE", "123"));
+	}
+
+	@Test
+	void classifiesEveryDocument() throws IOException {
+		List<FiscalReconciliationResult> results = new ArrayList<>();
+		try (FiscalReconciliationJoin join = new FiscalReconciliationJoin(directory, 1)) {
+			join.addDocument(1, "900123456-7", "FE", "FE-0001", new BigDecimal("100.00"));
+			join.addDocument(2, "900123456", "FE", "2", new BigDecimal("200.00"));
+			join.addDocument(3, "800", "", "77", null);
+			join.addDocument(4, "800", "", "78", new BigDecimal("1"));
+			join.addFiscalDocument(10, "900.123.456", "FE", "1", new BigDecimal("100"));
+			join.addFiscalDocument(11, "900123456", "FE", "2", new BigDecimal("250.00"));
+			join.addFiscalDocument(12, "800", null, "77", new BigDecimal("5"));
+			join.addFiscalDocument(13, "800", null, "79", new BigDecimal("5"));
+			join.join(results::add);
+
+			assertEquals(4, join.getDocuments());
+			assertEquals(4, join.getFiscalDocuments());
+		}
+
+		Map<String, String> byPair = pairs(results);
+		assertEquals(Map.of(
+				"10/1", FiscalReconciliationResult.MATCHED,
+				"11/2", FiscalReconciliationResult.AMOUNT_MISMATCH,
+				// Sin total en el documento interno no se compara
+				"12/3", FiscalReconciliationResult.MATCHED,
+				"13/-", FiscalReconciliationResult.FISCAL_ONLY,
+				"-/4", FiscalReconciliationResult.DOCUMENT_ONLY), byPair);
+		FiscalReconciliationResult mismatch = results.stream()
+				.filter(result -> FiscalReconciliationResult.AMOUNT_MISMATCH.equals(result.getStatus()))
+				.findFirst().orElseThrow();
+		assertEquals("900123456", mismatch.getNit());
+		assertEquals(new BigDecimal("250.00"), mismatch.getFiscalDocumentTotal());
+		assertEquals(new BigDecimal("200.00"), mismatch.getDocumentTotal());
+	}
+
+	@Test
+	void pairsRepeatedKeysOneByOneAndCountsEachFiscalDocumentOnce() throws IOException {
+		List<FiscalReconciliationResult> results = new ArrayList<>();
+		try (FiscalReconciliationJoin join = new FiscalReconciliationJoin(directory, 3)) {
+			join.addDocument(1, "900", "FE", "1", null);
+			join.addDocument(2, "900", "FE", "1", null);
+			join.addDocument(3, "900", "FE", "1", null);
+			join.addFiscalDocument(10, "900", "FE", "1", null);
+			join.addFiscalDocument(11, "900", "FE", "1", null);
+			// En la tabla y en el histórico
+			join.addFiscalDocument(11, "900", "FE", "1", null);
+			join.join(results::add);
+
+			assertEquals(2, join.getFiscalDocuments());
+		}
+
+		assertEquals(Map.of("10/1", FiscalReconciliationResult.MATCHED, "11/2", FiscalReconciliationResult.MATCHED,
+				"-/3", FiscalReconciliationResult.DOCUMENT_ONLY), pairs(results));
+	}
+
+	@Test
+	void neverMatchesDocumentsWithoutNitOrNumber() throws IOException {
+		List<FiscalReconciliationResult> results = new ArrayList<>();
+		try (FiscalReconciliationJoin join = new FiscalReconciliationJoin(directory, 2)) {
+			join.addDocument(1, null, "FE", "1", null);
+			join.addDocument(2, "900", "FE", null, null);
+			join.addFiscalDocument(10, null, "FE", "1", null);
+			join.addFiscalDocument(11, "900", "FE", "", null);
+			join.addFiscalDocument(11, "900", "FE", "", null);
+			join.join(results::add);
+		}
+
+		assertEquals(Map.of("-/1", FiscalReconciliationResult.DOCUMENT_ONLY,
+				"-/2", FiscalReconciliationResult.DOCUMENT_ONLY,
+				"10/-", FiscalReconciliationResult.FISCAL_ONLY,
+				"11/-", FiscalReconciliationResult.FISCAL_ONLY), pairs(results));
+	}
+
+	@Test
+	void partitionsDoNotChangeTheResultAndTheFilesAreDeleted() throws IOException {
+		Map<String, String> single = pairs(joinRandom(directory.resolve("single"), 5_000, 1));
+		Map<String, String> partitioned = pairs(joinRandom(directory.resolve("partitioned"), 5_000, 7));
+
+		assertEquals(single, partitioned);
+		assertTrue(single.containsValue(FiscalReconciliationResult.MATCHED));
+		assertTrue(single.containsValue(FiscalReconciliationResult.AMOUNT_MISMATCH));
+		assertTrue(single.containsValue(FiscalReconciliationResult.FISCAL_ONLY));
+		assertTrue(single.containsValue(FiscalReconciliationResult.DOCUMENT_ONLY));
+		try (Stream<Path> files = Files.list(directory.resolve("partitioned"))) {
+			assertFalse(files.findAny().isPresent());
+		}
+	}
+
+	@Test
+	void choosesEnoughPartitions() {
+		assertEquals(1, FiscalReconciliationJoin.partitionsFor(0, 50_000));
+		assertEquals(1, FiscalReconciliationJoin.partitionsFor(50_000, 50_000));
+		assertEquals(2, FiscalReconciliationJoin.partitionsFor(50_001, 50_000));
+		assertEquals(20, FiscalReconciliationJoin.partitionsFor(1_000_000, 50_000));
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void reconcilesAMillionDocumentsPerSide() throws IOException {
+		int documents = 1_000_000;
+		for (int partitions : new int[]{20, 1}) {
+			System.gc();
+			Runtime runtime = Runtime.getRuntime();
+			long baseline = runtime.totalMemory() - runtime.freeMemory();
+			long[] peak = {0};
+			long[] counts = new long[4];
+			long start = System.nanoTime();
+			Path partitionDirectory = Files.createDirectories(directory.resolve("p" + partitions));
+			try (FiscalReconciliationJoin join = new FiscalReconciliationJoin(partitionDirectory, partitions)) {
+				addRandom(join, documents);
+				join.join(result -> {
+					counts[status(result)]++;
+					if ((counts[0] + counts[1] + counts[2] + counts[3]) % 10_000 == 0) {
+						peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory() - baseline);
+					}
+				});
+			}
+			System.out.printf("%2d particiones: %5d ms, memoria máxima aproximada %4d MB, "
+							+ "conciliados %d, otro total %d, solo DIAN %d, solo internos %d%n",
+					partitions, (System.nanoTime() - start) / 1_000_000, peak[0] / (1024 * 1024),
+					counts[0], counts[1], counts[2], counts[3]);
+		}
+	}
+
+	private static List<FiscalReconciliationResult> joinRandom(Path directory, int documents, int partitions)
+			throws IOException {
+		Files.createDirectories(directory);
+		List<FiscalReconciliationResult> results = new ArrayList<>();
+		try (FiscalReconciliationJoin join = new FiscalReconciliationJoin(directory, partitions)) {
+			addRandom(join, documents);
+			join.join(results::add);
+		}
+		return results;
+	}
+
+	/**
+	 * Agrega documentos de 500 emisores: uno de cada diez solo en un lado y uno de cada
+	 * veinte con otro total.
+	 */
+	private static void addRandom(FiscalReconciliationJoin join, int documents) {
+		Random random = new Random(SEED);
+		for (int i = 1; i <= documents; i++) {
+			String nit = String.valueOf(900_000_000 + random.nextInt(500));
+			String number = String.valueOf(i);
+			BigDecimal total = BigDecimal.valueOf(random.nextInt(10_000_000), 2);
+			int kind = random.nextInt(20);
+			if (kind != 0) {
+				join.addDocument(i, nit + "-1", "fe", "FE" + number, kind == 1 ? total.add(BigDecimal.ONE) : total);
+			}
+			if (kind != 2) {
+				join.addFiscalDocument(i + documents, nit, "FE", number, total);
+			}
+		}
+	}
+
+	private static int status(FiscalReconciliationResult result) {
+		return switch (result.getStatus()) {
+			case FiscalReconciliationResult.MATCHED -> 0;
+			case FiscalReconciliationResult.AMOUNT_MISMATCH -> 1;
+			case FiscalReconciliationResult.FISCAL_ONLY -> 2;
+			default -> 3;
+		};
+	}
+
+	// Tipo de resultado por par "ID fiscal/ID interno", con "-" para el lado que falta
+	private static Map<String, String> pairs(List<FiscalReconciliationResult> results) {
+		Map<String, String> pairs = new TreeMap<>();
+		for (FiscalReconciliationResult result : results) {
+			String pair = (result.getFiscalDocumentId() != null ? result.getFiscalDocumentId() : "-") + "/"
+					+ (result.getDocumentId() != null ? result.getDocumentId() : "-");
+			assertEquals(null, pairs.put(pair, result.getStatus()), "Resultado repetido: " + pair);
+		}
+		return pairs;
+	}
+}
@@ -0,0 +1,163 @@
+package com.example.pib2.servicios.FiscalSearch;
+
+import com.example.pib2.models.entities.FiscalDocumentName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del índice de trigramas en memoria de la búsqueda por nombre.
+ *
+ * Incluye un benchmark que no corre con el build normal:
+ * <pre>
+ * mvn test -Dtest=FiscalDocumentNameIndexTests -Dbenchmark=true
+ * </pre>
+ */
+class FiscalDocumentNameIndexTests {
+
+	private static final long SEED = 20251017L;
+
+	private static final String[] WORDS = {"Comercializadora", "Distribuidora", "Inversiones", "Servicios",
+			"Construcciones", "Alimentos", "Transportes", "Tecnología", "Andina", "del Caribe", "Pacífico",
+			"Colombia", "Medellín", "Bogotá", "Industrial", "Agro", "Textiles", "Farmacia", "Logística", "Global"};
+
+	@Test
+	void findsNamesThatContainEveryWordIgnoringCase() {
+		FiscalDocumentNameIndex index = new FiscalDocumentNameIndex();
+		index.addAll(List.of(
+				name(1, FiscalDocumentName.ISSUER, "Distribuidora Andina S.A.S."),
+				name(2, FiscalDocumentName.ISSUER, "Comercializadora del Caribe"),
+				name(3, FiscalDocumentName.RECEIVER, "ANDINA DE ALIMENTOS LTDA"),
+				name(4, FiscalDocumentName.RECEIVER, "Alimentos del Pacífico")));
+
+		// El nombre con menos palabras se parece más al texto buscado
+		assertEquals(List.of(3L, 1L), ids(find(index, "andin", null)));
+		assertEquals(List.of(3L), ids(find(index, "alimentos andina", null)));
+		// En medio de una palabra
+		assertEquals(List.of(2L), ids(find(index, "cializa", null)));
+		assertEquals(List.of(4L), ids(find(index, "pacífico", null)));
+		assertTrue(find(index, "andina caribe", null).isEmpty());
+		assertTrue(find(index, "xyz", null).isEmpty());
+	}
+
+	@Test
+	void filtersByRole() {
+		FiscalDocumentNameIndex index = new FiscalDocumentNameIndex();
+		index.addAll(List.of(
+				name(1, FiscalDocumentName.ISSUER, "Distribuidora Andina"),
+				name(2, FiscalDocumentName.RECEIVER, "Distribuidora Andina")));
+
+		assertEquals(List.of(1L), ids(find(index, "andina", FiscalDocumentName.ISSUER)));
+		assertEquals(List.of(2L), ids(find(index, "andina", FiscalDocumentName.RECEIVER)));
+		assertEquals(List.of(1L, 2L), ids(find(index, "andina", null)));
+	}
+
+	@Test
+	void ranksTheMostSimilarNamesFirstAndPages() {
+		FiscalDocumentNameIndex index = new FiscalDocumentNameIndex();
+		index.addAll(List.of(
+				name(1, FiscalDocumentName.ISSUER, "Inversiones Andina de Colombia S.A.S."),
+				name(2, FiscalDocumentName.ISSUER, "Andina"),
+				name(3, FiscalDocumentName.ISSUER, "Andina Global"),
+				name(4, FiscalDocumentName.RECEIVER, "Andina Global")));
+
+		List<String> words = FiscalDocumentNameIndex.words("andina");
+		assertEquals(List.of(2L, 3L, 4L, 1L), ids(index.find(words, null, "andina", 0, 10)));
+		// A igual parecido, en orden de nombre e ID
+		assertEquals(List.of(3L, 4L), ids(index.find(words, null, "andina", 1, 2)));
+		assertTrue(index.find(words, null, "andina", 4, 10).isEmpty());
+	}
+
+	@Test
+	void similarityMatchesPgTrgm() {
+		// SELECT similarity('word', 'words'): 4 trigramas comunes de 7 distintos
+		assertEquals(4.0 / 7, FiscalDocumentNameIndex.similarity("word", "words"), 1e-9);
+		assertEquals(1.0, FiscalDocumentNameIndex.similarity("Andina S.A.", "andina s a"), 1e-9);
+		assertEquals(0.0, FiscalDocumentNameIndex.similarity("abc", "xyz"), 1e-9);
+		assertEquals(0.0, FiscalDocumentNameIndex.similarity("", "xyz"), 1e-9);
+	}
+
+	@Test
+	void splitsTheSearchIntoDistinctLowercaseWords() {
+		assertEquals(List.of("andina", "de", "colombia"),
+				FiscalDocumentNameIndex.words("  Andina de\tCOLOMBIA andina "));
+		assertThrows(IllegalArgumentException.class, () -> FiscalDocumentNameIndex.words("de la"));
+		assertThrows(IllegalArgumentException.class, () -> FiscalDocumentNameIndex.words("   "));
+		assertThrows(IllegalArgumentException.class, () -> FiscalDocumentNameIndex.words(null));
+		assertThrows(IllegalArgumentException.class,
+				() -> FiscalDocumentNameIndex.words("uno dos tres cuatro cinco seis siete ocho nueve diez once"));
+	}
+
+	@Test
+	void ignoresNamesThatWereAlreadyAdded() {
+		FiscalDocumentNameIndex index = new FiscalDocumentNameIndex();
+		index.addAll(List.of(name(1, FiscalDocumentName.ISSUER, "Andina"), name(2, FiscalDocumentName.ISSUER, "Caribe")));
+		index.addAll(List.of(name(2, FiscalDocumentName.ISSUER, "Caribe"), name(3, FiscalDocumentName.ISSUER, "Caribe Andina")));
+
+		assertEquals(3, index.size());
+		assertEquals(3, index.getLastId());
+		assertEquals(List.of(2L, 3L), ids(find(index, "caribe", null)));
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void searchesTensOfThousandsOfNames() {
+		Random random = new Random(SEED);
+		List<FiscalDocumentName> names = new ArrayList<>();
+		for (int i = 1; i <= 50_000; i++) {
+			StringBuilder value = new StringBuilder();
+			for (int j = 0; j < 3; j++) {
+				value.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+			}
+			value.append(i);
+			names.add(name(i, i % 4 == 0 ? FiscalDocumentName.RECEIVER : FiscalDocumentName.ISSUER, value.toString()));
+		}
+		FiscalDocumentNameIndex index = new FiscalDocumentNameIndex();
+		long start = System.nanoTime();
+		index.addAll(names);
+		System.out.printf("carga de %d nombres:             %4d ms%n", names.size(), (System.nanoTime() - start) / 1_000_000);
+
+		System.out.printf("palabra común (andina):          %4d ms%n", measure(index, "andina"));
+		System.out.printf("dos palabras (agro caribe):      %4d ms%n", measure(index, "agro caribe"));
+		System.out.printf("nombre casi único (12345):       %4d ms%n", measure(index, "12345"));
+	}
+
+	private static long measure(FiscalDocumentNameIndex index, String text) {
+		List<String> words = FiscalDocumentNameIndex.words(text);
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			long start = System.nanoTime();
+			index.find(words, null, text, 0, 20);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best / 1_000_000;
+	}
+
+	private static List<FiscalDocumentName> find(FiscalDocumentNameIndex index, String text, String role) {
+		return index.find(FiscalDocumentNameIndex.words(text), role, text, 0, 10);
+	}
+
+	private static List<Long> ids(List<FiscalDocumentName> names) {
+		List<Long> ids = new ArrayList<>();
+		for (FiscalDocumentName name : names) {
+			ids.add(name.getId());
+		}
+		return ids;
+	}
+
+	private static FiscalDocumentName name(long id, String role, String value) {
+		FiscalDocumentName name = new FiscalDocumentName();
+		name.setId(id);
+		name.setRole(role);
+		name.setNit("");
+		name.setName(value);
+		return name;
+	}
+}